@@ -0,0 +1,338 @@
+/**
+ * openHAB, the open Home Automation Bus.
+ * Copyright (C) 2010-2013, openHAB.org <admin@openhab.org>
+ *
+ * See the contributors.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ * Additional permission under GNU GPL version 3 section 7
+ *
+ * If you modify this Program, or any covered work, by linking or
+ * combining it with Eclipse (or a modified version of that library),
+ * containing parts covered by the terms of the Eclipse Public License
+ * (EPL), the licensors of this Program grant you additional permission
+ * to convey the resulting work.
+ */
+package org.openhab.binding.http.internal;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Hashtable;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openhab.binding.http.HttpBindingProvider;
+import org.openhab.core.binding.BindingChangeListener;
+import org.openhab.core.events.EventPublisher;
+import org.openhab.core.items.Item;
+import org.openhab.core.library.items.StringItem;
+import org.openhab.core.library.types.StringType;
+import org.openhab.core.types.Command;
+import org.openhab.core.types.State;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+
+/**
+ * @author agent
+ * @since 1.3.0
+ */
+public class HttpBindingTest {
+	
+	private static final String RESPONSE = "42";
+	
+	/** a local server which answers all requests with {@link #RESPONSE} */
+	private HttpServer server;
+	
+	private ExecutorService serverExecutor;
+	
+	private String url;
+	
+	/** the number of requests per path the server received */
+	private final Map<String, AtomicInteger> requests = new ConcurrentHashMap<String, AtomicInteger>();
+	
+	private final AtomicInteger runningRequests = new AtomicInteger();
+	
+	private final AtomicInteger maxRunningRequests = new AtomicInteger();
+	
+	/** blocks the server until it is released */
+	private volatile CountDownLatch release;
+	
+	private HttpBinding binding;
+	
+	private TestProvider provider;
+	
+	private TestEventPublisher eventPublisher;
+	
+	@Before
+	public void setup() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/", new HttpHandler() {
+			public void handle(HttpExchange exchange) throws IOException {
+				String path = exchange.getRequestURI().getPath();
+				requests.putIfAbsent(path, new AtomicInteger());
+				requests.get(path).incrementAndGet();
+				int running = runningRequests.incrementAndGet();
+				synchronized (maxRunningRequests) {
+					maxRunningRequests.set(Math.max(maxRunningRequests.get(), running));
+				}
+				try {
+					CountDownLatch latch = release;
+					if (latch != null) {
+						latch.await(5, TimeUnit.SECONDS);
+					}
+				} catch (InterruptedException e) {
+				} finally {
+					runningRequests.decrementAndGet();
+				}
+				byte[] response = RESPONSE.getBytes("UTF-8");
+				exchange.sendResponseHeaders(200, response.length);
+				OutputStream out = exchange.getResponseBody();
+				out.write(response);
+				out.close();
+			}
+		});
+		serverExecutor = Executors.newFixedThreadPool(10);
+		server.setExecutor(serverExecutor);
+		server.start();
+		url = "http://127.0.0.1:" + server.getAddress().getPort();
+		
+		binding = new HttpBinding();
+		eventPublisher = new TestEventPublisher();
+		binding.setEventPublisher(eventPublisher);
+		// the provider is empty yet, so the refresh thread isn't started and the tests call execute() themselves
+		provider = new TestProvider();
+		binding.addBindingProvider(provider);
+	}
+	
+	@After
+	public void tearDown() {
+		binding.removeBindingProvider(provider);
+		binding.deactivate();
+		CountDownLatch latch = release;
+		if (latch != null) {
+			latch.countDown();
+		}
+		server.stop(0);
+		serverExecutor.shutdownNow();
+	}
+	
+	@Test
+	public void testItemsShareRequest() throws InterruptedException {
+		provider.addItem("Item1", url + "/a");
+		provider.addItem("Item2", url + "/a");
+		provider.addItem("Item3", url + "/b");
+		
+		binding.execute();
+		
+		Assert.assertTrue(eventPublisher.awaitUpdates(3));
+		Assert.assertEquals(1, requests.get("/a").get());
+		Assert.assertEquals(1, requests.get("/b").get());
+		Assert.assertEquals(new StringType(RESPONSE), eventPublisher.updates.get("Item1"));
+		Assert.assertEquals(new StringType(RESPONSE), eventPublisher.updates.get("Item2"));
+		Assert.assertEquals(new StringType(RESPONSE), eventPublisher.updates.get("Item3"));
+	}
+	
+	@Test
+	public void testItemIsNotDueBeforeItsRefreshInterval() throws InterruptedException {
+		provider.addItem("Item1", url + "/a");
+		provider.refreshInterval = 60000;
+		
+		binding.execute();
+		Assert.assertTrue(eventPublisher.awaitUpdates(1));
+		binding.execute();
+		Thread.sleep(100L);
+		
+		Assert.assertEquals(1, requests.get("/a").get());
+		Assert.assertEquals(1, eventPublisher.count.get());
+	}
+	
+	@Test
+	public void testPendingRequestIsSkipped() throws InterruptedException {
+		release = new CountDownLatch(1);
+		provider.addItem("Item1", url + "/a");
+		
+		binding.execute();
+		Thread.sleep(100L);
+		// the item is due again, but its request has not finished yet
+		binding.execute();
+		release.countDown();
+		
+		Assert.assertTrue(eventPublisher.awaitUpdates(1));
+		Thread.sleep(100L);
+		Assert.assertEquals(1, requests.get("/a").get());
+	}
+	
+	@Test
+	public void testMaxRequestsPerHost() throws Exception {
+		Hashtable<String, String> config = new Hashtable<String, String>();
+		config.put("maxRequestsPerHost", "1");
+		binding.updated(config);
+		
+		release = new CountDownLatch(1);
+		for (int i = 0; i < 4; i++) {
+			provider.addItem("Item" + i, url + "/" + i);
+		}
+		
+		binding.execute();
+		Thread.sleep(100L);
+		Assert.assertEquals(1, runningRequests.get());
+		release.countDown();
+		
+		Assert.assertTrue(eventPublisher.awaitUpdates(4));
+		Assert.assertEquals(1, maxRunningRequests.get());
+	}
+	
+	@Test
+	public void testPollStatistics() throws InterruptedException {
+		provider.addItem("Item1", url + "/a");
+		Assert.assertNull(binding.getPollStatistics("Item1"));
+		
+		binding.execute();
+		
+		Assert.assertTrue(eventPublisher.awaitUpdates(1));
+		HttpBinding.PollStatistics statistics = binding.getPollStatistics("Item1");
+		Assert.assertNotNull(statistics);
+		Assert.assertEquals(1, statistics.getCount());
+		Assert.assertTrue(statistics.getMaxLag() >= statistics.getLastLag());
+	}
+	
+	@Test
+	public void testRemovedItemsAreForgotten() throws InterruptedException {
+		provider.addItem("Item1", url + "/a");
+		provider.addItem("Item2", url + "/b");
+		binding.execute();
+		Assert.assertTrue(eventPublisher.awaitUpdates(2));
+		
+		TestProvider otherProvider = new TestProvider();
+		binding.addBindingProvider(otherProvider);
+		provider.items.remove("Item1");
+		binding.allBindingsChanged(otherProvider);
+		binding.removeBindingProvider(otherProvider);
+		
+		Assert.assertNull(binding.getPollStatistics("Item1"));
+		Assert.assertNotNull(binding.getPollStatistics("Item2"));
+	}
+	
+	
+	private static class TestEventPublisher implements EventPublisher {
+		
+		final Map<String, State> updates = new ConcurrentHashMap<String, State>();
+		final AtomicInteger count = new AtomicInteger();
+		
+		boolean awaitUpdates(int expected) throws InterruptedException {
+			long end = System.currentTimeMillis() + 5000L;
+			while (count.get() < expected && System.currentTimeMillis() < end) {
+				Thread.sleep(10L);
+			}
+			return count.get() >= expected;
+		}
+
+		public void sendCommand(String itemName, Command command) {
+		}
+
+		public void postCommand(String itemName, Command command) {
+		}
+
+		public void postUpdate(String itemName, State newState) {
+			updates.put(itemName, newState);
+			count.incrementAndGet();
+		}
+	}
+	
+	private static class TestProvider implements HttpBindingProvider {
+		
+		final Map<String, String> items = new LinkedHashMap<String, String>();
+		int refreshInterval = 0;
+		
+		void addItem(String itemName, String url) {
+			items.put(itemName, url);
+		}
+
+		public void addBindingChangeListener(BindingChangeListener listener) {
+		}
+
+		public void removeBindingChangeListener(BindingChangeListener listener) {
+		}
+
+		public boolean providesBindingFor(String itemName) {
+			return items.containsKey(itemName);
+		}
+
+		public boolean providesBinding() {
+			return !items.isEmpty();
+		}
+
+		public Collection<String> getItemNames() {
+			return new ArrayList<String>(items.keySet());
+		}
+
+		public Class<? extends Item> getItemType(String itemName) {
+			return StringItem.class;
+		}
+
+		public String getHttpMethod(String itemName, Command command) {
+			return null;
+		}
+
+		public String getUrl(String itemName, Command command) {
+			return null;
+		}
+
+		public Properties getHttpHeaders(String itemName, Command command) {
+			return null;
+		}
+
+		public String getUrl(String itemName) {
+			return items.get(itemName);
+		}
+
+		public Properties getHttpHeaders(String itemName) {
+			return null;
+		}
+
+		public int getRefreshInterval(String itemName) {
+			return refreshInterval;
+		}
+
+		public String getTransformation(String itemName) {
+			return "NONE(x)";
+		}
+
+		public List<String> getInBindingItemNames() {
+			return new ArrayList<String>(items.keySet());
+		}
+	}
+
+}
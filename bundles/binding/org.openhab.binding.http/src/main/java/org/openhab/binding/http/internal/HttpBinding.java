@@ -31,17 +31,38 @@ package org.openhab.binding.http.internal;
 import static org.apache.commons.lang.StringUtils.isNotBlank;
 import static org.openhab.binding.http.internal.HttpGenericBindingProvider.CHANGED_COMMAND_KEY;
 
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Comparator;
 import java.util.Dictionary;
-import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.apache.commons.lang.StringUtils;
 import org.openhab.binding.http.HttpBindingProvider;
 import org.openhab.core.binding.AbstractActiveBinding;
+import org.openhab.core.binding.BindingProvider;
 import org.openhab.core.items.Item;
 import org.openhab.core.library.items.ContactItem;
 import org.openhab.core.library.items.NumberItem;
@@ -67,7 +88,10 @@ import org.slf4j.LoggerFactory;
 
 
 /**
- * An active binding which requests a given URL frequently.
+ * An active binding which requests a given URL frequently. The refresh thread
+ * only determines the due items, the requests themselves are executed by a
+ * bounded pool of worker threads. Items bound to the same url share a single
+ * request.
  * 
  * @author Thomas.Eichstaedt-Engelen
  * @author Kai Kreuzer
@@ -83,11 +107,35 @@ public class HttpBinding extends AbstractActiveBinding<HttpBindingProvider> impl
 	/** the interval to find new refresh candidates (defaults to 1000 milliseconds)*/ 
 	private int granularity = 1000;
 	
-	private Map<String, Long> lastUpdateMap = new HashMap<String, Long>();
+	/** the maximum number of requests which are executed concurrently (defaults to 5) */
+	private int maxThreads = 5;
+	
+	/** the maximum number of concurrent requests to a single host (defaults to 2) */
+	private volatile int maxRequestsPerHost = 2;
+	
+	/** the time at which each item is due to be refreshed next */
+	private final Map<String, Long> dueTimeMap = new ConcurrentHashMap<String, Long>();
+	
+	/** the lag statistics of each item, which are logged on debug level when the binding is deactivated */
+	private final ConcurrentMap<String, PollStatistics> statisticsMap = new ConcurrentHashMap<String, PollStatistics>();
+	
+	/** the keys of all requests which have been dispatched but are not finished yet */
+	private final Set<String> pendingRequests = Collections.synchronizedSet(new HashSet<String>());
+	
+	private final ConcurrentMap<String, HostQueue> hostQueues = new ConcurrentHashMap<String, HostQueue>();
+	
+	private ThreadPoolExecutor executor;
 	
 	/** RegEx to extract a parse a function String <code>'(.*?)\((.*)\)'</code> */
 	private static final Pattern EXTRACT_FUNCTION_PATTERN = Pattern.compile("(.*?)\\((.*)\\)");
 	
+	/** orders requests by the due time of their most overdue item */
+	private static final Comparator<PollRequest> DUE_TIME_COMPARATOR = new Comparator<PollRequest>() {
+		public int compare(PollRequest request1, PollRequest request2) {
+			return request1.dueTime < request2.dueTime ? -1 : (request1.dueTime == request2.dueTime ? 0 : 1);
+		}
+	};
+	
 	
 	public HttpBinding() {
 	}
@@ -131,78 +179,290 @@ public class HttpBinding extends AbstractActiveBinding<HttpBindingProvider> impl
 
 	/**
 	 * @{inheritDoc}
+	 * 
+	 * Collects all items whose refresh interval has elapsed, groups them by
+	 * their (formatted) url and headers so that each url is requested only once
+	 * and hands the requests over to the queue of their host, the most overdue
+	 * first. Urls which are still queued or being requested are skipped until
+	 * their request has finished.
 	 */
 	@Override
 	public void execute() {
+		long now = System.currentTimeMillis();
+		Date date = Calendar.getInstance().getTime();
 		
+		Map<String, PollRequest> dueRequests = new LinkedHashMap<String, PollRequest>();
 		for (HttpBindingProvider provider : providers) {
 			for (String itemName : provider.getInBindingItemNames()) {
 				
-				String url = provider.getUrl(itemName);
-				url = String.format(url, Calendar.getInstance().getTime());
-
+				Long dueTime = dueTimeMap.get(itemName);
+				if (dueTime == null) {
+					dueTime = now;
+					dueTimeMap.put(itemName, dueTime);
+				}
+				if (dueTime > now) {
+					continue;
+				}
+				
+				String url = String.format(provider.getUrl(itemName), date);
 				Properties headers = provider.getHttpHeaders(itemName);
-				int refreshInterval = provider.getRefreshInterval(itemName);
-				String transformation = provider.getTransformation(itemName);
+				String requestKey = createRequestKey(url, headers);
 				
-				Long lastUpdateTimeStamp = lastUpdateMap.get(itemName);
-				if (lastUpdateTimeStamp == null) {
-					lastUpdateTimeStamp = 0L;
+				if (pendingRequests.contains(requestKey)) {
+					logger.trace("item '{}' is due but '{}' is still being requested", itemName, url);
+					continue;
 				}
 				
-				long age = System.currentTimeMillis() - lastUpdateTimeStamp;
-				boolean needsUpdate = age >= refreshInterval;
-				
-				if (needsUpdate) {
-					
-					logger.debug("item '{}' is about to be refreshed now", itemName);
-					
-					String response = HttpUtil.executeUrl("GET", url, headers, null, null, timeout);
-					
-					if(response==null) {
-						logger.error("No response received from '{}'", url);
-					} else {
-						String transformedResponse;
-						
-						try {
-							String[] parts = splitTransformationConfig(transformation);
-							String transformationType = parts[0];
-							String transformationFunction = parts[1];
-							
-							TransformationService transformationService = 
-								TransformationHelper.getTransformationService(HttpActivator.getContext(), transformationType);
-							if (transformationService != null) {
-								transformedResponse = transformationService.transform(transformationFunction, response);
-							} else {
-								transformedResponse = response;
-								logger.warn("couldn't transform response because transformationService of type '{}' is unavailable", transformationType);
-							}
-						}
-						catch (TransformationException te) {
-							logger.error("transformation throws exception [transformation="
-									+ transformation + ", response=" + response + "]", te);
-							
-							// in case of an error we return the response without any
-							// transformation
-							transformedResponse = response;
-						}
-						
-						logger.debug("transformed response is '{}'", transformedResponse);
-						
-						Class<? extends Item> itemType = provider.getItemType(itemName);
-						State state = createState(itemType, transformedResponse);
-						
-						if (state != null) {
-							eventPublisher.postUpdate(itemName, state);
-						}
-					}
-					
-					lastUpdateMap.put(itemName, System.currentTimeMillis());
-				}					
+				PollRequest request = dueRequests.get(requestKey);
+				if (request == null) {
+					request = new PollRequest(requestKey, url, headers);
+					dueRequests.put(requestKey, request);
+				}
+				request.add(new PolledItem(provider, itemName, dueTime));
+				dueTimeMap.put(itemName, now + provider.getRefreshInterval(itemName));
+			}
+		}
+		
+		List<PollRequest> requests = new ArrayList<PollRequest>(dueRequests.values());
+		Collections.sort(requests, DUE_TIME_COMPARATOR);
+		
+		Executor executor = getExecutor();
+		for (PollRequest request : requests) {
+			pendingRequests.add(request.key);
+			for (PolledItem item : request.items) {
+				logger.debug("item '{}' is about to be refreshed now", item.itemName);
+			}
+			
+			HostQueue queue = getHostQueue(request.url);
+			if (queue.offer(request)) {
+				dispatch(executor, queue, request);
+			} else {
+				logger.trace("maximum number of requests to the host of '{}' reached, request has been queued", request.url);
 			}
 		}
 	}
 	
+	/**
+	 * Submits <code>request</code> to <code>executor</code>. If the executor
+	 * has been shut down, the request and all requests waiting in the queue
+	 * of its host are discarded.
+	 * 
+	 * @param executor the executor to run the request
+	 * @param queue the queue of the host of the request
+	 * @param request the request to run
+	 */
+	private void dispatch(Executor executor, HostQueue queue, PollRequest request) {
+		while (request != null) {
+			try {
+				executor.execute(new PollTask(executor, queue, request));
+				return;
+			} catch (RejectedExecutionException ree) {
+				logger.debug("request to '{}' has been discarded because the binding is shutting down", request.url);
+				pendingRequests.remove(request.key);
+				request = queue.next();
+			}
+		}
+	}
+	
+	/**
+	 * Requests the url of <code>request</code> and updates all items which are
+	 * bound to it with the (individually transformed) response.
+	 * 
+	 * @param request the request to execute
+	 */
+	private void poll(PollRequest request) {
+		long startTime = System.currentTimeMillis();
+		for (PolledItem item : request.items) {
+			long lag = startTime - item.dueTime;
+			getStatistics(item.itemName).record(lag);
+			logger.trace("refreshing item '{}' with a lag of {}ms", item.itemName, lag);
+		}
+		
+		String response = HttpUtil.executeUrl("GET", request.url, request.headers, null, null, timeout);
+		
+		if (response == null) {
+			logger.error("No response received from '{}'", request.url);
+			return;
+		}
+		
+		for (PolledItem item : request.items) {
+			try {
+				updateItem(item.provider, item.itemName, response);
+			} catch (RuntimeException re) {
+				logger.error("couldn't update item '" + item.itemName + "' with the response of '" + request.url + "'", re);
+			}
+		}
+	}
+	
+	/**
+	 * Transforms <code>response</code> according to the transformation configured
+	 * for <code>itemName</code> and posts the resulting state to the event bus.
+	 * 
+	 * @param provider the binding provider which holds the configuration of the item
+	 * @param itemName the item to update
+	 * @param response the raw response of the http request
+	 */
+	private void updateItem(HttpBindingProvider provider, String itemName, String response) {
+		String transformation = provider.getTransformation(itemName);
+		String transformedResponse;
+		
+		try {
+			String[] parts = splitTransformationConfig(transformation);
+			String transformationType = parts[0];
+			String transformationFunction = parts[1];
+			
+			TransformationService transformationService = 
+				TransformationHelper.getTransformationService(HttpActivator.getContext(), transformationType);
+			if (transformationService != null) {
+				transformedResponse = transformationService.transform(transformationFunction, response);
+			} else {
+				transformedResponse = response;
+				logger.warn("couldn't transform response because transformationService of type '{}' is unavailable", transformationType);
+			}
+		}
+		catch (TransformationException te) {
+			logger.error("transformation throws exception [transformation="
+					+ transformation + ", response=" + response + "]", te);
+			
+			// in case of an error we return the response without any
+			// transformation
+			transformedResponse = response;
+		}
+		
+		logger.debug("transformed response is '{}'", transformedResponse);
+		
+		Class<? extends Item> itemType = provider.getItemType(itemName);
+		State state = createState(itemType, transformedResponse);
+		
+		if (state != null) {
+			eventPublisher.postUpdate(itemName, state);
+		}
+	}
+	
+	/**
+	 * Returns the lag statistics of the given item. The lag is the time between
+	 * the moment an item became due and the moment its request actually started.
+	 * 
+	 * @param itemName the item to return the statistics for
+	 * @return the statistics of <code>itemName</code> or <code>null</code> if the
+	 * item has not been refreshed yet
+	 */
+	public PollStatistics getPollStatistics(String itemName) {
+		return statisticsMap.get(itemName);
+	}
+	
+	private PollStatistics getStatistics(String itemName) {
+		PollStatistics statistics = statisticsMap.get(itemName);
+		if (statistics == null) {
+			statistics = new PollStatistics();
+			PollStatistics existing = statisticsMap.putIfAbsent(itemName, statistics);
+			if (existing != null) {
+				statistics = existing;
+			}
+		}
+		return statistics;
+	}
+	
+	/**
+	 * Returns the queue which limits the number of concurrent requests
+	 * to the host of <code>url</code>.
+	 * 
+	 * @param url the url to find the host for
+	 * @return the queue of the host
+	 */
+	private HostQueue getHostQueue(String url) {
+		String host;
+		try {
+			host = new URL(url).getHost();
+		} catch (MalformedURLException mue) {
+			// HttpUtil will report the invalid url, we just limit it on its own
+			host = url;
+		}
+		
+		HostQueue queue = hostQueues.get(host);
+		if (queue == null) {
+			queue = new HostQueue();
+			HostQueue existing = hostQueues.putIfAbsent(host, queue);
+			if (existing != null) {
+				queue = existing;
+			}
+		}
+		return queue;
+	}
+	
+	/**
+	 * Creates the key which identifies identical requests of different items.
+	 * 
+	 * @param url the formatted url
+	 * @param headers the http headers of the request (may be <code>null</code>)
+	 * @return the key of the request
+	 */
+	private static String createRequestKey(String url, Properties headers) {
+		if (headers == null || headers.isEmpty()) {
+			return url;
+		}
+		return url + " " + new TreeMap<Object, Object>(headers);
+	}
+	
+	private synchronized ThreadPoolExecutor getExecutor() {
+		if (executor == null) {
+			executor = new ThreadPoolExecutor(maxThreads, maxThreads, 
+				60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new WorkerThreadFactory());
+		}
+		return executor;
+	}
+	
+	/**
+	 * @{inheritDoc}
+	 */
+	@Override
+	public synchronized void deactivate() {
+		if (executor != null) {
+			executor.shutdownNow();
+			executor = null;
+		}
+		hostQueues.clear();
+		pendingRequests.clear();
+		if (logger.isDebugEnabled()) {
+			for (Map.Entry<String, PollStatistics> entry : statisticsMap.entrySet()) {
+				logger.debug("lag statistics of item '{}': {}", entry.getKey(), entry.getValue());
+			}
+		}
+	}
+	
+	/**
+	 * @{inheritDoc}
+	 */
+	@Override
+	public void bindingChanged(BindingProvider provider, String itemName) {
+		super.bindingChanged(provider, itemName);
+		// the item is refreshed immediately with its new configuration
+		dueTimeMap.remove(itemName);
+		statisticsMap.remove(itemName);
+	}
+	
+	/**
+	 * @{inheritDoc}
+	 */
+	@Override
+	public void allBindingsChanged(BindingProvider provider) {
+		super.allBindingsChanged(provider);
+		// the items are refreshed immediately with their new configuration
+		for (String itemName : provider.getItemNames()) {
+			dueTimeMap.remove(itemName);
+			statisticsMap.remove(itemName);
+		}
+		// forget about the items which are not bound anymore
+		Set<String> boundItemNames = new HashSet<String>();
+		synchronized (providers) {
+			for (HttpBindingProvider httpProvider : providers) {
+				boundItemNames.addAll(httpProvider.getItemNames());
+			}
+		}
+		dueTimeMap.keySet().retainAll(boundItemNames);
+		statisticsMap.keySet().retainAll(boundItemNames);
+	}
+	
 	/**
 	 * Splits a transformation configuration string into its two parts - the
 	 * transformation type and the function/pattern to apply.
@@ -323,9 +583,191 @@ public class HttpBinding extends AbstractActiveBinding<HttpBindingProvider> impl
 			if (StringUtils.isNotBlank(granularityString)) {
 				granularity = Integer.parseInt(granularityString);
 			}
+			
+			String threadsString = (String) config.get("threads");
+			if (StringUtils.isNotBlank(threadsString)) {
+				setMaxThreads(Integer.parseInt(threadsString));
+			}
+			
+			String maxRequestsPerHostString = (String) config.get("maxRequestsPerHost");
+			if (StringUtils.isNotBlank(maxRequestsPerHostString)) {
+				maxRequestsPerHost = Integer.parseInt(maxRequestsPerHostString);
+			}
 		}
 
 	}
 	
+	private synchronized void setMaxThreads(int threads) {
+		if (threads < 1) {
+			logger.warn("ignoring invalid number of threads '{}'", threads);
+			return;
+		}
+		maxThreads = threads;
+		if (executor != null) {
+			if (threads > executor.getMaximumPoolSize()) {
+				executor.setMaximumPoolSize(threads);
+				executor.setCorePoolSize(threads);
+			} else {
+				executor.setCorePoolSize(threads);
+				executor.setMaximumPoolSize(threads);
+			}
+		}
+	}
+	
+	
+	/** a single http request together with all items that are bound to its url */
+	private static class PollRequest {
+		
+		final String key;
+		final String url;
+		final Properties headers;
+		final List<PolledItem> items = new ArrayList<PolledItem>();
+		long dueTime = Long.MAX_VALUE;
+		
+		PollRequest(String key, String url, Properties headers) {
+			this.key = key;
+			this.url = url;
+			this.headers = headers;
+		}
+		
+		void add(PolledItem item) {
+			items.add(item);
+			dueTime = Math.min(dueTime, item.dueTime);
+		}
+	}
+	
+	private static class PolledItem {
+		
+		final HttpBindingProvider provider;
+		final String itemName;
+		final long dueTime;
+		
+		PolledItem(HttpBindingProvider provider, String itemName, long dueTime) {
+			this.provider = provider;
+			this.itemName = itemName;
+			this.dueTime = dueTime;
+		}
+	}
+	
+	private class PollTask implements Runnable {
+		
+		private final Executor executor;
+		private final HostQueue queue;
+		private final PollRequest request;
+		
+		PollTask(Executor executor, HostQueue queue, PollRequest request) {
+			this.executor = executor;
+			this.queue = queue;
+			this.request = request;
+		}
+		
+		public void run() {
+			try {
+				poll(request);
+			} finally {
+				pendingRequests.remove(request.key);
+				// hand our slot over to the next waiting request of this host
+				PollRequest next = queue.next();
+				if (next != null) {
+					dispatch(executor, queue, next);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Limits the number of concurrent requests to a single host. Requests which
+	 * exceed the limit are kept in FIFO order until a running request finishes.
+	 */
+	private class HostQueue {
+		
+		private final LinkedList<PollRequest> waiting = new LinkedList<PollRequest>();
+		private int running;
+		
+		/**
+		 * @return <code>true</code> if the request may run immediately,
+		 * <code>false</code> if it has been queued
+		 */
+		synchronized boolean offer(PollRequest request) {
+			if (running < maxRequestsPerHost) {
+				running++;
+				return true;
+			}
+			waiting.add(request);
+			return false;
+		}
+		
+		/**
+		 * Called whenever a request has finished.
+		 * 
+		 * @return the next request to run in place of the finished one or 
+		 * <code>null</code> if no request is waiting
+		 */
+		synchronized PollRequest next() {
+			if (!waiting.isEmpty() && running <= maxRequestsPerHost) {
+				return waiting.removeFirst();
+			}
+			running--;
+			return null;
+		}
+	}
+	
+	/**
+	 * Keeps track of the lag of an item, i.e. how late its requests started
+	 * compared to its configured refresh interval.
+	 */
+	public static class PollStatistics {
+		
+		private long count;
+		private long totalLag;
+		private long maxLag;
+		private long lastLag;
+		
+		synchronized void record(long lag) {
+			count++;
+			totalLag += lag;
+			lastLag = lag;
+			if (lag > maxLag) {
+				maxLag = lag;
+			}
+		}
+		
+		/** @return the number of requests which have been started for the item */
+		public synchronized long getCount() {
+			return count;
+		}
+		
+		/** @return the lag of the most recent request in milliseconds */
+		public synchronized long getLastLag() {
+			return lastLag;
+		}
+		
+		/** @return the maximum lag in milliseconds */
+		public synchronized long getMaxLag() {
+			return maxLag;
+		}
+		
+		/** @return the average lag in milliseconds */
+		public synchronized long getAverageLag() {
+			return count == 0 ? 0 : totalLag / count;
+		}
+		
+		@Override
+		public synchronized String toString() {
+			return "PollStatistics [count=" + count + ", lastLag=" + lastLag 
+					+ ", averageLag=" + getAverageLag() + ", maxLag=" + maxLag + "]";
+		}
+	}
+	
+	private static class WorkerThreadFactory implements ThreadFactory {
+		
+		private final AtomicInteger threadNumber = new AtomicInteger(1);
+		
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "HTTP Refresh Worker-" + threadNumber.getAndIncrement());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
 
 }
@@ -0,0 +1,128 @@
+/**
+ * openHAB, the open Home Automation Bus.
+ * Copyright (C) 2010-2013, openHAB.org <admin@openhab.org>
+ *
+ * See the contributors.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ * Additional permission under GNU GPL version 3 section 7
+ *
+ * If you modify this Program, or any covered work, by linking or
+ * combining it with Eclipse (or a modified version of that library),
+ * containing parts covered by the terms of the Eclipse Public License
+ * (EPL), the licensors of this Program grant you additional permission
+ * to convey the resulting work.
+ */
+package org.openhab.core.library.internal;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Test;
+import org.openhab.core.items.GenericItem;
+import org.openhab.core.library.items.ColorItem;
+import org.openhab.core.library.items.ContactItem;
+import org.openhab.core.library.items.DateTimeItem;
+import org.openhab.core.library.items.DimmerItem;
+import org.openhab.core.library.items.NumberItem;
+import org.openhab.core.library.items.RollershutterItem;
+import org.openhab.core.library.items.StringItem;
+import org.openhab.core.library.items.SwitchItem;
+import org.openhab.core.types.Command;
+import org.openhab.core.types.State;
+import org.openhab.core.types.TypeParser;
+
+
+/**
+ * @author agent
+ * @since 1.3.0
+ */
+public class CoreTypeParsersTest {
+	
+	private static final String[] VALUES = new String[] {
+		"ON", "OFF", "on", "OPEN", "CLOSED", "UP", "DOWN", "STOP", "MOVE", "INCREASE", "DECREASE",
+		"UNDEF", "NULL", "0", "42", "-3", "+7", "100", "100.0", "100.5", "12.75", ".5", "5.", "1e2", 
+		"1E-3", "1e", "e1", ".", "-", "", "  1", "1 ", "abc", "12,34", "120,50,75", "0.5,1e1,+3", 
+		"1,2", "1,2,3,4", "1,,3", "a,b,c", "2013-06-12T10:15:00", "2013-06-12", "T", "12T", "NaN" };
+	
+	private static final GenericItem[] ITEMS = new GenericItem[] { 
+		new SwitchItem("switch"), new ContactItem("contact"), new DimmerItem("dimmer"),
+		new NumberItem("number"), new RollershutterItem("rollershutter"), new StringItem("string"),
+		new DateTimeItem("datetime"), new ColorItem("color") };
+	
+	@After
+	public void tearDown() {
+		CoreTypeParsers.unregister();
+	}
+	
+	@Test
+	public void testDefaultParsers() throws Exception {
+		assertSameResults();
+	}
+	
+	@Test
+	public void testRegisteredParsers() throws Exception {
+		CoreTypeParsers.register();
+		assertSameResults();
+	}
+	
+	@Test
+	public void testIsNumeric() {
+		for (String value : Arrays.asList("0", "-1", "+1.5", "1.", ".1", "1e5", "1.5E-3")) {
+			Assert.assertTrue(value, CoreTypeParsers.isNumeric(value, 0, value.length()));
+		}
+		for (String value : Arrays.asList("", "-", ".", "+.", "1e", "1e+", "1.2.3", "1-", "x", " 1")) {
+			Assert.assertFalse(value, CoreTypeParsers.isNumeric(value, 0, value.length()));
+		}
+	}
+	
+	private void assertSameResults() throws Exception {
+		for (GenericItem item : ITEMS) {
+			for (String value : VALUES) {
+				String message = item.getName() + ":" + value;
+				State state = TypeParser.parseState(item.getAcceptedDataTypes(), value);
+				Assert.assertEquals(message, toString(parseReflectively(item.getAcceptedDataTypes(), value)), toString(state));
+				Command command = TypeParser.parseCommand(item.getAcceptedCommandTypes(), value);
+				Assert.assertEquals(message, toString(parseReflectively(item.getAcceptedCommandTypes(), value)), toString(command));
+			}
+		}
+	}
+	
+	/**
+	 * The way the {@link TypeParser} used to parse values, for comparison.
+	 */
+	private Object parseReflectively(List<? extends Class<?>> types, String s) {
+		for (Class<?> type : new ArrayList<Class<?>>(types)) {
+			try {
+				Method valueOf = type.getMethod("valueOf", String.class);
+				Object value = valueOf.invoke(type, s);
+				if(value!=null) return value;
+			} catch (Exception e) {
+			}
+		}
+		return null;
+	}
+	
+	private String toString(Object value) {
+		return value!=null ? value.getClass().getSimpleName() + "=" + value : null;
+	}
+
+}
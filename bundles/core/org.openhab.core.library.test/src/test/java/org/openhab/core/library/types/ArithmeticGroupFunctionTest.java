@@ -37,6 +37,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.openhab.core.items.GenericItem;
 import org.openhab.core.items.GroupFunction;
+import org.openhab.core.items.GroupItem;
 import org.openhab.core.items.Item;
 import org.openhab.core.library.items.DimmerItem;
 import org.openhab.core.library.items.SwitchItem;
@@ -225,6 +226,65 @@ public class ArithmeticGroupFunctionTest {
 		Assert.assertEquals(new DecimalType("234.95"), state);
 	}
 	
+	@Test
+	public void testIncrementalAggregation() {
+		GroupFunction[] functions = new GroupFunction[] {
+			new ArithmeticGroupFunction.Avg(), new ArithmeticGroupFunction.Sum(),
+			new ArithmeticGroupFunction.Min(), new ArithmeticGroupFunction.Max(),
+			new ArithmeticGroupFunction.And(new DecimalType("1"), UnDefType.UNDEF),
+			new ArithmeticGroupFunction.Or(new DecimalType("1"), UnDefType.UNDEF),
+			new ArithmeticGroupFunction.NAnd(new DecimalType("1"), UnDefType.UNDEF),
+			new ArithmeticGroupFunction.NOr(new DecimalType("1"), UnDefType.UNDEF) };
+		String[] values = new String[] { "1", "2.5", "-3", "1.00", "42", "0" };
+		
+		for(GroupFunction groupFunction : functions) {
+			GroupItem group = new GroupItem("Group", null, groupFunction);
+			for(int i = 0; i < 10; i++) {
+				group.addMember(new TestItem("TestItem" + i, new DecimalType(values[i % values.length])));
+			}
+			for(int i = 0; i < 100; i++) {
+				GenericItem member = (GenericItem) group.getMembers().get((i * 7) % 10);
+				member.setState(i % 11 == 0 ? UnDefType.UNDEF : new DecimalType(values[(i * 3) % values.length]));
+				
+				State expected = groupFunction.calculate(group.getMembers());
+				Assert.assertEquals(expected, group.getState());
+				// the results must also have the same scale
+				Assert.assertEquals(expected.toString(), group.getState().toString());
+			}
+		}
+	}
+	
+	@Test
+	public void testIncrementalMinMaxKeepScale() {
+		GroupFunction[] functions = new GroupFunction[] {
+			new ArithmeticGroupFunction.Min(), new ArithmeticGroupFunction.Max() };
+		
+		for(GroupFunction groupFunction : functions) {
+			GroupItem group = new GroupItem("Group", null, groupFunction);
+			TestItem item1 = new TestItem("TestItem1", UnDefType.UNDEF);
+			TestItem item2 = new TestItem("TestItem2", UnDefType.UNDEF);
+			group.addMember(item1);
+			group.addMember(item2);
+			item1.setState(new DecimalType("1"));
+			item2.setState(new DecimalType("1.00"));
+			// numerically equal states are resolved to the first member
+			Assert.assertEquals("1", groupFunction.calculate(group.getMembers()).toString());
+			Assert.assertEquals("1", group.getState().toString());
+			
+			item1.setState(UnDefType.UNDEF);
+			Assert.assertEquals("1.00", groupFunction.calculate(group.getMembers()).toString());
+			Assert.assertEquals("1.00", group.getState().toString());
+			
+			item1.setState(new DecimalType("1.0"));
+			item2.setState(new DecimalType("1.000"));
+			Assert.assertEquals("1.0", groupFunction.calculate(group.getMembers()).toString());
+			Assert.assertEquals("1.0", group.getState().toString());
+			
+			item2.setState(new DecimalType("1.0"));
+			Assert.assertEquals("1.0", group.getState().toString());
+		}
+	}
+	
 	class TestItem extends GenericItem {
 
 		public TestItem(String name, State state) {
@@ -38,6 +38,7 @@ public class CoreLibraryActivator implements BundleActivator {
 	 * @see org.osgi.framework.BundleActivator#start(org.osgi.framework.BundleContext)
 	 */
 	public void start(BundleContext context) throws Exception {
+		CoreTypeParsers.register();
 	}
 
 	/*
@@ -45,6 +46,7 @@ public class CoreLibraryActivator implements BundleActivator {
 	 * @see org.osgi.framework.BundleActivator#stop(org.osgi.framework.BundleContext)
 	 */
 	public void stop(BundleContext context) throws Exception {
+		CoreTypeParsers.unregister();
 	}
 
 }
@@ -0,0 +1,158 @@
+/**
+ * openHAB, the open Home Automation Bus.
+ * Copyright (C) 2010-2013, openHAB.org <admin@openhab.org>
+ *
+ * See the contributors.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ * Additional permission under GNU GPL version 3 section 7
+ *
+ * If you modify this Program, or any covered work, by linking or
+ * combining it with Eclipse (or a modified version of that library),
+ * containing parts covered by the terms of the Eclipse Public License
+ * (EPL), the licensors of this Program grant you additional permission
+ * to convey the resulting work.
+ */
+package org.openhab.core.library.internal;
+
+import java.math.BigDecimal;
+
+import org.openhab.core.library.types.DateTimeType;
+import org.openhab.core.library.types.DecimalType;
+import org.openhab.core.library.types.HSBType;
+import org.openhab.core.library.types.PercentType;
+import org.openhab.core.library.types.StringType;
+import org.openhab.core.types.TypeParser;
+import org.openhab.core.types.TypeParser.Parser;
+
+/**
+ * Provides the {@link TypeParser} with parsers for the types of the core library.
+ * All parsers check the syntax of a string before creating the value, so that 
+ * strings of other types are rejected without throwing exceptions.
+ * The enum types do not need a dedicated parser as the {@link TypeParser} 
+ * resolves enum constants by their names anyway.
+ * 
+ * @author agent
+ * @since 1.3.0
+ */
+public class CoreTypeParsers {
+	
+	private static final BigDecimal HUNDRED = new BigDecimal(100);
+
+	/**
+	 * Registers the parsers of all core library types at the {@link TypeParser}.
+	 */
+	public static void register() {
+		TypeParser.registerParser(DecimalType.class, new Parser<DecimalType>() {
+			public DecimalType parse(String s) {
+				return isNumeric(s, 0, s!=null ? s.length() : 0) ? new DecimalType(s) : null;
+			}
+		});
+		TypeParser.registerParser(PercentType.class, new Parser<PercentType>() {
+			public PercentType parse(String s) {
+				return parsePercent(s);
+			}
+		});
+		TypeParser.registerParser(HSBType.class, new Parser<HSBType>() {
+			public HSBType parse(String s) {
+				return isHSB(s) ? new HSBType(s) : null;
+			}
+		});
+		TypeParser.registerParser(DateTimeType.class, new Parser<DateTimeType>() {
+			public DateTimeType parse(String s) {
+				// the date format requires the literal 'T' between date and time
+				return s!=null && s.indexOf('T') > 0 ? new DateTimeType(s) : null;
+			}
+		});
+		TypeParser.registerParser(StringType.class, new Parser<StringType>() {
+			public StringType parse(String s) {
+				return new StringType(s);
+			}
+		});
+	}
+
+	/**
+	 * Removes the parsers of all core library types from the {@link TypeParser}.
+	 */
+	public static void unregister() {
+		TypeParser.unregisterParser(DecimalType.class);
+		TypeParser.unregisterParser(PercentType.class);
+		TypeParser.unregisterParser(HSBType.class);
+		TypeParser.unregisterParser(DateTimeType.class);
+		TypeParser.unregisterParser(StringType.class);
+	}
+
+	private static PercentType parsePercent(String s) {
+		if(!isNumeric(s, 0, s!=null ? s.length() : 0)) return null;
+		BigDecimal value = new BigDecimal(s);
+		if(value.signum() < 0 || value.compareTo(HUNDRED) > 0) return null;
+		return new PercentType(value);
+	}
+	
+	/**
+	 * Checks for three comma separated numbers, which is the syntax of {@link HSBType}.
+	 */
+	private static boolean isHSB(String s) {
+		if(s==null) return false;
+		int first = s.indexOf(',');
+		if(first < 0) return false;
+		int second = s.indexOf(',', first + 1);
+		if(second < 0 || s.indexOf(',', second + 1) >= 0) return false;
+		return isNumeric(s, 0, first) && isNumeric(s, first + 1, second) 
+			&& isNumeric(s, second + 1, s.length());
+	}
+
+	/**
+	 * Checks whether the given part of a string is a number in the syntax 
+	 * accepted by {@link BigDecimal#BigDecimal(String)}.
+	 * 
+	 * @param s the string to check
+	 * @param start the index of the first character to check
+	 * @param end the index after the last character to check
+	 * @return <code>true</code>, if the part is a valid number
+	 */
+	static boolean isNumeric(String s, int start, int end) {
+		int i = start;
+		if(i < end && (s.charAt(i)=='+' || s.charAt(i)=='-')) i++;
+		
+		boolean digits = false;
+		while(i < end && Character.isDigit(s.charAt(i))) {
+			i++;
+			digits = true;
+		}
+		if(i < end && s.charAt(i)=='.') {
+			i++;
+			while(i < end && Character.isDigit(s.charAt(i))) {
+				i++;
+				digits = true;
+			}
+		}
+		if(!digits) return false;
+		
+		if(i < end && (s.charAt(i)=='e' || s.charAt(i)=='E')) {
+			i++;
+			if(i < end && (s.charAt(i)=='+' || s.charAt(i)=='-')) i++;
+			boolean exponentDigits = false;
+			while(i < end && Character.isDigit(s.charAt(i))) {
+				i++;
+				exponentDigits = true;
+			}
+			if(!exponentDigits) return false;
+		}
+		return i==end;
+	}
+	
+}
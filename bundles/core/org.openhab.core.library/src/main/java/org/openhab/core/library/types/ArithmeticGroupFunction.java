@@ -31,8 +31,10 @@ package org.openhab.core.library.types;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.util.List;
+import java.util.TreeMap;
 
 import org.openhab.core.items.GroupFunction;
+import org.openhab.core.items.IncrementalGroupFunction;
 import org.openhab.core.items.Item;
 import org.openhab.core.types.State;
 import org.openhab.core.types.UnDefType;
@@ -58,7 +60,7 @@ public interface ArithmeticGroupFunction extends GroupFunction {
 	 * @since 0.7.0
 	 *
 	 */
-	static class And implements GroupFunction {
+	static class And implements IncrementalGroupFunction {
 		
 		protected final State activeState;
 		protected final State passiveState;
@@ -87,6 +89,33 @@ public interface ArithmeticGroupFunction extends GroupFunction {
 				return passiveState;
 			}
 		}
+		
+		/**
+		 * Determines the group state from the number of items and the number
+		 * of items in the 'activeState'.
+		 * 
+		 * @param itemCount the number of items
+		 * @param activeCount the number of items in the 'activeState'
+		 * @return the calculated group state
+		 */
+		protected State calculate(int itemCount, int activeCount) {
+			if(itemCount>0 && activeCount==itemCount) {
+				return activeState;
+			} else {
+				return passiveState;
+			}
+		}
+
+		/**
+		 * @{inheritDoc
+		 */
+		public Aggregator createAggregator() {
+			return new ActiveStateCounter(activeState) {
+				public State getState() {
+					return calculate(itemCount, activeCount);
+				}
+			};
+		}
 
 		/**
 		 * @{inheritDoc
@@ -133,7 +162,7 @@ public interface ArithmeticGroupFunction extends GroupFunction {
 	 * @since 0.7.0
 	 *
 	 */
-	static class Or implements GroupFunction {
+	static class Or implements IncrementalGroupFunction {
 
 		protected final State activeState;
 		protected final State passiveState;
@@ -160,6 +189,33 @@ public interface ArithmeticGroupFunction extends GroupFunction {
 			return passiveState;
 		}
 		
+		/**
+		 * Determines the group state from the number of items and the number
+		 * of items in the 'activeState'.
+		 * 
+		 * @param itemCount the number of items
+		 * @param activeCount the number of items in the 'activeState'
+		 * @return the calculated group state
+		 */
+		protected State calculate(int itemCount, int activeCount) {
+			if(activeCount>0) {
+				return activeState;
+			} else {
+				return passiveState;
+			}
+		}
+
+		/**
+		 * @{inheritDoc
+		 */
+		public Aggregator createAggregator() {
+			return new ActiveStateCounter(activeState) {
+				public State getState() {
+					return calculate(itemCount, activeCount);
+				}
+			};
+		}
+		
 		/**
 		 * @{inheritDoc
 		 */
@@ -211,6 +267,14 @@ public interface ArithmeticGroupFunction extends GroupFunction {
 			return notResult;
 		}
 		
+		@Override
+		protected State calculate(int itemCount, int activeCount) {
+			State result = super.calculate(itemCount, activeCount);
+			State notResult = 
+				result.equals(activeState) ? passiveState : activeState;
+			return notResult;
+		}
+		
 	}
 
 	/**
@@ -235,6 +299,14 @@ public interface ArithmeticGroupFunction extends GroupFunction {
 			return notResult;
 		}
 		
+		@Override
+		protected State calculate(int itemCount, int activeCount) {
+			State result = super.calculate(itemCount, activeCount);
+			State notResult = 
+				result.equals(activeState) ? passiveState : activeState;
+			return notResult;
+		}
+		
 	}
 	
 	/**
@@ -244,7 +316,7 @@ public interface ArithmeticGroupFunction extends GroupFunction {
 	 * @since 0.7.0
 	 *
 	 */
-	static class Avg implements GroupFunction {
+	static class Avg implements IncrementalGroupFunction {
 		
 		public Avg() {}
 
@@ -269,6 +341,21 @@ public interface ArithmeticGroupFunction extends GroupFunction {
 				return UnDefType.UNDEF;
 			}
 		}
+
+		/**
+		 * @{inheritDoc
+		 */
+		public Aggregator createAggregator() {
+			return new DecimalSum() {
+				public State getState() {
+					if(count>0) {
+						return new DecimalType(getSum().divide(new BigDecimal(count), RoundingMode.HALF_UP));
+					} else {
+						return UnDefType.UNDEF;
+					}
+				}
+			};
+		}
 		
 		/**
 		 * @{inheritDoc
@@ -290,7 +377,7 @@ public interface ArithmeticGroupFunction extends GroupFunction {
 	 * @since 1.1.0
 	 *
 	 */
-	static class Sum implements GroupFunction {
+	static class Sum implements IncrementalGroupFunction {
 		
 		public Sum() {}
 
@@ -309,6 +396,17 @@ public interface ArithmeticGroupFunction extends GroupFunction {
 			}
 			return new DecimalType(sum);
 		}
+
+		/**
+		 * @{inheritDoc
+		 */
+		public Aggregator createAggregator() {
+			return new DecimalSum() {
+				public State getState() {
+					return new DecimalType(getSum());
+				}
+			};
+		}
 		
 		/**
 		 * @{inheritDoc
@@ -330,7 +428,7 @@ public interface ArithmeticGroupFunction extends GroupFunction {
 	 * @since 0.7.0
 	 *
 	 */
-	static class Min implements GroupFunction {
+	static class Min implements IncrementalGroupFunction {
 		
 		public Min() {}
 
@@ -355,6 +453,21 @@ public interface ArithmeticGroupFunction extends GroupFunction {
 			return UnDefType.UNDEF;
 		}
 
+		/**
+		 * @{inheritDoc
+		 */
+		public Aggregator createAggregator() {
+			return new DecimalRange() {
+				public State getState() {
+					if(!values.isEmpty()) {
+						return getState(values.firstKey());
+					} else {
+						return UnDefType.UNDEF;
+					}
+				}
+			};
+		}
+
 		/**
 		 * @{inheritDoc
 		 */
@@ -375,7 +488,7 @@ public interface ArithmeticGroupFunction extends GroupFunction {
 	 * @since 0.7.0
 	 *
 	 */
-	static class Max implements GroupFunction {
+	static class Max implements IncrementalGroupFunction {
 		
 		public Max() {}
 
@@ -400,6 +513,21 @@ public interface ArithmeticGroupFunction extends GroupFunction {
 			return UnDefType.UNDEF;
 		}
 
+		/**
+		 * @{inheritDoc
+		 */
+		public Aggregator createAggregator() {
+			return new DecimalRange() {
+				public State getState() {
+					if(!values.isEmpty()) {
+						return getState(values.lastKey());
+					} else {
+						return UnDefType.UNDEF;
+					}
+				}
+			};
+		}
+
 		/**
 		 * @{inheritDoc
 		 */
@@ -413,5 +541,152 @@ public interface ArithmeticGroupFunction extends GroupFunction {
 		}
 	}
 	
+	/**
+	 * Counts the states and the states which are equal to a given 'activeState'.
+	 * It is the base of the aggregators of the logical group functions.
+	 * 
+	 * @author agent
+	 * @since 1.3.0
+	 *
+	 */
+	static abstract class ActiveStateCounter implements IncrementalGroupFunction.Aggregator {
+		
+		protected final State activeState;
+		protected int itemCount = 0;
+		protected int activeCount = 0;
+		
+		public ActiveStateCounter(State activeState) {
+			this.activeState = activeState;
+		}
+		
+		public void add(State state) {
+			itemCount++;
+			if(activeState.equals(state)) {
+				activeCount++;
+			}
+		}
+		
+		public void remove(State state) {
+			itemCount--;
+			if(activeState.equals(state)) {
+				activeCount--;
+			}
+		}
+	}
+	
+	/**
+	 * Keeps the running sum and the number of all states of decimal type. It is
+	 * the base of the aggregators of the sum and average functions.
+	 * 
+	 * @author agent
+	 * @since 1.3.0
+	 *
+	 */
+	static abstract class DecimalSum implements IncrementalGroupFunction.Aggregator {
+		
+		protected BigDecimal sum = BigDecimal.ZERO;
+		protected int count = 0;
+		
+		/** the number of values per scale, which is required to restore the scale of the sum after removals */
+		private final TreeMap<Integer, Integer> scales = new TreeMap<Integer, Integer>();
+		
+		public void add(State state) {
+			if(state instanceof DecimalType) {
+				BigDecimal value = ((DecimalType) state).toBigDecimal();
+				sum = sum.add(value);
+				count++;
+				Integer scaleCount = scales.get(value.scale());
+				scales.put(value.scale(), scaleCount==null ? 1 : scaleCount + 1);
+			}
+		}
+		
+		public void remove(State state) {
+			if(state instanceof DecimalType) {
+				BigDecimal value = ((DecimalType) state).toBigDecimal();
+				sum = sum.subtract(value);
+				count--;
+				Integer scaleCount = scales.get(value.scale());
+				if(scaleCount!=null && scaleCount > 1) {
+					scales.put(value.scale(), scaleCount - 1);
+				} else {
+					scales.remove(value.scale());
+				}
+			}
+		}
+		
+		/**
+		 * Returns the sum of all current values with the same scale as if 
+		 * they had been added up from scratch.
+		 * 
+		 * @return the sum of all current values
+		 */
+		protected BigDecimal getSum() {
+			int scale = scales.isEmpty() ? 0 : Math.max(0, scales.lastKey());
+			return sum.setScale(scale);
+		}
+	}
+	
+	/**
+	 * Keeps all values of decimal type in an ordered structure, so that the minimum
+	 * and maximum are available at any time. It is the base of the aggregators of the
+	 * minimum and maximum functions.
+	 * 
+	 * @author agent
+	 * @since 1.3.0
+	 *
+	 */
+	static abstract class DecimalRange implements IncrementalGroupFunction.Aggregator {
+		
+		/** the number of states per scale for each decimal value; numerically equal values share one entry */
+		protected final TreeMap<BigDecimal, TreeMap<Integer, Integer>> values = new TreeMap<BigDecimal, TreeMap<Integer, Integer>>();
+		
+		public void add(State state) {
+			if(state instanceof DecimalType) {
+				BigDecimal value = ((DecimalType) state).toBigDecimal();
+				TreeMap<Integer, Integer> scales = values.get(value);
+				if(scales==null) {
+					scales = new TreeMap<Integer, Integer>();
+					values.put(value, scales);
+				}
+				Integer scaleCount = scales.get(value.scale());
+				scales.put(value.scale(), scaleCount==null ? 1 : scaleCount + 1);
+			}
+		}
+		
+		public void remove(State state) {
+			if(state instanceof DecimalType) {
+				BigDecimal value = ((DecimalType) state).toBigDecimal();
+				TreeMap<Integer, Integer> scales = values.get(value);
+				if(scales!=null) {
+					Integer scaleCount = scales.get(value.scale());
+					if(scaleCount!=null && scaleCount > 1) {
+						scales.put(value.scale(), scaleCount - 1);
+					} else {
+						scales.remove(value.scale());
+					}
+					if(scales.isEmpty()) {
+						values.remove(value);
+					}
+				}
+			}
+		}
+		
+		/**
+		 * Returns the state for the given value. If numerically equal states with 
+		 * different scales are aggregated, a full recalculation picks the one of the
+		 * first member, which is not known here.
+		 * 
+		 * @param value a key of {@link #values}
+		 * @return the state with the scale of the matching member states or 
+		 * <code>null</code>, if the members have different scales
+		 */
+		protected State getState(BigDecimal value) {
+			TreeMap<Integer, Integer> scales = values.get(value);
+			if(scales.size() > 1) {
+				return null;
+			}
+			return new DecimalType(value.setScale(scales.firstKey()));
+		}
+	}
 	
 }
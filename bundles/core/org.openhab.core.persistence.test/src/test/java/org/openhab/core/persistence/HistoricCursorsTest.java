@@ -0,0 +1,141 @@
+/**
+ * openHAB, the open Home Automation Bus.
+ * Copyright (C) 2010-2013, openHAB.org <admin@openhab.org>
+ *
+ * See the contributors.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ * Additional permission under GNU GPL version 3 section 7
+ *
+ * If you modify this Program, or any covered work, by linking or
+ * combining it with Eclipse (or a modified version of that library),
+ * containing parts covered by the terms of the Eclipse Public License
+ * (EPL), the licensors of this Program grant you additional permission
+ * to convey the resulting work.
+ */
+package org.openhab.core.persistence;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Test;
+import org.openhab.core.items.Item;
+import org.openhab.core.library.types.DecimalType;
+import org.openhab.core.library.types.OnOffType;
+import org.openhab.core.types.State;
+
+/**
+ * @author agent
+ * @since 1.3.0
+ */
+public class HistoricCursorsTest {
+
+	@Test
+	public void testQueryableServiceIsAdapted() {
+		final List<HistoricItem> items = new ArrayList<HistoricItem>();
+		items.add(new TestHistoricItem(new DecimalType("1.5"), 1000L));
+		items.add(new TestHistoricItem(OnOffType.ON, 2000L));
+		
+		HistoricCursor cursor = HistoricCursors.open(new TestQueryablePersistenceService(items), new FilterCriteria());
+		try {
+			assertTrue(cursor.next());
+			assertEquals(1000L, cursor.getTime());
+			assertEquals(1.5, cursor.getValue(), 0.0);
+			assertEquals(new DecimalType("1.5"), cursor.getState());
+			assertTrue(cursor.next());
+			assertEquals(2000L, cursor.getTime());
+			assertTrue(Double.isNaN(cursor.getValue()));
+			assertEquals(OnOffType.ON, cursor.getState());
+			assertFalse(cursor.next());
+		} finally {
+			cursor.close();
+		}
+	}
+	
+	@Test
+	public void testStreamingServiceIsUsed() {
+		HistoricCursor streamingCursor = HistoricCursors.forItems(new ArrayList<HistoricItem>());
+		QueryablePersistenceService service = new TestStreamingPersistenceService(streamingCursor);
+		assertSame(streamingCursor, HistoricCursors.open(service, new FilterCriteria()));
+	}
+	
+	private static class TestQueryablePersistenceService implements QueryablePersistenceService {
+		
+		private final List<HistoricItem> items;
+		
+		public TestQueryablePersistenceService(List<HistoricItem> items) {
+			this.items = items;
+		}
+
+		public String getName() {
+			return "test";
+		}
+
+		public void store(Item item) {
+		}
+
+		public void store(Item item, String alias) {
+		}
+
+		public Iterable<HistoricItem> query(FilterCriteria filter) {
+			return items;
+		}
+	}
+	
+	private static class TestStreamingPersistenceService extends TestQueryablePersistenceService implements StreamingPersistenceService {
+		
+		private final HistoricCursor cursor;
+		
+		public TestStreamingPersistenceService(HistoricCursor cursor) {
+			super(null);
+			this.cursor = cursor;
+		}
+
+		public HistoricCursor openCursor(FilterCriteria filter) {
+			return cursor;
+		}
+	}
+	
+	private static class TestHistoricItem implements HistoricItem {
+		
+		private final State state;
+		private final Date timestamp;
+
+		public TestHistoricItem(State state, long time) {
+			this.state = state;
+			this.timestamp = new Date(time);
+		}
+
+		public Date getTimestamp() {
+			return timestamp;
+		}
+
+		public State getState() {
+			return state;
+		}
+
+		public String getName() {
+			return "Number";
+		}
+	}
+	
+}
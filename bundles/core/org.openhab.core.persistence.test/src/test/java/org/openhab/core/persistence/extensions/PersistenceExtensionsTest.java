@@ -117,6 +117,18 @@ public class PersistenceExtensionsTest {
 		assertEquals(new DateMidnight(2012, 1, 1).toDate(), historicItem.getTimestamp());
 	}
 
+	@Test
+	public void testMaximumSinceKeepsPrecision() {
+		// the current state and the historic maximum are equal as doubles
+		item.setState(new DecimalType("2011.99999999999999999"));
+		HistoricItem historicItem = PersistenceExtensions.maximumSince(item, new DateMidnight(2005, 1, 1), "test");
+		assertEquals("2012", historicItem.getState().toString());
+		
+		item.setState(new DecimalType("2005.00000000000000001"));
+		historicItem = PersistenceExtensions.minimumSince(item, new DateMidnight(2005, 1, 1), "test");
+		assertEquals("2005", historicItem.getState().toString());
+	}
+
 	@Test
 	public void testAverageSince() {
 		item.setState(new DecimalType(3025));
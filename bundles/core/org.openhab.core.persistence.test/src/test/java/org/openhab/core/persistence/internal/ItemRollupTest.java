@@ -0,0 +1,271 @@
+/**
+ * openHAB, the open Home Automation Bus.
+ * Copyright (C) 2010-2013, openHAB.org <admin@openhab.org>
+ *
+ * See the contributors.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ * Additional permission under GNU GPL version 3 section 7
+ *
+ * If you modify this Program, or any covered work, by linking or
+ * combining it with Eclipse (or a modified version of that library),
+ * containing parts covered by the terms of the Eclipse Public License
+ * (EPL), the licensors of this Program grant you additional permission
+ * to convey the resulting work.
+ */
+package org.openhab.core.persistence.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openhab.core.library.types.DecimalType;
+import org.openhab.core.library.types.OnOffType;
+import org.openhab.core.library.types.PercentType;
+import org.openhab.core.persistence.HistoricCursors;
+import org.openhab.core.persistence.HistoricItem;
+import org.openhab.core.types.State;
+import org.openhab.core.types.UnDefType;
+
+/**
+ * @author agent
+ * @since 1.3.0
+ */
+public class ItemRollupTest {
+	
+	private static final long NOW = 1000L * ItemRollup.DAY + 13 * ItemRollup.HOUR + 17 * ItemRollup.MINUTE + 4711;
+
+	private List<HistoricItem> states;
+	
+	@Before
+	public void init() {
+		// one state every 7 minutes during the last 30 days
+		states = new ArrayList<HistoricItem>();
+		Random random = new Random(42);
+		for(long time = NOW - 30 * ItemRollup.DAY; time < NOW; time += 7 * ItemRollup.MINUTE) {
+			State state = random.nextInt(50)==0 ? UnDefType.UNDEF : new DecimalType(random.nextInt(1000) - 500);
+			states.add(new TestHistoricItem(state, time));
+		}
+	}
+	
+	@Test
+	public void testAggregateIsExact() {
+		ItemRollup rollup = new ItemRollup(0);
+		for(HistoricItem historicItem : states) {
+			rollup.add(historicItem.getState(), historicItem.getTimestamp().getTime());
+		}
+		
+		long[] periods = new long[] { 5 * ItemRollup.MINUTE + 3, ItemRollup.HOUR, 2 * ItemRollup.HOUR + 59 * ItemRollup.MINUTE, 
+				5 * ItemRollup.HOUR + 1234, ItemRollup.DAY, 3 * ItemRollup.DAY + 17 * ItemRollup.MINUTE, 29 * ItemRollup.DAY };
+		for(long period : periods) {
+			long since = NOW - period;
+			RollupAggregate aggregate = rollup.aggregate(since, NOW);
+			assertNotNull(aggregate);
+			assertTrue(aggregate.getStart().getTime() >= since);
+			
+			// the states before the first bucket are added from the raw values
+			for(HistoricItem historicItem : states) {
+				long time = historicItem.getTimestamp().getTime();
+				if(time >= since && time < aggregate.getStart().getTime()) {
+					aggregate.add(historicItem.getState(), time);
+				}
+			}
+			assertAggregate(aggregate(since), aggregate);
+		}
+	}
+	
+	@Test
+	public void testBackfill() {
+		long enabledSince = NOW - 2 * ItemRollup.DAY;
+		ItemRollup rollup = new ItemRollup(enabledSince);
+		for(HistoricItem historicItem : states) {
+			if(historicItem.getTimestamp().getTime() >= enabledSince) {
+				rollup.add(historicItem.getState(), historicItem.getTimestamp().getTime());
+			}
+		}
+		
+		long since = NOW - 10 * ItemRollup.DAY - ItemRollup.HOUR;
+		assertNull(rollup.aggregate(since, NOW));
+		assertTrue(rollup.isRetained(since, NOW));
+		
+		// the backfill may contain states which are already covered
+		rollup.backfill(HistoricCursors.forItems(states), since);
+		assertEquals(since, rollup.getCoveredSince());
+		
+		RollupAggregate aggregate = rollup.aggregate(since, NOW);
+		assertNotNull(aggregate);
+		for(HistoricItem historicItem : states) {
+			long time = historicItem.getTimestamp().getTime();
+			if(time >= since && time < aggregate.getStart().getTime()) {
+				aggregate.add(historicItem.getState(), time);
+			}
+		}
+		assertAggregate(aggregate(since), aggregate);
+	}
+	
+	@Test
+	public void testNotRetained() {
+		ItemRollup rollup = new ItemRollup(0);
+		assertFalse(rollup.isRetained(NOW - 500 * ItemRollup.DAY, NOW));
+		assertNull(rollup.aggregate(NOW - 500 * ItemRollup.DAY, NOW));
+	}
+	
+	@Test
+	public void testChanges() {
+		ItemRollup rollup = new ItemRollup(0);
+		rollup.add(new DecimalType(3), NOW - 3 * ItemRollup.DAY);
+		rollup.add(new DecimalType("3.0"), NOW - ItemRollup.HOUR);
+		assertFalse(rollup.aggregate(NOW - 4 * ItemRollup.DAY, NOW).hasChanged());
+		
+		rollup.add(new DecimalType(4), NOW - ItemRollup.MINUTE);
+		assertTrue(rollup.aggregate(NOW - 4 * ItemRollup.DAY, NOW).hasChanged());
+		assertEquals(3, rollup.aggregate(NOW - 4 * ItemRollup.DAY, NOW).getCount());
+	}
+	
+	@Test
+	public void testChangesOfNonNumericStates() {
+		ItemRollup rollup = new ItemRollup(0);
+		rollup.add(OnOffType.ON, NOW - 3 * ItemRollup.DAY);
+		rollup.add(OnOffType.ON, NOW - ItemRollup.HOUR);
+		assertFalse(rollup.aggregate(NOW - 4 * ItemRollup.DAY, NOW).hasChanged());
+		
+		// a change, which is only visible at the border of two buckets
+		rollup.add(OnOffType.OFF, NOW - 2 * ItemRollup.MINUTE);
+		assertTrue(rollup.aggregate(NOW - 4 * ItemRollup.DAY, NOW).hasChanged());
+		assertFalse(rollup.aggregate(NOW - 3 * ItemRollup.MINUTE, NOW).hasChanged());
+		
+		// states which are added from the persistence service before the first bucket
+		RollupAggregate aggregate = rollup.aggregate(NOW - 30 * ItemRollup.MINUTE, NOW);
+		assertFalse(aggregate.hasChanged());
+		aggregate.add(OnOffType.ON, aggregate.getStart().getTime() - ItemRollup.MINUTE);
+		assertTrue(aggregate.hasChanged());
+	}
+	
+	@Test
+	public void testOriginalStatesAreKept() {
+		ItemRollup rollup = new ItemRollup(0);
+		PercentType minimum = new PercentType(10);
+		PercentType maximum = new PercentType(90);
+		rollup.add(new PercentType(50), NOW - 2 * ItemRollup.DAY);
+		rollup.add(maximum, NOW - ItemRollup.DAY);
+		rollup.add(minimum, NOW - ItemRollup.MINUTE);
+		
+		RollupAggregate aggregate = rollup.aggregate(NOW - 3 * ItemRollup.DAY, NOW);
+		assertSame(minimum, aggregate.getMinimum());
+		assertSame(maximum, aggregate.getMaximum());
+		assertEquals(NOW - ItemRollup.DAY, aggregate.getMaximumTime().getTime());
+	}
+	
+	@Test
+	public void testCapacities() {
+		ItemRollup rollup = new ItemRollup(0, 10, 5, 3);
+		assertTrue(rollup.isRetained(NOW - 2 * ItemRollup.DAY, NOW));
+		assertFalse(rollup.isRetained(NOW - 4 * ItemRollup.DAY, NOW));
+		
+		for(HistoricItem historicItem : states) {
+			rollup.add(historicItem.getState(), historicItem.getTimestamp().getTime());
+		}
+		// without retained minute and hour buckets, the aggregate starts with the first whole day
+		long since = NOW - 2 * ItemRollup.DAY;
+		RollupAggregate aggregate = rollup.aggregate(since, NOW);
+		assertEquals((since / ItemRollup.DAY + 1) * ItemRollup.DAY, aggregate.getStart().getTime());
+		assertAggregate(aggregate(aggregate.getStart().getTime()), aggregate);
+	}
+	
+	/**
+	 * Computes the expected aggregate directly from the raw states
+	 */
+	private Expected aggregate(long since) {
+		Expected expected = new Expected();
+		for(HistoricItem historicItem : states) {
+			long time = historicItem.getTimestamp().getTime();
+			if(time < since) {
+				continue;
+			}
+			if(historicItem.getState() instanceof DecimalType) {
+				DecimalType value = (DecimalType) historicItem.getState();
+				expected.count++;
+				expected.sum += value.doubleValue();
+				if(expected.minimum==null || value.compareTo(expected.minimum) < 0) {
+					expected.minimum = value;
+					expected.minimumTime = time;
+				}
+				if(expected.maximum==null || value.compareTo(expected.maximum) > 0) {
+					expected.maximum = value;
+					expected.maximumTime = time;
+				}
+			} else {
+				expected.otherCount++;
+			}
+		}
+		return expected;
+	}
+	
+	private static void assertAggregate(Expected expected, RollupAggregate aggregate) {
+		assertEquals(expected.count, aggregate.getCount());
+		assertEquals(expected.otherCount, aggregate.getOtherCount());
+		assertEquals(expected.sum, aggregate.getSum(), 0.0001);
+		assertEquals(expected.minimum, aggregate.getMinimum());
+		assertEquals(expected.maximum, aggregate.getMaximum());
+		// the first occurrence of the extreme values is reported
+		assertEquals(expected.minimumTime, aggregate.getMinimumTime().getTime());
+		assertEquals(expected.maximumTime, aggregate.getMaximumTime().getTime());
+	}
+	
+	private static class Expected {
+		int count;
+		int otherCount;
+		double sum;
+		DecimalType minimum;
+		long minimumTime;
+		DecimalType maximum;
+		long maximumTime;
+	}
+	
+	private static class TestHistoricItem implements HistoricItem {
+		
+		private final State state;
+		private final Date timestamp;
+
+		public TestHistoricItem(State state, long time) {
+			this.state = state;
+			this.timestamp = new Date(time);
+		}
+
+		public Date getTimestamp() {
+			return timestamp;
+		}
+
+		public State getState() {
+			return state;
+		}
+
+		public String getName() {
+			return "Number";
+		}
+	}
+	
+}
@@ -0,0 +1,410 @@
+/**
+ * openHAB, the open Home Automation Bus.
+ * Copyright (C) 2010-2013, openHAB.org <admin@openhab.org>
+ *
+ * See the contributors.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ * Additional permission under GNU GPL version 3 section 7
+ *
+ * If you modify this Program, or any covered work, by linking or
+ * combining it with Eclipse (or a modified version of that library),
+ * containing parts covered by the terms of the Eclipse Public License
+ * (EPL), the licensors of this Program grant you additional permission
+ * to convey the resulting work.
+ */
+package org.openhab.core.persistence.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openhab.core.items.GenericItem;
+import org.openhab.core.items.GroupItem;
+import org.openhab.core.items.Item;
+import org.openhab.core.items.ItemNotFoundException;
+import org.openhab.core.items.ItemRegistry;
+import org.openhab.core.items.ItemRegistryChangeListener;
+import org.openhab.core.library.types.DecimalType;
+import org.openhab.core.persistence.PersistenceService;
+import org.openhab.core.types.Command;
+import org.openhab.core.types.State;
+import org.osgi.service.cm.ConfigurationException;
+import org.openhab.model.persistence.persistence.GroupConfig;
+import org.openhab.model.persistence.persistence.ItemConfig;
+import org.openhab.model.persistence.persistence.PersistenceConfiguration;
+import org.openhab.model.persistence.persistence.PersistenceFactory;
+import org.openhab.model.persistence.persistence.Strategy;
+import org.openhab.model.persistence.scoping.GlobalStrategies;
+
+/**
+ * @author agent
+ * @since 1.3.0
+ */
+public class PersistenceManagerTest {
+
+	private PersistenceManager manager;
+	
+	private TestItemRegistry itemRegistry;
+	
+	private TestPersistenceService service;
+	
+	@Before
+	public void init() {
+		manager = new PersistenceManager();
+		itemRegistry = new TestItemRegistry();
+		service = new TestPersistenceService("test");
+		manager.persistenceServices.put(service.getName(), service);
+		manager.startQueue(service);
+	}
+	
+	@After
+	public void shutdown() {
+		manager.deactivate();
+	}
+	
+	/**
+	 * Waits until the queued samples have been stored and restarts the queue of the service.
+	 */
+	private void awaitStored() {
+		manager.deactivate();
+		manager.startQueue(service);
+	}
+
+	@Test
+	public void testRoutingTable() {
+		GroupItem outer = new GroupItem("Outer");
+		GroupItem inner = new GroupItem("Inner") {{ groupNames.add("Outer"); }};
+		TestItem item1 = new TestItem("Item1", "Outer");
+		TestItem item2 = new TestItem("Item2", "Inner");
+		TestItem item3 = new TestItem("Item3");
+		outer.addMember(inner);
+		outer.addMember(item1);
+		inner.addMember(item2);
+		itemRegistry.add(outer, inner, item1, item2, item3);
+		manager.setItemRegistry(itemRegistry);
+		
+		configure("test", Collections.<Strategy>singletonList(GlobalStrategies.UPDATE),
+				groupConfig("Outer", null), 
+				itemConfig("Item3", "alias", GlobalStrategies.CHANGE, GlobalStrategies.RESTORE));
+		
+		assertEquals(1, manager.getRoutes("Item1").size());
+		assertEquals(1, manager.getRoutes("Item2").size());
+		assertEquals(PersistenceRoute.UPDATE, manager.getRoutes("Item2").get(0).getStrategies());
+		assertEquals(PersistenceRoute.CHANGE | PersistenceRoute.RESTORE, manager.getRoutes("Item3").get(0).getStrategies());
+		assertEquals("alias", manager.getRoutes("Item3").get(0).getAlias());
+		assertTrue(manager.getRoutes("Unknown").isEmpty());
+		
+		item2.setState(new DecimalType(1));
+		item2.setState(new DecimalType(1));
+		awaitStored();
+		assertEquals(2, service.count("Item2"));
+		
+		item3.setState(new DecimalType(1));
+		item3.setState(new DecimalType(1));
+		awaitStored();
+		assertEquals(1, service.count("Item3"));
+		assertEquals("alias", service.aliases.get(service.aliases.size() - 1));
+		
+		// the table must follow changes of the item registry
+		TestItem item4 = new TestItem("Item4", "Inner");
+		inner.addMember(item4);
+		itemRegistry.add(item4);
+		item4.setState(new DecimalType(1));
+		awaitStored();
+		assertEquals(1, service.count("Item4"));
+	}
+	
+	@Test
+	public void testServicesReceiveSampledStates() {
+		TestItem item = new TestItem("Item1");
+		itemRegistry.add(item);
+		manager.setItemRegistry(itemRegistry);
+		configure("test", Collections.<Strategy>singletonList(GlobalStrategies.UPDATE), itemConfig("Item1", null));
+		
+		// the service is slow, so the item has a newer state when the samples are stored
+		service.delay = 20;
+		for(int i = 0; i < 5; i++) {
+			item.setState(new DecimalType(i));
+		}
+		awaitStored();
+		assertEquals(5, service.count("Item1"));
+		for(int i = 0; i < 5; i++) {
+			assertEquals(new DecimalType(i), service.states.get(i));
+		}
+		assertEquals(TestItem.class, service.itemClasses.get(0));
+		assertEquals(new DecimalType(4), item.getState());
+	}
+	
+	@Test(expected=ConfigurationException.class)
+	public void testInvalidQueueSize() throws ConfigurationException {
+		Dictionary<String, Object> config = new Hashtable<String, Object>();
+		config.put("queuesize", "0");
+		manager.updated(config);
+	}
+
+	@Test
+	public void testRoutingOfLargeModel() {
+		// 5000 items in 50 groups, where each group is also a member of the previous one
+		int groupCount = 50;
+		int itemsPerGroup = 100;
+		List<Item> items = new ArrayList<Item>();
+		GroupItem parent = null;
+		for(int g = 0; g < groupCount; g++) {
+			GroupItem group = new GroupItem("Group" + g);
+			if(parent!=null) {
+				parent.addMember(group);
+			}
+			items.add(group);
+			for(int i = 0; i < itemsPerGroup; i++) {
+				TestItem item = new TestItem("Item" + g + "_" + i);
+				group.addMember(item);
+				items.add(item);
+			}
+			parent = group;
+		}
+		itemRegistry.add(items.toArray(new Item[items.size()]));
+		manager.setItemRegistry(itemRegistry);
+		
+		// every tenth group is configured, so deeper items have more routes
+		PersistenceConfiguration[] configs = new PersistenceConfiguration[groupCount / 10];
+		for(int c = 0; c < configs.length; c++) {
+			configs[c] = groupConfig("Group" + (c * 10), "alias" + c);
+		}
+		configure("test", Collections.<Strategy>singletonList(GlobalStrategies.UPDATE), configs);
+		
+		for(int round = 0; round < 10; round++) {
+			for(Item item : items) {
+				if(item instanceof TestItem) {
+					((TestItem) item).setState(new DecimalType(round));
+				}
+			}
+		}
+		awaitStored();
+		
+		for(int g = 0; g < groupCount; g++) {
+			int expectedRoutes = Math.min(g / 10 + 1, configs.length);
+			assertEquals(expectedRoutes, manager.getRoutes("Item" + g + "_0").size());
+			assertEquals(10 * expectedRoutes, service.count("Item" + g + "_" + (g % itemsPerGroup)));
+		}
+	}
+	
+	@Test
+	public void testRoutesOfSingleItems() {
+		GroupItem outer = new GroupItem("Outer");
+		GroupItem inner = new GroupItem("Inner") {{ groupNames.add("Outer"); }};
+		outer.addMember(inner);
+		itemRegistry.add(outer, inner);
+		manager.setItemRegistry(itemRegistry);
+		configure("test", Collections.<Strategy>singletonList(GlobalStrategies.UPDATE),
+				groupConfig("Outer", "outer"), 
+				itemConfig("Item7", "single", GlobalStrategies.CHANGE));
+		
+		// add the items one by one, as the item registry does when items are created at runtime
+		List<TestItem> items = new ArrayList<TestItem>();
+		for(int i = 0; i < 2000; i++) {
+			TestItem item = new TestItem("Item" + i, "Inner");
+			inner.addMember(item);
+			itemRegistry.add(item);
+			items.add(item);
+		}
+		
+		// the incrementally updated routes must match the ones of a full rebuild
+		Map<String, String> incrementalRoutes = new LinkedHashMap<String, String>();
+		for(TestItem item : items) {
+			incrementalRoutes.put(item.getName(), manager.getRoutes(item.getName()).toString());
+		}
+		manager.rebuildRoutingTable();
+		for(TestItem item : items) {
+			assertEquals(manager.getRoutes(item.getName()).toString(), incrementalRoutes.get(item.getName()));
+		}
+		assertEquals(2, manager.getRoutes("Item7").size());
+		assertEquals(1, manager.getRoutes("Item8").size());
+		
+		// removed items keep the routes, which are configured by their name only
+		inner.removeMember(items.get(7));
+		itemRegistry.remove(items.get(7));
+		inner.removeMember(items.get(8));
+		itemRegistry.remove(items.get(8));
+		assertEquals(1, manager.getRoutes("Item7").size());
+		assertEquals("single", manager.getRoutes("Item7").get(0).getAlias());
+		assertTrue(manager.getRoutes("Item8").isEmpty());
+	}
+	
+	private void configure(String serviceName, List<Strategy> defaults, PersistenceConfiguration... configs) {
+		List<PersistenceConfiguration> configList = new ArrayList<PersistenceConfiguration>();
+		Collections.addAll(configList, configs);
+		manager.defaultStrategies.put(serviceName, defaults);
+		manager.persistenceConfigurations.put(serviceName, configList);
+		manager.rebuildRoutingTable();
+	}
+	
+	private PersistenceConfiguration itemConfig(String itemName, String alias, Strategy... strategies) {
+		ItemConfig itemConfig = PersistenceFactory.eINSTANCE.createItemConfig();
+		itemConfig.setItem(itemName);
+		return config(itemConfig, alias, strategies);
+	}
+	
+	private PersistenceConfiguration groupConfig(String groupName, String alias, Strategy... strategies) {
+		GroupConfig groupConfig = PersistenceFactory.eINSTANCE.createGroupConfig();
+		groupConfig.setGroup(groupName);
+		return config(groupConfig, alias, strategies);
+	}
+	
+	private PersistenceConfiguration config(org.eclipse.emf.ecore.EObject itemCfg, String alias, Strategy... strategies) {
+		PersistenceConfiguration config = PersistenceFactory.eINSTANCE.createPersistenceConfiguration();
+		config.getItems().add(itemCfg);
+		config.setAlias(alias);
+		for(Strategy strategy : strategies) {
+			config.getStrategies().add(strategy);
+		}
+		return config;
+	}
+
+	
+	static class TestItem extends GenericItem {
+
+		public TestItem(String name) {
+			super(name);
+		}
+
+		public TestItem(String name, String... groupNames) {
+			super(name);
+			Collections.addAll(this.groupNames, groupNames);
+		}
+
+		public List<Class<? extends State>> getAcceptedDataTypes() {
+			return null;
+		}
+
+		public List<Class<? extends Command>> getAcceptedCommandTypes() {
+			return null;
+		}
+	}
+	
+	class TestPersistenceService implements PersistenceService {
+
+		private final String name;
+		
+		final List<String> itemNames = new ArrayList<String>();
+
+		final List<String> aliases = new ArrayList<String>();
+
+		final List<State> states = new ArrayList<State>();
+
+		final List<Class<?>> itemClasses = new ArrayList<Class<?>>();
+		
+		/** the time in milliseconds each store takes */
+		long delay = 0;
+
+		public TestPersistenceService(String name) {
+			this.name = name;
+		}
+		
+		public String getName() {
+			return name;
+		}
+
+		public void store(Item item) {
+			store(item, null);
+		}
+
+		public void store(Item item, String alias) {
+			itemNames.add(item.getName());
+			aliases.add(alias);
+			states.add(item.getState());
+			itemClasses.add(item.getClass());
+			if(delay > 0) {
+				try {
+					Thread.sleep(delay);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+		
+		int count(String itemName) {
+			return Collections.frequency(itemNames, itemName);
+		}
+	}
+
+	class TestItemRegistry implements ItemRegistry {
+		
+		private final Map<String, Item> items = new LinkedHashMap<String, Item>();
+		
+		private final List<ItemRegistryChangeListener> listeners = new ArrayList<ItemRegistryChangeListener>();
+		
+		void remove(Item item) {
+			items.remove(item.getName());
+			for(ItemRegistryChangeListener listener : listeners) {
+				listener.itemRemoved(item);
+			}
+		}
+		
+		void add(Item... newItems) {
+			for(Item item : newItems) {
+				items.put(item.getName(), item);
+				for(ItemRegistryChangeListener listener : listeners) {
+					listener.itemAdded(item);
+				}
+			}
+		}
+
+		public Item getItem(String name) throws ItemNotFoundException {
+			Item item = items.get(name);
+			if(item==null) {
+				throw new ItemNotFoundException(name);
+			}
+			return item;
+		}
+
+		public Item getItemByPattern(String name) throws ItemNotFoundException {
+			return getItem(name);
+		}
+
+		public Collection<Item> getItems() {
+			return new ArrayList<Item>(items.values());
+		}
+
+		public Collection<Item> getItems(String pattern) {
+			return getItems();
+		}
+
+		public boolean isValidItemName(String itemName) {
+			return true;
+		}
+
+		public void addItemRegistryChangeListener(ItemRegistryChangeListener listener) {
+			listeners.add(listener);
+		}
+
+		public void removeItemRegistryChangeListener(ItemRegistryChangeListener listener) {
+			listeners.remove(listener);
+		}
+	}
+	
+}
@@ -0,0 +1,208 @@
+/**
+ * openHAB, the open Home Automation Bus.
+ * Copyright (C) 2010-2013, openHAB.org <admin@openhab.org>
+ *
+ * See the contributors.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ * Additional permission under GNU GPL version 3 section 7
+ *
+ * If you modify this Program, or any covered work, by linking or
+ * combining it with Eclipse (or a modified version of that library),
+ * containing parts covered by the terms of the Eclipse Public License
+ * (EPL), the licensors of this Program grant you additional permission
+ * to convey the resulting work.
+ */
+package org.openhab.core.persistence.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.openhab.core.items.GenericItem;
+import org.openhab.core.items.Item;
+import org.openhab.core.library.types.DecimalType;
+import org.openhab.core.persistence.BatchPersistenceService;
+import org.openhab.core.persistence.PersistenceSample;
+import org.openhab.core.persistence.internal.PersistenceQueue.DropPolicy;
+import org.openhab.core.types.Command;
+import org.openhab.core.types.State;
+
+/**
+ * @author agent
+ * @since 1.3.0
+ */
+public class PersistenceQueueTest {
+	
+	private Item item = new TestItem("Number");
+
+	@Test
+	public void testAllSamplesAreStoredInOrder() throws InterruptedException {
+		BlockingBatchService service = new BlockingBatchService();
+		service.release.countDown();
+		PersistenceQueue queue = new PersistenceQueue(service, 1000, 10, 0, DropPolicy.OLDEST);
+		queue.start();
+		for(int i = 0; i < 500; i++) {
+			queue.add(sample(i));
+		}
+		queue.stop();
+		service.awaitSamples(500);
+		
+		assertEquals(500, service.samples.size());
+		for(int i = 0; i < 500; i++) {
+			assertEquals(new DecimalType(i), service.samples.get(i).getState());
+		}
+		for(Integer batchSize : service.batchSizes) {
+			assertTrue(batchSize <= 10);
+		}
+		assertEquals(0, queue.getDroppedSamples());
+		assertEquals(500, queue.getStoredSamples());
+	}
+
+	@Test
+	public void testOldestSamplesAreDropped() throws InterruptedException {
+		BlockingBatchService service = new BlockingBatchService();
+		PersistenceQueue queue = new PersistenceQueue(service, 5, 10, 0, DropPolicy.OLDEST);
+		queue.start();
+		queue.add(sample(0));
+		service.blocked.await(5, TimeUnit.SECONDS);
+		
+		// the first sample is blocked in the service, so the queue only keeps the last five ones
+		for(int i = 1; i <= 10; i++) {
+			queue.add(sample(i));
+		}
+		assertEquals(5, queue.getQueueSize());
+		assertEquals(5, queue.getDroppedSamples());
+		
+		service.release.countDown();
+		queue.stop();
+		service.awaitSamples(6);
+		assertEquals(new DecimalType(0), service.samples.get(0).getState());
+		assertEquals(new DecimalType(6), service.samples.get(1).getState());
+		assertEquals(new DecimalType(10), service.samples.get(5).getState());
+	}
+
+	@Test
+	public void testNewestSamplesAreDropped() throws InterruptedException {
+		BlockingBatchService service = new BlockingBatchService();
+		PersistenceQueue queue = new PersistenceQueue(service, 5, 10, 0, DropPolicy.NEWEST);
+		queue.start();
+		queue.add(sample(0));
+		service.blocked.await(5, TimeUnit.SECONDS);
+		for(int i = 1; i <= 10; i++) {
+			queue.add(sample(i));
+		}
+		assertEquals(5, queue.getDroppedSamples());
+		
+		service.release.countDown();
+		queue.stop();
+		service.awaitSamples(6);
+		assertEquals(new DecimalType(5), service.samples.get(5).getState());
+	}
+	
+	@Test
+	public void testStopStoresRemainingSamples() {
+		BlockingBatchService service = new BlockingBatchService();
+		service.release.countDown();
+		PersistenceQueue queue = new PersistenceQueue(service, 1000, 10, 50, DropPolicy.OLDEST);
+		queue.start();
+		for(int i = 0; i < 200; i++) {
+			assertTrue(queue.add(sample(i)));
+		}
+		queue.stop();
+		
+		// all samples must have been stored when stop returns and no further ones are accepted
+		assertEquals(200, service.samples.size());
+		assertTrue(queue.isStopped());
+		assertFalse(queue.add(sample(200)));
+		assertEquals(200, queue.getStoredSamples());
+	}
+	
+	private PersistenceSample sample(int value) {
+		return new PersistenceSample(item, null, new DecimalType(value), new Date());
+	}
+
+	
+	class TestItem extends GenericItem {
+
+		public TestItem(String name) {
+			super(name);
+		}
+
+		public List<Class<? extends State>> getAcceptedDataTypes() {
+			return null;
+		}
+
+		public List<Class<? extends Command>> getAcceptedCommandTypes() {
+			return null;
+		}
+	}
+	
+	/**
+	 * A batch persistence service, which blocks until it is released
+	 */
+	class BlockingBatchService implements BatchPersistenceService {
+		
+		final CountDownLatch blocked = new CountDownLatch(1);
+		
+		final CountDownLatch release = new CountDownLatch(1);
+		
+		final List<PersistenceSample> samples = Collections.synchronizedList(new ArrayList<PersistenceSample>());
+		
+		final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<Integer>());
+
+		public String getName() {
+			return "blocking";
+		}
+
+		public void store(Item item) {
+		}
+
+		public void store(Item item, String alias) {
+		}
+
+		public void store(List<PersistenceSample> batch) {
+			blocked.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				// the queue has been stopped, but we want to store the samples anyway
+				try {
+					release.await();
+				} catch (InterruptedException ie) {
+				}
+			}
+			batchSizes.add(batch.size());
+			samples.addAll(batch);
+		}
+		
+		void awaitSamples(int count) throws InterruptedException {
+			long deadline = System.currentTimeMillis() + 5000;
+			while(samples.size() < count && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+		}
+	}
+	
+}
@@ -0,0 +1,53 @@
+/**
+ * openHAB, the open Home Automation Bus.
+ * Copyright (C) 2010-2013, openHAB.org <admin@openhab.org>
+ *
+ * See the contributors.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ * Additional permission under GNU GPL version 3 section 7
+ *
+ * If you modify this Program, or any covered work, by linking or
+ * combining it with Eclipse (or a modified version of that library),
+ * containing parts covered by the terms of the Eclipse Public License
+ * (EPL), the licensors of this Program grant you additional permission
+ * to convey the resulting work.
+ */
+package org.openhab.core.persistence;
+
+import java.util.List;
+
+/**
+ * A persistence service which is able to store several samples at once. The
+ * persistence manager collects the samples of state updates in a queue and
+ * passes them in batches to such services, so that they can e.g. use a single
+ * transaction or request for them.
+ * 
+ * @author agent
+ * @since 1.3.0
+ */
+public interface BatchPersistenceService extends PersistenceService {
+
+	/**
+	 * Stores a batch of samples in the order they have been taken. Each sample
+	 * carries the state the item had when the sample was taken, which might differ
+	 * from its current state.
+	 * 
+	 * @param samples the samples to persist
+	 */
+	void store(List<PersistenceSample> samples);
+
+}
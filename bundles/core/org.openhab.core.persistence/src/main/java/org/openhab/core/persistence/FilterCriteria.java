@@ -42,6 +42,8 @@ import org.openhab.core.types.State;
  * <p>Additionally, the filter criteria supports ordering and paging of the result, so the
  * caller can ask to only return chunks of the result of a certain size (=pageSize) from a
  * starting index (pageNumber*pageSize).</p>
+ * <p>A projection defines whether a {@link HistoricCursor} has to provide the complete states
+ * or whether the timestamps and numeric values are sufficient.</p>
  * <p>All setter methods return the filter criteria instance, so that the methods can be
  * easily chained in order to define a filter.
  * 
@@ -75,6 +77,14 @@ public class FilterCriteria {
 		ASCENDING, DESCENDING
 	}
 	
+	/** Enumeration with all projection options */
+	public enum Projection {
+		/** the cursor provides the states of the entries */
+		STATE, 
+		/** the cursor only provides the timestamps and numeric values of the entries */
+		VALUE
+	}
+	
 	/** filter result to only contain entries for the given item */
 	private String itemName;
 
@@ -96,6 +106,9 @@ public class FilterCriteria {
 	/** how to sort the result list by date */
 	private Ordering ordering = Ordering.DESCENDING;
 
+	/** which data of the entries is needed by the caller */
+	private Projection projection = Projection.STATE;
+
 	/** filter result to only contain entries that evaluate to true with the given operator and state */
 	private State state;
 
@@ -131,6 +144,10 @@ public class FilterCriteria {
 		return state;
 	}
 
+	public Projection getProjection() {
+		return projection;
+	}
+
 	public FilterCriteria setItemName(String itemName) {
 		this.itemName = itemName;
 		return this;
@@ -171,4 +188,9 @@ public class FilterCriteria {
 		return this;
 	}
 
+	public FilterCriteria setProjection(Projection projection) {
+		this.projection = projection;
+		return this;
+	}
+
 }
@@ -0,0 +1,79 @@
+/**
+ * openHAB, the open Home Automation Bus.
+ * Copyright (C) 2010-2013, openHAB.org <admin@openhab.org>
+ *
+ * See the contributors.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ * Additional permission under GNU GPL version 3 section 7
+ *
+ * If you modify this Program, or any covered work, by linking or
+ * combining it with Eclipse (or a modified version of that library),
+ * containing parts covered by the terms of the Eclipse Public License
+ * (EPL), the licensors of this Program grant you additional permission
+ * to convey the resulting work.
+ */
+package org.openhab.core.persistence;
+
+import org.openhab.core.persistence.FilterCriteria.Projection;
+import org.openhab.core.types.State;
+
+/**
+ * A cursor over the result of a query to a {@link StreamingPersistenceService}. In contrast
+ * to the result of {@link QueryablePersistenceService#query(FilterCriteria)}, the entries are
+ * read one after the other from the persistence service, so that also large time series can 
+ * be processed in constant memory.
+ * 
+ * <p>A cursor is positioned before the first entry, when it is opened. It holds resources of 
+ * the persistence service and thus always has to be closed, e.g. in a finally block.</p>
+ * 
+ * @author agent
+ * @since 1.3.0
+ */
+public interface HistoricCursor {
+
+	/**
+	 * Moves the cursor to the next entry.
+	 * 
+	 * @return true, if there is a next entry, false if the end of the result has been reached
+	 */
+	boolean next();
+	
+	/**
+	 * @return the timestamp of the current entry in milliseconds since the epoch
+	 */
+	long getTime();
+	
+	/**
+	 * @return the numeric value of the current entry or {@link Double#NaN}, 
+	 * if its state is not numeric
+	 */
+	double getValue();
+	
+	/**
+	 * Returns the state of the current entry. If the cursor has been opened with the 
+	 * projection {@link Projection#VALUE}, the state does not need to be provided.
+	 * 
+	 * @return the state of the current entry or <code>null</code>, if it is not provided
+	 */
+	State getState();
+	
+	/**
+	 * Releases all resources which are held by the cursor. 
+	 */
+	void close();
+	
+}
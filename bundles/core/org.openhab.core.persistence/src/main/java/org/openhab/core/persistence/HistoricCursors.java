@@ -0,0 +1,131 @@
+/**
+ * openHAB, the open Home Automation Bus.
+ * Copyright (C) 2010-2013, openHAB.org <admin@openhab.org>
+ *
+ * See the contributors.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ * Additional permission under GNU GPL version 3 section 7
+ *
+ * If you modify this Program, or any covered work, by linking or
+ * combining it with Eclipse (or a modified version of that library),
+ * containing parts covered by the terms of the Eclipse Public License
+ * (EPL), the licensors of this Program grant you additional permission
+ * to convey the resulting work.
+ */
+package org.openhab.core.persistence;
+
+import java.util.Iterator;
+
+import org.openhab.core.library.types.DecimalType;
+import org.openhab.core.types.State;
+
+/**
+ * Static methods to open and adapt {@link HistoricCursor}s.
+ * 
+ * @author agent
+ * @since 1.3.0
+ */
+public class HistoricCursors {
+
+	private HistoricCursors() {
+		// prevent instantiation
+	}
+	
+	/**
+	 * Queries a persistence service for data with a given filter criteria. If the service
+	 * is a {@link StreamingPersistenceService}, its cursor is returned, otherwise the result 
+	 * of {@link QueryablePersistenceService#query(FilterCriteria)} is adapted to a cursor.
+	 * 
+	 * @param service the service to query
+	 * @param filter the filter to apply to the query
+	 * @return a cursor over the time series, which has to be closed by the caller
+	 */
+	public static HistoricCursor open(QueryablePersistenceService service, FilterCriteria filter) {
+		if (service instanceof StreamingPersistenceService) {
+			return ((StreamingPersistenceService) service).openCursor(filter);
+		} else {
+			return forItems(service.query(filter));
+		}
+	}
+	
+	/**
+	 * Adapts a time series of historic items to a cursor.
+	 * 
+	 * @param items the historic items
+	 * @return a cursor over the items
+	 */
+	public static HistoricCursor forItems(Iterable<HistoricItem> items) {
+		return new IterableCursor(items.iterator());
+	}
+	
+	/**
+	 * Returns the numeric value of a state as it is provided by {@link HistoricCursor#getValue()}.
+	 * 
+	 * @param state the state to convert
+	 * @return the numeric value or {@link Double#NaN}, if the state is not numeric
+	 */
+	public static double toValue(State state) {
+		if (state instanceof DecimalType) {
+			return ((DecimalType) state).doubleValue();
+		} else {
+			return Double.NaN;
+		}
+	}
+	
+	
+	/**
+	 * A cursor over the historic items of an iterator. The items are only converted 
+	 * on demand, so that lazy results of a persistence service are not materialized.
+	 */
+	private static class IterableCursor implements HistoricCursor {
+		
+		private final Iterator<HistoricItem> iterator;
+		
+		private HistoricItem current;
+		
+		IterableCursor(Iterator<HistoricItem> iterator) {
+			this.iterator = iterator;
+		}
+
+		public boolean next() {
+			if (iterator.hasNext()) {
+				current = iterator.next();
+				return true;
+			} else {
+				current = null;
+				return false;
+			}
+		}
+
+		public long getTime() {
+			return current.getTimestamp().getTime();
+		}
+
+		public double getValue() {
+			return toValue(current.getState());
+		}
+
+		public State getState() {
+			return current.getState();
+		}
+
+		public void close() {
+			current = null;
+		}
+	}
+	
+}
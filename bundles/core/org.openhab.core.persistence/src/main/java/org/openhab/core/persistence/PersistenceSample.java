@@ -0,0 +1,107 @@
+/**
+ * openHAB, the open Home Automation Bus.
+ * Copyright (C) 2010-2013, openHAB.org <admin@openhab.org>
+ *
+ * See the contributors.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ * Additional permission under GNU GPL version 3 section 7
+ *
+ * If you modify this Program, or any covered work, by linking or
+ * combining it with Eclipse (or a modified version of that library),
+ * containing parts covered by the terms of the Eclipse Public License
+ * (EPL), the licensors of this Program grant you additional permission
+ * to convey the resulting work.
+ */
+package org.openhab.core.persistence;
+
+import java.util.Date;
+
+import org.openhab.core.items.Item;
+import org.openhab.core.types.State;
+
+/**
+ * A persistence sample is the state of an item at a certain point in time, which
+ * is waiting to be stored by a {@link PersistenceService} under a given alias.
+ * 
+ * <p>As the state of the item might have changed until the sample is stored, the 
+ * state at the time the sample was taken is kept with the sample.</p>
+ * 
+ * @author agent
+ * @since 1.3.0
+ */
+public class PersistenceSample implements HistoricItem {
+	
+	private final Item item;
+	
+	private final String alias;
+	
+	private final State state;
+	
+	private final Date timestamp;
+
+	public PersistenceSample(Item item, String alias, State state, Date timestamp) {
+		this.item = item;
+		this.alias = alias;
+		this.state = state;
+		this.timestamp = timestamp;
+	}
+
+	/**
+	 * returns the item the sample was taken from
+	 * 
+	 * @return the item of this sample
+	 */
+	public Item getItem() {
+		return item;
+	}
+
+	/**
+	 * returns the alias under which the sample should be stored
+	 * 
+	 * @return the alias or <code>null</code>, if no alias is defined
+	 */
+	public String getAlias() {
+		return alias;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public State getState() {
+		return state;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public Date getTimestamp() {
+		return timestamp;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public String getName() {
+		return item.getName();
+	}
+	
+	@Override
+	public String toString() {
+		return getName() + " (State=" + state + ", Alias=" + alias + ", Time=" + timestamp + ")";
+	}
+
+}
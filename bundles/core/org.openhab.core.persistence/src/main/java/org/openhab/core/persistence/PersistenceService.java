@@ -51,11 +51,12 @@ public interface PersistenceService {
 
 	/**
 	 * Stores the current value of the given item.
-	 * <p>Implementors should keep in mind that all registered 
-	 * {@link PersistenceService}s are called synchronously. Hence long running
-	 * operations should be processed asynchronously. E.g. <code>store</code>
-	 * adds things to a queue which is processed by some asynchronous workers
-	 * (Quartz Job, Thread, etc.).</p>  
+	 * <p>State updates and changes of items are passed to the {@link PersistenceService}s
+	 * through a queue, which is processed by a dedicated worker thread per service. The
+	 * item passed from the queue might be a copy, which has the state of the update.
+	 * Nevertheless, implementors should keep in mind that the persistence extensions
+	 * call this method synchronously. Services which can store several items at once
+	 * should implement {@link BatchPersistenceService}.</p>  
 	 * 
 	 * @param item the item which state should be persisted.
 	 */
@@ -63,11 +64,12 @@ public interface PersistenceService {
 
 	/**
 	 * <p>Stores the current value of the given item under a specified alias.</p>
-	 * <p>Implementors should keep in mind that all registered 
-	 * {@link PersistenceService}s are called synchronously. Hence long running
-	 * operations should be processed asynchronously. E.g. <code>store</code>
-	 * adds things to a queue which is processed by some asynchronous workers
-	 * (Quartz Job, Thread, etc.).</p>  
+	 * <p>State updates and changes of items are passed to the {@link PersistenceService}s
+	 * through a queue, which is processed by a dedicated worker thread per service. The
+	 * item passed from the queue might be a copy, which has the state of the update.
+	 * Nevertheless, implementors should keep in mind that the persistence extensions
+	 * call this method synchronously. Services which can store several items at once
+	 * should implement {@link BatchPersistenceService}.</p>  
 	 * 
 	 * @param item the item which state should be persisted.
 	 * @param alias the alias under which the item should be persisted.
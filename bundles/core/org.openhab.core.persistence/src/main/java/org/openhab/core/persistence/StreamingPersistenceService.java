@@ -0,0 +1,54 @@
+/**
+ * openHAB, the open Home Automation Bus.
+ * Copyright (C) 2010-2013, openHAB.org <admin@openhab.org>
+ *
+ * See the contributors.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ * Additional permission under GNU GPL version 3 section 7
+ *
+ * If you modify this Program, or any covered work, by linking or
+ * combining it with Eclipse (or a modified version of that library),
+ * containing parts covered by the terms of the Eclipse Public License
+ * (EPL), the licensors of this Program grant you additional permission
+ * to convey the resulting work.
+ */
+package org.openhab.core.persistence;
+
+/**
+ * A queryable persistence service which is able to return the result of a query as a 
+ * {@link HistoricCursor}, so that the entries do not need to be kept in memory at once.
+ * 
+ * <p>Callers should not check for this interface themselves, but use 
+ * {@link HistoricCursors#open(QueryablePersistenceService, FilterCriteria)}, which 
+ * also supports all other queryable persistence services.</p>
+ * 
+ * @author agent
+ * @since 1.3.0
+ */
+public interface StreamingPersistenceService extends QueryablePersistenceService {
+	
+	/**
+	 * Queries the {@link PersistenceService} for data with a given filter criteria. The paging
+	 * of the filter has to be applied by the persistence service, the projection of the filter 
+	 * defines whether the states of the entries have to be provided by the cursor.
+	 * 
+	 * @param filter the filter to apply to the query
+	 * @return a cursor over the time series, which has to be closed by the caller
+	 */
+	HistoricCursor openCursor(FilterCriteria filter);
+
+}
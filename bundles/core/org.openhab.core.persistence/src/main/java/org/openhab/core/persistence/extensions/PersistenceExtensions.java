@@ -28,22 +28,30 @@
  */
 package org.openhab.core.persistence.extensions;
 
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.Date;
 import java.util.Dictionary;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
+import org.apache.commons.lang.StringUtils;
 import org.joda.time.base.AbstractInstant;
 import org.openhab.core.items.Item;
 import org.openhab.core.library.types.DecimalType;
 import org.openhab.core.persistence.FilterCriteria;
+import org.openhab.core.persistence.HistoricCursor;
+import org.openhab.core.persistence.HistoricCursors;
 import org.openhab.core.persistence.HistoricItem;
 import org.openhab.core.persistence.PersistenceService;
 import org.openhab.core.persistence.QueryablePersistenceService;
 import org.openhab.core.persistence.FilterCriteria.Ordering;
+import org.openhab.core.persistence.FilterCriteria.Projection;
+import org.openhab.core.persistence.internal.ItemRollup;
+import org.openhab.core.persistence.internal.RollupAggregate;
+import org.openhab.core.persistence.internal.RollupStore;
 import org.openhab.core.types.State;
 import org.openhab.core.types.UnDefType;
 import org.osgi.service.cm.ConfigurationException;
@@ -91,6 +99,7 @@ public class PersistenceExtensions implements ManagedService {
 		PersistenceService service = services.get(serviceName);
 		if (service != null) {
 			service.store(item);
+			RollupStore.getInstance().add(serviceName, item.getName(), item.getState(), new Date());
 		} else {
 			logger.warn("There is no persistence service registered with the name '{}'", serviceName);
 		}
@@ -178,17 +187,24 @@ public class PersistenceExtensions implements ManagedService {
 	 * @return true, if item state had changed
 	 */
 	static public Boolean changedSince(Item item, AbstractInstant timestamp, String serviceName) {
-		Iterable<HistoricItem> result = getAllStatesSince(item, timestamp, serviceName);
-		Iterator<HistoricItem> it = result.iterator();
-		State state = null;
-		while(it.hasNext()) {
-			HistoricItem hItem = it.next();
-			if(state!=null && !hItem.getState().equals(state)) {
-				return true;
+		RollupAggregate aggregate = getAggregateSince(item, timestamp, serviceName);
+		if(aggregate!=null) {
+			return aggregate.hasChanged();
+		}
+		
+		HistoricCursor cursor = openCursor(serviceName, createFilterSince(item, timestamp));
+		try {
+			State state = null;
+			while(cursor.next()) {
+				if(state!=null && !cursor.getState().equals(state)) {
+					return true;
+				}
+				state = cursor.getState();
 			}
-			state = hItem.getState();
+			return false;
+		} finally {
+			cursor.close();
 		}
-		return false;
 	} 
 
 	/**
@@ -217,11 +233,16 @@ public class PersistenceExtensions implements ManagedService {
 	 * @return true, if item state was updated
 	 */
 	static public Boolean updatedSince(Item item, AbstractInstant timestamp, String serviceName) {
-		Iterable<HistoricItem> result = getAllStatesSince(item, timestamp, serviceName);
-		if(result.iterator().hasNext()) {
-			return true;
-		} else {
-			return false;
+		RollupAggregate aggregate = getAggregateSince(item, timestamp, serviceName);
+		if(aggregate!=null) {
+			return aggregate.getCount() + aggregate.getOtherCount() > 0;
+		}
+		
+		HistoricCursor cursor = openCursor(serviceName, createFilterSince(item, timestamp).setPageSize(1));
+		try {
+			return cursor.next();
+		} finally {
+			cursor.close();
 		}
 	} 
 
@@ -253,38 +274,33 @@ public class PersistenceExtensions implements ManagedService {
 	 * @return a historic item with the maximum state value since the given point in time
 	 */
 	static public HistoricItem maximumSince(final Item item, AbstractInstant timestamp, String serviceName) {
-		Iterable<HistoricItem> result = getAllStatesSince(item, timestamp, serviceName);
-		Iterator<HistoricItem> it = result.iterator();
 		HistoricItem maximumHistoricItem = null;
 		DecimalType maximum = (DecimalType) item.getStateAs(DecimalType.class);
-		while(it.hasNext()) {
-			HistoricItem historicItem = it.next();
-			State state = historicItem.getState();
-			if (state instanceof DecimalType) {
-				DecimalType value = (DecimalType) state;
-				if(maximum==null || value.compareTo(maximum)>0) {
-					maximum = value;
-					maximumHistoricItem = historicItem;
+		RollupAggregate aggregate = getAggregateSince(item, timestamp, serviceName);
+		if(aggregate!=null) {
+			if(aggregate.getMaximum()!=null && (maximum==null || maximum.compareTo((DecimalType) aggregate.getMaximum())<0)) {
+				return createHistoricItem(item, aggregate.getMaximum(), aggregate.getMaximumTime());
+			}
+		} else {
+			HistoricCursor cursor = openCursor(serviceName, createFilterSince(item, timestamp));
+			try {
+				while(cursor.next()) {
+					State state = cursor.getState();
+					if(state instanceof DecimalType) {
+						DecimalType value = (DecimalType) state;
+						if(maximum==null || value.compareTo(maximum)>0) {
+							maximum = value;
+							maximumHistoricItem = createHistoricItem(item, state, new Date(cursor.getTime()));
+						}
+					}
 				}
+			} finally {
+				cursor.close();
 			}
 		}
 		if(maximumHistoricItem==null && maximum!=null) {
 			// the maximum state is the current one, so construct a historic item on the fly
-			final DecimalType state = maximum;
-			return new HistoricItem() {
-				
-				public Date getTimestamp() {
-					return Calendar.getInstance().getTime();
-				}
-				
-				public State getState() {
-					return state;
-				}
-				
-				public String getName() {
-					return item.getName();
-				}
-			};
+			return createHistoricItem(item, maximum, Calendar.getInstance().getTime());
 		} else {
 			return maximumHistoricItem;
 		}
@@ -318,38 +334,33 @@ public class PersistenceExtensions implements ManagedService {
 	 * @return the historic item with the minimum state value since the given point in time
 	 */
 	static public HistoricItem minimumSince(final Item item, AbstractInstant timestamp, String serviceName) {
-		Iterable<HistoricItem> result = getAllStatesSince(item, timestamp, serviceName);
-		Iterator<HistoricItem> it = result.iterator();
 		HistoricItem minimumHistoricItem = null;
 		DecimalType minimum = (DecimalType) item.getStateAs(DecimalType.class);
-		while(it.hasNext()) {
-			HistoricItem historicItem = it.next();
-			State state = historicItem.getState();
-			if (state instanceof DecimalType) {
-				DecimalType value = (DecimalType) state;
-				if(minimum==null || value.compareTo(minimum)<0) {
-					minimum = value;
-					minimumHistoricItem = historicItem;
+		RollupAggregate aggregate = getAggregateSince(item, timestamp, serviceName);
+		if(aggregate!=null) {
+			if(aggregate.getMinimum()!=null && (minimum==null || minimum.compareTo((DecimalType) aggregate.getMinimum())>0)) {
+				return createHistoricItem(item, aggregate.getMinimum(), aggregate.getMinimumTime());
+			}
+		} else {
+			HistoricCursor cursor = openCursor(serviceName, createFilterSince(item, timestamp));
+			try {
+				while(cursor.next()) {
+					State state = cursor.getState();
+					if(state instanceof DecimalType) {
+						DecimalType value = (DecimalType) state;
+						if(minimum==null || value.compareTo(minimum)<0) {
+							minimum = value;
+							minimumHistoricItem = createHistoricItem(item, state, new Date(cursor.getTime()));
+						}
+					}
 				}
+			} finally {
+				cursor.close();
 			}
 		}
 		if(minimumHistoricItem==null && minimum!=null) {
 			// the minimal state is the current one, so construct a historic item on the fly
-			final DecimalType state = minimum;
-			return new HistoricItem() {
-				
-				public Date getTimestamp() {
-					return Calendar.getInstance().getTime();
-				}
-				
-				public State getState() {
-					return state;
-				}
-				
-				public String getName() {
-					return item.getName();
-				}
-			};
+			return createHistoricItem(item, minimum, Calendar.getInstance().getTime());
 		} else {
 			return minimumHistoricItem;
 		}
@@ -381,9 +392,6 @@ public class PersistenceExtensions implements ManagedService {
 	 * @return the average state value since the given point in time
 	 */
 	static public DecimalType averageSince(Item item, AbstractInstant timestamp, String serviceName) {
-		Iterable<HistoricItem> result = getAllStatesSince(item, timestamp, serviceName);
-		Iterator<HistoricItem> it = result.iterator();
-		
 		DecimalType value = (DecimalType) item.getStateAs(DecimalType.class);
 		if (value == null) {
 			value = DecimalType.ZERO;
@@ -391,31 +399,122 @@ public class PersistenceExtensions implements ManagedService {
 		
 		double average = value.doubleValue();
 		int quantity = 1;
-		while(it.hasNext()) {
-			State state = it.next().getState();
-			if (state instanceof DecimalType) {
-				value = (DecimalType) state;
-				average += value.doubleValue();
-				quantity++;
+		RollupAggregate aggregate = getAggregateSince(item, timestamp, serviceName);
+		if(aggregate!=null) {
+			average += aggregate.getSum();
+			quantity += aggregate.getCount();
+			return new DecimalType(average / quantity);
+		}
+		
+		HistoricCursor cursor = openCursor(serviceName, createFilterSince(item, timestamp).setProjection(Projection.VALUE));
+		try {
+			while(cursor.next()) {
+				double historicValue = cursor.getValue();
+				if (!Double.isNaN(historicValue)) {
+					average += historicValue;
+					quantity++;
+				}
 			}
+		} finally {
+			cursor.close();
 		}
 		average /= quantity;
 		
 		return new DecimalType(average);
 	} 
 	
-	static private Iterable<HistoricItem> getAllStatesSince(Item item, AbstractInstant timestamp, String serviceName) {
+	/**
+	 * Returns the aggregate of all stored states of an item since a certain point in time from the
+	 * rollups. The rollups are filled with the states of the persistence service, if they do not yet 
+	 * cover the period, and the states before their first bucket are added from the persistence service.
+	 * 
+	 * @param item the item to get the aggregate for
+	 * @param timestamp the point in time to start the aggregation
+	 * @param serviceName the name of the {@link PersistenceService} to use
+	 * @return the aggregate or <code>null</code>, if the rollups are disabled or cannot cover the period
+	 */
+	static private RollupAggregate getAggregateSince(Item item, AbstractInstant timestamp, String serviceName) {
+		RollupStore rollups = RollupStore.getInstance();
+		PersistenceService service = services.get(serviceName);
+		if (!rollups.isEnabled(serviceName) || !(service instanceof QueryablePersistenceService)) {
+			return null;
+		}
+		QueryablePersistenceService qService = (QueryablePersistenceService) service;
+		String itemName = item.getName();
+		Date since = timestamp.toDate();
+		if (!rollups.isRetained(serviceName, itemName, since)) {
+			return null;
+		}
+		
+		Date coveredSince = rollups.getCoveredSince(serviceName, itemName);
+		if (since.before(coveredSince)) {
+			HistoricCursor cursor = openStatesBetween(qService, itemName, since, coveredSince);
+			try {
+				rollups.backfill(serviceName, itemName, since, cursor);
+			} finally {
+				cursor.close();
+			}
+		}
+		RollupAggregate aggregate = rollups.aggregate(serviceName, itemName, since);
+		if (aggregate!=null && since.before(aggregate.getStart())) {
+			HistoricCursor cursor = openStatesBetween(qService, itemName, since, aggregate.getStart());
+			try {
+				while(cursor.next()) {
+					aggregate.add(cursor.getState(), cursor.getTime());
+				}
+			} finally {
+				cursor.close();
+			}
+		}
+		return aggregate;
+	}
+	
+	static private HistoricCursor openStatesBetween(QueryablePersistenceService service, String itemName, Date begin, Date end) {
+		FilterCriteria filter = new FilterCriteria();
+		filter.setBeginDate(begin);
+		// the end date of the filter is inclusive
+		filter.setEndDate(new Date(end.getTime() - 1));
+		filter.setItemName(itemName);
+		filter.setOrdering(Ordering.ASCENDING);
+		return HistoricCursors.open(service, filter);
+	}
+	
+	static private HistoricItem createHistoricItem(final Item item, final State state, final Date timestamp) {
+		return new HistoricItem() {
+			
+			public Date getTimestamp() {
+				return timestamp;
+			}
+			
+			public State getState() {
+				return state;
+			}
+			
+			public String getName() {
+				return item.getName();
+			}
+		};
+	}
+	
+	static private FilterCriteria createFilterSince(Item item, AbstractInstant timestamp) {
+		FilterCriteria filter = new FilterCriteria();
+		filter.setBeginDate(timestamp.toDate());
+		filter.setItemName(item.getName());
+		filter.setOrdering(Ordering.ASCENDING);
+		return filter;
+	}
+	
+	/**
+	 * Opens a cursor over the result of a query, so that the states can be processed one 
+	 * after the other. The cursor has to be closed by the caller.
+	 */
+	static private HistoricCursor openCursor(String serviceName, FilterCriteria filter) {
 		PersistenceService service = services.get(serviceName);
 		if (service instanceof QueryablePersistenceService) {
-			QueryablePersistenceService qService = (QueryablePersistenceService) service;
-			FilterCriteria filter = new FilterCriteria();
-			filter.setBeginDate(timestamp.toDate());
-			filter.setItemName(item.getName());
-			filter.setOrdering(Ordering.ASCENDING);
-			return qService.query(filter);
+			return HistoricCursors.open((QueryablePersistenceService) service, filter);
 		} else {
 			logger.warn("There is no queryable persistence service registered with the name '{}'", serviceName);
-			return Collections.emptySet();
+			return HistoricCursors.forItems(Collections.<HistoricItem>emptySet());
 		}
 	}
 	
@@ -436,7 +535,42 @@ public class PersistenceExtensions implements ManagedService {
 	public void updated(Dictionary config) throws ConfigurationException {
 		if (config!=null) {
 			PersistenceExtensions.defaultService = (String) config.get("default");			
+			RollupStore.getInstance().setCapacities(
+					getIntValue(config, "rollupminutes", ItemRollup.DEFAULT_MINUTE_BUCKETS),
+					getIntValue(config, "rolluphours", ItemRollup.DEFAULT_HOUR_BUCKETS),
+					getIntValue(config, "rollupdays", ItemRollup.DEFAULT_DAY_BUCKETS));
+			RollupStore.getInstance().setEnabledServices(getServiceNames(config, "rollups"));
+		}
+	}
+	
+	@SuppressWarnings("rawtypes")
+	static private List<String> getServiceNames(Dictionary config, String key) {
+		List<String> serviceNames = new ArrayList<String>();
+		String valueString = (String) config.get(key);
+		if (StringUtils.isNotBlank(valueString)) {
+			for (String serviceName : valueString.split(",")) {
+				if (StringUtils.isNotBlank(serviceName)) {
+					serviceNames.add(serviceName.trim());
+				}
+			}
+		}
+		return serviceNames;
+	}
+	
+	@SuppressWarnings("rawtypes")
+	static private int getIntValue(Dictionary config, String key, int defaultValue) throws ConfigurationException {
+		String valueString = (String) config.get(key);
+		if (StringUtils.isNotBlank(valueString)) {
+			try {
+				int value = Integer.parseInt(valueString.trim());
+				if (value > 0) {
+					return value;
+				}
+			} catch (NumberFormatException e) {
+			}
+			throw new ConfigurationException(key, "'" + valueString + "' is not a positive number");
 		}
+		return defaultValue;
 	}
 
 }
@@ -0,0 +1,275 @@
+/**
+ * openHAB, the open Home Automation Bus.
+ * Copyright (C) 2010-2013, openHAB.org <admin@openhab.org>
+ *
+ * See the contributors.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ * Additional permission under GNU GPL version 3 section 7
+ *
+ * If you modify this Program, or any covered work, by linking or
+ * combining it with Eclipse (or a modified version of that library),
+ * containing parts covered by the terms of the Eclipse Public License
+ * (EPL), the licensors of this Program grant you additional permission
+ * to convey the resulting work.
+ */
+package org.openhab.core.persistence.internal;
+
+import org.openhab.core.persistence.HistoricCursor;
+import org.openhab.core.types.State;
+
+/**
+ * This class keeps pre-aggregated values of the stored states of a single item in 
+ * minute, hour and day buckets. Each tier only retains a limited number of buckets, 
+ * older buckets are overwritten.
+ * 
+ * <p>An aggregate since a certain point in time is composed of the buckets which start
+ * at or after it: whole days are taken from the day tier, the hours and minutes before 
+ * the first whole day from the finer tiers, as far as they are still retained. The 
+ * remaining period before the first bucket has to be added from the raw values of
+ * the persistence service.</p>
+ * 
+ * <p>The buckets are only allocated for the periods in which states have actually been
+ * stored, so that rarely updated items do not occupy the memory of all retained buckets.</p>
+ * 
+ * @author agent
+ * @since 1.3.0
+ */
+public class ItemRollup {
+
+	static final long MINUTE = 60L * 1000L;
+	static final long HOUR = 60L * MINUTE;
+	static final long DAY = 24L * HOUR;
+	
+	/** the default number of retained minute buckets, i.e. three hours */
+	public static final int DEFAULT_MINUTE_BUCKETS = 180;
+	
+	/** the default number of retained hour buckets, i.e. 35 days */
+	public static final int DEFAULT_HOUR_BUCKETS = 24 * 35;
+	
+	/** the default number of retained day buckets */
+	public static final int DEFAULT_DAY_BUCKETS = 400;
+	
+	/** the tiers, ordered from the finest to the coarsest */
+	private final Tier[] tiers;
+	
+	/** the time since which all stored states are contained in the buckets */
+	private long coveredSince;
+	
+	/**
+	 * Creates a new rollup for an item, which retains the default number of buckets
+	 * 
+	 * @param coveredSince the time since which all states of the item are added to the rollup
+	 */
+	public ItemRollup(long coveredSince) {
+		this(coveredSince, DEFAULT_MINUTE_BUCKETS, DEFAULT_HOUR_BUCKETS, DEFAULT_DAY_BUCKETS);
+	}
+	
+	/**
+	 * Creates a new rollup for an item
+	 * 
+	 * @param coveredSince the time since which all states of the item are added to the rollup
+	 * @param minuteBuckets the number of retained minute buckets
+	 * @param hourBuckets the number of retained hour buckets
+	 * @param dayBuckets the number of retained day buckets
+	 */
+	public ItemRollup(long coveredSince, int minuteBuckets, int hourBuckets, int dayBuckets) {
+		this.coveredSince = coveredSince;
+		this.tiers = new Tier[] {
+			new Tier(MINUTE, minuteBuckets),
+			new Tier(HOUR, hourBuckets),
+			new Tier(DAY, dayBuckets)
+		};
+	}
+	
+	/**
+	 * Adds a stored state of the item to the buckets of all tiers.
+	 * 
+	 * @param state the stored state
+	 * @param time the time at which the state has been stored
+	 */
+	public synchronized void add(State state, long time) {
+		for(Tier tier : tiers) {
+			tier.add(state, time);
+		}
+	}
+	
+	/**
+	 * Adds the states of a period before the currently covered period, which are read from 
+	 * the persistence service. States which are already covered are ignored.
+	 * 
+	 * @param states a cursor over the historic states, which must contain all stored states 
+	 * between <code>since</code> and the begin of the currently covered period
+	 * @param since the begin of the period, which is covered by the given states
+	 */
+	public synchronized void backfill(HistoricCursor states, long since) {
+		if(since >= coveredSince) {
+			return;
+		}
+		while(states.next()) {
+			long time = states.getTime();
+			if(time >= since && time < coveredSince) {
+				add(states.getState(), time);
+			}
+		}
+		coveredSince = since;
+	}
+
+	/**
+	 * Checks whether the rollup can provide the aggregate since a certain point in time, 
+	 * once it has been filled with the states before its currently covered period.
+	 * 
+	 * @param since the begin of the period
+	 * @param now the current time
+	 * @return true, if the buckets of the coarsest tier reach back to the given time
+	 */
+	public synchronized boolean isRetained(long since, long now) {
+		Tier coarsestTier = tiers[tiers.length - 1];
+		return coarsestTier.getOldestRetainedStart(now) <= alignUp(since, coarsestTier.width);
+	}
+	
+	/**
+	 * @return the time since which all stored states are contained in the rollup
+	 */
+	public synchronized long getCoveredSince() {
+		return coveredSince;
+	}
+	
+	/**
+	 * Aggregates all buckets, which start at or after the given time. As the first bucket 
+	 * might start later than the given time, the states of the period before 
+	 * {@link RollupAggregate#getStart()} are not contained in the aggregate.
+	 * 
+	 * @param since the begin of the period to aggregate
+	 * @param now the current time
+	 * @return the aggregate or <code>null</code>, if the period is not covered by the rollup
+	 */
+	public synchronized RollupAggregate aggregate(long since, long now) {
+		if(!isRetained(since, now)) {
+			return null;
+		}
+		
+		// find the finest tier, from which on all tiers retain the buckets of their part of the period
+		int first = tiers.length - 1;
+		while(first > 0 && tiers[first - 1].getOldestRetainedStart(now) <= alignUp(since, tiers[first - 1].width)) {
+			first--;
+		}
+		long start = alignUp(since, tiers[first].width);
+		if(start < coveredSince) {
+			return null;
+		}
+		
+		RollupAggregate aggregate = new RollupAggregate(start);
+		for(int i = first; i < tiers.length; i++) {
+			// each tier covers the time until the first bucket of the next coarser tier 
+			long tierStart = alignUp(since, tiers[i].width);
+			long tierEnd = i < tiers.length - 1 ? alignUp(since, tiers[i + 1].width) : Long.MAX_VALUE;
+			if(tierStart < tierEnd) {
+				tiers[i].aggregate(aggregate, tierStart, tierEnd);
+			}
+		}
+		return aggregate;
+	}
+	
+	private static long alignUp(long time, long width) {
+		long remainder = time % width;
+		return remainder == 0 ? time : time - remainder + width;
+	}
+
+	
+	/**
+	 * A ring buffer of buckets of a certain width. The slot of a bucket is determined by its
+	 * index, i.e. the number of bucket widths since the epoch. The ring and its buckets are 
+	 * allocated on first use.
+	 */
+	private static class Tier {
+		
+		final long width;
+		
+		final int capacity;
+		
+		Bucket[] buckets;
+		
+		/** the index of the newest bucket */
+		long newestIndex = Long.MIN_VALUE;
+		
+		Tier(long width, int capacity) {
+			this.width = width;
+			this.capacity = Math.max(1, capacity);
+		}
+		
+		void add(State state, long time) {
+			long index = time / width;
+			int slot = (int) (index % capacity);
+			if(buckets==null) {
+				buckets = new Bucket[capacity];
+			}
+			Bucket bucket = buckets[slot];
+			if(bucket!=null && bucket.index > index) {
+				// the bucket has already been overwritten by a newer one
+				return;
+			}
+			if(bucket==null || bucket.index != index) {
+				bucket = new Bucket(index);
+				buckets[slot] = bucket;
+			}
+			if(index > newestIndex) {
+				newestIndex = index;
+			}
+			bucket.add(state, time);
+		}
+		
+		/**
+		 * Returns the start time of the oldest bucket, which has not yet been overwritten.
+		 */
+		long getOldestRetainedStart(long now) {
+			long currentIndex = Math.max(now / width, newestIndex);
+			return (currentIndex - capacity + 1) * width;
+		}
+		
+		/**
+		 * Adds all buckets, which start within the given period, to the aggregate.
+		 */
+		void aggregate(RollupAggregate aggregate, long start, long end) {
+			if(buckets==null) {
+				return;
+			}
+			long firstIndex = start / width;
+			long lastIndex = end==Long.MAX_VALUE ? newestIndex : Math.min(newestIndex, (end - 1) / width);
+			for(long index = firstIndex; index <= lastIndex; index++) {
+				Bucket bucket = buckets[(int) (index % capacity)];
+				if(bucket!=null && bucket.index == index) {
+					aggregate.add(bucket);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * The aggregated values of the states within the period of a single bucket. The minimum 
+	 * and maximum are kept as the original states, so that they keep their type.
+	 */
+	private static class Bucket extends RollupAggregate {
+		
+		final long index;
+		
+		Bucket(long index) {
+			super(0);
+			this.index = index;
+		}
+	}
+
+}
@@ -28,6 +28,8 @@
  */
 package org.openhab.core.persistence.internal;
 
+import java.util.Date;
+
 import org.eclipse.emf.ecore.EObject;
 import org.openhab.core.items.Item;
 import org.openhab.core.persistence.PersistenceService;
@@ -73,6 +75,8 @@ public class PersistItemsJob implements Job {
 							for(Item item : persistenceManager.getAllItems(config)) {
 								long startTime = System.currentTimeMillis();
 								persistenceService.store(item, config.getAlias());
+								RollupStore.getInstance().add(modelName, config.getAlias()!=null ? config.getAlias() : item.getName(), 
+										item.getState(), new Date());
 								logger.trace("Storing item '{}' with persistence service '{}' took {}ms",
 										new Object[] { item.getName(), modelName, System.currentTimeMillis() - startTime});
 							}
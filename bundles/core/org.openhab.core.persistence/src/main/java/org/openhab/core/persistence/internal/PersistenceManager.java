@@ -32,8 +32,11 @@ import static org.quartz.JobBuilder.newJob;
 import static org.quartz.TriggerBuilder.newTrigger;
 
 import java.text.DateFormat;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Date;
+import java.util.Dictionary;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -41,7 +44,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
+import org.apache.commons.lang.StringUtils;
 import org.eclipse.emf.ecore.EObject;
 import org.openhab.core.events.AbstractEventSubscriber;
 import org.openhab.core.items.GenericItem;
@@ -51,8 +56,10 @@ import org.openhab.core.items.ItemNotFoundException;
 import org.openhab.core.items.ItemRegistry;
 import org.openhab.core.items.ItemRegistryChangeListener;
 import org.openhab.core.items.StateChangeListener;
+import org.openhab.core.persistence.BatchPersistenceService;
 import org.openhab.core.persistence.FilterCriteria;
 import org.openhab.core.persistence.HistoricItem;
+import org.openhab.core.persistence.PersistenceSample;
 import org.openhab.core.persistence.PersistenceService;
 import org.openhab.core.persistence.QueryablePersistenceService;
 import org.openhab.core.types.State;
@@ -68,6 +75,8 @@ import org.openhab.model.persistence.persistence.PersistenceConfiguration;
 import org.openhab.model.persistence.persistence.PersistenceModel;
 import org.openhab.model.persistence.persistence.Strategy;
 import org.openhab.model.persistence.scoping.GlobalStrategies;
+import org.osgi.service.cm.ConfigurationException;
+import org.osgi.service.cm.ManagedService;
 import org.quartz.CronScheduleBuilder;
 import org.quartz.Job;
 import org.quartz.JobDetail;
@@ -88,9 +97,15 @@ import org.slf4j.LoggerFactory;
  * @since 1.0.0
  *
  */
-public class PersistenceManager extends AbstractEventSubscriber implements ModelRepositoryChangeListener, ItemRegistryChangeListener, StateChangeListener {
+public class PersistenceManager extends AbstractEventSubscriber implements ModelRepositoryChangeListener, ItemRegistryChangeListener, StateChangeListener, ManagedService {
 	
 	private static final Logger logger = LoggerFactory.getLogger(PersistenceManager.class);
+	
+	private static final int DEFAULT_QUEUE_SIZE = 10000;
+
+	private static final int DEFAULT_BATCH_SIZE = 100;
+	
+	private static final long DEFAULT_FLUSH_INTERVAL = 0;
 
 	private static PersistenceManager instance;
 	
@@ -111,6 +126,30 @@ public class PersistenceManager extends AbstractEventSubscriber implements Model
 	protected Map<String, List<Strategy>> defaultStrategies = 
 			Collections.synchronizedMap(new HashMap<String, List<Strategy>>());
 	
+	/**
+	 * keeps the persistence routes for each item name; the table is compiled from the persistence
+	 * configurations whenever the models change and it is replaced as a whole, while single items
+	 * are updated in place. It can be read without any locking upon state events.
+	 */
+	protected volatile Map<String, List<PersistenceRoute>> routingTable = 
+			new ConcurrentHashMap<String, List<PersistenceRoute>>();
+
+	/** keeps the queue of samples to store for each persistence service */
+	protected Map<String, PersistenceQueue> persistenceQueues = 
+			Collections.synchronizedMap(new HashMap<String, PersistenceQueue>());
+	
+	/** the maximum number of samples which are queued per persistence service */
+	private int queueSize = DEFAULT_QUEUE_SIZE;
+	
+	/** the maximum number of samples which are passed to a persistence service at once */
+	private int batchSize = DEFAULT_BATCH_SIZE;
+	
+	/** the time in milliseconds to wait for further samples before a batch is stored */
+	private long flushInterval = DEFAULT_FLUSH_INTERVAL;
+	
+	/** the samples which are dropped if a queue is full */
+	private PersistenceQueue.DropPolicy dropPolicy = PersistenceQueue.DropPolicy.OLDEST;
+	
 	
 	public PersistenceManager() {
 		PersistenceManager.instance = this;
@@ -130,6 +169,14 @@ public class PersistenceManager extends AbstractEventSubscriber implements Model
 	}
 	
 	public void deactivate() {
+		List<PersistenceQueue> queues;
+		synchronized (persistenceQueues) {
+			queues = new ArrayList<PersistenceQueue>(persistenceQueues.values());
+			persistenceQueues.clear();
+		}
+		for(PersistenceQueue queue : queues) {
+			queue.stop();
+		}
 	}
 	
 	
@@ -164,15 +211,58 @@ public class PersistenceManager extends AbstractEventSubscriber implements Model
 
 	public void addPersistenceService(PersistenceService persistenceService) {
 		persistenceServices.put(persistenceService.getName(), persistenceService);
+		startQueue(persistenceService);
 		stopEventHandling(persistenceService.getName());
 		startEventHandling(persistenceService.getName());
 	}
 
 	public void removePersistenceService(PersistenceService persistenceService) {
 		stopEventHandling(persistenceService.getName());
+		stopQueue(persistenceService.getName());
 		persistenceServices.remove(persistenceService.getName());
 	}
 	
+	/**
+	 * Creates and starts a new queue for the given persistence service. Services which 
+	 * are not able to store batches are wrapped by a {@link PersistenceServiceAdapter}, 
+	 * which passes them the samples one by one. An existing queue of the service is 
+	 * stopped and all its samples are stored before the new queue starts.
+	 * 
+	 * @param persistenceService the service to create the queue for
+	 */
+	/* default */ void startQueue(PersistenceService persistenceService) {
+		BatchPersistenceService batchService = persistenceService instanceof BatchPersistenceService ?
+				(BatchPersistenceService) persistenceService : new PersistenceServiceAdapter(persistenceService);
+		PersistenceQueue queue = new PersistenceQueue(batchService, queueSize, batchSize, flushInterval, dropPolicy);
+		PersistenceQueue oldQueue = persistenceQueues.put(persistenceService.getName(), queue);
+		if(oldQueue!=null) {
+			oldQueue.stop();
+		}
+		queue.start();
+	}
+
+	/**
+	 * Stops the queue of the given persistence service after all its samples have been stored.
+	 * 
+	 * @param serviceName the name of the service to stop the queue for
+	 */
+	private void stopQueue(String serviceName) {
+		PersistenceQueue queue = persistenceQueues.remove(serviceName);
+		if(queue!=null) {
+			queue.stop();
+		}
+	}
+	
+	/**
+	 * Returns the queue, through which samples are passed to the given persistence service.
+	 * 
+	 * @param serviceName the name of the persistence service
+	 * @return the queue of the service or <code>null</code>, if the service is not known
+	 */
+	public PersistenceQueue getQueue(String serviceName) {
+		return persistenceQueues.get(serviceName);
+	}
+	
 	
 	public void modelChanged(String modelName, EventType type) {
 		if(modelName.endsWith(".persist")) {
@@ -200,6 +290,7 @@ public class PersistenceManager extends AbstractEventSubscriber implements Model
 			synchronized (persistenceConfigurations) {
 				persistenceConfigurations.put(modelName, model.getConfigs());
 				defaultStrategies.put(modelName, model.getDefaults());
+				rebuildRoutingTable();
 				for(PersistenceConfiguration config : model.getConfigs()) {
 					if(hasStrategy(modelName, config, GlobalStrategies.RESTORE)) {
 						for(Item item : getAllItems(config)) {
@@ -218,11 +309,162 @@ public class PersistenceManager extends AbstractEventSubscriber implements Model
 	 * @param modelName the name of the persistence model without file extension
 	 */
 	private void stopEventHandling(String modelName) {
-		persistenceConfigurations.remove(modelName);
-		defaultStrategies.remove(modelName);
+		synchronized (persistenceConfigurations) {
+			persistenceConfigurations.remove(modelName);
+			defaultStrategies.remove(modelName);
+			rebuildRoutingTable();
+		}
 		removeTimers(modelName);
 	}
 
+	/**
+	 * Compiles the persistence configurations of all models into the routing table, which maps
+	 * each item name to the services, aliases and strategies it is persisted with. Cron strategies
+	 * are not part of the table, as they are handled by the scheduled {@link PersistItemsJob}s.
+	 */
+	protected void rebuildRoutingTable() {
+		Map<String, List<PersistenceRoute>> table = new ConcurrentHashMap<String, List<PersistenceRoute>>();
+		synchronized (persistenceConfigurations) {
+			for(Entry<String, List<PersistenceConfiguration>> entry : persistenceConfigurations.entrySet()) {
+				String serviceName = entry.getKey();
+				for(PersistenceConfiguration config : entry.getValue()) {
+					int strategies = getRouteStrategies(serviceName, config);
+					if(strategies==0) continue;
+
+					PersistenceRoute route = new PersistenceRoute(serviceName, config.getAlias(), strategies);
+					for(String itemName : getAllItemNames(config)) {
+						List<PersistenceRoute> routes = table.get(itemName);
+						if(routes==null) {
+							routes = new ArrayList<PersistenceRoute>(1);
+							table.put(itemName, routes);
+						}
+						routes.add(route);
+					}
+				}
+			}
+			// publish the table while still holding the lock, so that a concurrent rebuild cannot overwrite it with an older one
+			routingTable = table;
+		}
+	}
+	
+	/**
+	 * Updates the routes of a single item in the routing table, which is much cheaper than 
+	 * rebuilding the whole table when items are added or removed one by one. The group
+	 * configurations are matched by walking up the groups the item belongs to. 
+	 * 
+	 * @param itemName the name of the item to update the routes for
+	 * @param item the registered item or <code>null</code>, if it has been removed
+	 */
+	protected void updateRoutes(String itemName, Item item) {
+		Set<String> groupNames = item!=null && !(item instanceof GroupItem) ? 
+				getAllGroupNames(item) : Collections.<String>emptySet();
+		synchronized (persistenceConfigurations) {
+			List<PersistenceRoute> routes = null;
+			for(Entry<String, List<PersistenceConfiguration>> entry : persistenceConfigurations.entrySet()) {
+				String serviceName = entry.getKey();
+				for(PersistenceConfiguration config : entry.getValue()) {
+					int strategies = getRouteStrategies(serviceName, config);
+					if(strategies==0 || !appliesTo(config, itemName, item!=null, groupNames)) continue;
+					
+					if(routes==null) {
+						routes = new ArrayList<PersistenceRoute>(1);
+					}
+					routes.add(new PersistenceRoute(serviceName, config.getAlias(), strategies));
+				}
+			}
+			if(routes!=null) {
+				routingTable.put(itemName, routes);
+			} else {
+				routingTable.remove(itemName);
+			}
+		}
+	}
+	
+	/**
+	 * Determines the strategies of a persistence configuration, which are handled through the routing table.
+	 * 
+	 * @param serviceName the service the configuration belongs to
+	 * @param config the persistence configuration entry
+	 * @return the {@link PersistenceRoute} strategy flags of the configuration
+	 */
+	private int getRouteStrategies(String serviceName, PersistenceConfiguration config) {
+		int strategies = 0;
+		if(hasStrategy(serviceName, config, GlobalStrategies.UPDATE)) {
+			strategies |= PersistenceRoute.UPDATE;
+		}
+		if(hasStrategy(serviceName, config, GlobalStrategies.CHANGE)) {
+			strategies |= PersistenceRoute.CHANGE;
+		}
+		if(hasStrategy(serviceName, config, GlobalStrategies.RESTORE)) {
+			strategies |= PersistenceRoute.RESTORE;
+		}
+		return strategies;
+	}
+	
+	/**
+	 * Checks whether a persistence configuration applies to an item in the same way as
+	 * {@link #getAllItemNames(PersistenceConfiguration)} does.
+	 * 
+	 * @param config the persistence configuration entry
+	 * @param itemName the name of the item
+	 * @param registered true, if the item is known to the item registry
+	 * @param groupNames the names of all groups the item is a (nested) member of
+	 * @return true, if the configuration applies to the item
+	 */
+	private boolean appliesTo(PersistenceConfiguration config, String itemName, boolean registered, Set<String> groupNames) {
+		for(EObject itemCfg : config.getItems()) {
+			if (itemCfg instanceof AllConfig && registered && itemRegistry!=null) {
+				return true;
+			}
+			if (itemCfg instanceof ItemConfig && itemName.equals(((ItemConfig) itemCfg).getItem())) {
+				return true;
+			}
+			if (itemCfg instanceof GroupConfig && groupNames.contains(((GroupConfig) itemCfg).getGroup())) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Collects the names of all registered groups an item is a direct or nested member of.
+	 * 
+	 * @param item the item to collect the groups for
+	 * @return the names of all groups of the item
+	 */
+	private Set<String> getAllGroupNames(Item item) {
+		Set<String> groupNames = new HashSet<String>();
+		if(itemRegistry==null) {
+			return groupNames;
+		}
+		List<String> pending = new ArrayList<String>(item.getGroupNames());
+		while(!pending.isEmpty()) {
+			String groupName = pending.remove(pending.size() - 1);
+			if(groupNames.contains(groupName)) continue;
+			try {
+				Item groupItem = itemRegistry.getItem(groupName);
+				if(groupItem instanceof GroupItem) {
+					groupNames.add(groupName);
+					pending.addAll(groupItem.getGroupNames());
+				}
+			} catch (ItemNotFoundException e) {
+				// the group is not (yet) registered, so it does not contain the item
+			}
+		}
+		return groupNames;
+	}
+
+	/**
+	 * Returns the persistence routes for an item.
+	 *
+	 * @param itemName the name of the item
+	 * @return the routes of the item, never <code>null</code>
+	 */
+	protected List<PersistenceRoute> getRoutes(String itemName) {
+		List<PersistenceRoute> routes = routingTable.get(itemName);
+		return routes!=null ? routes : Collections.<PersistenceRoute>emptyList();
+	}
+
 	public void stateChanged(Item item, State oldState, State newState) {
 		handleStateEvent(item, true);
 	}
@@ -238,22 +480,44 @@ public class PersistenceManager extends AbstractEventSubscriber implements Model
 	 * @param onlyChanges true, if it has the change strategy, false otherwise
 	 */
 	private void handleStateEvent(Item item, boolean onlyChanges) {
-		synchronized (persistenceConfigurations) {
-			for(Entry<String, List<PersistenceConfiguration>> entry : persistenceConfigurations.entrySet()) {
-				String serviceName = entry.getKey();
-				if(persistenceServices.containsKey(serviceName)) {				
-					for(PersistenceConfiguration config : entry.getValue()) {
-						if(hasStrategy(serviceName, config, onlyChanges ? GlobalStrategies.CHANGE : GlobalStrategies.UPDATE)) {
-							if(appliesToItem(config, item)) {
-								persistenceServices.get(serviceName).store(item, config.getAlias());
-							}
-						}
-					}
+		List<PersistenceRoute> routes = routingTable.get(item.getName());
+		if(routes!=null) {
+			int strategy = onlyChanges ? PersistenceRoute.CHANGE : PersistenceRoute.UPDATE;
+			for(PersistenceRoute route : routes) {
+				if(route.hasStrategy(strategy) && persistenceServices.containsKey(route.getServiceName())) {
+					store(route.getServiceName(), item, route.getAlias());
 				}
 			}
 		}
 	}
 	
+	/**
+	 * Queues the current state of an item to be stored by a persistence service. Once 
+	 * the state has been accepted, it is also added to the rollups of the item.
+	 * 
+	 * @param serviceName the name of the persistence service to use
+	 * @param item the item to persist
+	 * @param alias the alias under which the item should be persisted
+	 */
+	private void store(String serviceName, Item item, String alias) {
+		PersistenceSample sample = new PersistenceSample(item, alias, item.getState(), new Date());
+		boolean accepted = false;
+		PersistenceQueue queue = persistenceQueues.get(serviceName);
+		if(queue!=null) {
+			accepted = queue.add(sample);
+			if(!accepted && queue.isStopped()) {
+				// the queue has just been replaced, so pass the sample to its successor
+				PersistenceQueue successor = persistenceQueues.get(serviceName);
+				if(successor!=null && successor!=queue) {
+					accepted = successor.add(sample);
+				}
+			}
+		}
+		if(accepted) {
+			RollupStore.getInstance().add(serviceName, alias!=null ? alias : item.getName(), sample.getState(), sample.getTimestamp());
+		}
+	}
+	
 	/**
 	 * Checks if a given persistence configuration entry has a certain strategy for the given service
 	 * 
@@ -276,38 +540,40 @@ public class PersistenceManager extends AbstractEventSubscriber implements Model
 	}
 
 	/**
-	 * Checks if a given persistence configuration entry is relevant for an item
+	 * Retrieves the names of all items for which the persistence configuration applies to.
+	 * Single item configurations are regarded by their name, even if the item does not (yet) exist.
 	 * 
 	 * @param config the persistence configuration entry
-	 * @param item to check if the configuration applies to
-	 * @return true, if the configuration applies to the item
+	 * @return the names of all items that this configuration applies to
 	 */
-	protected boolean appliesToItem(PersistenceConfiguration config, Item item) {
+	protected Set<String> getAllItemNames(PersistenceConfiguration config) {
+		Set<String> itemNames = new HashSet<String>();
 		for(EObject itemCfg : config.getItems()) {
 			if (itemCfg instanceof AllConfig) {
-				return true;
+				if(itemRegistry!=null) {
+					for(Item item : itemRegistry.getItems()) {
+						itemNames.add(item.getName());
+					}
+				}
 			}
 			if (itemCfg instanceof ItemConfig) {
-				ItemConfig singleItemConfig = (ItemConfig) itemCfg;
-				if(item.getName().equals(singleItemConfig.getItem())) {
-					return true;
-				}
+				itemNames.add(((ItemConfig) itemCfg).getItem());
 			}
-			if (itemCfg instanceof GroupConfig) {
-				GroupConfig groupItemCfg = (GroupConfig) itemCfg;
-				String groupName = groupItemCfg.getGroup();
+			if (itemCfg instanceof GroupConfig && itemRegistry!=null) {
+				String groupName = ((GroupConfig) itemCfg).getGroup();
 				try {
 					Item gItem = itemRegistry.getItem(groupName);
 					if (gItem instanceof GroupItem) {
-						GroupItem groupItem = (GroupItem) gItem;
-						if(groupItem.getAllMembers().contains(item)) {
-							return true;
+						for(Item item : ((GroupItem) gItem).getAllMembers()) {
+							itemNames.add(item.getName());
 						}
 					}
-				} catch (Exception e) {}
+				} catch (ItemNotFoundException e) {
+					logger.debug("Item group '{}' does not exist.", groupName);
+				}
 			}
 		}
-		return false;
+		return itemNames;
 	}
 
 	/**
@@ -354,12 +620,28 @@ public class PersistenceManager extends AbstractEventSubscriber implements Model
 	}
 
 	public void allItemsChanged(Collection<String> oldItemNames) {
+		rebuildRoutingTable();
 		for(Item item : itemRegistry.getItems()) {
-			itemAdded(item);
+			registerItem(item);
 		}
 	}
 
 	public void itemAdded(Item item) {
+		if(item instanceof GroupItem) {
+			// the routes of all members might change
+			rebuildRoutingTable();
+		} else {
+			updateRoutes(item.getName(), item);
+		}
+		registerItem(item);
+	}
+
+	/**
+	 * Restores the state of a new item, if required, and starts listening to its state changes.
+	 * 
+	 * @param item the item to register
+	 */
+	private void registerItem(Item item) {
 		initialize(item);
 		if (item instanceof GenericItem) {
 			GenericItem genericItem = (GenericItem) item;
@@ -369,50 +651,49 @@ public class PersistenceManager extends AbstractEventSubscriber implements Model
 
 	/**
 	 * Handles the "restoreOnStartup" strategy for the item.
-	 * If the item state is still undefined when entering this method, all persistence configurations are checked,
-	 * if they have the "restoreOnStartup" strategy configured for the item. If so, the item state will be set
+	 * If the item state is still undefined when entering this method, all persistence routes of the item are checked,
+	 * if they have the "restoreOnStartup" strategy configured. If so, the item state will be set
 	 * to its last persisted value.
 	 * 
 	 * @param item the item to restore the state for
 	 */
 	protected void initialize(Item item) {
-		synchronized (persistenceConfigurations) {
-			// get the last persisted state from the persistence service if no state is yet set
-			if(item.getState().equals(UnDefType.NULL) && item instanceof GenericItem) {
-				for(Entry<String, List<PersistenceConfiguration>> entry : persistenceConfigurations.entrySet()) {
-					String serviceName = entry.getKey();
-					for(PersistenceConfiguration config : entry.getValue()) {
-						if(hasStrategy(serviceName, config, GlobalStrategies.RESTORE)) {
-							if(appliesToItem(config, item)) {
-								PersistenceService service = persistenceServices.get(serviceName);
-								if(service instanceof QueryablePersistenceService) {
-									QueryablePersistenceService queryService = (QueryablePersistenceService) service;
-									FilterCriteria filter = new FilterCriteria().setItemName(item.getName()).setPageSize(1);
-									Iterable<HistoricItem> result = queryService.query(filter);
-									Iterator<HistoricItem> it = result.iterator();
-									if(it.hasNext()) {
-										HistoricItem historicItem = it.next();
-										GenericItem genericItem = (GenericItem) item;
-										genericItem.removeStateChangeListener(this);
-										genericItem.setState(historicItem.getState());
-										genericItem.addStateChangeListener(this);
-										logger.debug("Restored item state from '{}' for item '{}' -> '{}'", 
-												new String[] { DateFormat.getDateTimeInstance().format(historicItem.getTimestamp()), 
-												item.getName(), historicItem.getState().toString() } );
-										return;
-									}
-								} else if(service!=null) {
-									logger.warn("Failed to restore item states as persistence service '{}' can not be queried.", serviceName);
-								}
-							}
+		// get the last persisted state from the persistence service if no state is yet set
+		if(item.getState().equals(UnDefType.NULL) && item instanceof GenericItem) {
+			for(PersistenceRoute route : getRoutes(item.getName())) {
+				if(route.hasStrategy(PersistenceRoute.RESTORE)) {
+					String serviceName = route.getServiceName();
+					PersistenceService service = persistenceServices.get(serviceName);
+					if(service instanceof QueryablePersistenceService) {
+						QueryablePersistenceService queryService = (QueryablePersistenceService) service;
+						FilterCriteria filter = new FilterCriteria().setItemName(item.getName()).setPageSize(1);
+						Iterable<HistoricItem> result = queryService.query(filter);
+						Iterator<HistoricItem> it = result.iterator();
+						if(it.hasNext()) {
+							HistoricItem historicItem = it.next();
+							GenericItem genericItem = (GenericItem) item;
+							genericItem.removeStateChangeListener(this);
+							genericItem.setState(historicItem.getState());
+							genericItem.addStateChangeListener(this);
+							logger.debug("Restored item state from '{}' for item '{}' -> '{}'", 
+									new String[] { DateFormat.getDateTimeInstance().format(historicItem.getTimestamp()), 
+									item.getName(), historicItem.getState().toString() } );
+							return;
 						}
+					} else if(service!=null) {
+						logger.warn("Failed to restore item states as persistence service '{}' can not be queried.", serviceName);
 					}
-				}	
-			}		
+				}
+			}
 		}
 	}
 
 	public void itemRemoved(Item item) {
+		if(item instanceof GroupItem) {
+			rebuildRoutingTable();
+		} else {
+			updateRoutes(item.getName(), null);
+		}
 		if (item instanceof GenericItem) {
 			GenericItem genericItem = (GenericItem) item;
 			genericItem.removeStateChangeListener(this);
@@ -481,6 +762,53 @@ public class PersistenceManager extends AbstractEventSubscriber implements Model
 			logger.warn("Failed to delete cron jobs of group '{}'", persistModelName);
 		}
 	}
-		
+
+	@SuppressWarnings("rawtypes")
+	public void updated(Dictionary config) throws ConfigurationException {
+		if (config != null) {
+			int newQueueSize = (int) getLongValue(config, "queuesize", DEFAULT_QUEUE_SIZE);
+			if (newQueueSize <= 0) {
+				throw new ConfigurationException("queuesize", "The queue size must be greater than 0");
+			}
+			int newBatchSize = (int) getLongValue(config, "batchsize", DEFAULT_BATCH_SIZE);
+			if (newBatchSize <= 0) {
+				throw new ConfigurationException("batchsize", "The batch size must be greater than 0");
+			}
+			long newFlushInterval = getLongValue(config, "flushinterval", DEFAULT_FLUSH_INTERVAL);
+			if (newFlushInterval < 0) {
+				throw new ConfigurationException("flushinterval", "The flush interval must not be negative");
+			}
+			queueSize = newQueueSize;
+			batchSize = newBatchSize;
+			flushInterval = newFlushInterval;
+			String dropPolicyString = (String) config.get("droppolicy");
+			if (StringUtils.isNotBlank(dropPolicyString)) {
+				try {
+					dropPolicy = PersistenceQueue.DropPolicy.valueOf(dropPolicyString.trim().toUpperCase());
+				} catch (IllegalArgumentException e) {
+					throw new ConfigurationException("droppolicy", "Unknown drop policy '" + dropPolicyString + "'");
+				}
+			}
+			
+			// recreate the queues with the new settings
+			for(PersistenceService service : persistenceServices.values()) {
+				startQueue(service);
+			}
+		}
+	}
+	
+	@SuppressWarnings("rawtypes")
+	private static long getLongValue(Dictionary config, String key, long defaultValue) throws ConfigurationException {
+		String valueString = (String) config.get(key);
+		if (StringUtils.isNotBlank(valueString)) {
+			try {
+				return Long.parseLong(valueString.trim());
+			} catch (NumberFormatException e) {
+				throw new ConfigurationException(key, "'" + valueString + "' is not a valid number");
+			}
+		} else {
+			return defaultValue;
+		}
+	}
 
 }
@@ -0,0 +1,294 @@
+/**
+ * openHAB, the open Home Automation Bus.
+ * Copyright (C) 2010-2013, openHAB.org <admin@openhab.org>
+ *
+ * See the contributors.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ * Additional permission under GNU GPL version 3 section 7
+ *
+ * If you modify this Program, or any covered work, by linking or
+ * combining it with Eclipse (or a modified version of that library),
+ * containing parts covered by the terms of the Eclipse Public License
+ * (EPL), the licensors of this Program grant you additional permission
+ * to convey the resulting work.
+ */
+package org.openhab.core.persistence.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.openhab.core.persistence.BatchPersistenceService;
+import org.openhab.core.persistence.PersistenceSample;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A bounded queue of {@link PersistenceSample}s for a single {@link BatchPersistenceService}.
+ * A dedicated worker thread takes the samples from the queue and stores them in batches,
+ * so that slow persistence services do not block the threads which update the item states.
+ * 
+ * <p>If the queue is full, either the oldest or the newest sample is dropped, depending
+ * on the configured {@link DropPolicy}.</p>
+ * 
+ * @author agent
+ * @since 1.3.0
+ */
+public class PersistenceQueue {
+
+	private static final Logger logger = LoggerFactory.getLogger(PersistenceQueue.class);
+
+	/** Enumeration of the samples which can be dropped if the queue is full */
+	public enum DropPolicy {
+		OLDEST, NEWEST
+	}
+	
+	/** the time in milliseconds the worker waits for samples before it checks whether it has been stopped */
+	private static final long STOP_CHECK_INTERVAL = 500;
+
+	/** the time in milliseconds to wait for the worker to store the remaining samples when the queue is stopped */
+	private static final long STOP_TIMEOUT = 10000;
+
+	private final BatchPersistenceService service;
+	
+	private final BlockingQueue<PersistenceSample> queue;
+	
+	/** the maximum number of samples which are stored at once */
+	private final int batchSize;
+	
+	/** the time in milliseconds to wait for further samples before a batch is stored */
+	private final long flushInterval;
+	
+	private final DropPolicy dropPolicy;
+	
+	private final Thread worker;
+
+	private volatile boolean running = true;
+	
+	/** guards the transition to the stopped state, so that no sample is added after the worker has drained the queue */
+	private final ReadWriteLock stopLock = new ReentrantReadWriteLock();
+	
+	private final AtomicLong droppedSamples = new AtomicLong();
+	
+	private final AtomicLong storedSamples = new AtomicLong();
+	
+	private final AtomicLong flushCount = new AtomicLong();
+
+	private final AtomicLong totalFlushDuration = new AtomicLong();
+	
+	private volatile long lastFlushDuration = 0;
+	
+	public PersistenceQueue(BatchPersistenceService service, int capacity, int batchSize, long flushInterval, DropPolicy dropPolicy) {
+		this.service = service;
+		this.queue = new ArrayBlockingQueue<PersistenceSample>(capacity);
+		this.batchSize = batchSize;
+		this.flushInterval = flushInterval;
+		this.dropPolicy = dropPolicy;
+		this.worker = new Thread(new Worker(), service.getName() + " Persistence Queue");
+		this.worker.setDaemon(true);
+	}
+	
+	/**
+	 * Starts the worker thread of this queue.
+	 */
+	public void start() {
+		worker.start();
+	}
+
+	/**
+	 * Stops this queue. No further samples are accepted, the samples which are still
+	 * queued are stored and the method waits for the worker thread to terminate, so
+	 * that a succeeding queue of the same service does not store samples in parallel.
+	 */
+	public void stop() {
+		stopLock.writeLock().lock();
+		try {
+			running = false;
+		} finally {
+			stopLock.writeLock().unlock();
+		}
+		if(worker.isAlive() && Thread.currentThread()!=worker) {
+			try {
+				worker.join(STOP_TIMEOUT);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			if(worker.isAlive()) {
+				logger.warn("Persistence queue of service '{}' did not store its remaining {} samples within {}ms",
+						new Object[] { service.getName(), queue.size(), STOP_TIMEOUT });
+			}
+		}
+	}
+	
+	/**
+	 * @return <code>true</code>, if this queue has been stopped and does not accept samples any longer
+	 */
+	public boolean isStopped() {
+		return !running;
+	}
+	
+	/**
+	 * Adds a sample to the queue. If the queue is full, a sample is dropped
+	 * according to the drop policy.
+	 * 
+	 * @param sample the sample to add
+	 * @return <code>true</code>, if the sample has been queued, <code>false</code> if it
+	 * has been dropped or the queue has already been stopped
+	 */
+	public boolean add(PersistenceSample sample) {
+		stopLock.readLock().lock();
+		try {
+			if(!running) {
+				return false;
+			}
+			if(!queue.offer(sample)) {
+				if(dropPolicy==DropPolicy.OLDEST) {
+					// make room by dropping the oldest sample; retry, as the worker might have emptied the queue meanwhile
+					while(!queue.offer(sample)) {
+						if(queue.poll()!=null) {
+							dropped(1);
+						}
+					}
+				} else {
+					dropped(1);
+					return false;
+				}
+			}
+			return true;
+		} finally {
+			stopLock.readLock().unlock();
+		}
+	}
+	
+	private void dropped(long count) {
+		if(droppedSamples.getAndAdd(count)==0) {
+			logger.warn("Persistence queue of service '{}' is full, samples are dropped.", service.getName());
+		}
+	}
+	
+	/**
+	 * @return the number of samples which are currently waiting to be stored
+	 */
+	public int getQueueSize() {
+		return queue.size();
+	}
+
+	/**
+	 * @return the number of samples which have been dropped as the queue was full
+	 */
+	public long getDroppedSamples() {
+		return droppedSamples.get();
+	}
+
+	/**
+	 * @return the number of samples which have been passed to the persistence service
+	 */
+	public long getStoredSamples() {
+		return storedSamples.get();
+	}
+
+	/**
+	 * @return the time in milliseconds the persistence service took to store the last batch
+	 */
+	public long getLastFlushDuration() {
+		return lastFlushDuration;
+	}
+	
+	/**
+	 * @return the average time in milliseconds the persistence service took to store a batch
+	 */
+	public long getAverageFlushDuration() {
+		long count = flushCount.get();
+		return count > 0 ? totalFlushDuration.get() / count : 0;
+	}
+	
+	/**
+	 * Passes the given samples to the persistence service.
+	 * 
+	 * @param batch the samples to store
+	 */
+	private void flush(List<PersistenceSample> batch) {
+		long startTime = System.currentTimeMillis();
+		try {
+			service.store(new ArrayList<PersistenceSample>(batch));
+		} catch(RuntimeException e) {
+			logger.error("Error while storing samples with persistence service '" + service.getName() + "'", e);
+		}
+		long duration = System.currentTimeMillis() - startTime;
+		lastFlushDuration = duration;
+		totalFlushDuration.addAndGet(duration);
+		flushCount.incrementAndGet();
+		storedSamples.addAndGet(batch.size());
+		logger.trace("Storing {} samples with persistence service '{}' took {}ms ({} samples queued, {} dropped)",
+				new Object[] { batch.size(), service.getName(), duration, queue.size(), droppedSamples.get() });
+		batch.clear();
+	}
+	
+	/**
+	 * The worker takes the samples from the queue and stores them. It waits for at 
+	 * most the flush interval to fill up a batch. Once the queue has been stopped,
+	 * the worker stores the remaining samples and terminates.
+	 */
+	private class Worker implements Runnable {
+		
+		public void run() {
+			List<PersistenceSample> batch = new ArrayList<PersistenceSample>(batchSize);
+			try {
+				while(running) {
+					PersistenceSample first = queue.poll(STOP_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+					if(first==null) {
+						continue;
+					}
+					batch.add(first);
+					long deadline = System.currentTimeMillis() + flushInterval;
+					while(batch.size() < batchSize) {
+						if(queue.drainTo(batch, batchSize - batch.size()) > 0) {
+							continue;
+						}
+						long timeout = deadline - System.currentTimeMillis();
+						if(timeout <= 0) {
+							break;
+						}
+						PersistenceSample sample = queue.poll(timeout, TimeUnit.MILLISECONDS);
+						if(sample==null) {
+							break;
+						}
+						batch.add(sample);
+					}
+					flush(batch);
+				}
+			} catch (InterruptedException e) {
+				logger.debug("Persistence queue of service '{}' has been interrupted", service.getName());
+			}
+			
+			// no samples are added after the queue has been stopped, so store all remaining ones before terminating
+			queue.drainTo(batch);
+			while(!batch.isEmpty()) {
+				List<PersistenceSample> chunk = new ArrayList<PersistenceSample>(batch.subList(0, Math.min(batchSize, batch.size())));
+				batch.subList(0, chunk.size()).clear();
+				flush(chunk);
+			}
+			logger.debug("Persistence queue of service '{}' has been shut down", service.getName());
+		}
+	}
+
+}
@@ -0,0 +1,88 @@
+/**
+ * openHAB, the open Home Automation Bus.
+ * Copyright (C) 2010-2013, openHAB.org <admin@openhab.org>
+ *
+ * See the contributors.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ * Additional permission under GNU GPL version 3 section 7
+ *
+ * If you modify this Program, or any covered work, by linking or
+ * combining it with Eclipse (or a modified version of that library),
+ * containing parts covered by the terms of the Eclipse Public License
+ * (EPL), the licensors of this Program grant you additional permission
+ * to convey the resulting work.
+ */
+package org.openhab.core.persistence.internal;
+
+/**
+ * A persistence route describes that an item is persisted by a certain persistence service
+ * under a certain alias. The strategies of the persistence configuration are compiled into a
+ * bitmask, so that they can be checked without iterating over the strategy lists of the model.
+ * 
+ * @author agent
+ * @since 1.3.0
+ *
+ */
+public class PersistenceRoute {
+
+	/** flag for the "everyUpdate" strategy */
+	public static final int UPDATE = 1;
+
+	/** flag for the "everyChange" strategy */
+	public static final int CHANGE = 2;
+
+	/** flag for the "restoreOnStartup" strategy */
+	public static final int RESTORE = 4;
+
+	private final String serviceName;
+	private final String alias;
+	private final int strategies;
+
+	public PersistenceRoute(String serviceName, String alias, int strategies) {
+		this.serviceName = serviceName;
+		this.alias = alias;
+		this.strategies = strategies;
+	}
+
+	public String getServiceName() {
+		return serviceName;
+	}
+
+	public String getAlias() {
+		return alias;
+	}
+
+	public int getStrategies() {
+		return strategies;
+	}
+
+	/**
+	 * Checks whether this route has a certain strategy
+	 * 
+	 * @param strategy one of {@link #UPDATE}, {@link #CHANGE} or {@link #RESTORE}
+	 * @return true, if the route has the given strategy
+	 */
+	public boolean hasStrategy(int strategy) {
+		return (strategies & strategy) != 0;
+	}
+
+	@Override
+	public String toString() {
+		return serviceName + (alias!=null ? " (" + alias + ")" : "") + " [" + strategies + "]";
+	}
+
+}
@@ -0,0 +1,158 @@
+/**
+ * openHAB, the open Home Automation Bus.
+ * Copyright (C) 2010-2013, openHAB.org <admin@openhab.org>
+ *
+ * See the contributors.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ * Additional permission under GNU GPL version 3 section 7
+ *
+ * If you modify this Program, or any covered work, by linking or
+ * combining it with Eclipse (or a modified version of that library),
+ * containing parts covered by the terms of the Eclipse Public License
+ * (EPL), the licensors of this Program grant you additional permission
+ * to convey the resulting work.
+ */
+package org.openhab.core.persistence.internal;
+
+import java.lang.reflect.Constructor;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openhab.core.items.GenericItem;
+import org.openhab.core.items.GroupItem;
+import org.openhab.core.items.Item;
+import org.openhab.core.persistence.BatchPersistenceService;
+import org.openhab.core.persistence.PersistenceSample;
+import org.openhab.core.persistence.PersistenceService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Adapts a {@link PersistenceService}, which is not able to store batches, to a
+ * {@link BatchPersistenceService}, so that its samples can be passed through a
+ * {@link PersistenceQueue} as well. The samples are stored one by one.
+ * 
+ * <p>As such services read the state from the item, each sample is passed as a
+ * snapshot: a new item of the same class, which has the state of the sample. Items
+ * which cannot be copied (e.g. groups, whose state conversions depend on their 
+ * members) are passed as they are.</p>
+ * 
+ * @author agent
+ * @since 1.3.0
+ */
+public class PersistenceServiceAdapter implements BatchPersistenceService {
+
+	private static final Logger logger = LoggerFactory.getLogger(PersistenceServiceAdapter.class);
+	
+	private final PersistenceService service;
+	
+	/** 
+	 * the name constructors of the item classes or <code>null</code>, if a class cannot be copied; 
+	 * it is only used by the worker of the queue
+	 */
+	private final Map<Class<?>, Constructor<?>> constructors = new HashMap<Class<?>, Constructor<?>>();
+	
+	public PersistenceServiceAdapter(PersistenceService service) {
+		this.service = service;
+	}
+	
+	/**
+	 * @return the adapted persistence service
+	 */
+	public PersistenceService getService() {
+		return service;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public String getName() {
+		return service.getName();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void store(Item item, String alias) {
+		service.store(item, alias);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void store(Item item) {
+		service.store(item);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void store(List<PersistenceSample> samples) {
+		for(PersistenceSample sample : samples) {
+			try {
+				service.store(createSnapshot(sample), sample.getAlias());
+			} catch(RuntimeException e) {
+				logger.error("Error while storing " + sample + " with persistence service '" + service.getName() + "'", e);
+			}
+		}
+	}
+	
+	/**
+	 * Creates an item of the same class as the item of the sample, which has the state of the sample.
+	 * 
+	 * @param sample the sample to create the item for
+	 * @return the copy of the item or the item itself, if it cannot be copied or still has the state of the sample
+	 */
+	protected Item createSnapshot(PersistenceSample sample) {
+		Item item = sample.getItem();
+		if(item.getState()==sample.getState()) {
+			return item;
+		}
+		Constructor<?> constructor = getConstructor(item.getClass());
+		if(constructor==null) {
+			return item;
+		}
+		try {
+			GenericItem snapshot = (GenericItem) constructor.newInstance(item.getName());
+			snapshot.getGroupNames().addAll(item.getGroupNames());
+			snapshot.setState(sample.getState());
+			return snapshot;
+		} catch (Exception e) {
+			logger.debug("Cannot copy item '{}': {}", item.getName(), e.toString());
+			constructors.put(item.getClass(), null);
+			return item;
+		}
+	}
+	
+	private Constructor<?> getConstructor(Class<?> itemClass) {
+		if(constructors.containsKey(itemClass)) {
+			return constructors.get(itemClass);
+		}
+		Constructor<?> constructor = null;
+		if(GenericItem.class.isAssignableFrom(itemClass) && !GroupItem.class.isAssignableFrom(itemClass)) {
+			try {
+				constructor = itemClass.getConstructor(String.class);
+			} catch (NoSuchMethodException e) {
+				logger.debug("Item class '{}' has no name constructor, its items are not copied", itemClass.getName());
+			}
+		}
+		constructors.put(itemClass, constructor);
+		return constructor;
+	}
+
+}
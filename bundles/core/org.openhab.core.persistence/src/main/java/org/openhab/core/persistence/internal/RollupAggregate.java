@@ -0,0 +1,225 @@
+/**
+ * openHAB, the open Home Automation Bus.
+ * Copyright (C) 2010-2013, openHAB.org <admin@openhab.org>
+ *
+ * See the contributors.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ * Additional permission under GNU GPL version 3 section 7
+ *
+ * If you modify this Program, or any covered work, by linking or
+ * combining it with Eclipse (or a modified version of that library),
+ * containing parts covered by the terms of the Eclipse Public License
+ * (EPL), the licensors of this Program grant you additional permission
+ * to convey the resulting work.
+ */
+package org.openhab.core.persistence.internal;
+
+import java.util.Date;
+
+import org.openhab.core.library.types.DecimalType;
+import org.openhab.core.types.State;
+
+/**
+ * The aggregated values of all samples of an item within a certain period of time,
+ * as it is returned by an {@link ItemRollup}.
+ * 
+ * @author agent
+ * @since 1.3.0
+ */
+public class RollupAggregate {
+
+	/** the time since which all stored states are contained in the aggregate */
+	final long start;
+	
+	/** the number of samples with a numeric state */
+	int count = 0;
+	
+	/** the number of samples with a non-numeric state */
+	int otherCount = 0;
+	
+	double sum = 0;
+	
+	/** the minimum state as it has been stored, i.e. a {@link DecimalType} or one of its subclasses */
+	State minimum;
+	long minimumTime;
+	
+	/** the maximum state as it has been stored, i.e. a {@link DecimalType} or one of its subclasses */
+	State maximum;
+	long maximumTime;
+	
+	/** the earliest and the latest state of all samples, regardless of their type */
+	State first;
+	long firstTime;
+	State last;
+	long lastTime;
+	
+	/** true, if two successive states of the aggregated samples differ from each other */
+	boolean changed = false;
+	
+	RollupAggregate(long start) {
+		this.start = start;
+	}
+	
+	/**
+	 * Adds a single state to the aggregate.
+	 * 
+	 * @param state the state to add
+	 * @param time the time at which the state has been stored
+	 */
+	public void add(State state, long time) {
+		if(state instanceof DecimalType) {
+			add(1, 0, ((DecimalType) state).doubleValue(), state, time, state, time);
+		} else {
+			add(0, 1, 0, null, 0, null, 0);
+		}
+		addChanges(state, time, state, time, false);
+	}
+	
+	/**
+	 * Adds the values of a bucket or another aggregate, which covers an adjacent period, to this aggregate.
+	 */
+	void add(RollupAggregate other) {
+		add(other.count, other.otherCount, other.sum, other.minimum, other.minimumTime, other.maximum, other.maximumTime);
+		if(other.first!=null) {
+			addChanges(other.first, other.firstTime, other.last, other.lastTime, other.changed);
+		}
+	}
+	
+	private void add(int count, int otherCount, double sum, State minimum, long minimumTime, State maximum, long maximumTime) {
+		this.count += count;
+		this.otherCount += otherCount;
+		this.sum += sum;
+		// on equal values the earliest occurrence is kept, regardless of the order of adding
+		if(minimum!=null && (this.minimum==null || isBefore(compare(minimum, this.minimum), minimumTime, this.minimumTime))) {
+			this.minimum = minimum;
+			this.minimumTime = minimumTime;
+		}
+		if(maximum!=null && (this.maximum==null || isBefore(compare(this.maximum, maximum), maximumTime, this.maximumTime))) {
+			this.maximum = maximum;
+			this.maximumTime = maximumTime;
+		}
+	}
+	
+	/**
+	 * Adds the first and the last state of a period. The period is either before or after the
+	 * period of this aggregate, so that only the states at the border have to be compared.
+	 */
+	private void addChanges(State first, long firstTime, State last, long lastTime, boolean changed) {
+		if(this.first==null) {
+			this.first = first;
+			this.firstTime = firstTime;
+			this.last = last;
+			this.lastTime = lastTime;
+			this.changed = changed;
+			return;
+		}
+		this.changed |= changed;
+		if(lastTime <= this.firstTime) {
+			this.changed |= !last.equals(this.first);
+			this.first = first;
+			this.firstTime = firstTime;
+		} else if(firstTime >= this.lastTime) {
+			this.changed |= !this.last.equals(first);
+			this.last = last;
+			this.lastTime = lastTime;
+		} else {
+			// the periods overlap, so a change is assumed, unless all states are equal
+			this.changed |= !first.equals(this.first) || !last.equals(this.first) || !this.last.equals(this.first);
+			if(firstTime < this.firstTime) {
+				this.first = first;
+				this.firstTime = firstTime;
+			}
+			if(lastTime > this.lastTime) {
+				this.last = last;
+				this.lastTime = lastTime;
+			}
+		}
+	}
+
+	private static boolean isBefore(int comparison, long time, long otherTime) {
+		return comparison < 0 || (comparison == 0 && time < otherTime);
+	}
+	
+	private static int compare(State state, State otherState) {
+		return ((DecimalType) state).compareTo((DecimalType) otherState);
+	}
+
+	/**
+	 * @return the time since which all stored states are contained in the aggregate
+	 */
+	public Date getStart() {
+		return new Date(start);
+	}
+
+	/**
+	 * @return the number of samples with a numeric state
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * @return the number of samples, whose state is not numeric
+	 */
+	public int getOtherCount() {
+		return otherCount;
+	}
+
+	/**
+	 * @return the sum of all numeric states
+	 */
+	public double getSum() {
+		return sum;
+	}
+
+	/**
+	 * @return the minimum numeric state as it has been stored or <code>null</code>, if there is none
+	 */
+	public State getMinimum() {
+		return minimum;
+	}
+
+	/**
+	 * @return the time at which the minimum state has been stored
+	 */
+	public Date getMinimumTime() {
+		return new Date(minimumTime);
+	}
+
+	/**
+	 * @return the maximum numeric state as it has been stored or <code>null</code>, if there is none
+	 */
+	public State getMaximum() {
+		return maximum;
+	}
+
+	/**
+	 * @return the time at which the maximum state has been stored
+	 */
+	public Date getMaximumTime() {
+		return new Date(maximumTime);
+	}
+	
+	/**
+	 * @return true, if the state has changed between two successive samples, which
+	 * is checked for numeric and non-numeric states alike
+	 */
+	public boolean hasChanged() {
+		return changed;
+	}
+
+}
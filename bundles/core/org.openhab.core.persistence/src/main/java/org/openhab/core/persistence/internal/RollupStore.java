@@ -0,0 +1,227 @@
+/**
+ * openHAB, the open Home Automation Bus.
+ * Copyright (C) 2010-2013, openHAB.org <admin@openhab.org>
+ *
+ * See the contributors.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ * Additional permission under GNU GPL version 3 section 7
+ *
+ * If you modify this Program, or any covered work, by linking or
+ * combining it with Eclipse (or a modified version of that library),
+ * containing parts covered by the terms of the Eclipse Public License
+ * (EPL), the licensors of this Program grant you additional permission
+ * to convey the resulting work.
+ */
+package org.openhab.core.persistence.internal;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.openhab.core.persistence.HistoricCursor;
+import org.openhab.core.types.State;
+
+/**
+ * This class keeps the {@link ItemRollup}s of all items for each persistence service. 
+ * It is fed with every state that is stored through the persistence framework, so that
+ * aggregates like averages or maxima can be answered without querying all raw values
+ * from the persistence service. The rollups are kept in memory only and are therefore 
+ * only complete for the time since they have been enabled, older periods can be
+ * added from the persistence services by {@link #backfill(String, String, Date, HistoricCursor)}.
+ * 
+ * <p>The rollups are only kept for the services they have been enabled for. They aggregate
+ * the raw samples, so they should only be enabled for services which store and return these
+ * samples unchanged. The aggregates of a service, which consolidates its values like rrd4j,
+ * would differ from the aggregates of its queries.</p>
+ * 
+ * @author agent
+ * @since 1.3.0
+ */
+public class RollupStore {
+
+	private static final RollupStore instance = new RollupStore();
+	
+	/** the rollups by service and item name */
+	private final ConcurrentMap<String, ItemRollup> rollups = new ConcurrentHashMap<String, ItemRollup>();
+	
+	/** the names of the services, for which the rollups are enabled, with the time at which they have been enabled */
+	private volatile Map<String, Long> enabledServices = Collections.emptyMap();
+	
+	/** the number of retained minute, hour and day buckets of each rollup */
+	private volatile int[] capacities = new int[] { 
+		ItemRollup.DEFAULT_MINUTE_BUCKETS, ItemRollup.DEFAULT_HOUR_BUCKETS, ItemRollup.DEFAULT_DAY_BUCKETS };
+	
+	
+	/**
+	 * @return the single instance of the rollup store
+	 */
+	public static RollupStore getInstance() {
+		return instance;
+	}
+	
+	/**
+	 * @param serviceName the name of the persistence service
+	 * @return true, if the rollups are enabled for the given service
+	 */
+	public boolean isEnabled(String serviceName) {
+		return enabledServices.containsKey(serviceName);
+	}
+	
+	/**
+	 * Enables the rollups for the given services and disables them for all others. Disabling 
+	 * the rollups of a service discards its aggregated values.
+	 * 
+	 * @param serviceNames the names of the services, whose states should be aggregated
+	 */
+	public synchronized void setEnabledServices(Collection<String> serviceNames) {
+		Map<String, Long> newEnabledServices = new HashMap<String, Long>();
+		for(String serviceName : serviceNames) {
+			Long enabledSince = enabledServices.get(serviceName);
+			newEnabledServices.put(serviceName, enabledSince!=null ? enabledSince : System.currentTimeMillis());
+		}
+		for(String serviceName : enabledServices.keySet()) {
+			if(!newEnabledServices.containsKey(serviceName)) {
+				clear(serviceName);
+			}
+		}
+		enabledServices = newEnabledServices;
+	}
+	
+	/**
+	 * Sets the number of buckets, which each rollup retains per tier. The memory of a 
+	 * rollup grows with the number of buckets, in which states have been stored. Changing
+	 * the capacities discards all aggregated values.
+	 * 
+	 * @param minuteBuckets the number of retained minute buckets
+	 * @param hourBuckets the number of retained hour buckets
+	 * @param dayBuckets the number of retained day buckets
+	 */
+	public synchronized void setCapacities(int minuteBuckets, int hourBuckets, int dayBuckets) {
+		int[] newCapacities = new int[] { minuteBuckets, hourBuckets, dayBuckets };
+		if(!Arrays.equals(capacities, newCapacities)) {
+			capacities = newCapacities;
+			rollups.clear();
+			Map<String, Long> newEnabledServices = new HashMap<String, Long>();
+			for(String serviceName : enabledServices.keySet()) {
+				newEnabledServices.put(serviceName, System.currentTimeMillis());
+			}
+			enabledServices = newEnabledServices;
+		}
+	}
+	
+	/**
+	 * Adds a state, which has been stored by a persistence service.
+	 * 
+	 * @param serviceName the name of the persistence service
+	 * @param name the name under which the state has been stored, i.e. the alias or the item name
+	 * @param state the stored state
+	 * @param timestamp the time at which the state has been stored
+	 */
+	public void add(String serviceName, String name, State state, Date timestamp) {
+		if(isEnabled(serviceName)) {
+			getRollup(serviceName, name).add(state, timestamp.getTime());
+		}
+	}
+	
+	/**
+	 * Returns the aggregate of all states which have been stored since a certain point in time. 
+	 * 
+	 * @param serviceName the name of the persistence service
+	 * @param name the name under which the states have been stored
+	 * @param since the begin of the period to aggregate
+	 * @return the aggregate or <code>null</code>, if rollups are disabled or do not cover the given period
+	 */
+	public RollupAggregate aggregate(String serviceName, String name, Date since) {
+		if(isEnabled(serviceName)) {
+			return getRollup(serviceName, name).aggregate(since.getTime(), System.currentTimeMillis());
+		} else {
+			return null;
+		}
+	}
+	
+	/**
+	 * Checks whether the rollups retain the buckets of a period, so that they can provide 
+	 * aggregates for it once the states before {@link #getCoveredSince(String, String)} have 
+	 * been added by {@link #backfill(String, String, Date, HistoricCursor)}.
+	 * 
+	 * @param serviceName the name of the persistence service
+	 * @param name the name under which the states have been stored
+	 * @param since the begin of the period
+	 * @return true, if the period is retained
+	 */
+	public boolean isRetained(String serviceName, String name, Date since) {
+		return isEnabled(serviceName) && getRollup(serviceName, name).isRetained(since.getTime(), System.currentTimeMillis());
+	}
+	
+	/**
+	 * Returns the time since which all states, which have been stored for an item, are 
+	 * contained in its rollup.
+	 * 
+	 * @param serviceName the name of the persistence service
+	 * @param name the name under which the states have been stored
+	 * @return the begin of the covered period
+	 */
+	public Date getCoveredSince(String serviceName, String name) {
+		return new Date(getRollup(serviceName, name).getCoveredSince());
+	}
+	
+	/**
+	 * Adds the states of the period before the rollup of an item has been complete. 
+	 * 
+	 * @param serviceName the name of the persistence service
+	 * @param name the name under which the states have been stored
+	 * @param since the begin of the period
+	 * @param states a cursor over all states which have been stored by the service between the 
+	 * given time and {@link #getCoveredSince(String, String)}
+	 */
+	public void backfill(String serviceName, String name, Date since, HistoricCursor states) {
+		if(isEnabled(serviceName)) {
+			getRollup(serviceName, name).backfill(states, since.getTime());
+		}
+	}
+	
+	private ItemRollup getRollup(String serviceName, String name) {
+		String key = serviceName + ":" + name;
+		ItemRollup rollup = rollups.get(key);
+		if(rollup==null) {
+			int[] capacities = this.capacities;
+			Long enabledSince = enabledServices.get(serviceName);
+			ItemRollup newRollup = new ItemRollup(enabledSince!=null ? enabledSince : System.currentTimeMillis(), 
+					capacities[0], capacities[1], capacities[2]);
+			rollup = rollups.putIfAbsent(key, newRollup);
+			if(rollup==null) {
+				rollup = newRollup;
+			}
+		}
+		return rollup;
+	}
+	
+	private void clear(String serviceName) {
+		String prefix = serviceName + ":";
+		for(String key : rollups.keySet()) {
+			if(key.startsWith(prefix)) {
+				rollups.remove(key);
+			}
+		}
+	}
+	
+}
@@ -0,0 +1,114 @@
+/**
+ * openHAB, the open Home Automation Bus.
+ * Copyright (C) 2010-2013, openHAB.org <admin@openhab.org>
+ *
+ * See the contributors.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ * Additional permission under GNU GPL version 3 section 7
+ *
+ * If you modify this Program, or any covered work, by linking or
+ * combining it with Eclipse (or a modified version of that library),
+ * containing parts covered by the terms of the Eclipse Public License
+ * (EPL), the licensors of this Program grant you additional permission
+ * to convey the resulting work.
+ */
+package org.openhab.core.events;
+
+import java.util.Dictionary;
+import java.util.Hashtable;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+import org.openhab.core.library.types.OnOffType;
+import org.openhab.core.types.Command;
+import org.openhab.core.types.EventType;
+import org.openhab.core.types.State;
+import org.osgi.service.event.Event;
+
+
+/**
+ * @author agent
+ * @since 1.3.0
+ */
+public class EventTopicsTest {
+	
+	@Test
+	public void testCreateTopic() {
+		Assert.assertEquals("openhab/update/Light", EventTopics.createTopic(EventType.UPDATE, "Light"));
+		Assert.assertEquals("openhab/command/Light", EventTopics.createTopic(EventType.COMMAND, "Light"));
+		Assert.assertSame(EventTopics.createTopic(EventType.UPDATE, "Light"), EventTopics.createTopic(EventType.UPDATE, "Light"));
+	}
+
+	@Test
+	public void testParseTopic() {
+		Assert.assertEquals(EventType.UPDATE, EventTopics.getEventType("openhab/update/Light"));
+		Assert.assertEquals(EventType.COMMAND, EventTopics.getEventType("openhab/command/Light"));
+		Assert.assertEquals("Light", EventTopics.getItemName("openhab/command/Light"));
+		
+		Assert.assertNull(EventTopics.getEventType("openhab/update"));
+		Assert.assertNull(EventTopics.getEventType("openhab/update/"));
+		Assert.assertNull(EventTopics.getEventType("openhab/other/Light"));
+		Assert.assertNull(EventTopics.getEventType("other/update/Light"));
+		Assert.assertNull(EventTopics.getItemName("openhab/other/Light"));
+	}
+	
+	@Test
+	public void testSubscriberDispatch() {
+		TestSubscriber subscriber = new TestSubscriber();
+		
+		subscriber.handleEvent(createEvent(EventTopics.createTopic(EventType.UPDATE, "Light"), "state", OnOffType.ON));
+		Assert.assertEquals("Light", subscriber.itemName);
+		Assert.assertEquals(OnOffType.ON, subscriber.state);
+		Assert.assertNull(subscriber.command);
+		
+		subscriber.handleEvent(createEvent(EventTopics.createTopic(EventType.COMMAND, "Switch"), "command", OnOffType.OFF));
+		Assert.assertEquals("Switch", subscriber.itemName);
+		Assert.assertEquals(OnOffType.OFF, subscriber.command);
+
+		subscriber.itemName = null;
+		subscriber.handleEvent(createEvent("openhab/other/Light", "state", OnOffType.ON));
+		Assert.assertNull(subscriber.itemName);
+	}
+	
+	private Event createEvent(String topic, String key, Object value) {
+		Dictionary<String, Object> properties = new Hashtable<String, Object>();
+		properties.put("item", EventTopics.getItemName(topic) != null ? EventTopics.getItemName(topic) : "Light");
+		properties.put(key, value);
+		return new Event(topic, properties);
+	}
+	
+	class TestSubscriber extends AbstractEventSubscriber {
+		
+		String itemName;
+		State state;
+		Command command;
+
+		@Override
+		public void receiveUpdate(String itemName, State newState) {
+			this.itemName = itemName;
+			this.state = newState;
+		}
+		
+		@Override
+		public void receiveCommand(String itemName, Command command) {
+			this.itemName = itemName;
+			this.command = command;
+		}
+	}
+
+}
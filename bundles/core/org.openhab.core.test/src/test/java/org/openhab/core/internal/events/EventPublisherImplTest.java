@@ -0,0 +1,241 @@
+/**
+ * openHAB, the open Home Automation Bus.
+ * Copyright (C) 2010-2013, openHAB.org <admin@openhab.org>
+ *
+ * See the contributors.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ * Additional permission under GNU GPL version 3 section 7
+ *
+ * If you modify this Program, or any covered work, by linking or
+ * combining it with Eclipse (or a modified version of that library),
+ * containing parts covered by the terms of the Eclipse Public License
+ * (EPL), the licensors of this Program grant you additional permission
+ * to convey the resulting work.
+ */
+package org.openhab.core.internal.events;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openhab.core.library.types.DecimalType;
+import org.openhab.core.library.types.OnOffType;
+import org.osgi.service.cm.ConfigurationException;
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventAdmin;
+
+
+/**
+ * @author agent
+ * @since 1.3.0
+ */
+public class EventPublisherImplTest {
+	
+	private EventPublisherImpl publisher;
+	
+	private TestEventAdmin eventAdmin;
+	
+	@Before
+	public void setup() {
+		publisher = new EventPublisherImpl();
+		eventAdmin = new TestEventAdmin();
+		publisher.setEventAdmin(eventAdmin);
+	}
+	
+	@After
+	public void tearDown() {
+		publisher.deactivate();
+	}
+	
+	@Test
+	public void testNoCoalescingByDefault() {
+		for (int i = 0; i < 10; i++) {
+			publisher.postUpdate("Item", OnOffType.ON);
+		}
+		Assert.assertEquals(10, eventAdmin.getEvents().size());
+		Assert.assertEquals(0L, publisher.getSuppressedUpdates());
+		Assert.assertEquals(0L, publisher.getConflatedUpdates());
+	}
+
+	@Test
+	public void testDeduplication() throws ConfigurationException {
+		publisher.updated(config("dedup", "60000"));
+		publisher.postUpdate("Item", OnOffType.ON);
+		publisher.postUpdate("Item", OnOffType.ON);
+		publisher.postUpdate("Other", OnOffType.ON);
+		publisher.postUpdate("Item", OnOffType.OFF);
+		publisher.postUpdate("Item", OnOffType.OFF);
+		
+		Assert.assertEquals(3, eventAdmin.getEvents().size());
+		Assert.assertEquals(OnOffType.OFF, eventAdmin.getEvents().get(2).getProperty("state"));
+		Assert.assertEquals(2L, publisher.getSuppressedUpdates());
+	}
+	
+	@Test
+	public void testCommandResetsDeduplication() throws ConfigurationException {
+		publisher.updated(config("dedup", "60000"));
+		publisher.postUpdate("Item", OnOffType.ON);
+		publisher.postCommand("Item", OnOffType.OFF);
+		publisher.postUpdate("Item", OnOffType.ON);
+		
+		Assert.assertEquals(3, eventAdmin.getEvents().size());
+		Assert.assertEquals(0L, publisher.getSuppressedUpdates());
+	}
+
+	@Test
+	public void testDeduplicationWindow() throws ConfigurationException, InterruptedException {
+		publisher.updated(config("dedup", "20"));
+		publisher.postUpdate("Item", OnOffType.ON);
+		Thread.sleep(50L);
+		publisher.postUpdate("Item", OnOffType.ON);
+		
+		Assert.assertEquals(2, eventAdmin.getEvents().size());
+	}
+	
+	@Test
+	public void testConflation() throws ConfigurationException, InterruptedException {
+		publisher.updated(config("conflate", "100"));
+		publisher.postUpdate("Item", new DecimalType(1));
+		publisher.postUpdate("Item", new DecimalType(2));
+		publisher.postUpdate("Item", new DecimalType(3));
+		
+		// the first update is delivered immediately, the latest one at the end of the window
+		Assert.assertEquals(1, eventAdmin.getEvents().size());
+		Assert.assertEquals(new DecimalType(1), eventAdmin.getEvents().get(0).getProperty("state"));
+		eventAdmin.awaitEvents(2);
+		Assert.assertEquals(2, eventAdmin.getEvents().size());
+		Assert.assertEquals(new DecimalType(3), eventAdmin.getEvents().get(1).getProperty("state"));
+		Assert.assertEquals(1L, publisher.getConflatedUpdates());
+	}
+	
+	@Test
+	public void testCommandsAreNotConflated() throws ConfigurationException {
+		publisher.updated(config("dedup", "60000"));
+		publisher.updated(config("conflate", "60000"));
+		publisher.postCommand("Item", OnOffType.ON);
+		publisher.postCommand("Item", OnOffType.ON);
+		publisher.sendCommand("Item", OnOffType.ON);
+		
+		Assert.assertEquals(3, eventAdmin.getEvents().size());
+	}
+	
+	@Test
+	public void testCommandDeliversPendingUpdate() throws ConfigurationException {
+		publisher.updated(config("conflate", "60000"));
+		publisher.postUpdate("Item", new DecimalType(1));
+		publisher.postUpdate("Item", new DecimalType(2));
+		publisher.postCommand("Item", OnOffType.ON);
+		
+		List<Event> events = eventAdmin.getEvents();
+		Assert.assertEquals(3, events.size());
+		Assert.assertEquals(new DecimalType(2), events.get(1).getProperty("state"));
+		Assert.assertEquals(OnOffType.ON, events.get(2).getProperty("command"));
+		
+		// the update must not be delivered a second time
+		publisher.deactivate();
+		Assert.assertEquals(3, eventAdmin.getEvents().size());
+	}
+	
+	@Test
+	public void testDisablingConflationDeliversPendingUpdates() throws ConfigurationException {
+		publisher.updated(config("conflate", "60000"));
+		publisher.postUpdate("Item", new DecimalType(1));
+		publisher.postUpdate("Item", new DecimalType(2));
+		publisher.postUpdate("Other", new DecimalType(3));
+		Assert.assertEquals(2, eventAdmin.getEvents().size());
+		
+		publisher.updated(config("conflate", "0"));
+		List<Event> events = eventAdmin.getEvents();
+		Assert.assertEquals(3, events.size());
+		Assert.assertEquals(new DecimalType(2), events.get(2).getProperty("state"));
+		
+		// a new window starts with an immediate delivery again
+		publisher.updated(config("conflate", "60000"));
+		publisher.postUpdate("Item", new DecimalType(4));
+		Assert.assertEquals(4, eventAdmin.getEvents().size());
+	}
+	
+	@Test
+	public void testBurst() throws ConfigurationException, InterruptedException {
+		publisher.updated(config("conflate", "50"));
+		int updates = 10000;
+		int items = 10;
+		for (int i = 0; i < updates; i++) {
+			publisher.postUpdate("Item" + (i % items), new DecimalType(i));
+		}
+		
+		// switching conflation off delivers the pending updates
+		publisher.updated(config("conflate", "0"));
+		
+		List<Event> events = eventAdmin.getEvents();
+		Assert.assertEquals(updates, events.size() + publisher.getConflatedUpdates());
+		Map<Object, Object> lastStates = new HashMap<Object, Object>();
+		for (Event event : events) {
+			lastStates.put(event.getProperty("item"), event.getProperty("state"));
+		}
+		for (int i = updates - items; i < updates; i++) {
+			Assert.assertEquals(new DecimalType(i), lastStates.get("Item" + (i % items)));
+		}
+	}
+	
+	@Test(expected=ConfigurationException.class)
+	public void testInvalidConfiguration() throws ConfigurationException {
+		publisher.updated(config("dedup", "abc"));
+	}
+	
+	private Dictionary<String, Object> config(String key, String value) {
+		Dictionary<String, Object> config = new Hashtable<String, Object>();
+		config.put(key, value);
+		return config;
+	}
+	
+	class TestEventAdmin implements EventAdmin {
+		
+		private final List<Event> events = Collections.synchronizedList(new ArrayList<Event>());
+
+		public void postEvent(Event event) {
+			events.add(event);
+		}
+
+		public void sendEvent(Event event) {
+			events.add(event);
+		}
+		
+		List<Event> getEvents() {
+			synchronized (events) {
+				return new ArrayList<Event>(events);
+			}
+		}
+		
+		void awaitEvents(int count) throws InterruptedException {
+			long end = System.currentTimeMillis() + 5000L;
+			while (events.size() < count && System.currentTimeMillis() < end) {
+				Thread.sleep(10L);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,188 @@
+/**
+ * openHAB, the open Home Automation Bus.
+ * Copyright (C) 2010-2013, openHAB.org <admin@openhab.org>
+ *
+ * See the contributors.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ * Additional permission under GNU GPL version 3 section 7
+ *
+ * If you modify this Program, or any covered work, by linking or
+ * combining it with Eclipse (or a modified version of that library),
+ * containing parts covered by the terms of the Eclipse Public License
+ * (EPL), the licensors of this Program grant you additional permission
+ * to convey the resulting work.
+ */
+package org.openhab.core.internal.items;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openhab.core.items.GenericItem;
+import org.openhab.core.items.GroupItem;
+import org.openhab.core.items.Item;
+import org.openhab.core.items.ItemNotFoundException;
+import org.openhab.core.items.ItemProvider;
+import org.openhab.core.items.ItemsChangeListener;
+import org.openhab.core.types.Command;
+import org.openhab.core.types.State;
+
+
+/**
+ * @author agent
+ */
+public class ItemRegistryImplTest {
+	
+	private ItemRegistryImpl registry;
+	
+	private TestItemProvider provider;
+	
+	@Before
+	public void setup() {
+		provider = new TestItemProvider();
+		provider.items.add(new TestItem("Light_Kitchen"));
+		provider.items.add(new TestItem("Light_Living"));
+		provider.items.add(new TestItem("Temperature"));
+		provider.items.add(new GroupItem("Lights"));
+		registry = new ItemRegistryImpl();
+		registry.addItemProvider(provider);
+	}
+	
+	@Test
+	public void testGetItem() throws ItemNotFoundException {
+		assertEquals("Temperature", registry.getItem("Temperature").getName());
+		assertEquals("Light_Living", registry.getItem("Light_Liv.*").getName());
+	}
+	
+	@Test(expected=ItemNotFoundException.class)
+	public void testGetUnknownItem() throws ItemNotFoundException {
+		registry.getItem("Unknown");
+	}
+	
+	@Test
+	public void testGetItemsByPattern() {
+		assertEquals(2, registry.getItems("Light_*").size());
+		assertEquals(1, registry.getItems("Temp?rature").size());
+		assertEquals(0, registry.getItems("Humidity*").size());
+		assertEquals(4, registry.getItems().size());
+	}
+	
+	@Test(expected=ItemNotFoundException.class)
+	public void testItemRemoved() throws ItemNotFoundException {
+		Item item = registry.getItem("Temperature");
+		provider.items.remove(item);
+		registry.itemRemoved(provider, item);
+		registry.getItem("Temperature");
+	}
+	
+	@Test
+	public void testItemAdded() throws ItemNotFoundException {
+		TestItem item = new TestItem("Light_Bath");
+		item.getGroupNames().add("Lights");
+		provider.items.add(item);
+		registry.itemAdded(provider, item);
+		assertSame(item, registry.getItem("Light_Bath"));
+		assertTrue(((GroupItem) registry.getItem("Lights")).getMembers().contains(item));
+	}
+	
+	@Test
+	public void testAllItemsChanged() throws ItemNotFoundException {
+		provider.items.clear();
+		TestItem item = new TestItem("Humidity");
+		provider.items.add(item);
+		registry.allItemsChanged(provider, null);
+		assertSame(item, registry.getItem("Humidity"));
+		assertEquals(0, registry.getItems("Light_*").size());
+	}
+	
+	@Test
+	public void testGroupMembersOfLargeModel() throws ItemNotFoundException {
+		int groupCount = 500;
+		int itemCount = 10000;
+		TestItemProvider largeProvider = new TestItemProvider();
+		for(int i = 0; i < itemCount; i++) {
+			TestItem item = new TestItem("Sensor_" + i);
+			item.getGroupNames().add("Group_" + (i % groupCount));
+			largeProvider.items.add(item);
+			// register half of the groups before and half after their members
+			if(i == itemCount / 2) {
+				for(int g = 0; g < groupCount; g += 2) {
+					largeProvider.items.add(new GroupItem("Group_" + g));
+				}
+			}
+		}
+		for(int g = 1; g < groupCount; g += 2) {
+			largeProvider.items.add(new GroupItem("Group_" + g));
+		}
+		registry.addItemProvider(largeProvider);
+		
+		for(int g = 0; g < groupCount; g++) {
+			GroupItem group = (GroupItem) registry.getItem("Group_" + g);
+			assertEquals(itemCount / groupCount, group.getMembers().size());
+		}
+	}
+	
+	@Test
+	public void testItemProviderRemoved() {
+		registry.removeItemProvider(provider);
+		assertEquals(0, registry.getItems().size());
+		assertEquals(0, registry.getItems("*").size());
+	}
+	
+	
+	class TestItemProvider implements ItemProvider {
+		
+		List<Item> items = new ArrayList<Item>();
+
+		public Collection<Item> getItems() {
+			return new ArrayList<Item>(items);
+		}
+
+		public void addItemChangeListener(ItemsChangeListener listener) {
+		}
+
+		public void removeItemChangeListener(ItemsChangeListener listener) {
+		}
+		
+	}
+	
+	class TestItem extends GenericItem {
+
+		public TestItem(String name) {
+			super(name);
+		}
+
+		@Override
+		public List<Class<? extends State>> getAcceptedDataTypes() {
+			return null;
+		}
+
+		@Override
+		public List<Class<? extends Command>> getAcceptedCommandTypes() {
+			return null;
+		}
+		
+	}
+	
+
+}
@@ -0,0 +1,184 @@
+/**
+ * openHAB, the open Home Automation Bus.
+ * Copyright (C) 2010-2013, openHAB.org <admin@openhab.org>
+ *
+ * See the contributors.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ * Additional permission under GNU GPL version 3 section 7
+ *
+ * If you modify this Program, or any covered work, by linking or
+ * combining it with Eclipse (or a modified version of that library),
+ * containing parts covered by the terms of the Eclipse Public License
+ * (EPL), the licensors of this Program grant you additional permission
+ * to convey the resulting work.
+ */
+package org.openhab.core.internal.items;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.Assert;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openhab.core.items.GenericItem;
+import org.openhab.core.items.GroupItem;
+import org.openhab.core.items.Item;
+import org.openhab.core.items.ItemNotFoundException;
+import org.openhab.core.items.ItemRegistry;
+import org.openhab.core.types.Command;
+import org.openhab.core.types.State;
+import org.openhab.core.types.UnDefType;
+
+
+/**
+ * @author agent
+ * @since 1.3.0
+ */
+public class ItemUpdaterTest {
+	
+	private ItemUpdater itemUpdater;
+	
+	private Map<String, Item> items;
+	
+	@Before
+	public void setup() {
+		items = new HashMap<String, Item>();
+		itemUpdater = new ItemUpdater();
+		itemUpdater.setItemRegistry((ItemRegistry) Proxy.newProxyInstance(getClass().getClassLoader(), 
+			new Class<?>[] { ItemRegistry.class }, new InvocationHandler() {
+				public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+					if (method.getName().equals("getItem")) {
+						Item item = items.get(args[0]);
+						if (item == null) {
+							throw new ItemNotFoundException((String) args[0]);
+						}
+						return item;
+					}
+					return null;
+				}
+			}));
+	}
+	
+	@Test
+	public void testAcceptedStates() {
+		TestItem item = new TestItem("item", TestState.class, UnDefType.class);
+		items.put(item.getName(), item);
+		
+		itemUpdater.receiveUpdate("item", new TestState());
+		Assert.assertEquals(TestState.class, item.getState().getClass());
+		
+		// subclasses of accepted types are accepted as well
+		itemUpdater.receiveUpdate("item", new SubTestState());
+		Assert.assertEquals(SubTestState.class, item.getState().getClass());
+		
+		itemUpdater.receiveUpdate("item", UnDefType.UNDEF);
+		Assert.assertEquals(UnDefType.UNDEF, item.getState());
+		
+		itemUpdater.receiveUpdate("item", new OtherState());
+		Assert.assertEquals(UnDefType.UNDEF, item.getState());
+	}
+	
+	@Test
+	public void testItemsOfSameClassWithDifferentTypes() {
+		TestItem item1 = new TestItem("item1", TestState.class);
+		TestItem item2 = new TestItem("item2", OtherState.class);
+		items.put(item1.getName(), item1);
+		items.put(item2.getName(), item2);
+		
+		for (int i = 0; i < 3; i++) {
+			itemUpdater.receiveUpdate("item1", new OtherState());
+			itemUpdater.receiveUpdate("item2", new OtherState());
+			Assert.assertEquals(UnDefType.NULL, item1.getState());
+			Assert.assertEquals(OtherState.class, item2.getState().getClass());
+		}
+	}
+	
+	@Test
+	public void testGroupsWithDifferentTypes() {
+		GroupItem group1 = new GroupItem("group1");
+		group1.addMember(new TestItem("item1", TestState.class, OtherState.class));
+		GroupItem group2 = new GroupItem("group2");
+		group2.addMember(new TestItem("item2", OtherState.class));
+		items.put(group1.getName(), group1);
+		items.put(group2.getName(), group2);
+		
+		itemUpdater.receiveUpdate("group1", new TestState());
+		itemUpdater.receiveUpdate("group2", new TestState());
+		Assert.assertEquals(TestState.class, group1.getState().getClass());
+		Assert.assertEquals(UnDefType.NULL, group2.getState());
+		
+		// the accepted types of a group change with its members
+		TestItem member = new TestItem("item3", OtherState.class);
+		group1.addMember(member);
+		itemUpdater.receiveUpdate("group1", new OtherState());
+		itemUpdater.receiveUpdate("group1", new TestState());
+		Assert.assertEquals(OtherState.class, group1.getState().getClass());
+		
+		group1.removeMember(member);
+		itemUpdater.receiveUpdate("group1", new TestState());
+		Assert.assertEquals(TestState.class, group1.getState().getClass());
+	}
+	
+	@Test
+	public void testUnknownItem() {
+		itemUpdater.receiveUpdate("unknown", new TestState());
+	}
+	
+	static class TestState implements State {
+		public String format(String pattern) {
+			return toString();
+		}
+	}
+	
+	static class SubTestState extends TestState {
+	}
+	
+	static class OtherState implements State {
+		public String format(String pattern) {
+			return toString();
+		}
+	}
+	
+	static class TestItem extends GenericItem {
+		
+		private final List<Class<? extends State>> acceptedDataTypes = new ArrayList<Class<? extends State>>();
+
+		public TestItem(String name, Class<?>... acceptedDataTypes) {
+			super(name);
+			for (Class<?> type : acceptedDataTypes) {
+				this.acceptedDataTypes.add(type.asSubclass(State.class));
+			}
+		}
+
+		@Override
+		public List<Class<? extends State>> getAcceptedDataTypes() {
+			return acceptedDataTypes;
+		}
+
+		@Override
+		public List<Class<? extends Command>> getAcceptedCommandTypes() {
+			return null;
+		}
+	}
+
+}
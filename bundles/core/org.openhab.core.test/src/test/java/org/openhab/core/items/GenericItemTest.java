@@ -0,0 +1,203 @@
+/**
+ * openHAB, the open Home Automation Bus.
+ * Copyright (C) 2010-2013, openHAB.org <admin@openhab.org>
+ *
+ * See the contributors.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ * Additional permission under GNU GPL version 3 section 7
+ *
+ * If you modify this Program, or any covered work, by linking or
+ * combining it with Eclipse (or a modified version of that library),
+ * containing parts covered by the terms of the Eclipse Public License
+ * (EPL), the licensors of this Program grant you additional permission
+ * to convey the resulting work.
+ */
+package org.openhab.core.items;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.Assert;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openhab.core.types.Command;
+import org.openhab.core.types.State;
+import org.openhab.core.types.UnDefType;
+
+
+/**
+ * @author agent
+ * @since 1.3.0
+ */
+public class GenericItemTest {
+	
+	private TestItem item;
+	
+	@Before
+	public void setup() {
+		item = new TestItem("item");
+	}
+	
+	@Test
+	public void testNotification() {
+		CountingListener listener = new CountingListener();
+		item.addStateChangeListener(listener);
+		item.addStateChangeListener(listener);
+		
+		item.setState(UnDefType.UNDEF);
+		item.setState(UnDefType.UNDEF);
+		item.setState(UnDefType.NULL);
+		
+		Assert.assertEquals(1, item.getListenerCount());
+		Assert.assertEquals(3, listener.updates.get());
+		Assert.assertEquals(2, listener.changes.get());
+		
+		item.removeStateChangeListener(listener);
+		item.setState(UnDefType.UNDEF);
+		Assert.assertEquals(0, item.getListenerCount());
+		Assert.assertEquals(3, listener.updates.get());
+	}
+
+	@Test
+	public void testListenerRemovesItselfDuringNotification() {
+		final CountingListener other = new CountingListener();
+		StateChangeListener selfRemoving = new StateChangeListener() {
+			public void stateUpdated(Item item, State state) {
+				((GenericItem) item).removeStateChangeListener(this);
+				((GenericItem) item).removeStateChangeListener(other);
+			}
+			public void stateChanged(Item item, State oldState, State newState) {
+			}
+		};
+		item.addStateChangeListener(selfRemoving);
+		item.addStateChangeListener(other);
+		
+		item.setState(UnDefType.UNDEF);
+		
+		// the running notification still reaches all listeners of its snapshot
+		Assert.assertEquals(1, other.updates.get());
+		Assert.assertEquals(0, item.getListenerCount());
+	}
+	
+	@Test
+	public void testListenersAreWeaklyReferenced() throws InterruptedException {
+		CountingListener strongListener = new CountingListener();
+		item.addStateChangeListener(strongListener);
+		for (int i = 0; i < 10; i++) {
+			item.addStateChangeListener(new CountingListener());
+		}
+		
+		for (int i = 0; i < 50 && item.getListenerCount() > 1; i++) {
+			System.gc();
+			Thread.sleep(10L);
+		}
+		Assert.assertEquals(1, item.getListenerCount());
+		
+		item.setState(UnDefType.UNDEF);
+		Assert.assertEquals(1, strongListener.updates.get());
+	}
+	
+	@Test
+	public void testConcurrentRegistration() throws InterruptedException {
+		final int threads = 8;
+		final int iterations = 2000;
+		final CountingListener permanent = new CountingListener();
+		item.addStateChangeListener(permanent);
+		
+		final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(threads + 1);
+		
+		for (int t = 0; t < threads; t++) {
+			new Thread() {
+				public void run() {
+					try {
+						start.await();
+						for (int i = 0; i < iterations; i++) {
+							CountingListener listener = new CountingListener();
+							item.addStateChangeListener(listener);
+							item.removeStateChangeListener(listener);
+						}
+					} catch (Throwable e) {
+						errors.add(e);
+					} finally {
+						done.countDown();
+					}
+				}
+			}.start();
+		}
+		new Thread() {
+			public void run() {
+				try {
+					start.await();
+					for (int i = 0; i < iterations; i++) {
+						item.setState(i % 2 == 0 ? UnDefType.UNDEF : UnDefType.NULL);
+					}
+				} catch (Throwable e) {
+					errors.add(e);
+				} finally {
+					done.countDown();
+				}
+			}
+		}.start();
+		
+		start.countDown();
+		done.await();
+		
+		Assert.assertTrue(errors.toString(), errors.isEmpty());
+		Assert.assertEquals(iterations, permanent.updates.get());
+		Assert.assertEquals(iterations, permanent.changes.get());
+		Assert.assertEquals(1, item.getListenerCount());
+	}
+	
+	static class CountingListener implements StateChangeListener {
+		
+		final AtomicInteger updates = new AtomicInteger();
+		
+		final AtomicInteger changes = new AtomicInteger();
+		
+		public void stateUpdated(Item item, State state) {
+			updates.incrementAndGet();
+		}
+
+		public void stateChanged(Item item, State oldState, State newState) {
+			changes.incrementAndGet();
+		}
+	}
+	
+	static class TestItem extends GenericItem {
+
+		public TestItem(String name) {
+			super(name);
+		}
+
+		@Override
+		public List<Class<? extends State>> getAcceptedDataTypes() {
+			return null;
+		}
+
+		@Override
+		public List<Class<? extends Command>> getAcceptedCommandTypes() {
+			return null;
+		}
+	}
+
+}
@@ -30,6 +30,7 @@ package org.openhab.core.items;
 
 import static org.junit.Assert.fail;
 
+import java.util.Arrays;
 import java.util.List;
 
 import junit.framework.Assert;
@@ -38,6 +39,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.openhab.core.types.Command;
 import org.openhab.core.types.State;
+import org.openhab.core.types.UnDefType;
 
 
 /**
@@ -74,6 +76,51 @@ public class GroupItemTest {
 	}
 	
 	
+	@Test
+	public void testGetAllMembersAfterNestedChange() {
+		Assert.assertEquals(5, rootGroupItem.getAllMembers().size());
+		GroupItem subGroup = (GroupItem) rootGroupItem.getMembers().get(3);
+		TestItem newMember = new TestItem("subGroup member 4");
+		subGroup.addMember(newMember);
+		Assert.assertEquals(6, rootGroupItem.getAllMembers().size());
+		subGroup.removeMember(newMember);
+		Assert.assertEquals(5, rootGroupItem.getAllMembers().size());
+	}
+	
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testAcceptedTypesAfterNestedChange() {
+		GroupItem group = new GroupItem("group");
+		GroupItem subGroup = new GroupItem("subGroup");
+		group.addMember(subGroup);
+		subGroup.addMember(new TypedTestItem("member1", UnDefType.class, TestState.class));
+		Assert.assertEquals(Arrays.asList(UnDefType.class, TestState.class), group.getAcceptedDataTypes());
+		Assert.assertSame(group.getAcceptedDataTypes(), group.getAcceptedDataTypes());
+		
+		TypedTestItem newMember = new TypedTestItem("member2", TestState.class);
+		subGroup.addMember(newMember);
+		Assert.assertEquals(Arrays.asList(TestState.class), group.getAcceptedDataTypes());
+		Assert.assertEquals(Arrays.asList(TestState.class), group.getAcceptedCommandTypes());
+		
+		subGroup.removeMember(newMember);
+		Assert.assertEquals(Arrays.asList(UnDefType.class, TestState.class), group.getAcceptedDataTypes());
+	}
+	
+	@Test(expected=UnsupportedOperationException.class)
+	public void testAcceptedDataTypesAreUnmodifiable() {
+		GroupItem group = new GroupItem("group");
+		group.addMember(new TypedTestItem("member1", UnDefType.class, TestState.class));
+		group.getAcceptedDataTypes().clear();
+	}
+	
+	@Test(expected=UnsupportedOperationException.class)
+	public void testAcceptedCommandTypesAreUnmodifiable() {
+		GroupItem group = new GroupItem("group");
+		group.addMember(new TypedTestItem("member1", UnDefType.class, TestState.class));
+		group.getAcceptedCommandTypes().clear();
+	}
+	
+	
 	class TestItem extends GenericItem {
 
 		public TestItem(String name) {
@@ -92,5 +139,35 @@ public class GroupItemTest {
 		
 	}
 	
+	class TypedTestItem extends GenericItem {
+		
+		private final List<Class<? extends State>> acceptedDataTypes;
+
+		private final List<Class<? extends Command>> acceptedCommandTypes;
+
+		public TypedTestItem(String name, Class<? extends State>... acceptedDataTypes) {
+			super(name);
+			this.acceptedDataTypes = Arrays.asList(acceptedDataTypes);
+			this.acceptedCommandTypes = this.acceptedDataTypes.contains(TestState.class) ?
+				Arrays.<Class<? extends Command>>asList(TestState.class) : Arrays.<Class<? extends Command>>asList();
+		}
+
+		@Override
+		public List<Class<? extends State>> getAcceptedDataTypes() {
+			return acceptedDataTypes;
+		}
+
+		@Override
+		public List<Class<? extends Command>> getAcceptedCommandTypes() {
+			return acceptedCommandTypes;
+		}
+	}
+	
+	static class TestState implements State, Command {
+		public String format(String pattern) {
+			return toString();
+		}
+	}
+	
 
 }
@@ -0,0 +1,209 @@
+/**
+ * openHAB, the open Home Automation Bus.
+ * Copyright (C) 2010-2013, openHAB.org <admin@openhab.org>
+ *
+ * See the contributors.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ * Additional permission under GNU GPL version 3 section 7
+ *
+ * If you modify this Program, or any covered work, by linking or
+ * combining it with Eclipse (or a modified version of that library),
+ * containing parts covered by the terms of the Eclipse Public License
+ * (EPL), the licensors of this Program grant you additional permission
+ * to convey the resulting work.
+ */
+package org.openhab.core.service;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+/**
+ * @author agent
+ * @since 1.3.0
+ */
+public class AbstractActiveServiceTest {
+	
+	private TestService service;
+	
+	@Before
+	public void setup() {
+		service = new TestService(20L);
+	}
+	
+	@After
+	public void tearDown() {
+		service.deactivate();
+	}
+	
+	@Test
+	public void testRefreshCycle() throws InterruptedException {
+		service.activate();
+		Assert.assertTrue(service.isRunning());
+		Assert.assertTrue(service.awaitExecutions(3));
+		Assert.assertTrue(service.getExecutionStatistics().getExecutions() >= 3);
+		Assert.assertEquals("TestService", service.threadName);
+	}
+	
+	@Test
+	public void testShutdown() throws InterruptedException {
+		service.activate();
+		Assert.assertTrue(service.awaitExecutions(1));
+		service.shutdown();
+		Assert.assertFalse(service.isRunning());
+		
+		Thread.sleep(50L);
+		int executions = service.executions.get();
+		Thread.sleep(100L);
+		Assert.assertEquals(executions, service.executions.get());
+	}
+
+	@Test
+	public void testShutdownFlag() throws InterruptedException {
+		service.activate();
+		Assert.assertTrue(service.awaitExecutions(1));
+		service.shutdown = true;
+		
+		Thread.sleep(100L);
+		Assert.assertFalse(service.isRunning());
+	}
+
+	@Test
+	public void testRestart() throws InterruptedException {
+		service.activate();
+		Assert.assertTrue(service.awaitExecutions(1));
+		service.deactivate();
+		service.activate();
+		Assert.assertTrue(service.isRunning());
+		Assert.assertTrue(service.awaitExecutions(3));
+	}
+	
+	@Test
+	public void testNotConfigured() {
+		service.configured = false;
+		service.activate();
+		Assert.assertFalse(service.isRunning());
+	}
+	
+	@Test
+	public void testExceptionDoesNotStopRefresh() throws InterruptedException {
+		service.failing = true;
+		service.activate();
+		Assert.assertTrue(service.awaitExecutions(3));
+		Assert.assertTrue(service.isRunning());
+	}
+	
+	@Test
+	public void testOverrun() throws InterruptedException {
+		service = new TestService(1L);
+		service.executionTime = 20L;
+		service.activate();
+		// an execution is recorded when it has finished, i.e. before the next one starts
+		Assert.assertTrue(service.awaitExecutions(3));
+		service.deactivate();
+		Assert.assertTrue(service.getExecutionStatistics().getOverruns() >= 2);
+		Assert.assertTrue(service.getExecutionStatistics().getMaxTime() >= 20L);
+	}
+	
+	@Test
+	public void testStatistics() {
+		ExecutionStatistics statistics = new ExecutionStatistics();
+		statistics.record(5L, false);
+		statistics.record(50L, false);
+		statistics.record(50L, false);
+		statistics.record(20000L, true);
+		
+		Assert.assertEquals(4L, statistics.getExecutions());
+		Assert.assertEquals(1L, statistics.getOverruns());
+		Assert.assertEquals(20000L, statistics.getMaxTime());
+		Assert.assertEquals(5026L, statistics.getAverageTime());
+		long[] histogram = statistics.getHistogram();
+		Assert.assertEquals(1L, histogram[0]);
+		Assert.assertEquals(2L, histogram[1]);
+		Assert.assertEquals(0L, histogram[2]);
+		Assert.assertEquals(0L, histogram[3]);
+		Assert.assertEquals(1L, histogram[4]);
+		
+		statistics.reset();
+		Assert.assertEquals(0L, statistics.getExecutions());
+		Assert.assertEquals(0L, statistics.getHistogram()[1]);
+	}
+	
+	
+	class TestService extends AbstractActiveService {
+		
+		final AtomicInteger executions = new AtomicInteger();
+		final CountDownLatch latch = new CountDownLatch(3);
+		final long refreshInterval;
+		volatile boolean configured = true;
+		volatile boolean failing = false;
+		volatile long executionTime = 0L;
+		volatile String threadName;
+		
+		public TestService(long refreshInterval) {
+			this.refreshInterval = refreshInterval;
+		}
+		
+		boolean awaitExecutions(int count) throws InterruptedException {
+			long end = System.currentTimeMillis() + 5000L;
+			while (executions.get() < count && System.currentTimeMillis() < end) {
+				latch.await(10L, TimeUnit.MILLISECONDS);
+			}
+			return executions.get() >= count;
+		}
+
+		@Override
+		public boolean isProperlyConfigured() {
+			return configured;
+		}
+
+		@Override
+		protected void execute() {
+			threadName = Thread.currentThread().getName();
+			executions.incrementAndGet();
+			latch.countDown();
+			if (executionTime > 0) {
+				try {
+					Thread.sleep(executionTime);
+				} catch (InterruptedException e) {
+				}
+			}
+			if (failing) {
+				throw new IllegalStateException("test");
+			}
+		}
+
+		@Override
+		protected long getRefreshInterval() {
+			return refreshInterval;
+		}
+
+		@Override
+		protected String getName() {
+			return "TestService";
+		}
+		
+	}
+
+}
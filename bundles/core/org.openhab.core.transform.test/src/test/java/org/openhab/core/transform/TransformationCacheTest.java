@@ -0,0 +1,156 @@
+/**
+ * openHAB, the open Home Automation Bus.
+ * Copyright (C) 2010-2013, openHAB.org <admin@openhab.org>
+ *
+ * See the contributors.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ * Additional permission under GNU GPL version 3 section 7
+ *
+ * If you modify this Program, or any covered work, by linking or
+ * combining it with Eclipse (or a modified version of that library),
+ * containing parts covered by the terms of the Eclipse Public License
+ * (EPL), the licensors of this Program grant you additional permission
+ * to convey the resulting work.
+ */
+package org.openhab.core.transform;
+
+import java.io.File;
+import java.io.IOException;
+
+import junit.framework.Assert;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+/**
+ * @author agent
+ * @since 1.3.0
+ */
+public class TransformationCacheTest {
+	
+	private File file;
+	
+	private int compilations;
+	
+	@Before
+	public void setup() throws IOException {
+		file = File.createTempFile("transformation", ".txt");
+		compilations = 0;
+	}
+	
+	@After
+	public void tearDown() {
+		file.delete();
+	}
+
+	@Test
+	public void testArtifactsAreCached() throws TransformationException {
+		TransformationCache<String> cache = new TransformationCache<String>(10) {
+			@Override
+			protected String compile(String function) {
+				compilations++;
+				return function.toUpperCase();
+			}
+		};
+		
+		Assert.assertEquals("A", cache.get("a"));
+		Assert.assertEquals("A", cache.get("a"));
+		Assert.assertEquals("B", cache.get("b"));
+		Assert.assertEquals(2, compilations);
+		
+		cache.clear();
+		Assert.assertEquals("A", cache.get("a"));
+		Assert.assertEquals(3, compilations);
+	}
+	
+	@Test
+	public void testLeastRecentlyUsedArtifactsAreEvicted() throws TransformationException {
+		TransformationCache<String> cache = new TransformationCache<String>(2) {
+			@Override
+			protected String compile(String function) {
+				compilations++;
+				return function;
+			}
+		};
+		
+		cache.get("a");
+		cache.get("b");
+		cache.get("a");
+		cache.get("c");
+		Assert.assertEquals(2, cache.size());
+		Assert.assertEquals(3, compilations);
+		
+		// "b" has been evicted, "a" has not
+		cache.get("a");
+		Assert.assertEquals(3, compilations);
+		cache.get("b");
+		Assert.assertEquals(4, compilations);
+	}
+	
+	@Test
+	public void testChangedFilesAreCompiledAgain() throws Exception {
+		TransformationCache<String> cache = new TransformationCache<String>(10) {
+			@Override
+			protected File getFile(String function) {
+				return file;
+			}
+			@Override
+			protected String compile(String function) throws TransformationException {
+				compilations++;
+				try {
+					return FileUtils.readFileToString(file);
+				} catch (IOException e) {
+					throw new TransformationException("cannot read file", e);
+				}
+			}
+		};
+		
+		FileUtils.writeStringToFile(file, "first");
+		Assert.assertEquals("first", cache.get("file"));
+		Assert.assertEquals("first", cache.get("file"));
+		Assert.assertEquals(1, compilations);
+		
+		FileUtils.writeStringToFile(file, "second content");
+		Assert.assertEquals("second content", cache.get("file"));
+		
+		// same size, but a different modification time
+		FileUtils.writeStringToFile(file, "third  content");
+		file.setLastModified(file.lastModified() + 2000L);
+		Assert.assertEquals("third  content", cache.get("file"));
+		Assert.assertEquals(3, compilations);
+	}
+	
+	@Test(expected=TransformationException.class)
+	public void testCompilationErrorsAreNotCached() throws TransformationException {
+		TransformationCache<String> cache = new TransformationCache<String>(10) {
+			@Override
+			protected String compile(String function) throws TransformationException {
+				throw new TransformationException("invalid function");
+			}
+		};
+		try {
+			cache.get("a");
+		} catch (TransformationException e) {
+			Assert.assertEquals(0, cache.size());
+		}
+		cache.get("a");
+	}
+	
+}
@@ -0,0 +1,97 @@
+/**
+ * openHAB, the open Home Automation Bus.
+ * Copyright (C) 2010-2013, openHAB.org <admin@openhab.org>
+ *
+ * See the contributors.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ * Additional permission under GNU GPL version 3 section 7
+ *
+ * If you modify this Program, or any covered work, by linking or
+ * combining it with Eclipse (or a modified version of that library),
+ * containing parts covered by the terms of the Eclipse Public License
+ * (EPL), the licensors of this Program grant you additional permission
+ * to convey the resulting work.
+ */
+package org.openhab.core.transform.internal;
+
+import java.io.File;
+import java.io.IOException;
+
+import junit.framework.Assert;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openhab.config.core.ConfigConstants;
+import org.openhab.core.transform.TransformationException;
+import org.openhab.core.transform.internal.service.MapTransformationService;
+
+
+/**
+ * @author agent
+ * @since 1.3.0
+ */
+public class MapTransformationServiceTest {
+
+	private MapTransformationService processor;
+	
+	private File configFolder;
+	
+	private File mapFile;
+	
+	@Before
+	public void init() throws IOException {
+		configFolder = File.createTempFile("configurations", "");
+		configFolder.delete();
+		mapFile = new File(configFolder, TransformationActivator.TRANSFORM_FOLDER_NAME + File.separator + "test.map");
+		mapFile.getParentFile().mkdirs();
+		System.setProperty(ConfigConstants.CONFIG_DIR_PROG_ARGUMENT, configFolder.getPath());
+		processor = new MapTransformationService();
+	}
+	
+	@After
+	public void tearDown() throws IOException {
+		System.clearProperty(ConfigConstants.CONFIG_DIR_PROG_ARGUMENT);
+		FileUtils.deleteDirectory(configFolder);
+	}
+	
+	@Test
+	public void testTransformByMap() throws Exception {
+		FileUtils.writeStringToFile(mapFile, "CLOSED=closed\nOPEN=open\n");
+		
+		Assert.assertEquals("closed", processor.transform("test.map", "CLOSED"));
+		Assert.assertEquals("open", processor.transform("test.map", "OPEN"));
+		Assert.assertEquals("", processor.transform("test.map", "UNKNOWN"));
+	}
+
+	@Test
+	public void testChangedMapIsReloaded() throws Exception {
+		FileUtils.writeStringToFile(mapFile, "CLOSED=closed\n");
+		Assert.assertEquals("closed", processor.transform("test.map", "CLOSED"));
+		
+		FileUtils.writeStringToFile(mapFile, "CLOSED=shut\n");
+		mapFile.setLastModified(mapFile.lastModified() + 2000L);
+		Assert.assertEquals("shut", processor.transform("test.map", "CLOSED"));
+	}
+	
+	@Test(expected=TransformationException.class)
+	public void testMissingMap() throws TransformationException {
+		processor.transform("missing.map", "CLOSED");
+	}
+
+}
@@ -0,0 +1,202 @@
+/**
+ * openHAB, the open Home Automation Bus.
+ * Copyright (C) 2010-2013, openHAB.org <admin@openhab.org>
+ *
+ * See the contributors.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ * Additional permission under GNU GPL version 3 section 7
+ *
+ * If you modify this Program, or any covered work, by linking or
+ * combining it with Eclipse (or a modified version of that library),
+ * containing parts covered by the terms of the Eclipse Public License
+ * (EPL), the licensors of this Program grant you additional permission
+ * to convey the resulting work.
+ */
+package org.openhab.core.transform.internal;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openhab.core.transform.TransformationService;
+import org.openhab.core.transform.internal.service.MapTransformationService;
+import org.openhab.core.transform.internal.service.RegExTransformationService;
+import org.openhab.core.transform.internal.service.XPathTransformationService;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.FrameworkUtil;
+import org.osgi.framework.ServiceEvent;
+import org.osgi.framework.ServiceListener;
+import org.osgi.framework.ServiceReference;
+
+
+/**
+ * @author agent
+ * @since 1.3.0
+ */
+public class TransformationServiceTrackerTest {
+	
+	private TransformationServiceTracker tracker;
+	
+	private ServiceListener listener;
+	
+	/** the registered services by their references */
+	private final Map<ServiceReference<?>, TransformationService> registry = Collections.synchronizedMap(new HashMap<ServiceReference<?>, TransformationService>());
+
+	@Before
+	public void setup() {
+		BundleContext context = (BundleContext) Proxy.newProxyInstance(getClass().getClassLoader(), 
+			new Class<?>[] { BundleContext.class }, new InvocationHandler() {
+				public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+					String name = method.getName();
+					if (name.equals("createFilter")) {
+						return FrameworkUtil.createFilter((String) args[0]);
+					} else if (name.equals("addServiceListener")) {
+						listener = (ServiceListener) args[0];
+					} else if (name.equals("getService")) {
+						return registry.get(args[0]);
+					} else if (name.equals("ungetService")) {
+						return Boolean.TRUE;
+					}
+					return null;
+				}
+			});
+		tracker = new TransformationServiceTracker(context);
+		tracker.open();
+	}
+	
+	@After
+	public void tearDown() {
+		tracker.close();
+	}
+	
+	@Test
+	public void testRegistration() {
+		TransformationService regex = new RegExTransformationService();
+		ServiceReference<?> regexReference = register("REGEX", regex);
+		TransformationService map = new MapTransformationService();
+		register("MAP", map);
+		
+		Assert.assertSame(regex, tracker.getTransformationService("REGEX"));
+		Assert.assertSame(map, tracker.getTransformationService("MAP"));
+		Assert.assertNull(tracker.getTransformationService("XSLT"));
+		Assert.assertNull(tracker.getTransformationService(null));
+		
+		unregister(regexReference);
+		Assert.assertNull(tracker.getTransformationService("REGEX"));
+		Assert.assertSame(map, tracker.getTransformationService("MAP"));
+	}
+	
+	@Test
+	public void testFallbackToOtherServiceOfSameType() {
+		TransformationService first = new RegExTransformationService();
+		ServiceReference<?> firstReference = register("REGEX", first);
+		TransformationService second = new RegExTransformationService();
+		register("REGEX", second);
+		Assert.assertSame(first, tracker.getTransformationService("REGEX"));
+		
+		unregister(firstReference);
+		Assert.assertSame(second, tracker.getTransformationService("REGEX"));
+	}
+	
+	@Test
+	public void testConcurrentLookups() throws InterruptedException {
+		final String[] types = new String[] { "REGEX", "XPATH", "MAP" };
+		register("REGEX", new RegExTransformationService());
+		register("XPATH", new XPathTransformationService());
+		register("MAP", new MapTransformationService());
+		
+		final int threads = 8;
+		final int lookups = 100000;
+		final AtomicLong failures = new AtomicLong();
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(threads);
+		for (int t = 0; t < threads; t++) {
+			new Thread() {
+				public void run() {
+					try {
+						start.await();
+						for (int i = 0; i < lookups; i++) {
+							if (tracker.getTransformationService(types[i % types.length]) == null) {
+								failures.incrementAndGet();
+							}
+						}
+					} catch (InterruptedException e) {
+						failures.incrementAndGet();
+					} finally {
+						done.countDown();
+					}
+				}
+			}.start();
+		}
+		
+		// meanwhile other services come and go
+		List<ServiceReference<?>> references = new ArrayList<ServiceReference<?>>();
+		long startTime = System.nanoTime();
+		start.countDown();
+		for (int i = 0; i < 100; i++) {
+			references.add(register("XSLT", new RegExTransformationService()));
+			unregister(references.remove(0));
+		}
+		done.await();
+		long duration = Math.max(1L, (System.nanoTime() - startTime) / 1000000L);
+		
+		Assert.assertEquals(0L, failures.get());
+		// the polls must not be throttled by any locking; even slow machines do millions of lookups per second
+		long lookupsPerMs = threads * lookups / duration;
+		Assert.assertTrue("only " + lookupsPerMs + " lookups per ms", lookupsPerMs > 100L);
+	}
+	
+	private ServiceReference<?> register(final String type, TransformationService service) {
+		ServiceReference<?> reference = (ServiceReference<?>) Proxy.newProxyInstance(getClass().getClassLoader(), 
+			new Class<?>[] { ServiceReference.class }, new InvocationHandler() {
+				public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+					String name = method.getName();
+					if (name.equals("getProperty")) {
+						return TransformationServiceTracker.TRANSFORMATION_TYPE_PROPERTY.equals(args[0]) ? type : null;
+					} else if (name.equals("equals")) {
+						return proxy == args[0];
+					} else if (name.equals("hashCode")) {
+						return System.identityHashCode(proxy);
+					} else if (name.equals("compareTo")) {
+						return 0;
+					}
+					return null;
+				}
+			});
+		registry.put(reference, service);
+		listener.serviceChanged(new ServiceEvent(ServiceEvent.REGISTERED, reference));
+		return reference;
+	}
+	
+	private void unregister(ServiceReference<?> reference) {
+		listener.serviceChanged(new ServiceEvent(ServiceEvent.UNREGISTERING, reference));
+		registry.remove(reference);
+	}
+
+}
@@ -0,0 +1,156 @@
+/**
+ * openHAB, the open Home Automation Bus.
+ * Copyright (C) 2010-2013, openHAB.org <admin@openhab.org>
+ *
+ * See the contributors.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ * Additional permission under GNU GPL version 3 section 7
+ *
+ * If you modify this Program, or any covered work, by linking or
+ * combining it with Eclipse (or a modified version of that library),
+ * containing parts covered by the terms of the Eclipse Public License
+ * (EPL), the licensors of this Program grant you additional permission
+ * to convey the resulting work.
+ */
+package org.openhab.core.transform;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/**
+ * A cache for compiled transformation artifacts (like XSLT templates or
+ * precompiled regular expressions), so that transformation services do not
+ * have to compile their functions on every call.
+ * <p>
+ * Artifacts which are compiled from a file (see {@link #getFile(String)}) are
+ * compiled again as soon as the modification time or the size of the file 
+ * changes. The cache holds at most the given number of artifacts and evicts
+ * the least recently used ones. The cached artifacts are shared between all 
+ * threads, so they should either be immutable or be used in a thread-safe way.
+ * 
+ * @param <T> the type of the compiled artifacts
+ * 
+ * @author agent
+ * @since 1.3.0
+ */
+public abstract class TransformationCache<T> {
+	
+	private final Map<String, Entry<T>> entries;
+	
+	/**
+	 * Creates a new cache.
+	 * 
+	 * @param maxSize the maximum number of cached artifacts
+	 */
+	public TransformationCache(final int maxSize) {
+		this.entries = new LinkedHashMap<String, Entry<T>>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Entry<T>> eldest) {
+				return size() > maxSize;
+			}
+		};
+	}
+	
+	/**
+	 * Returns the compiled artifact for the given transformation function. 
+	 * The artifact is compiled if it is not cached yet or if its file has
+	 * changed since it has been compiled.
+	 * 
+	 * @param function the transformation function, e.g. a regular expression or a file name
+	 * @return the compiled artifact
+	 * @throws TransformationException if the function cannot be compiled
+	 */
+	public T get(String function) throws TransformationException {
+		File file = getFile(function);
+		long lastModified = file != null ? file.lastModified() : 0L;
+		long length = file != null ? file.length() : 0L;
+		
+		Entry<T> entry;
+		synchronized (entries) {
+			entry = entries.get(function);
+		}
+		if (entry != null && entry.lastModified == lastModified && entry.length == length) {
+			return entry.artifact;
+		}
+		
+		// compile outside of the lock, so that slow compilations do not block other functions
+		T artifact = compile(function);
+		synchronized (entries) {
+			entries.put(function, new Entry<T>(artifact, lastModified, length));
+		}
+		return artifact;
+	}
+	
+	/**
+	 * Removes all cached artifacts.
+	 */
+	public void clear() {
+		synchronized (entries) {
+			entries.clear();
+		}
+	}
+	
+	/**
+	 * Returns the number of cached artifacts.
+	 * 
+	 * @return the number of cached artifacts
+	 */
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+	
+	/**
+	 * Returns the file the given function is compiled from. Subclasses which
+	 * compile their functions from files must override this method, so that
+	 * changes of the files are detected.
+	 * 
+	 * @param function the transformation function
+	 * @return the file to watch or <code>null</code>, if the function is not read from a file
+	 */
+	protected File getFile(String function) {
+		return null;
+	}
+	
+	/**
+	 * Compiles the given transformation function.
+	 * 
+	 * @param function the transformation function
+	 * @return the compiled artifact, never <code>null</code>
+	 * @throws TransformationException if the function cannot be compiled
+	 */
+	protected abstract T compile(String function) throws TransformationException;
+	
+	
+	private static class Entry<T> {
+		
+		final T artifact;
+		final long lastModified;
+		final long length;
+		
+		Entry(T artifact, long lastModified, long length) {
+			this.artifact = artifact;
+			this.lastModified = lastModified;
+			this.length = length;
+		}
+	}
+
+}
@@ -30,6 +30,8 @@ package org.openhab.core.transform;
 
 import java.util.Collection;
 
+import org.openhab.core.transform.internal.TransformationActivator;
+import org.openhab.core.transform.internal.TransformationServiceTracker;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.InvalidSyntaxException;
 import org.osgi.framework.ServiceReference;
@@ -42,14 +44,24 @@ public class TransformationHelper {
 
 	/**
 	 * Queries the OSGi service registry for a service that provides a transformation service of
-	 * a given transformation type (e.g. REGEX, XSLT, etc.)
+	 * a given transformation type (e.g. REGEX, XSLT, etc.). The services are tracked 
+	 * by the transformation bundle, so that the service registry only has to be queried
+	 * as long as this bundle is not started.
 	 * 
 	 * @param transformationType the desired transformation type
 	 * @return a service instance or null, if none could be found
 	 */
 	static public TransformationService getTransformationService(BundleContext context, String transformationType) {
+		TransformationServiceTracker tracker = TransformationActivator.getServiceTracker();
+		if(tracker!=null) {
+			TransformationService service = tracker.getTransformationService(transformationType);
+			if(service==null) {
+				logger.warn("Cannot get service reference for transformation service of type " + transformationType);
+			}
+			return service;
+		}
 		if(context!=null) {
-			String filter = "(openhab.transform=" + transformationType + ")";
+			String filter = "(" + TransformationServiceTracker.TRANSFORMATION_TYPE_PROPERTY + "=" + transformationType + ")";
 			try {
 				Collection<ServiceReference<TransformationService>> refs = context.getServiceReferences(TransformationService.class, filter);
 				if(refs!=null && refs.size() > 0) {
@@ -50,11 +50,15 @@ public final class TransformationActivator implements BundleActivator {
 	
 	private static BundleContext context;
 	
+	private static TransformationServiceTracker serviceTracker;
+	
 	/**
 	 * Called whenever the OSGi framework starts our bundle
 	 */
 	public void start(BundleContext bc) throws Exception {
 		context = bc;
+		serviceTracker = new TransformationServiceTracker(bc);
+		serviceTracker.open();
 		logger.debug("Transformation Service has been started.");
 	}
 
@@ -62,6 +66,8 @@ public final class TransformationActivator implements BundleActivator {
 	 * Called whenever the OSGi framework stops our bundle
 	 */
 	public void stop(BundleContext bc) throws Exception {
+		serviceTracker.close();
+		serviceTracker = null;
 		context = null;
 		logger.debug("Transformation Service has been stopped.");
 	}
@@ -74,4 +80,12 @@ public final class TransformationActivator implements BundleActivator {
 		return context;
 	}	
 	
+	/**
+	 * Returns the tracker of all transformation services
+	 * @return the service tracker or <code>null</code>, if the bundle is not started
+	 */
+	public static TransformationServiceTracker getServiceTracker() {
+		return serviceTracker;
+	}
+	
 }
@@ -0,0 +1,134 @@
+/**
+ * openHAB, the open Home Automation Bus.
+ * Copyright (C) 2010-2013, openHAB.org <admin@openhab.org>
+ *
+ * See the contributors.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ * Additional permission under GNU GPL version 3 section 7
+ *
+ * If you modify this Program, or any covered work, by linking or
+ * combining it with Eclipse (or a modified version of that library),
+ * containing parts covered by the terms of the Eclipse Public License
+ * (EPL), the licensors of this Program grant you additional permission
+ * to convey the resulting work.
+ */
+package org.openhab.core.transform.internal;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.openhab.core.transform.TransformationService;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceReference;
+import org.osgi.util.tracker.ServiceTracker;
+
+
+/**
+ * Tracks all {@link TransformationService}s and keeps them in a map by their
+ * transformation type (the service property <code>openhab.transform</code>), 
+ * so that services can be looked up without querying the service registry.
+ * If several services are registered for the same type, the first one is used
+ * until it is unregistered.
+ * 
+ * @author agent
+ * @since 1.3.0
+ */
+public class TransformationServiceTracker extends ServiceTracker<TransformationService, TransformationService> {
+	
+	public static final String TRANSFORMATION_TYPE_PROPERTY = "openhab.transform";
+	
+	/** the service references by transformation type */
+	private final ConcurrentMap<String, ServiceReference<TransformationService>> references = new ConcurrentHashMap<String, ServiceReference<TransformationService>>();
+	
+	/** the services by transformation type */
+	private final ConcurrentMap<String, TransformationService> services = new ConcurrentHashMap<String, TransformationService>();
+
+	public TransformationServiceTracker(BundleContext context) {
+		super(context, TransformationService.class, null);
+	}
+	
+	/**
+	 * Returns the service of the given transformation type.
+	 * 
+	 * @param transformationType the desired transformation type (e.g. REGEX, XSLT, etc.)
+	 * @return the service or <code>null</code>, if there is none
+	 */
+	public TransformationService getTransformationService(String transformationType) {
+		return transformationType != null ? services.get(transformationType) : null;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public TransformationService addingService(ServiceReference<TransformationService> reference) {
+		TransformationService service = super.addingService(reference);
+		if (service != null) {
+			register(reference, service);
+		}
+		return service;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void modifiedService(ServiceReference<TransformationService> reference, TransformationService service) {
+		// the transformation type might have changed
+		unregister(reference);
+		register(reference, service);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void removedService(ServiceReference<TransformationService> reference, TransformationService service) {
+		unregister(reference);
+		super.removedService(reference, service);
+	}
+	
+	private synchronized void register(ServiceReference<TransformationService> reference, TransformationService service) {
+		Object type = reference.getProperty(TRANSFORMATION_TYPE_PROPERTY);
+		if (type instanceof String && references.putIfAbsent((String) type, reference) == null) {
+			services.put((String) type, service);
+		}
+	}
+	
+	private synchronized void unregister(ServiceReference<TransformationService> reference) {
+		for (String type : references.keySet()) {
+			if (reference.equals(references.get(type))) {
+				references.remove(type);
+				services.remove(type);
+				// fall back to another service of the same type, if there is one
+				ServiceReference<TransformationService>[] candidates = getServiceReferences();
+				if (candidates != null) {
+					for (ServiceReference<TransformationService> candidate : candidates) {
+						TransformationService candidateService = getService(candidate);
+						if (!candidate.equals(reference) && candidateService != null 
+								&& type.equals(candidate.getProperty(TRANSFORMATION_TYPE_PROPERTY))) {
+							references.put(type, candidate);
+							services.put(type, candidateService);
+							break;
+						}
+					}
+				}
+			}
+		}
+	}
+
+}
@@ -32,10 +32,14 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.Reader;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
 
 import org.apache.commons.io.IOUtils;
 import org.openhab.config.core.ConfigDispatcher;
+import org.openhab.core.transform.TransformationCache;
 import org.openhab.core.transform.TransformationException;
 import org.openhab.core.transform.TransformationService;
 import org.openhab.core.transform.internal.TransformationActivator;
@@ -53,6 +57,21 @@ import org.slf4j.LoggerFactory;
 public class MapTransformationService implements TransformationService {
 
 	static final Logger logger = LoggerFactory.getLogger(MapTransformationService.class);
+	
+	/** the maximum number of mapping files to keep in memory */
+	private static final int MAX_CACHED_MAPPINGS = 100;
+	
+	/** the mappings by their file names; they are reloaded as soon as the file changes */
+	private final TransformationCache<Map<String, String>> mappings = new TransformationCache<Map<String, String>>(MAX_CACHED_MAPPINGS) {
+		@Override
+		protected File getFile(String filename) {
+			return new File(ConfigDispatcher.getConfigFolder() + File.separator + TransformationActivator.TRANSFORM_FOLDER_NAME + File.separator + filename);
+		}
+		@Override
+		protected Map<String, String> compile(String filename) throws TransformationException {
+			return loadMapping(filename, getFile(filename));
+		}
+	};
 
 	/**
 	 * <p>
@@ -76,20 +95,27 @@ public class MapTransformationService implements TransformationService {
 			throw new TransformationException("the given parameters 'filename' and 'source' must not be null");
 		}
 
+		String target = mappings.get(filename).get(source);
+		if(target!=null) {
+			logger.debug("transformation resulted in '{}'", target);
+			return target;
+		} else {
+			logger.warn("Could not find a mapping for '{}' in the file '{}'.", source, filename);
+			return "";
+		}
+	}
+	
+	private Map<String, String> loadMapping(String filename, File file) throws TransformationException {
 		Reader reader = null;
 		try {
-			String path = ConfigDispatcher.getConfigFolder() + File.separator + TransformationActivator.TRANSFORM_FOLDER_NAME + File.separator + filename;
 			Properties properties = new Properties();
-			reader = new FileReader(path);
+			reader = new FileReader(file);
 			properties.load(reader);
-			String target = properties.getProperty(source);
-			if(target!=null) {
-				logger.debug("transformation resulted in '{}'", target);
-				return target;
-			} else {
-				logger.warn("Could not find a mapping for '{}' in the file '{}'.", source, filename);
-				return "";
+			Map<String, String> mapping = new HashMap<String, String>();
+			for(Map.Entry<Object, Object> entry : properties.entrySet()) {
+				mapping.put((String) entry.getKey(), (String) entry.getValue());
 			}
+			return Collections.unmodifiableMap(mapping);
 		} catch (IOException e) {
 			String message = "opening file '" + filename + "' throws exception";
 			logger.error(message, e);
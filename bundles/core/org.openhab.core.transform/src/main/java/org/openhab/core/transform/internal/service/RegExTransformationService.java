@@ -31,6 +31,7 @@ package org.openhab.core.transform.internal.service;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import org.openhab.core.transform.TransformationCache;
 import org.openhab.core.transform.TransformationException;
 import org.openhab.core.transform.TransformationService;
 import org.slf4j.Logger;
@@ -50,6 +51,21 @@ public class RegExTransformationService implements TransformationService {
 
 	static final Logger logger = LoggerFactory.getLogger(RegExTransformationService.class);
 
+	/** the maximum number of compiled patterns to keep */
+	private static final int MAX_CACHED_PATTERNS = 100;
+	
+	/** the compiled patterns by their regular expressions */
+	private final TransformationCache<Pattern> patterns = new TransformationCache<Pattern>(MAX_CACHED_PATTERNS) {
+		@Override
+		protected Pattern compile(String regExpression) throws TransformationException {
+			try {
+				return Pattern.compile("^" + regExpression + "$", Pattern.DOTALL);
+			} catch (IllegalArgumentException e) {
+				throw new TransformationException("the given regex '^" + regExpression + "$' is invalid", e);
+			}
+		}
+	};
+
 	/**
 	 * @{inheritDoc
 	 */
@@ -61,7 +77,7 @@ public class RegExTransformationService implements TransformationService {
 
 		logger.debug("about to transform '{}' by the function '{}'", source, regExpression);
 
-		Matcher matcher = Pattern.compile("^" + regExpression + "$", Pattern.DOTALL).matcher(source.trim());
+		Matcher matcher = patterns.get(regExpression).matcher(source.trim());
 		if (!matcher.matches()) {
 			logger.debug("the given regex '^{}$' doesn't match the given content '{}' -> couldn't compute transformation", regExpression, source);
 			return null;
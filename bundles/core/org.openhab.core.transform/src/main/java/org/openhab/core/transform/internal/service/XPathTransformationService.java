@@ -35,8 +35,10 @@ import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
 import javax.xml.xpath.XPathFactory;
 
+import org.openhab.core.transform.TransformationCache;
 import org.openhab.core.transform.TransformationException;
 import org.openhab.core.transform.TransformationService;
 import org.slf4j.Logger;
@@ -55,6 +57,38 @@ import org.xml.sax.InputSource;
 public class XPathTransformationService implements TransformationService {
 
 	static final Logger logger = LoggerFactory.getLogger(XPathTransformationService.class);
+	
+	/** the maximum number of compiled expressions to keep */
+	private static final int MAX_CACHED_EXPRESSIONS = 100;
+	
+	/** the factory is not thread-safe and has to be synchronized on */
+	private final DocumentBuilderFactory domFactory;
+	
+	/** xpath objects are not thread-safe and have to be synchronized on */
+	private final XPath xpath = XPathFactory.newInstance().newXPath();
+	
+	/** 
+	 * the compiled expressions by their xpath expressions; compiled expressions
+	 * are not thread-safe either and have to be synchronized on
+	 */
+	private final TransformationCache<XPathExpression> expressions = new TransformationCache<XPathExpression>(MAX_CACHED_EXPRESSIONS) {
+		@Override
+		protected XPathExpression compile(String xpathExpression) throws TransformationException {
+			try {
+				synchronized (xpath) {
+					return xpath.compile(xpathExpression);
+				}
+			} catch (XPathExpressionException e) {
+				throw new TransformationException("the given xpath '" + xpathExpression + "' is invalid", e);
+			}
+		}
+	};
+	
+	public XPathTransformationService() {
+		domFactory = DocumentBuilderFactory.newInstance();
+		domFactory.setNamespaceAware(true);
+		domFactory.setValidating(false);
+	}
 
 	/**
 	 * @{inheritDoc
@@ -67,13 +101,14 @@ public class XPathTransformationService implements TransformationService {
 
 		logger.debug("about to transform '{}' by the function '{}'", source, xpathExpression);
 
+		XPathExpression expr = expressions.get(xpathExpression);
 		StringReader stringReader = null;
 
 		try {
-			DocumentBuilderFactory domFactory = DocumentBuilderFactory.newInstance();
-			domFactory.setNamespaceAware(true);
-			domFactory.setValidating(false);
-			DocumentBuilder builder = domFactory.newDocumentBuilder();
+			DocumentBuilder builder;
+			synchronized (domFactory) {
+				builder = domFactory.newDocumentBuilder();
+			}
 
 			stringReader = new StringReader(source);
 			InputSource inputSource = new InputSource(stringReader);
@@ -81,10 +116,10 @@ public class XPathTransformationService implements TransformationService {
 
 			Document doc = builder.parse(inputSource);
 
-			XPath xpath = XPathFactory.newInstance().newXPath();
-			XPathExpression expr = xpath.compile(xpathExpression);
-
-			String transformationResult = (String) expr.evaluate(doc, XPathConstants.STRING);
+			String transformationResult;
+			synchronized (expr) {
+				transformationResult = (String) expr.evaluate(doc, XPathConstants.STRING);
+			}
 
 			logger.debug("transformation resulted in '{}'", transformationResult);
 
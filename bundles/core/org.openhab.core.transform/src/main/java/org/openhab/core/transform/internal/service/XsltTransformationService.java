@@ -32,13 +32,14 @@ import java.io.File;
 import java.io.StringReader;
 import java.io.StringWriter;
 
-import javax.xml.transform.Source;
+import javax.xml.transform.Templates;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
 
 import org.openhab.config.core.ConfigDispatcher;
+import org.openhab.core.transform.TransformationCache;
 import org.openhab.core.transform.TransformationException;
 import org.openhab.core.transform.TransformationService;
 import org.openhab.core.transform.internal.TransformationActivator;
@@ -56,6 +57,32 @@ import org.slf4j.LoggerFactory;
 public class XsltTransformationService implements TransformationService {
 
 	static final Logger logger = LoggerFactory.getLogger(XsltTransformationService.class);
+	
+	/** the maximum number of compiled stylesheets to keep */
+	private static final int MAX_CACHED_TEMPLATES = 100;
+	
+	/** the factory is not thread-safe and has to be synchronized on */
+	private final TransformerFactory transformerFactory = TransformerFactory.newInstance();
+	
+	/** the compiled stylesheets by their file names; they are compiled again as soon as the file changes */
+	private final TransformationCache<Templates> templates = new TransformationCache<Templates>(MAX_CACHED_TEMPLATES) {
+		@Override
+		protected File getFile(String filename) {
+			return new File(ConfigDispatcher.getConfigFolder() + File.separator + TransformationActivator.TRANSFORM_FOLDER_NAME + File.separator + filename);
+		}
+		@Override
+		protected Templates compile(String filename) throws TransformationException {
+			try {
+				synchronized (transformerFactory) {
+					return transformerFactory.newTemplates(new StreamSource(getFile(filename)));
+				}
+			} catch (Exception e) {
+				String message = "compiling file '" + filename + "' throws exception";
+				logger.error(message, e);
+				throw new TransformationException(message, e);
+			}
+		}
+	};
 
 	/**
 	 * <p>
@@ -79,19 +106,9 @@ public class XsltTransformationService implements TransformationService {
 			throw new TransformationException("the given parameters 'filename' and 'source' must not be null");
 		}
 
-		Source xsl = null;
-
-		try {
-			String path = ConfigDispatcher.getConfigFolder() + File.separator + TransformationActivator.TRANSFORM_FOLDER_NAME + File.separator + filename;
-			xsl = new StreamSource(new File(path));
-		} catch (Exception e) {
-			String message = "opening file '" + filename + "' throws exception";
-
-			logger.error(message, e);
-			throw new TransformationException(message, e);
-		}
+		Templates xsl = templates.get(filename);
 
-		logger.debug("about to transform '{}' by the function '{}'", source, xsl);
+		logger.debug("about to transform '{}' by the function '{}'", source, filename);
 
 		StringReader xml = new StringReader(source);
 		StringWriter out = new StringWriter();
@@ -99,7 +116,8 @@ public class XsltTransformationService implements TransformationService {
 		Transformer transformer;
 
 		try {
-			transformer = TransformerFactory.newInstance().newTransformer(xsl);
+			// templates are thread-safe, but their transformers are not
+			transformer = xsl.newTransformer();
 			transformer.transform(new StreamSource(xml), new StreamResult(out));
 		} catch (Exception e) {
 			logger.error("transformation throws exception", e);
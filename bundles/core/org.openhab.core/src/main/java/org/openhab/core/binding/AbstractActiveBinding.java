@@ -29,6 +29,7 @@
 package org.openhab.core.binding;
 
 import org.openhab.core.service.AbstractActiveService;
+import org.openhab.core.service.ExecutionStatistics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -130,6 +131,27 @@ public abstract class AbstractActiveBinding<P extends BindingProvider> extends A
 	 */
 	protected abstract String getName();
 	
+	/**
+	 * Determines whether the refresh interval is the time between the starts of two
+	 * executions (fixed rate) or between the end of an execution and the start of the
+	 * next one (fixed delay).
+	 * 
+	 * @return <code>true</code> for a fixed rate, <code>false</code> for a fixed delay (default)
+	 */
+	protected boolean isFixedRate() {
+		return false;
+	}
+	
+	/**
+	 * Returns the statistics about the execution times of the refresh cycles of
+	 * this binding. They are logged on debug level when the refresh thread is shut down.
+	 * 
+	 * @return the execution statistics of this binding
+	 */
+	public ExecutionStatistics getExecutionStatistics() {
+		return activeService.getExecutionStatistics();
+	}
+	
 	
 	/** private inner class, which delegates method calls to the outer binding instance */
 	private class BindingActiveService extends AbstractActiveService {
@@ -177,6 +199,11 @@ public abstract class AbstractActiveBinding<P extends BindingProvider> extends A
 		protected String getName() {
 			return AbstractActiveBinding.this.getName();
 		}
+
+		@Override
+		protected boolean isFixedRate() {
+			return AbstractActiveBinding.this.isFixedRate();
+		}
 	}
 	
 }
\ No newline at end of file
@@ -28,9 +28,6 @@
  */
 package org.openhab.core.events;
 
-import static org.openhab.core.events.EventConstants.TOPIC_PREFIX;
-import static org.openhab.core.events.EventConstants.TOPIC_SEPERATOR;
-
 import org.openhab.core.types.Command;
 import org.openhab.core.types.State;
 import org.openhab.core.types.EventType;
@@ -43,23 +40,21 @@ abstract public class AbstractEventSubscriber implements EventSubscriber, EventH
 	 * {@inheritDoc}
 	 */
 	public void handleEvent(Event event) {  
-		String itemName = (String) event.getProperty("item");
-		
-		String topic = event.getTopic();
-		String[] topicParts = topic.split(TOPIC_SEPERATOR);
-		
-		if(!(topicParts.length > 2) || !topicParts[0].equals(TOPIC_PREFIX)) {
+		EventType type = EventTopics.getEventType(event.getTopic());
+		if(type==null) {
 			return; // we have received an event with an invalid topic
 		}
-		String operation = topicParts[1];
+		String itemName = (String) event.getProperty("item");
 		
-		if(operation.equals(EventType.UPDATE.toString())) {
-			State newState = (State) event.getProperty("state");
-			if(newState!=null) receiveUpdate(itemName, newState);
-		}
-		if(operation.equals(EventType.COMMAND.toString())) {
-			Command command = (Command) event.getProperty("command");
-			if(command!=null) receiveCommand(itemName, command);
+		switch(type) {
+			case UPDATE:
+				State newState = (State) event.getProperty("state");
+				if(newState!=null) receiveUpdate(itemName, newState);
+				break;
+			case COMMAND:
+				Command command = (Command) event.getProperty("command");
+				if(command!=null) receiveCommand(itemName, command);
+				break;
 		}
 	}
 	
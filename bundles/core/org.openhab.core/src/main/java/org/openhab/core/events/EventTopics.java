@@ -0,0 +1,113 @@
+/**
+ * openHAB, the open Home Automation Bus.
+ * Copyright (C) 2010-2013, openHAB.org <admin@openhab.org>
+ *
+ * See the contributors.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ * Additional permission under GNU GPL version 3 section 7
+ *
+ * If you modify this Program, or any covered work, by linking or
+ * combining it with Eclipse (or a modified version of that library),
+ * containing parts covered by the terms of the Eclipse Public License
+ * (EPL), the licensors of this Program grant you additional permission
+ * to convey the resulting work.
+ */
+package org.openhab.core.events;
+
+import static org.openhab.core.events.EventConstants.TOPIC_PREFIX;
+import static org.openhab.core.events.EventConstants.TOPIC_SEPERATOR;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.openhab.core.types.EventType;
+
+/**
+ * This class creates and parses the topics of openHAB item events, which have the form
+ * <code>openhab/&lt;operation&gt;/&lt;item name&gt;</code>. Topics are parsed without
+ * splitting them and the topics of items are created only once and then reused.
+ * 
+ * @author agent
+ * @since 1.3.0
+ */
+public final class EventTopics {
+
+	private static final String UPDATE_PREFIX = TOPIC_PREFIX + TOPIC_SEPERATOR + EventType.UPDATE + TOPIC_SEPERATOR;
+
+	private static final String COMMAND_PREFIX = TOPIC_PREFIX + TOPIC_SEPERATOR + EventType.COMMAND + TOPIC_SEPERATOR;
+	
+	/** the maximum number of topics to keep per event type */
+	private static final int MAX_CACHED_TOPICS = 10000;
+	
+	private static final ConcurrentMap<String, String> updateTopics = new ConcurrentHashMap<String, String>();
+
+	private static final ConcurrentMap<String, String> commandTopics = new ConcurrentHashMap<String, String>();
+	
+	private EventTopics() {
+		// this class provides static methods only
+	}
+
+	/**
+	 * Returns the topic of an event of the given type for an item.
+	 * 
+	 * @param type the type of the event
+	 * @param itemName the name of the item
+	 * @return the topic of the event
+	 */
+	public static String createTopic(EventType type, String itemName) {
+		ConcurrentMap<String, String> topics = type==EventType.COMMAND ? commandTopics : updateTopics;
+		String topic = topics.get(itemName);
+		if(topic==null) {
+			topic = (type==EventType.COMMAND ? COMMAND_PREFIX : UPDATE_PREFIX) + itemName;
+			if(topics.size() < MAX_CACHED_TOPICS) {
+				topics.put(itemName, topic);
+			}
+		}
+		return topic;
+	}
+
+	/**
+	 * Determines the type of an item event from its topic.
+	 * 
+	 * @param topic the topic of the event
+	 * @return the type of the event or <code>null</code>, if the topic is not a valid topic of an item event
+	 */
+	public static EventType getEventType(String topic) {
+		if(topic.startsWith(UPDATE_PREFIX)) {
+			return topic.length() > UPDATE_PREFIX.length() ? EventType.UPDATE : null;
+		} else if(topic.startsWith(COMMAND_PREFIX)) {
+			return topic.length() > COMMAND_PREFIX.length() ? EventType.COMMAND : null;
+		} else {
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the item name of an item event from its topic.
+	 * 
+	 * @param topic the topic of the event
+	 * @return the name of the item or <code>null</code>, if the topic is not a valid topic of an item event
+	 */
+	public static String getItemName(String topic) {
+		EventType type = getEventType(topic);
+		if(type==null) {
+			return null;
+		}
+		return topic.substring(type==EventType.COMMAND ? COMMAND_PREFIX.length() : UPDATE_PREFIX.length());
+	}
+
+}
@@ -28,16 +28,27 @@
  */
 package org.openhab.core.internal.events;
 
-import static org.openhab.core.events.EventConstants.TOPIC_PREFIX;
-import static org.openhab.core.events.EventConstants.TOPIC_SEPERATOR;
-
 import java.util.Dictionary;
 import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.apache.commons.lang.StringUtils;
 import org.openhab.core.events.EventPublisher;
+import org.openhab.core.events.EventTopics;
 import org.openhab.core.types.Command;
 import org.openhab.core.types.EventType;
 import org.openhab.core.types.State;
+import org.osgi.service.cm.ConfigurationException;
+import org.osgi.service.cm.ManagedService;
 import org.osgi.service.event.Event;
 import org.osgi.service.event.EventAdmin;
 import org.slf4j.Logger;
@@ -48,16 +59,48 @@ import org.slf4j.LoggerFactory;
  * Through it, openHAB events can be sent to the OSGi EventAdmin service
  * in order to broadcast them.
  * 
+ * <p>Status updates can optionally be passed through a coalescing stage, which
+ * is configured in openhab.cfg:
+ * <ul>
+ * <li><code>dedup</code>: an update with the same state as the last update of an item 
+ * within this number of milliseconds is suppressed. A command for an item resets this,
+ * so that a binding can always correct the state after an auto-update.</li>
+ * <li><code>conflate</code>: an item receives at most one update within this number of 
+ * milliseconds. Further updates are delayed and only the latest of them is delivered
+ * at the end of the window, so no final state is ever lost.</li>
+ * </ul>
+ * Commands are never coalesced. A pending update of an item is delivered before a command
+ * for the item, so that the order of updates and commands is kept.</p>
+ * 
  * @author Kai Kreuzer
  *
  */
-public class EventPublisherImpl implements EventPublisher {
+public class EventPublisherImpl implements EventPublisher, ManagedService {
 
 	private static final Logger logger = 
 		LoggerFactory.getLogger(EventPublisherImpl.class);
 		
 	private EventAdmin eventAdmin;
 	
+	/** the time in milliseconds within identical updates of an item are suppressed, 0 if disabled */
+	private volatile long dedupWindow = 0L;
+
+	/** the minimum time in milliseconds between two updates of an item, 0 if disabled */
+	private volatile long conflationWindow = 0L;
+	
+	/** the last delivered updates of the items, if updates are deduplicated */
+	private final ConcurrentMap<String, LastUpdate> lastUpdates = new ConcurrentHashMap<String, LastUpdate>();
+	
+	/** the conflation states of the items, if updates are conflated */
+	private final ConcurrentMap<String, ConflationSlot> conflationSlots = new ConcurrentHashMap<String, ConflationSlot>();
+	
+	/** delivers the conflated updates at the end of their windows */
+	private volatile ScheduledExecutorService conflationExecutor;
+	
+	private final AtomicLong suppressedUpdates = new AtomicLong();
+	
+	private final AtomicLong conflatedUpdates = new AtomicLong();
+	
 	
 	public void setEventAdmin(EventAdmin eventAdmin) {
 		this.eventAdmin = eventAdmin;
@@ -67,12 +110,19 @@ public class EventPublisherImpl implements EventPublisher {
 		this.eventAdmin = null;
 	}
 	
+	public void deactivate() {
+		setConflationWindow(0L);
+		lastUpdates.clear();
+	}
+	
 
 	/* (non-Javadoc)
 	 * @see org.openhab.core.internal.events.EventPublisher#sendCommand(org.openhab.core.items.GenericItem, org.openhab.core.datatypes.DataType)
 	 */
 	public void sendCommand(String itemName, Command command) {
 		if (command != null) {
+			lastUpdates.remove(itemName);
+			flushPendingUpdate(itemName);
 			if(eventAdmin!=null) eventAdmin.sendEvent(createCommandEvent(itemName, command));
 		} else {
 			logger.warn("given command is NULL, couldn't send command to '{}'", itemName);
@@ -84,6 +134,8 @@ public class EventPublisherImpl implements EventPublisher {
 	 */
 	public void postCommand(String itemName, Command command) {
 		if (command != null) {
+			lastUpdates.remove(itemName);
+			flushPendingUpdate(itemName);
 			if(eventAdmin!=null) eventAdmin.postEvent(createCommandEvent(itemName, command));
 		} else {
 			logger.warn("given command is NULL, couldn't post command to '{}'", itemName);
@@ -95,29 +147,208 @@ public class EventPublisherImpl implements EventPublisher {
 	 */
 	public void postUpdate(String itemName, State newState) {
 		if (newState != null) {
-			if(eventAdmin!=null) eventAdmin.postEvent(createUpdateEvent(itemName, newState));
+			if(isDuplicate(itemName, newState)) {
+				suppressedUpdates.incrementAndGet();
+			} else if(conflationWindow > 0) {
+				conflate(itemName, newState);
+			} else {
+				deliverUpdate(itemName, newState);
+			}
 		} else {
 			logger.warn("given new state is NULL, couldn't post update for '{}'", itemName);
 		}
 	}
 	
+	/**
+	 * @return the number of updates, which have been suppressed as they did not change the state
+	 */
+	public long getSuppressedUpdates() {
+		return suppressedUpdates.get();
+	}
+
+	/**
+	 * @return the number of updates, which have been replaced by a later update of the same item
+	 */
+	public long getConflatedUpdates() {
+		return conflatedUpdates.get();
+	}
+	
+	private void deliverUpdate(String itemName, State newState) {
+		if(eventAdmin!=null) eventAdmin.postEvent(createUpdateEvent(itemName, newState));
+	}
+	
+	private boolean isDuplicate(String itemName, State newState) {
+		long window = dedupWindow;
+		if(window <= 0) {
+			return false;
+		}
+		long now = System.currentTimeMillis();
+		LastUpdate lastUpdate = lastUpdates.get(itemName);
+		if(lastUpdate!=null && now - lastUpdate.time < window && lastUpdate.state.equals(newState)) {
+			return true;
+		}
+		lastUpdates.put(itemName, new LastUpdate(newState, now));
+		return false;
+	}
+	
+	private void conflate(final String itemName, State newState) {
+		ConflationSlot slot = conflationSlots.get(itemName);
+		if(slot==null) {
+			slot = new ConflationSlot();
+			ConflationSlot existingSlot = conflationSlots.putIfAbsent(itemName, slot);
+			if(existingSlot!=null) {
+				slot = existingSlot;
+			}
+		}
+		
+		long delay;
+		synchronized(slot) {
+			if(slot.pendingState!=null) {
+				// there is already an update waiting for the end of the window, which is replaced
+				slot.pendingState = newState;
+				conflatedUpdates.incrementAndGet();
+				return;
+			}
+			long now = System.currentTimeMillis();
+			delay = slot.lastDelivery + conflationWindow - now;
+			if(delay <= 0) {
+				// updates are delivered while holding the slot, so that a concurrent flush cannot overtake them
+				slot.lastDelivery = now;
+				deliverUpdate(itemName, newState);
+				return;
+			}
+			slot.pendingState = newState;
+		}
+		
+		final ConflationSlot pendingSlot = slot;
+		Runnable flush = new Runnable() {
+			public void run() {
+				flush(itemName, pendingSlot);
+			}
+		};
+		ScheduledExecutorService executor = this.conflationExecutor;
+		try {
+			if(executor!=null) {
+				executor.schedule(flush, delay, TimeUnit.MILLISECONDS);
+				return;
+			}
+		} catch (RejectedExecutionException e) {
+			// conflation has just been switched off
+		}
+		flush.run();
+	}
+	
+	/**
+	 * Delivers the pending update of the given item immediately, if there is one.
+	 * 
+	 * @param itemName the name of the item
+	 */
+	private void flushPendingUpdate(String itemName) {
+		ConflationSlot slot = conflationSlots.get(itemName);
+		if(slot!=null) {
+			flush(itemName, slot);
+		}
+	}
+	
+	private void flush(String itemName, ConflationSlot slot) {
+		synchronized(slot) {
+			if(slot.pendingState!=null) {
+				deliverUpdate(itemName, slot.pendingState);
+				slot.pendingState = null;
+				slot.lastDelivery = System.currentTimeMillis();
+			}
+		}
+	}
+	
 	private Event createUpdateEvent(String itemName, State newState) {
-		Dictionary<String, Object> properties = new Hashtable<String, Object>();
-		properties.put("item", itemName);
-		properties.put("state", newState);
-		return new Event(createTopic(EventType.UPDATE, itemName), properties);
+		return createEvent(EventType.UPDATE, itemName, "state", newState);
 	}
 
 	private Event createCommandEvent(String itemName, Command command) {
-		Dictionary<String, Object> properties = new Hashtable<String, Object>();
-		properties.put("item", itemName);
-		properties.put("command", command);
-		return new Event(createTopic(EventType.COMMAND, itemName) , properties);
+		return createEvent(EventType.COMMAND, itemName, "command", command);
 	}
 
-	private String createTopic(EventType type, String itemName) {
-		return TOPIC_PREFIX + TOPIC_SEPERATOR + type + TOPIC_SEPERATOR + itemName;
+	private Event createEvent(EventType type, String itemName, String key, Object value) {
+		Dictionary<String, Object> properties = new Hashtable<String, Object>(4);
+		properties.put("item", itemName);
+		properties.put(key, value);
+		return new Event(EventTopics.createTopic(type, itemName), properties);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@SuppressWarnings("rawtypes")
+	public void updated(Dictionary config) throws ConfigurationException {
+		if (config != null) {
+			dedupWindow = getLongValue(config, "dedup");
+			if (dedupWindow <= 0) {
+				lastUpdates.clear();
+			}
+			setConflationWindow(getLongValue(config, "conflate"));
+		}
+	}
+	
+	private synchronized void setConflationWindow(long window) {
+		if (window > 0 && conflationExecutor == null) {
+			conflationExecutor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "Event Conflation");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		conflationWindow = window;
+		if (window <= 0 && conflationExecutor != null) {
+			// the scheduled flushes are cancelled and the pending updates are delivered right away
+			conflationExecutor.shutdownNow();
+			conflationExecutor = null;
+			for (Iterator<Map.Entry<String, ConflationSlot>> it = conflationSlots.entrySet().iterator(); it.hasNext();) {
+				Map.Entry<String, ConflationSlot> entry = it.next();
+				flush(entry.getKey(), entry.getValue());
+				it.remove();
+			}
+		}
+	}
+	
+	@SuppressWarnings("rawtypes")
+	private static long getLongValue(Dictionary config, String key) throws ConfigurationException {
+		String valueString = (String) config.get(key);
+		if (StringUtils.isNotBlank(valueString)) {
+			try {
+				return Long.parseLong(valueString.trim());
+			} catch (NumberFormatException e) {
+				throw new ConfigurationException(key, "The value '" + valueString + "' is not a valid number");
+			}
+		}
+		return 0L;
 	}
 	
+	/**
+	 * The last delivered update of an item
+	 */
+	private static class LastUpdate {
+		
+		final State state;
+		final long time;
+		
+		public LastUpdate(State state, long time) {
+			this.state = state;
+			this.time = time;
+		}
+	}
+	
+	/**
+	 * The conflation state of an item; all fields are guarded by the slot itself
+	 */
+	private static class ConflationSlot {
+		
+		/** the time of the last delivered update */
+		long lastDelivery = 0L;
+		
+		/** the latest update, which waits for the end of the window, or <code>null</code> */
+		State pendingState = null;
+	}
 	
 }
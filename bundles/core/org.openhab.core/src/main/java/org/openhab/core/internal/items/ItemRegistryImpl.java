@@ -33,7 +33,12 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
 
 import org.openhab.core.events.EventPublisher;
 import org.openhab.core.items.GenericItem;
@@ -62,12 +67,33 @@ public class ItemRegistryImpl implements ItemRegistry, ItemsChangeListener {
 	
 	private static final Logger logger = LoggerFactory.getLogger(ItemRegistryImpl.class);
 
+	/** the pattern all item names have to comply with */
+	private static final Pattern VALID_ITEM_NAME_PATTERN = Pattern.compile("[a-zA-Z0-9_]*");
+
+	/** the maximum number of compiled search patterns which are kept in the pattern cache */
+	private static final int MAX_CACHED_PATTERNS = 256;
+
 	/** if an EventPublisher service is available, we provide it to all items, so that they can communicate over the bus */
 	protected EventPublisher eventPublisher;
 	
 	/** this is our local map in which we store all our items */
 	protected Map<ItemProvider, Collection<Item>> itemMap = Collections.synchronizedMap(new HashMap<ItemProvider, Collection<Item>>());
 	
+	/** 
+	 * index of all registered items by their name; it is only modified while holding the lock
+	 * on {@link #itemMap}, but can be read without any locking
+	 */
+	protected Map<String, Item> itemIndex = new ConcurrentHashMap<String, Item>();
+	
+	/** 
+	 * index of all registered items by the names of the groups they declare, regardless whether 
+	 * these groups are registered already; it is guarded by the lock on {@link #itemMap}
+	 */
+	protected Map<String, List<Item>> groupMemberIndex = new HashMap<String, List<Item>>();
+	
+	/** cache of compiled regular expressions for the search patterns passed to {@link #getItems(String)} */
+	protected Map<String, Pattern> patternCache = new ConcurrentHashMap<String, Pattern>();
+	
 	/** to keep track of all item change listeners */
 	protected Collection<ItemRegistryChangeListener> listeners = new HashSet<ItemRegistryChangeListener>();
 
@@ -82,6 +108,8 @@ public class ItemRegistryImpl implements ItemRegistry, ItemsChangeListener {
 			}
 			// then release all items
 			itemMap.clear();
+			itemIndex.clear();
+			groupMemberIndex.clear();
 		}
     }
 
@@ -90,15 +118,19 @@ public class ItemRegistryImpl implements ItemRegistry, ItemsChangeListener {
 	 */
     @Override
 	public Item getItem(String name) throws ItemNotFoundException {
-        synchronized (itemMap) {
-			for(Collection<Item> items : itemMap.values()) {
-				for(Item item : items) {
-					if(item.getName().matches(name)) {
-						return item;
-					}
+		Item item = itemIndex.get(name);
+		if(item!=null) {
+			return item;
+		}
+		if(!isValidItemName(name)) {
+			// the name is no plain item name, so it can only match as a regular expression
+			Pattern regex = Pattern.compile(name);
+			for(Item candidate : itemIndex.values()) {
+				if(regex.matcher(candidate.getName()).matches()) {
+					return candidate;
 				}
 			}
-        }
+		}
 		throw new ItemNotFoundException(name);
 	}
 
@@ -140,19 +172,34 @@ public class ItemRegistryImpl implements ItemRegistry, ItemsChangeListener {
 	 */
     @Override
 	public Collection<Item> getItems(String pattern) {
-		String regex = pattern.replace("?", ".?").replace("*", ".*?");
+		Pattern regex = getCompiledPattern(pattern);
 		Collection<Item> matchedItems = new ArrayList<Item>();
-        synchronized (itemMap) {
-			for(Collection<Item> items : itemMap.values()) {
-				for(Item item : items) {
-					if(item.getName().matches(regex)) {
-						matchedItems.add(item);
-					}
-				}
+		for(Item item : itemIndex.values()) {
+			if(regex.matcher(item.getName()).matches()) {
+				matchedItems.add(item);
 			}
-        }        
+		}
         return matchedItems;
 	}
+	
+	/**
+	 * Returns the compiled regular expression for the given search pattern. Compiled
+	 * patterns are cached, so that repeated searches do not need to compile them again.
+	 * 
+	 * @param pattern the search pattern, which may contain the wildcards '?' and '*'
+	 * @return the compiled regular expression for <code>pattern</code>
+	 */
+	private Pattern getCompiledPattern(String pattern) {
+		Pattern regex = patternCache.get(pattern);
+		if(regex==null) {
+			regex = Pattern.compile(pattern.replace("?", ".?").replace("*", ".*?"));
+			if(patternCache.size() >= MAX_CACHED_PATTERNS) {
+				patternCache.clear();
+			}
+			patternCache.put(pattern, regex);
+		}
+		return regex;
+	}
 
 	public void addItemProvider(ItemProvider itemProvider) {
 		// only add this provider if it does not already exist
@@ -169,19 +216,20 @@ public class ItemRegistryImpl implements ItemRegistry, ItemsChangeListener {
 
     @Override
 	public boolean isValidItemName(String name) {
-		return name.matches("[a-zA-Z0-9_]*");
+		return VALID_ITEM_NAME_PATTERN.matcher(name).matches();
 	}
 
 	public void removeItemProvider(ItemProvider itemProvider) {
 		if(itemMap.containsKey(itemProvider)) {
 			allItemsChanged(itemProvider, null);
             synchronized (itemMap) {
-				for(Item item : itemMap.get(itemProvider)) {
+				Collection<Item> items = itemMap.remove(itemProvider);
+				for(Item item : items) {
 					if(item instanceof GenericItem) {
 						((GenericItem) item).dispose();
 					}
 				}
-				itemMap.remove(itemProvider);
+				removeFromIndex(items);
             }
 			itemProvider.removeItemChangeListener(this);
 			logger.debug("Item provider '{}' has been removed.", itemProvider.getClass().getSimpleName());
@@ -206,12 +254,12 @@ public class ItemRegistryImpl implements ItemRegistry, ItemsChangeListener {
 	public void allItemsChanged(ItemProvider provider, Collection<String> oldItemNames) {
 		// if the provider did not provide any old item names, we check if we
 		// know them and pass them further on to our listeners
+        Collection<Item> oldItems;
+        synchronized (itemMap) {
+            oldItems = itemMap.get(provider);
+        }
 		if(oldItemNames==null || oldItemNames.isEmpty()) {
 			oldItemNames = new HashSet<String>();
-            Collection<Item> oldItems;
-            synchronized (itemMap) {
-                oldItems = itemMap.get(provider);
-            }
 			if(oldItems!=null && oldItems.size() > 0) {
 				for(Item oldItem : oldItems) {
 					oldItemNames.add(oldItem.getName());
@@ -222,10 +270,14 @@ public class ItemRegistryImpl implements ItemRegistry, ItemsChangeListener {
 		Collection<Item> items = Collections.synchronizedCollection(new ArrayList<Item>());
         synchronized (itemMap) {
         	itemMap.put(provider, items);
+        	if(oldItems!=null) {
+        		removeFromIndex(oldItems);
+        	}
         }
 		for(Item item : provider.getItems()) {
 			if(initializeItem(item)) {
 				items.add(item);
+				addToIndex(item);
 			}
 		}
 
@@ -243,6 +295,7 @@ public class ItemRegistryImpl implements ItemRegistry, ItemsChangeListener {
 		if(items!=null) {
 			if(initializeItem(item)) {
 				items.add(item);
+				addToIndex(item);
 			} else {
 				return;
 			}
@@ -260,6 +313,7 @@ public class ItemRegistryImpl implements ItemRegistry, ItemsChangeListener {
         }
 		if(items!=null) {
 			items.remove(item);
+			removeFromIndex(Collections.singleton(item));
 		}
 		for(ItemRegistryChangeListener listener : listeners) {
 			listener.itemRemoved(item);
@@ -276,6 +330,78 @@ public class ItemRegistryImpl implements ItemRegistry, ItemsChangeListener {
 		listeners.remove(listener);
 	}
 
+	/**
+	 * Adds the given item to the name index and to the member index of all
+	 * groups it declares. If another provider has already registered an item
+	 * with the same name, it is replaced in the name index.
+	 * 
+	 * @param item the item to add to the indexes
+	 */
+	private void addToIndex(Item item) {
+		synchronized (itemMap) {
+			itemIndex.put(item.getName(), item);
+			for(String groupName : item.getGroupNames()) {
+				List<Item> members = groupMemberIndex.get(groupName);
+				if(members==null) {
+					members = new ArrayList<Item>();
+					groupMemberIndex.put(groupName, members);
+				}
+				members.add(item);
+			}
+		}
+	}
+
+	/**
+	 * Removes the given items from the name index and the group member index.
+	 * If another provider still provides an item with the same name as a removed
+	 * one, this item is indexed instead.
+	 * 
+	 * @param items the items to remove from the indexes
+	 */
+	private void removeFromIndex(Collection<Item> items) {
+		synchronized (itemMap) {
+			Map<Item, Boolean> removedItems = new IdentityHashMap<Item, Boolean>();
+			Set<String> removedNames = new HashSet<String>();
+			Set<String> groupNames = new HashSet<String>();
+			for(Item item : items) {
+				removedItems.put(item, Boolean.TRUE);
+				groupNames.addAll(item.getGroupNames());
+				if(itemIndex.get(item.getName())==item) {
+					itemIndex.remove(item.getName());
+					removedNames.add(item.getName());
+				}
+			}
+			
+			// rebuild the member lists of all affected groups in a single pass each
+			for(String groupName : groupNames) {
+				List<Item> members = groupMemberIndex.get(groupName);
+				if(members!=null) {
+					List<Item> remainingMembers = new ArrayList<Item>(members.size());
+					for(Item member : members) {
+						if(!removedItems.containsKey(member)) {
+							remainingMembers.add(member);
+						}
+					}
+					if(remainingMembers.isEmpty()) {
+						groupMemberIndex.remove(groupName);
+					} else {
+						groupMemberIndex.put(groupName, remainingMembers);
+					}
+				}
+			}
+			
+			if(!removedNames.isEmpty()) {
+				for(Collection<Item> providedItems : itemMap.values()) {
+					for(Item candidate : providedItems) {
+						if(removedNames.remove(candidate.getName())) {
+							itemIndex.put(candidate.getName(), candidate);
+						}
+					}
+				}
+			}
+		}
+	}
+
 	/**
 	 * an item should be initialized, which means that the event publisher is
 	 * injected and its implementation is notified that it has just been created,
@@ -294,9 +420,14 @@ public class ItemRegistryImpl implements ItemRegistry, ItemsChangeListener {
 			
 			if(item instanceof GroupItem) {
 				// fill group with its members 
-				for(Item i : getItems()) {
-					if(i.getGroupNames().contains(item.getName())) {
-						((GroupItem)item).addMember(i);
+				List<Item> members;
+				synchronized (itemMap) {
+					members = groupMemberIndex.get(item.getName());
+					members = members!=null ? new ArrayList<Item>(members) : null;
+				}
+				if(members!=null) {
+					for(Item member : members) {
+						((GroupItem)item).addMember(member);
 					}
 				}
 			}
@@ -28,6 +28,10 @@
  */
 package org.openhab.core.internal.items;
 
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 import org.openhab.core.events.AbstractEventSubscriber;
 import org.openhab.core.items.GenericItem;
 import org.openhab.core.items.GroupItem;
@@ -39,6 +43,10 @@ import org.openhab.core.types.State;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+
 /**
  * The ItemUpdater listens on the event bus and passes any received status update
  * to the item registry.
@@ -53,6 +61,18 @@ public class ItemUpdater extends AbstractEventSubscriber {
 	
 	protected ItemRegistry itemRegistry;
 	
+	/** 
+	 * the accept tables per list of accepted data types; the lists are compared by identity
+	 * and are only weakly referenced, as groups create a new list whenever their members change
+	 */
+	private final Cache<List<Class<? extends State>>, AcceptTable> acceptTables = CacheBuilder.newBuilder().weakKeys()
+		.build(new CacheLoader<List<Class<? extends State>>, AcceptTable>() {
+			@Override
+			public AcceptTable load(List<Class<? extends State>> acceptedDataTypes) {
+				return new AcceptTable();
+			}
+		});
+	
 	public void setItemRegistry(ItemRegistry itemRegistry) {
 		this.itemRegistry = itemRegistry;
 	}
@@ -69,25 +89,7 @@ public class ItemUpdater extends AbstractEventSubscriber {
 		if (itemRegistry != null) {
 			try {
 				GenericItem item = (GenericItem) itemRegistry.getItem(itemName);
-				boolean isAccepted = false;
-				if (item.getAcceptedDataTypes().contains(newStatus.getClass())) {
-					isAccepted = true;
-				} else {
-					// Look for class hierarchy
-					for (Class<? extends State> state : item.getAcceptedDataTypes()) {
-						try {
-							if (!state.isEnum() && state.newInstance().getClass().isAssignableFrom(newStatus.getClass())) {
-								isAccepted = true;
-								break;
-							}
-						} catch (InstantiationException e) {
-							logger.warn("InstantiationException on {}", e.getMessage()); // Should never happen
-						} catch (IllegalAccessException e) {
-							logger.warn("IllegalAccessException on {}", e.getMessage()); // Should never happen
-						}
-					}
-				}				
-				if (isAccepted) {
+				if (isAccepted(item, newStatus)) {
 					item.setState(newStatus);
 				} else {
 					logger.debug("Received update of a not accepted type ("	+ newStatus.getClass().getSimpleName() + ") for item " + itemName);
@@ -116,5 +118,53 @@ public class ItemUpdater extends AbstractEventSubscriber {
 			}
 		}
 	}
+	
+	/**
+	 * Checks whether the given state is of one of the accepted data types of the item
+	 * or of a subclass of them.
+	 * 
+	 * @param item the item to check
+	 * @param state the state to check
+	 * @return <code>true</code>, if the item accepts the state
+	 */
+	protected boolean isAccepted(Item item, State state) {
+		List<Class<? extends State>> acceptedDataTypes = item.getAcceptedDataTypes();
+		if (acceptedDataTypes == null) {
+			return false;
+		}
+		// item classes usually return the same list for all their instances, so they share a table
+		return acceptTables.getUnchecked(acceptedDataTypes).accepts(acceptedDataTypes, state.getClass());
+	}
+	
+	/**
+	 * Remembers for a list of accepted data types, which state classes are accepted.
+	 * The table does not reference the list itself, so that it does not keep its key alive.
+	 */
+	private static class AcceptTable {
+		
+		final ConcurrentMap<Class<?>, Boolean> results = new ConcurrentHashMap<Class<?>, Boolean>();
+		
+		public boolean accepts(List<Class<? extends State>> acceptedDataTypes, Class<? extends State> stateClass) {
+			Boolean accepted = results.get(stateClass);
+			if (accepted == null) {
+				accepted = resolve(acceptedDataTypes, stateClass);
+				results.put(stateClass, accepted);
+			}
+			return accepted;
+		}
+		
+		private boolean resolve(List<Class<? extends State>> acceptedDataTypes, Class<? extends State> stateClass) {
+			if (acceptedDataTypes.contains(stateClass)) {
+				return true;
+			}
+			// look for class hierarchy
+			for (Class<? extends State> type : acceptedDataTypes) {
+				if (!type.isEnum() && type.isAssignableFrom(stateClass)) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
 
 }
@@ -28,12 +28,9 @@
  */
 package org.openhab.core.items;
 
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
-import java.util.WeakHashMap;
 
 import org.openhab.core.events.EventPublisher;
 import org.openhab.core.types.Command;
@@ -53,7 +50,17 @@ abstract public class GenericItem implements Item {
 	
 	protected EventPublisher eventPublisher;
 
-	protected Collection<StateChangeListener> listeners = Collections.newSetFromMap(new WeakHashMap<StateChangeListener, Boolean>());
+	private static final ListenerReference[] NO_LISTENERS = new ListenerReference[0];
+
+	/** 
+	 * weakly referenced listeners; the array is never modified, but replaced
+	 * as a whole on every change, so that notifications can iterate over it
+	 * without locking or copying
+	 */
+	private volatile ListenerReference[] listeners = NO_LISTENERS;
+	
+	/** guards the replacement of the listener array */
+	private final Object listenerLock = new Object();
 	
 	protected List<String> groupNames = new ArrayList<String>();
 	
@@ -121,14 +128,21 @@ abstract public class GenericItem implements Item {
 	}
 
 	private void notifyListeners(State oldState, State newState) {
+		// work on a snapshot, so that listeners can (un)register themselves while being notified
+		ListenerReference[] snapshot = listeners;
+		if(snapshot.length==0) return;
+		
 		// if nothing has changed, we send update notifications
-		synchronized(listeners) {
-			HashSet<StateChangeListener> clonedListeners = new HashSet<StateChangeListener>(listeners);
-			for(StateChangeListener listener : clonedListeners) {
+		for(ListenerReference reference : snapshot) {
+			StateChangeListener listener = reference.get();
+			if(listener!=null) {
 				listener.stateUpdated(this, newState);
 			}
-			if(!oldState.equals(newState)) {
-				for(StateChangeListener listener : clonedListeners) {
+		}
+		if(!oldState.equals(newState)) {
+			for(ListenerReference reference : snapshot) {
+				StateChangeListener listener = reference.get();
+				if(listener!=null) {
 					listener.stateChanged(this, oldState, newState);
 				}
 			}
@@ -146,17 +160,56 @@ abstract public class GenericItem implements Item {
 	}
 
 	public void addStateChangeListener(StateChangeListener listener) {
-		synchronized(listeners) {
-			listeners.add(listener);
+		if(listener==null) return;
+		synchronized(listenerLock) {
+			ListenerReference[] current = listeners;
+			List<ListenerReference> references = new ArrayList<ListenerReference>(current.length + 1);
+			for(ListenerReference reference : current) {
+				StateChangeListener registered = reference.get();
+				if(registered!=null) {
+					if(registered.equals(listener)) {
+						// already registered
+						return;
+					}
+					references.add(reference);
+				}
+			}
+			references.add(new ListenerReference(listener));
+			listeners = references.toArray(new ListenerReference[references.size()]);
 		}
 	}
 	
 	public void removeStateChangeListener(StateChangeListener listener) {
-		synchronized(listeners) {
-			listeners.remove(listener);
+		if(listener==null) return;
+		synchronized(listenerLock) {
+			ListenerReference[] current = listeners;
+			List<ListenerReference> references = new ArrayList<ListenerReference>(current.length);
+			for(ListenerReference reference : current) {
+				StateChangeListener registered = reference.get();
+				// drop the given listener as well as all garbage collected ones
+				if(registered!=null && !registered.equals(listener)) {
+					references.add(reference);
+				}
+			}
+			listeners = references.isEmpty() ? NO_LISTENERS : 
+				references.toArray(new ListenerReference[references.size()]);
 		}
 	}
 	
+	/**
+	 * Returns the number of currently registered listeners that have not 
+	 * been garbage collected yet.
+	 * 
+	 * @return the number of registered state change listeners
+	 */
+	protected int getListenerCount() {
+		int count = 0;
+		for(ListenerReference reference : listeners) {
+			if(reference.get()!=null) count++;
+		}
+		return count;
+	}
+	
 
 	@Override
 	public int hashCode() {
@@ -195,5 +248,15 @@ abstract public class GenericItem implements Item {
 		return true;
 	}
 	
+	/**
+	 * A weak reference to a {@link StateChangeListener}, so that registered
+	 * listeners can still be garbage collected.
+	 */
+	private static class ListenerReference extends WeakReference<StateChangeListener> {
+		
+		public ListenerReference(StateChangeListener listener) {
+			super(listener);
+		}
+	}
 	
 }
@@ -28,7 +28,10 @@
  */
 package org.openhab.core.items;
 
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import org.openhab.core.types.State;
 import org.openhab.core.types.UnDefType;
@@ -68,7 +71,7 @@ abstract public interface GroupFunction {
 	 * @since 0.7.0
 	 *
 	 */
-	static class Equality implements GroupFunction {
+	static class Equality implements IncrementalGroupFunction {
 
 		/**
 		 * @{inheritDoc
@@ -99,6 +102,49 @@ abstract public interface GroupFunction {
 				return null;
 			}
 		}
+
+		/**
+		 * @{inheritDoc
+		 */
+		public Aggregator createAggregator() {
+			return new Aggregator() {
+				
+				/** the number of members per distinct state */
+				private final Map<State, Integer> stateCounts = new HashMap<State, Integer>();
+
+				public void add(State state) {
+					Integer count = stateCounts.get(state);
+					stateCounts.put(state, count==null ? 1 : count + 1);
+				}
+
+				public void remove(State state) {
+					Integer count = stateCounts.get(state);
+					if(count!=null) {
+						if(count > 1) {
+							stateCounts.put(state, count - 1);
+						} else {
+							stateCounts.remove(state);
+						}
+					}
+				}
+
+				public State getState() {
+					Iterator<State> states = stateCounts.keySet().iterator();
+					if(states.hasNext()) {
+						// distinct keys might still be equal, if their hash codes differ
+						State state = states.next();
+						while(states.hasNext()) {
+							if(!state.equals(states.next())) {
+								return UnDefType.UNDEF;
+							}
+						}
+						return state;
+					} else {
+						return UnDefType.UNDEF;
+					}
+				}
+			};
+		}
 	}
 
 }
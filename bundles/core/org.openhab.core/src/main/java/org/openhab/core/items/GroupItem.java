@@ -29,9 +29,13 @@
 package org.openhab.core.items;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.apache.commons.collections.ListUtils;
 import org.openhab.core.types.Command;
@@ -48,6 +52,30 @@ public class GroupItem extends GenericItem implements StateChangeListener {
 	protected final List<Item> members;
 	
 	protected GroupFunction function;
+	
+	/** the groups this group is a direct member of */
+	private final List<GroupItem> parentGroups = new CopyOnWriteArrayList<GroupItem>();
+
+	/** the cached result of {@link #getAllMembers()} or <code>null</code>, if it has to be recalculated */
+	private volatile List<Item> allMembers;
+	
+	/** the cached result of {@link #getAcceptedDataTypes()} or <code>null</code>, if it has to be recalculated */
+	private volatile List<Class<? extends State>> acceptedDataTypes;
+	
+	/** the cached result of {@link #getAcceptedCommandTypes()} or <code>null</code>, if it has to be recalculated */
+	private volatile List<Class<? extends Command>> acceptedCommandTypes;
+	
+	/** is incremented whenever the (nested) members of this group change */
+	private volatile int membersVersion = 0;
+	
+	/** 
+	 * the aggregator which calculates the group state incrementally or <code>null</code>,
+	 * if the group function does not support this
+	 */
+	private final IncrementalGroupFunction.Aggregator aggregator;
+	
+	/** the member states, which are currently added to the aggregator */
+	private final Map<Item, MemberState> memberStates = new IdentityHashMap<Item, MemberState>();
 
 	public GroupItem(String name) {
 		this(name, null);
@@ -62,6 +90,11 @@ public class GroupItem extends GenericItem implements StateChangeListener {
 		members = new ArrayList<Item>();
 		this.function = function;
 		this.baseItem = baseItem;
+		if(function instanceof IncrementalGroupFunction) {
+			this.aggregator = ((IncrementalGroupFunction) function).createAggregator();
+		} else {
+			this.aggregator = null;
+		}
 	}
 	
 	/**
@@ -89,13 +122,26 @@ public class GroupItem extends GenericItem implements StateChangeListener {
 	 * Returns the direct members of this {@link GroupItem} and recursively all
 	 * members of the potentially contained {@link GroupItem}s as well. The 
 	 * {@link GroupItem}s itself aren't contained. The returned items are unique.
+	 * The list is cached until the members of this or a contained group change
+	 * and must not be modified.
 	 * 
 	 * @return all members of this and all contained {@link GroupItem}s
 	 */
 	public List<Item> getAllMembers() {
-		Set<Item> allMembers = new HashSet<Item>();
-		collectMembers(allMembers, members);
-		return new ArrayList<Item>(allMembers);
+		List<Item> result = allMembers;
+		if(result==null) {
+			int version = membersVersion;
+			Set<Item> collectedMembers = new HashSet<Item>();
+			collectMembers(collectedMembers, members);
+			result = Collections.unmodifiableList(new ArrayList<Item>(collectedMembers));
+			synchronized (parentGroups) {
+				// only cache the result if the members haven't changed in the meantime
+				if(version==membersVersion) {
+					allMembers = result;
+				}
+			}
+		}
+		return result;
 	}
 	
 	private void collectMembers(Set<Item> allMembers, List<Item> members) {
@@ -111,6 +157,21 @@ public class GroupItem extends GenericItem implements StateChangeListener {
 
 	public void addMember(Item item) {
 		members.add(item);
+		if (aggregator != null) {
+			synchronized (aggregator) {
+				MemberState memberState = memberStates.get(item);
+				if (memberState == null) {
+					memberState = new MemberState(item.getState());
+					memberStates.put(item, memberState);
+				}
+				memberState.count++;
+				aggregator.add(memberState.state);
+			}
+		}
+		if (item instanceof GroupItem) {
+			((GroupItem) item).parentGroups.add(this);
+		}
+		membersChanged(Collections.newSetFromMap(new IdentityHashMap<GroupItem, Boolean>()));
 		if (item instanceof GenericItem) {
 			GenericItem genericItem = (GenericItem) item;
 			genericItem.addStateChangeListener(this);
@@ -119,16 +180,52 @@ public class GroupItem extends GenericItem implements StateChangeListener {
 	
 	public void removeMember(Item item) {
 		members.remove(item);
+		if (aggregator != null) {
+			synchronized (aggregator) {
+				MemberState memberState = memberStates.get(item);
+				if (memberState != null) {
+					aggregator.remove(memberState.state);
+					if (--memberState.count == 0) {
+						memberStates.remove(item);
+					}
+				}
+			}
+		}
+		if (item instanceof GroupItem) {
+			((GroupItem) item).parentGroups.remove(this);
+		}
+		membersChanged(Collections.newSetFromMap(new IdentityHashMap<GroupItem, Boolean>()));
 		if (item instanceof GenericItem) {
 			GenericItem genericItem = (GenericItem) item;
 			genericItem.removeStateChangeListener(this);
 		}
 	}
 	
+	/**
+	 * Invalidates the cached list of all members and the cached accepted types
+	 * of this group and of all groups this group is (indirectly) a member of.
+	 * 
+	 * @param visitedGroups the groups which have already been invalidated
+	 */
+	private void membersChanged(Set<GroupItem> visitedGroups) {
+		if (visitedGroups.add(this)) {
+			synchronized (parentGroups) {
+				membersVersion++;
+				allMembers = null;
+				acceptedDataTypes = null;
+				acceptedCommandTypes = null;
+			}
+			for (GroupItem parentGroup : parentGroups) {
+				parentGroup.membersChanged(visitedGroups);
+			}
+		}
+	}
+	
 	/** 
 	 * The accepted data types of a group item is the same as of the underlying base item.
 	 * If none is defined, the intersection of all sets of accepted data types of all group
-	 * members is used instead.
+	 * members is used instead. The intersection is cached until the (nested) members of
+	 * this group change.
 	 * 
 	 * @return the accepted data types of this group item
 	 */
@@ -137,23 +234,33 @@ public class GroupItem extends GenericItem implements StateChangeListener {
 		if(baseItem!=null) {
 			return baseItem.getAcceptedDataTypes();
 		} else {
-			List<Class<? extends State>> acceptedDataTypes = null;
-			
-			for(Item item : members) {
-				if(acceptedDataTypes==null) {
-					acceptedDataTypes = item.getAcceptedDataTypes();
-				} else {
-					acceptedDataTypes = ListUtils.intersection(acceptedDataTypes, item.getAcceptedDataTypes());
+			List<Class<? extends State>> result = acceptedDataTypes;
+			if(result==null) {
+				int version = membersVersion;
+				for(Item item : members) {
+					if(result==null) {
+						result = item.getAcceptedDataTypes();
+					} else {
+						result = ListUtils.intersection(result, item.getAcceptedDataTypes());
+					}
+				}
+				// the cached list is handed out to all callers, so it must not be modified
+				result = result == null ? ListUtils.EMPTY_LIST : Collections.unmodifiableList(result);
+				synchronized (parentGroups) {
+					if(version==membersVersion) {
+						acceptedDataTypes = result;
+					}
 				}
 			}
-			return acceptedDataTypes == null ? ListUtils.EMPTY_LIST : acceptedDataTypes;
+			return result;
 		}
 	}
 
 	/** 
 	 * The accepted command types of a group item is the same as of the underlying base item.
 	 * If none is defined, the intersection of all sets of accepted command types of all group
-	 * members is used instead.
+	 * members is used instead. The intersection is cached until the (nested) members of
+	 * this group change.
 	 * 
 	 * @return the accepted command types of this group item
 	 */
@@ -162,16 +269,25 @@ public class GroupItem extends GenericItem implements StateChangeListener {
 		if(baseItem!=null) {
 			return baseItem.getAcceptedCommandTypes();
 		} else {
-			List<Class<? extends Command>> acceptedCommandTypes = null;
-			
-			for(Item item : members) {
-				if(acceptedCommandTypes==null) {
-					acceptedCommandTypes = item.getAcceptedCommandTypes();
-				} else {
-					acceptedCommandTypes = ListUtils.intersection(acceptedCommandTypes, item.getAcceptedCommandTypes());
+			List<Class<? extends Command>> result = acceptedCommandTypes;
+			if(result==null) {
+				int version = membersVersion;
+				for(Item item : members) {
+					if(result==null) {
+						result = item.getAcceptedCommandTypes();
+					} else {
+						result = ListUtils.intersection(result, item.getAcceptedCommandTypes());
+					}
+				}
+				// the cached list is handed out to all callers, so it must not be modified
+				result = result == null ? ListUtils.EMPTY_LIST : Collections.unmodifiableList(result);
+				synchronized (parentGroups) {
+					if(version==membersVersion) {
+						acceptedCommandTypes = result;
+					}
 				}
 			}
-			return acceptedCommandTypes == null ? ListUtils.EMPTY_LIST : acceptedCommandTypes;
+			return result;
 		}
 	}
 	
@@ -229,13 +345,55 @@ public class GroupItem extends GenericItem implements StateChangeListener {
 	 * @{inheritDoc
 	 */
 	public void stateChanged(Item item, State oldState, State newState) {
-		setState(function.calculate(members));
+		setState(calculateState(item, newState));
 	}
 
 	/**
 	 * @{inheritDoc
 	 */
 	public void stateUpdated(Item item, State state) {
-		setState(function.calculate(members));
+		setState(calculateState(item, state));
+	}
+	
+	/**
+	 * Calculates the group state after a member has been updated. If the group 
+	 * function supports it, only the state of the updated member is passed to the
+	 * aggregator, otherwise the state is calculated from all members.
+	 * 
+	 * @param item the member which has been updated
+	 * @param state the new state of the member
+	 * @return the new group state
+	 */
+	private State calculateState(Item item, State state) {
+		if (aggregator == null) {
+			return function.calculate(members);
+		}
+		synchronized (aggregator) {
+			MemberState memberState = memberStates.get(item);
+			if (memberState != null && memberState.state != state) {
+				for (int i = 0; i < memberState.count; i++) {
+					aggregator.remove(memberState.state);
+					aggregator.add(state);
+				}
+				memberState.state = state;
+			}
+			State result = aggregator.getState();
+			return result != null ? result : function.calculate(members);
+		}
+	}
+	
+	/**
+	 * The state of a member, which is currently added to the aggregator, and
+	 * the number of times the member has been added to this group. 
+	 */
+	private static class MemberState {
+		
+		State state;
+		
+		int count = 0;
+		
+		MemberState(State state) {
+			this.state = state;
+		}
 	}
 }
@@ -0,0 +1,90 @@
+/**
+ * openHAB, the open Home Automation Bus.
+ * Copyright (C) 2010-2013, openHAB.org <admin@openhab.org>
+ *
+ * See the contributors.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ * Additional permission under GNU GPL version 3 section 7
+ *
+ * If you modify this Program, or any covered work, by linking or
+ * combining it with Eclipse (or a modified version of that library),
+ * containing parts covered by the terms of the Eclipse Public License
+ * (EPL), the licensors of this Program grant you additional permission
+ * to convey the resulting work.
+ */
+package org.openhab.core.items;
+
+import org.openhab.core.types.State;
+
+/**
+ * Group functions implementing this interface can calculate the group state
+ * incrementally. Instead of iterating over all members whenever one of them
+ * is updated, the {@link GroupItem} feeds the state changes of its members into
+ * an {@link Aggregator}, which keeps the intermediate results.
+ * 
+ * @author agent
+ * @since 1.3.0
+ *
+ */
+public interface IncrementalGroupFunction extends GroupFunction {
+
+	/**
+	 * Creates a new and empty aggregator for this group function. Every group
+	 * item uses its own aggregator instance.
+	 * 
+	 * @return a new aggregator
+	 */
+	public Aggregator createAggregator();
+	
+	/**
+	 * An aggregator keeps the intermediate results of a group function for the
+	 * states of all group members. Implementations do not need to be thread-safe,
+	 * the group item takes care of the synchronization.
+	 * 
+	 * @author agent
+	 * @since 1.3.0
+	 *
+	 */
+	public interface Aggregator {
+		
+		/**
+		 * Adds the state of a member to the aggregation.
+		 * 
+		 * @param state the member state, might be <code>null</code>
+		 */
+		public void add(State state);
+		
+		/**
+		 * Removes a member state, which has been added before, from the aggregation.
+		 * 
+		 * @param state the member state, might be <code>null</code>
+		 */
+		public void remove(State state);
+
+		/**
+		 * Returns the group state for all states which are currently aggregated. 
+		 * It must be the same as the result of {@link GroupFunction#calculate(java.util.List)}
+		 * for items with these states. If the result depends on the order of the members,
+		 * which the aggregator does not know, it returns <code>null</code> and the group
+		 * state is calculated from all members instead.
+		 * 
+		 * @return the calculated group state or <code>null</code>
+		 */
+		public State getState();
+	}
+	
+}
@@ -28,13 +28,18 @@
  */
 package org.openhab.core.service;
 
+import java.util.concurrent.ScheduledFuture;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 
 /**
- * Base class for services that frequently run some action in a separate thread in the 
- * background.
+ * Base class for services that frequently run some action in the background.
+ * 
+ * <p>The refresh cycles of all services are executed by the shared {@link RefreshScheduler},
+ * so that a service does not occupy a thread of its own while it is idle. The execution times 
+ * of the refresh cycles are recorded in the {@link ExecutionStatistics} of the service.</p>
  * 
  * @author Kai Kreuzer
  * @since 0.7.0
@@ -44,16 +49,18 @@ public abstract class AbstractActiveService {
 	private static final Logger logger = LoggerFactory.getLogger(AbstractActiveService.class);
 
 	/**
-	 * indicates that the background thread will shutdown after the current
+	 * indicates that the background refresh will shutdown after the current
 	 * execution cycle.
 	 */
-	protected boolean shutdown = false;
+	protected volatile boolean shutdown = false;
 	
 	/**
-	 * holds the instance of the refresh thread or is <code>null</code> if 
-	 * there is no thread active at the moment
+	 * holds the scheduled refresh cycle or is <code>null</code> if 
+	 * there is no refresh cycle active at the moment
 	 */
-	private Thread refreshThread;
+	private volatile ScheduledFuture<?> refreshFuture;
+	
+	private final ExecutionStatistics statistics = new ExecutionStatistics();
 	
 	
 	public AbstractActiveService() {
@@ -71,47 +78,69 @@ public abstract class AbstractActiveService {
 	}
 	
 	/**
-	 * Takes care about starting the refresh thread. It creates a new
-	 * RefreshThread if no instance exists.
+	 * Takes care about starting the refresh cycle. It schedules a new
+	 * refresh cycle if none is active.
 	 */
-	protected void start() {
+	protected synchronized void start() {
 		if (!isProperlyConfigured()) {
 			logger.trace("{} won't be started because it isn't properly configured.", getName());
 			return;
 		}
 		
-		if (this.refreshThread == null) {
-			this.refreshThread = new RefreshThread(getName(), getRefreshInterval());
-			this.refreshThread.start();
+		if (!isRunning()) {
+			// reset 'interrupted' after stopping the previous refresh cycle ...
+			shutdown = false;
+			this.refreshFuture = RefreshScheduler.getInstance().schedule(
+				getName(), new RefreshTask(getRefreshInterval()), getRefreshInterval(), isFixedRate());
+			logger.debug(getName() + " has been started");
 		}
 	}
 
 	/**
-	 * Gracefully shuts down the refresh background thread. It will shuts down
+	 * Gracefully shuts down the background refresh. It will shut down
 	 * after the current execution cycle.
 	 */
 	public void shutdown() {
 		this.shutdown = true;
+		cancel(false);
 	}
 	
 	/**
-	 * Interrupts the refresh thread immediately.
+	 * Interrupts the refresh cycle immediately.
 	 */
 	public void interrupt() {
-		if (this.refreshThread != null) {
-			this.refreshThread.interrupt();
+		if (cancel(true)) {
 			logger.trace("{} has been interrupted.", getName());
 		}
 	}
 	
+	private synchronized boolean cancel(boolean interrupt) {
+		ScheduledFuture<?> future = this.refreshFuture;
+		if (future != null && !future.isDone()) {
+			future.cancel(interrupt);
+			this.refreshFuture = null;
+			logger.info(getName() + " has been shut down");
+			logger.debug("Execution statistics of {}: {}", getName(), statistics);
+			return true;
+		}
+		return false;
+	}
+	
 	/**
 	 * {@inheritDoc}
 	 */
 	public boolean isRunning() {
-		if (this.refreshThread != null) {
-			return this.refreshThread.isAlive();
-		}
-		return false;
+		ScheduledFuture<?> future = this.refreshFuture;
+		return future != null && !future.isDone();
+	}
+	
+	/**
+	 * Returns the statistics about the execution times of the refresh cycles.
+	 * 
+	 * @return the execution statistics of this service
+	 */
+	public ExecutionStatistics getExecutionStatistics() {
+		return statistics;
 	}
 	
 	/**
@@ -121,13 +150,13 @@ public abstract class AbstractActiveService {
 	public abstract boolean isProperlyConfigured();
 	
 	/**
-	 * The working method which is called by the refresh thread frequently. 
+	 * The working method which is called by the refresh cycle frequently. 
 	 * Developers should put their binding code here.
 	 */
 	protected abstract void execute();
 
 	/**
-	 * Returns the refresh interval to be used by the RefreshThread between to
+	 * Returns the refresh interval to be used by the refresh cycle between two
 	 * calls of the execute method.
 	 * 
 	 * @return the refresh interval
@@ -135,63 +164,65 @@ public abstract class AbstractActiveService {
 	protected abstract long getRefreshInterval();
 
 	/**
-	 * Returns the name of the Refresh thread.
+	 * Returns the name of the refresh cycle.
 	 * 
-	 * @return the name of the refresh thread.
+	 * @return the name of the refresh cycle.
 	 */
 	protected abstract String getName();
 	
 	/**
-	 * Worker thread which calls the execute method frequently.
-	 *  
-	 * @author Thomas.Eichstaedt-Engelen
+	 * Determines whether the refresh interval is the time between the starts of two
+	 * executions (fixed rate) or between the end of an execution and the start of the
+	 * next one (fixed delay). Services with fixed delay behave like the former refresh
+	 * threads, which paused for the refresh interval after each execution.
+	 * 
+	 * @return <code>true</code> for a fixed rate, <code>false</code> for a fixed delay (default)
+	 */
+	protected boolean isFixedRate() {
+		return false;
+	}
+	
+	/**
+	 * Task which calls the execute method and records its execution time.
 	 */
-	class RefreshThread extends Thread {
+	private class RefreshTask implements Runnable {
 		
-		private long refreshInterval;
+		private final long refreshInterval;
 		
-		public RefreshThread(String name, long refreshInterval) {
-			super(name);
-			this.setDaemon(true);
+		/** avoids flooding the log if every execution takes longer than the interval */
+		private boolean overrunLogged = false;
+		
+		public RefreshTask(long refreshInterval) {
 			this.refreshInterval = refreshInterval;
-			
-			// reset 'interrupted' after stopping this refresh thread ...
-			shutdown = false;
 		}
 		
-		@Override
 		public void run() {
-			logger.debug(getName() + " has been started");
-			
-			while (!shutdown) {
-				try {
-					execute();
-				} catch(RuntimeException e) {
-					logger.error("Error while executing background thread " + getName(), e);
-				}
-				pause(refreshInterval);
+			if (shutdown) {
+				// a subclass has set the shutdown flag directly
+				cancel(false);
+				return;
 			}
 			
-			refreshThread = null;
-			logger.info(getName() + " has been shut down");
-		}
-		
-		/**
-		 * Pause polling for the given <code>refreshInterval</code>. Possible
-		 * {@link InterruptedException} is logged with no further action.
-		 *  
-		 * @param refreshInterval 
-		 */
-		protected void pause(long refreshInterval) {
-			
+			long startTime = System.currentTimeMillis();
 			try {
-				Thread.sleep(refreshInterval);
+				execute();
+			} catch(RuntimeException e) {
+				logger.error("Error while executing background thread " + getName(), e);
 			}
-			catch (InterruptedException e) {
-				logger.debug("pausing thread " + super.getName() +" interrupted");
+			long executionTime = System.currentTimeMillis() - startTime;
+			
+			boolean overrun = executionTime > refreshInterval;
+			statistics.record(executionTime, overrun);
+			if (overrun) {
+				if (!overrunLogged) {
+					logger.warn("{} took {} ms, which is longer than its refresh interval of {} ms", 
+							new Object[] { getName(), executionTime, refreshInterval });
+					overrunLogged = true;
+				}
+			} else {
+				overrunLogged = false;
 			}
 		}
-
 	}
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,133 @@
+/**
+ * openHAB, the open Home Automation Bus.
+ * Copyright (C) 2010-2013, openHAB.org <admin@openhab.org>
+ *
+ * See the contributors.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ * Additional permission under GNU GPL version 3 section 7
+ *
+ * If you modify this Program, or any covered work, by linking or
+ * combining it with Eclipse (or a modified version of that library),
+ * containing parts covered by the terms of the Eclipse Public License
+ * (EPL), the licensors of this Program grant you additional permission
+ * to convey the resulting work.
+ */
+package org.openhab.core.service;
+
+import java.util.Arrays;
+
+
+/**
+ * Keeps statistics about the execution times of the refresh cycles of an active
+ * service. The execution times are counted in a histogram with the buckets
+ * <code>&lt;10ms, &lt;100ms, &lt;1s, &lt;10s</code> and <code>&gt;=10s</code>.
+ * 
+ * @author agent
+ * @since 1.3.0
+ */
+public class ExecutionStatistics {
+
+	/** the upper bounds in milliseconds of all histogram buckets but the last one */
+	private static final long[] BUCKET_BOUNDS = new long[] { 10L, 100L, 1000L, 10000L };
+	
+	private final long[] histogram = new long[BUCKET_BOUNDS.length + 1];
+	
+	private long executions;
+	
+	private long overruns;
+	
+	private long totalTime;
+	
+	private long maxTime;
+	
+	/**
+	 * Records an execution.
+	 * 
+	 * @param time the execution time in milliseconds
+	 * @param overrun <code>true</code>, if the execution took longer than the refresh interval
+	 */
+	public synchronized void record(long time, boolean overrun) {
+		int bucket = 0;
+		while(bucket < BUCKET_BOUNDS.length && time >= BUCKET_BOUNDS[bucket]) {
+			bucket++;
+		}
+		histogram[bucket]++;
+		executions++;
+		totalTime += time;
+		maxTime = Math.max(maxTime, time);
+		if(overrun) {
+			overruns++;
+		}
+	}
+	
+	/**
+	 * @return the number of recorded executions
+	 */
+	public synchronized long getExecutions() {
+		return executions;
+	}
+
+	/**
+	 * @return the number of executions, which took longer than the refresh interval
+	 */
+	public synchronized long getOverruns() {
+		return overruns;
+	}
+
+	/**
+	 * @return the average execution time in milliseconds
+	 */
+	public synchronized long getAverageTime() {
+		return executions > 0 ? totalTime / executions : 0L;
+	}
+
+	/**
+	 * @return the maximum execution time in milliseconds
+	 */
+	public synchronized long getMaxTime() {
+		return maxTime;
+	}
+	
+	/**
+	 * Returns the number of executions per bucket of the histogram.
+	 * 
+	 * @return the counts of the buckets <code>&lt;10ms, &lt;100ms, &lt;1s, &lt;10s, &gt;=10s</code>
+	 */
+	public synchronized long[] getHistogram() {
+		return histogram.clone();
+	}
+	
+	/**
+	 * Resets all statistics.
+	 */
+	public synchronized void reset() {
+		for(int i = 0; i < histogram.length; i++) {
+			histogram[i] = 0L;
+		}
+		executions = 0L;
+		overruns = 0L;
+		totalTime = 0L;
+		maxTime = 0L;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "executions=" + executions + ", overruns=" + overruns + ", avg=" + getAverageTime() + "ms, max=" + maxTime
+				+ "ms, histogram[<10ms, <100ms, <1s, <10s, >=10s]=" + Arrays.toString(histogram);
+	}
+
+}
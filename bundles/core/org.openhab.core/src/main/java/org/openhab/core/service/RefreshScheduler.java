@@ -0,0 +1,165 @@
+/**
+ * openHAB, the open Home Automation Bus.
+ * Copyright (C) 2010-2013, openHAB.org <admin@openhab.org>
+ *
+ * See the contributors.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ * Additional permission under GNU GPL version 3 section 7
+ *
+ * If you modify this Program, or any covered work, by linking or
+ * combining it with Eclipse (or a modified version of that library),
+ * containing parts covered by the terms of the Eclipse Public License
+ * (EPL), the licensors of this Program grant you additional permission
+ * to convey the resulting work.
+ */
+package org.openhab.core.service;
+
+import java.util.Random;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * This is the central scheduler for the refresh cycles of all active services and bindings. 
+ * Instead of a thread per service, the refresh cycles are executed by a small shared pool 
+ * of daemon threads. The size of the pool can be set by the system property 
+ * <code>openhab.refresh.threads</code>.
+ * 
+ * <p>The first execution of each refresh cycle is delayed by a small random jitter, so that
+ * services, which are started at the same time, do not all poll at the same moments.</p>
+ * 
+ * @author agent
+ * @since 1.3.0
+ */
+public class RefreshScheduler {
+
+	private static final Logger logger = LoggerFactory.getLogger(RefreshScheduler.class);
+
+	/** the default number of threads of the scheduler */
+	private static final int DEFAULT_THREADS = 10;
+	
+	/** the maximum jitter in milliseconds of the first execution of a refresh cycle */
+	private static final long MAX_JITTER = 1000L;
+
+	private static RefreshScheduler instance;
+	
+	private final ScheduledExecutorService executor;
+	
+	private final Random random = new Random();
+	
+	private RefreshScheduler(int threads) {
+		executor = new ScheduledThreadPoolExecutor(threads, new RefreshThreadFactory());
+	}
+	
+	/**
+	 * Returns the shared scheduler, which is created on first access.
+	 * 
+	 * @return the refresh scheduler
+	 */
+	public static synchronized RefreshScheduler getInstance() {
+		if(instance==null) {
+			instance = new RefreshScheduler(Math.max(1, Integer.getInteger("openhab.refresh.threads", DEFAULT_THREADS)));
+		}
+		return instance;
+	}
+	
+	/**
+	 * Stops the shared scheduler. All scheduled refresh cycles are cancelled; a new scheduler
+	 * is created if a refresh cycle is scheduled afterwards.
+	 */
+	public static synchronized void shutdownInstance() {
+		if(instance!=null) {
+			instance.executor.shutdownNow();
+			instance = null;
+		}
+	}
+
+	/**
+	 * Schedules the periodic execution of a task. While the task is executed, the executing
+	 * thread carries the given name. A task is never executed concurrently with itself; if an
+	 * execution takes longer than the interval, the next one starts late.
+	 * 
+	 * @param name the name of the task, e.g. the name of the binding
+	 * @param task the task to execute
+	 * @param interval the time in milliseconds between two executions
+	 * @param fixedRate <code>true</code>, if the interval is the time between the starts of two
+	 * executions, <code>false</code>, if it is the time between the end of an execution and the 
+	 * start of the next one
+	 * @return the future to cancel the refresh cycle with
+	 */
+	public ScheduledFuture<?> schedule(String name, Runnable task, long interval, boolean fixedRate) {
+		long period = Math.max(1L, interval);
+		long jitter;
+		synchronized(random) {
+			jitter = (long) (random.nextDouble() * Math.min(period, MAX_JITTER));
+		}
+		Runnable namedTask = new NamedTask(name, task);
+		logger.trace("Scheduling '{}' with an interval of {} ms", name, period);
+		if(fixedRate) {
+			return executor.scheduleAtFixedRate(namedTask, jitter, period, TimeUnit.MILLISECONDS);
+		} else {
+			return executor.scheduleWithFixedDelay(namedTask, jitter, period, TimeUnit.MILLISECONDS);
+		}
+	}
+	
+	/**
+	 * Wraps a task to give the executing thread the name of the task
+	 */
+	private static class NamedTask implements Runnable {
+		
+		private final String name;
+		private final Runnable task;
+		
+		public NamedTask(String name, Runnable task) {
+			this.name = name;
+			this.task = task;
+		}
+
+		public void run() {
+			Thread thread = Thread.currentThread();
+			String threadName = thread.getName();
+			thread.setName(name);
+			try {
+				task.run();
+			} finally {
+				thread.setName(threadName);
+			}
+		}
+	}
+
+	/**
+	 * Creates the daemon threads of the scheduler
+	 */
+	private static class RefreshThreadFactory implements ThreadFactory {
+		
+		private final AtomicInteger count = new AtomicInteger();
+
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "Refresh Scheduler " + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+
+}
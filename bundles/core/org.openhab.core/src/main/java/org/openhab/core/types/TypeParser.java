@@ -30,17 +30,46 @@ package org.openhab.core.types;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
 
 /**
  * This is a helper class that helps parsing a string into an openHAB type (state or command).
  * 
+ * <p>Every type class is parsed by a {@link Parser}. Type libraries can register dedicated parsers
+ * for their types; for all other types, enums are resolved by their constant names and classes
+ * through their static <code>valueOf(String)</code> method. These default parsers are cached
+ * without keeping the type classes (and thus the class loaders of their bundles) alive.</p>
+ * 
  * @author Kai Kreuzer
  * @since 0.1.0
  *
  */
 public class TypeParser {
 
+	/** the registered parsers by their type class */
+	private static final ConcurrentMap<Class<?>, Parser<?>> parsers = new ConcurrentHashMap<Class<?>, Parser<?>>();
+
+	/** 
+	 * the default parsers by their type class; as a parser references its type class, the 
+	 * parsers are only softly referenced, so that the classes of stopped bundles can be unloaded
+	 */
+	private static final Cache<Class<? extends Type>, Parser<?>> defaultParsers = CacheBuilder.newBuilder().weakKeys().softValues()
+		.build(new CacheLoader<Class<? extends Type>, Parser<?>>() {
+			@Override
+			public Parser<?> load(Class<? extends Type> type) {
+				return createDefaultParser(type);
+			}
+		});
+
 	/**
 	 * <p>Determines a state from a string. Possible state types are passed as a parameter.
 	 * Note that the order matters here; the first type that accepts the string as a valid
@@ -54,16 +83,9 @@ public class TypeParser {
 	 * @return the corresponding State instance or <code>null</code>
 	 */
 	public static State parseState(List<Class<? extends State>> types, String s) {
-		for(Class<? extends Type> type : types) {
-			try {									
-				Method valueOf = type.getMethod("valueOf", String.class);
-				State state = (State) valueOf.invoke(type, s);
-				if(state!=null) return state;
-			} catch (NoSuchMethodException e) {
-			} catch (IllegalArgumentException e) {
-			} catch (IllegalAccessException e) {
-			} catch (InvocationTargetException e) {
-			}
+		for(Class<? extends State> type : types) {
+			Type value = parse(type, s);
+			if(value instanceof State) return (State) value;
 		}
 		return null;
 	}
@@ -82,16 +104,130 @@ public class TypeParser {
 	 */
 	public static Command parseCommand(List<Class<? extends Command>> types, String s) {
 		for(Class<? extends Command> type : types) {
-			try {									
-				Method valueOf = type.getMethod("valueOf", String.class);
-				Command value = (Command) valueOf.invoke(type, s);
-				if(value!=null) return value;
-			} catch (NoSuchMethodException e) {
+			Type value = parse(type, s);
+			if(value instanceof Command) return (Command) value;
+		}
+		return null;
+	}
+	
+	/**
+	 * Registers a parser for the given type class. An already registered parser is replaced.
+	 * 
+	 * @param type the type class to register the parser for
+	 * @param parser the parser, which must return <code>null</code> for strings that
+	 * are not valid values of the given type
+	 */
+	public static <T extends Type> void registerParser(Class<T> type, Parser<? extends T> parser) {
+		parsers.put(type, parser);
+	}
+	
+	/**
+	 * Removes the parser of the given type class. If the type is parsed again later on,
+	 * its default parser is used.
+	 * 
+	 * @param type the type class to remove the parser for
+	 */
+	public static void unregisterParser(Class<? extends Type> type) {
+		parsers.remove(type);
+	}
+	
+	private static Type parse(Class<? extends Type> type, String s) {
+		try {
+			return getParser(type).parse(s);
+		} catch (RuntimeException e) {
+			// parsers should return null, but we accept rejections by exceptions as well
+			return null;
+		}
+	}
+	
+	private static Parser<?> getParser(Class<? extends Type> type) {
+		Parser<?> parser = parsers.get(type);
+		return parser!=null ? parser : defaultParsers.getUnchecked(type);
+	}
+
+	private static Parser<?> createDefaultParser(Class<? extends Type> type) {
+		if(type.isEnum()) {
+			return new EnumParser(type.getEnumConstants());
+		}
+		try {
+			Method valueOf = type.getMethod("valueOf", String.class);
+			if(Modifier.isStatic(valueOf.getModifiers())) {
+				return new ValueOfParser(valueOf);
+			}
+		} catch (NoSuchMethodException e) {
+		}
+		return NullParser.INSTANCE;
+	}
+	
+	
+	/**
+	 * A parser converts strings into values of a certain type.
+	 * 
+	 * @param <T> the type which is created by this parser
+	 */
+	public interface Parser<T extends Type> {
+		
+		/**
+		 * Converts the given string into a value.
+		 * 
+		 * @param s the string to parse
+		 * @return the parsed value or <code>null</code>, if the string is not a 
+		 * valid value for this type
+		 */
+		T parse(String s);
+	}
+	
+	/**
+	 * Resolves enum constants by their names without throwing exceptions for unknown names.
+	 */
+	private static class EnumParser implements Parser<Type> {
+		
+		private final Map<String, Type> constants = new HashMap<String, Type>();
+		
+		public EnumParser(Type[] values) {
+			for(Type value : values) {
+				constants.put(((Enum<?>) value).name(), value);
+			}
+		}
+		
+		public Type parse(String s) {
+			return s!=null ? constants.get(s) : null;
+		}
+	}
+
+	/**
+	 * Calls the static <code>valueOf(String)</code> method of a type class.
+	 */
+	private static class ValueOfParser implements Parser<Type> {
+		
+		private final Method valueOf;
+		
+		public ValueOfParser(Method valueOf) {
+			this.valueOf = valueOf;
+		}
+		
+		public Type parse(String s) {
+			try {
+				Object value = valueOf.invoke(null, s);
+				return value instanceof Type ? (Type) value : null;
 			} catch (IllegalArgumentException e) {
 			} catch (IllegalAccessException e) {
 			} catch (InvocationTargetException e) {
-			}		
+			}
+			return null;
+		}
+	}
+	
+	/**
+	 * Used for types which cannot be created from strings at all.
+	 */
+	private static class NullParser implements Parser<Type> {
+		
+		static final NullParser INSTANCE = new NullParser();
+		
+		public Type parse(String s) {
+			return null;
 		}
-		return null;
 	}
+	
 }
@@ -28,6 +28,20 @@
  */
 package org.openhab.io.net.http;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import junit.framework.Assert;
 
 import org.apache.commons.httpclient.UsernamePasswordCredentials;
@@ -35,14 +49,155 @@ import org.apache.commons.httpclient.methods.DeleteMethod;
 import org.apache.commons.httpclient.methods.GetMethod;
 import org.apache.commons.httpclient.methods.PostMethod;
 import org.apache.commons.httpclient.methods.PutMethod;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
 import org.junit.Test;
 import org.openhab.io.net.http.HttpUtil;
 
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
 
 /**
  * @author Thomas.Eichstaedt-Engelen
  */
 public class HttpUtilTest {
+	
+	private static final String RESPONSE = "<response>42</response>";
+	
+	/** a local server which answers all requests with {@link #RESPONSE} */
+	private HttpServer server;
+	
+	private ExecutorService serverExecutor;
+	
+	private String url;
+	
+	/** the client ports of all requests the server received */
+	private Set<Integer> clientPorts = Collections.synchronizedSet(new HashSet<Integer>());
+	
+	@Before
+	public void startServer() throws IOException {
+		startServer(0);
+	}
+	
+	private void startServer(int port) throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+		server.createContext("/", new HttpHandler() {
+			public void handle(HttpExchange exchange) throws IOException {
+				clientPorts.add(exchange.getRemoteAddress().getPort());
+				IOUtils.toByteArray(exchange.getRequestBody());
+				byte[] response = RESPONSE.getBytes("UTF-8");
+				exchange.sendResponseHeaders(200, response.length);
+				OutputStream out = exchange.getResponseBody();
+				out.write(response);
+				out.close();
+			}
+		});
+		serverExecutor = Executors.newFixedThreadPool(20);
+		server.setExecutor(serverExecutor);
+		server.start();
+		url = "http://127.0.0.1:" + server.getAddress().getPort() + "/test";
+	}
+	
+	@After
+	public void stopServer() {
+		server.stop(0);
+		serverExecutor.shutdownNow();
+	}
+	
+	@Test
+	public void testExecuteUrl() {
+		Assert.assertEquals(RESPONSE, HttpUtil.executeUrl("GET", url, 5000));
+		Assert.assertEquals(RESPONSE, HttpUtil.executeUrl("POST", url, 
+			new ByteArrayInputStream("content".getBytes()), "text/plain", 5000));
+	}
+	
+	@Test
+	public void testConnectionsAreReused() {
+		for (int i = 0; i < 20; i++) {
+			Assert.assertEquals(RESPONSE, HttpUtil.executeUrl("GET", url, 5000));
+		}
+		Assert.assertEquals(1, clientPorts.size());
+	}
+	
+	@Test
+	public void testClosedConnectionsAreReplaced() throws IOException {
+		Assert.assertEquals(RESPONSE, HttpUtil.executeUrl("GET", url, 5000));
+		
+		// restart the server, which closes the pooled connection
+		int port = server.getAddress().getPort();
+		stopServer();
+		startServer(port);
+		
+		Assert.assertEquals(RESPONSE, HttpUtil.executeUrl("GET", url, 5000));
+		Assert.assertEquals(2, clientPorts.size());
+	}
+	
+	@Test
+	public void testContentIsSentAgainOnNewConnection() throws IOException {
+		Assert.assertEquals(RESPONSE, HttpUtil.executeUrl("GET", url, 5000));
+		
+		// restart the server, which closes the pooled connection
+		int port = server.getAddress().getPort();
+		stopServer();
+		startServer(port);
+		
+		Assert.assertEquals(RESPONSE, HttpUtil.executeUrl("PUT", url, 
+			new ByteArrayInputStream("content".getBytes()), "text/plain", 5000));
+		Assert.assertEquals(2, clientPorts.size());
+	}
+	
+	@Test
+	public void testRequestsAfterShutdown() throws Exception {
+		Assert.assertEquals(RESPONSE, HttpUtil.executeUrl("GET", url, 5000));
+		// the bundle may be stopped and started again without being refreshed
+		HttpUtil.shutdown();
+		Assert.assertEquals(RESPONSE, HttpUtil.executeUrl("GET", url, 5000));
+		Assert.assertEquals(RESPONSE, HttpUtil.executeUrlAsync("GET", url, 5000).get());
+	}
+	
+	@Test
+	public void testExecuteUrlAsync() throws Exception {
+		List<Future<String>> responses = new ArrayList<Future<String>>();
+		for (int i = 0; i < 100; i++) {
+			responses.add(HttpUtil.executeUrlAsync("GET", url, 5000));
+		}
+		for (Future<String> response : responses) {
+			Assert.assertEquals(RESPONSE, response.get());
+		}
+		// the connections per host are limited
+		Assert.assertTrue(clientPorts.toString(), clientPorts.size() <= 5);
+	}
+	
+	@Test
+	public void testResponseHandler() {
+		Integer length = HttpUtil.executeUrl("GET", url, null, null, null, 5000, new HttpUtil.ResponseHandler<Integer>() {
+			public Integer handleResponse(int statusCode, InputStream body) throws IOException {
+				Assert.assertEquals(200, statusCode);
+				return IOUtils.toByteArray(body).length;
+			}
+		});
+		Assert.assertEquals(RESPONSE.length(), length.intValue());
+	}
+	
+	@Test
+	public void testUnreachableUrl() {
+		server.stop(0);
+		Assert.assertNull(HttpUtil.executeUrl("GET", url, 1000));
+	}
+	
+	@Test
+	public void testReadBody() throws IOException {
+		Assert.assertEquals("", HttpUtil.readBody(null, 10));
+		Assert.assertEquals(RESPONSE, HttpUtil.readBody(new ByteArrayInputStream(RESPONSE.getBytes()), RESPONSE.length()));
+		try {
+			HttpUtil.readBody(new ByteArrayInputStream(RESPONSE.getBytes()), RESPONSE.length() - 1);
+			Assert.fail("the response exceeds the limit");
+		} catch (IOException e) {
+		}
+	}
 
 	@Test
 	public void testExtractCredentials() {
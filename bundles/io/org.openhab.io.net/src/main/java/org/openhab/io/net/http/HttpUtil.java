@@ -28,11 +28,18 @@
  */
 package org.openhab.io.net.http;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -43,16 +50,19 @@ import org.apache.commons.httpclient.HttpClient;
 import org.apache.commons.httpclient.HttpException;
 import org.apache.commons.httpclient.HttpMethod;
 import org.apache.commons.httpclient.HttpStatus;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
 import org.apache.commons.httpclient.URIException;
 import org.apache.commons.httpclient.UsernamePasswordCredentials;
 import org.apache.commons.httpclient.auth.AuthScope;
+import org.apache.commons.httpclient.methods.ByteArrayRequestEntity;
 import org.apache.commons.httpclient.methods.DeleteMethod;
 import org.apache.commons.httpclient.methods.EntityEnclosingMethod;
 import org.apache.commons.httpclient.methods.GetMethod;
-import org.apache.commons.httpclient.methods.InputStreamRequestEntity;
 import org.apache.commons.httpclient.methods.PostMethod;
 import org.apache.commons.httpclient.methods.PutMethod;
+import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
 import org.apache.commons.httpclient.params.HttpMethodParams;
+import org.apache.commons.httpclient.util.IdleConnectionTimeoutThread;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
@@ -61,6 +71,18 @@ import org.slf4j.LoggerFactory;
 
 /**
  * Some common methods to be used in both HTTP-In-Binding and HTTP-Out-Binding
+ * <p>
+ * All requests share a pool of connections, so that connections to the same 
+ * host are kept alive and reused. The pool can be configured by the system
+ * properties <code>openhab.http.maxConnections</code> (default 40) and 
+ * <code>openhab.http.maxConnectionsPerHost</code> (default 5). The connect 
+ * timeout is set by <code>openhab.http.connectTimeout</code> in milliseconds 
+ * (default 10000) and response bodies which are returned as strings are limited
+ * to <code>openhab.http.maxResponseSize</code> bytes (default 10MB).
+ * A request waits at most <code>openhab.http.poolTimeout</code> milliseconds 
+ * (default 10000) for a free connection of the pool and connections which have 
+ * been idle for <code>openhab.http.idleTimeout</code> milliseconds (default 60000)
+ * are closed.
  * 
  * @author Thomas.Eichstaedt-Engelen
  * @author Kai Kreuzer
@@ -73,6 +95,105 @@ public class HttpUtil {
 	/** {@link Pattern} which matches the credentials out of an URL */ 
 	private static final Pattern URL_CREDENTIALS_PATTERN = Pattern.compile("http://(.*?):(.*?)@.*");
 	
+	private static final int MAX_CONNECTIONS = Integer.getInteger("openhab.http.maxConnections", 40);
+	
+	private static final int MAX_CONNECTIONS_PER_HOST = Integer.getInteger("openhab.http.maxConnectionsPerHost", 5);
+	
+	private static final int CONNECT_TIMEOUT = Integer.getInteger("openhab.http.connectTimeout", 10000);
+	
+	private static final int MAX_RESPONSE_SIZE = Integer.getInteger("openhab.http.maxResponseSize", 10 * 1024 * 1024);
+	
+	private static final int POOL_TIMEOUT = Integer.getInteger("openhab.http.poolTimeout", 10000);
+	
+	private static final int IDLE_TIMEOUT = Integer.getInteger("openhab.http.idleTimeout", 60000);
+	
+	/** the pool of connections shared by all requests, which is created on demand and discarded on shutdown */
+	private static volatile MultiThreadedHttpConnectionManager connectionManager;
+	
+	/** closes the connections of the pool which have not been used for a while */
+	private static IdleConnectionTimeoutThread idleConnectionThread;
+	
+	/** the threads of the asynchronous requests, which are only created on demand */
+	private static ExecutorService asyncExecutor;
+	
+	/** the retry handler is stateless and can be shared by all requests */
+	private static final DefaultHttpMethodRetryHandler retryHandler = new DefaultHttpMethodRetryHandler(3, false);
+	
+	/** reads response bodies into strings */
+	private static final ResponseHandler<String> STRING_RESPONSE_HANDLER = new ResponseHandler<String>() {
+		public String handleResponse(int statusCode, InputStream body) throws IOException {
+			return readBody(body, MAX_RESPONSE_SIZE);
+		}
+	};
+	
+	
+	private static MultiThreadedHttpConnectionManager createConnectionManager() {
+		MultiThreadedHttpConnectionManager connectionManager = new MultiThreadedHttpConnectionManager();
+		HttpConnectionManagerParams params = connectionManager.getParams();
+		params.setMaxTotalConnections(MAX_CONNECTIONS);
+		params.setDefaultMaxConnectionsPerHost(MAX_CONNECTIONS_PER_HOST);
+		params.setConnectionTimeout(CONNECT_TIMEOUT);
+		// connections which have been closed by the server in the meantime are detected before they are used
+		params.setStaleCheckingEnabled(true);
+		return connectionManager;
+	}
+	
+	private static IdleConnectionTimeoutThread createIdleConnectionThread(MultiThreadedHttpConnectionManager connectionManager) {
+		IdleConnectionTimeoutThread thread = new IdleConnectionTimeoutThread();
+		thread.setName("HTTP Idle Connection Timeout");
+		thread.setConnectionTimeout(IDLE_TIMEOUT);
+		thread.setTimeoutInterval(Math.max(IDLE_TIMEOUT / 2, 1000));
+		thread.addConnectionManager(connectionManager);
+		thread.start();
+		return thread;
+	}
+	
+	/**
+	 * Closes all pooled connections and stops the threads of the asynchronous requests.
+	 * This is called when the bundle is stopped; a new pool is created by the next request.
+	 */
+	public static synchronized void shutdown() {
+		if (asyncExecutor != null) {
+			asyncExecutor.shutdownNow();
+			asyncExecutor = null;
+		}
+		if (connectionManager != null) {
+			idleConnectionThread.shutdown();
+			idleConnectionThread = null;
+			connectionManager.shutdown();
+			connectionManager = null;
+		}
+	}
+	
+	private static MultiThreadedHttpConnectionManager getConnectionManager() {
+		MultiThreadedHttpConnectionManager manager = connectionManager;
+		if (manager == null) {
+			synchronized (HttpUtil.class) {
+				manager = connectionManager;
+				if (manager == null) {
+					manager = createConnectionManager();
+					idleConnectionThread = createIdleConnectionThread(manager);
+					connectionManager = manager;
+				}
+			}
+		}
+		return manager;
+	}
+	
+	private static synchronized ExecutorService getAsyncExecutor() {
+		if (asyncExecutor == null) {
+			asyncExecutor = Executors.newFixedThreadPool(MAX_CONNECTIONS, new ThreadFactory() {
+				private final AtomicInteger count = new AtomicInteger();
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "HTTP Request #" + count.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return asyncExecutor;
+	}
+	
 
 	/**
 	 * Executes the given <code>url</code> with the given <code>httpMethod</code>.
@@ -124,6 +245,27 @@ public class HttpUtil {
 	 * @return the response body or <code>NULL</code> when the request went wrong
 	 */
 	public static String executeUrl(String httpMethod, String url, Properties httpHeaders, InputStream content, String contentType, int timeout) {
+		return executeUrl(httpMethod, url, httpHeaders, content, contentType, timeout, STRING_RESPONSE_HANDLER);
+	}
+	
+	/**
+	 * Executes the given <code>url</code> with the given <code>httpMethod</code>
+	 * and passes the response body as a stream to the given <code>responseHandler</code>.
+	 * Furthermore the <code>http.proxyXXX</code> System variables are read and
+	 * set into the {@link HttpClient}.
+	 * 
+	 * @param httpMethod the HTTP method to use
+	 * @param url the url to execute
+	 * @param httpHeaders optional http request headers which has to be sent within request 
+	 * @param content the content to be send to the given <code>url</code> or 
+	 * <code>null</code> if no content should be send.
+	 * @param contentType the content type of the given <code>content</code>
+	 * @param timeout the socket timeout to wait for data (in milliseconds)
+	 * @param responseHandler the handler which reads the response body
+	 * 
+	 * @return the result of the <code>responseHandler</code> or <code>NULL</code> when the request went wrong
+	 */
+	public static <T> T executeUrl(String httpMethod, String url, Properties httpHeaders, InputStream content, String contentType, int timeout, ResponseHandler<T> responseHandler) {
 		String proxySet = System.getProperty("http.proxySet");
 		
 		String proxyHost = null;
@@ -147,10 +289,49 @@ public class HttpUtil {
 			nonProxyHosts = System.getProperty("http.nonProxyHosts");
 		}
 		
-		return executeUrl(httpMethod, url, httpHeaders, content, contentType, timeout, proxyHost, proxyPort, proxyUser, proxyPassword, nonProxyHosts);
+		return execute(httpMethod, url, httpHeaders, content, contentType, timeout, proxyHost, proxyPort, proxyUser, proxyPassword, nonProxyHosts, responseHandler);
 
 	}
 	
+	/**
+	 * Executes the given <code>url</code> with the given <code>httpMethod</code> 
+	 * asynchronously. Furthermore the <code>http.proxyXXX</code> System variables 
+	 * are read and set into the {@link HttpClient}.
+	 * 
+	 * @param httpMethod the HTTP method to use
+	 * @param url the url to execute
+	 * @param timeout the socket timeout to wait for data (in milliseconds)
+	 * 
+	 * @return the future response body, which is <code>NULL</code> when the request went wrong
+	 */
+	public static Future<String> executeUrlAsync(String httpMethod, String url, int timeout) {
+		return executeUrlAsync(httpMethod, url, null, null, null, timeout);
+	}
+	
+	/**
+	 * Executes the given <code>url</code> with the given <code>httpMethod</code> 
+	 * asynchronously. Furthermore the <code>http.proxyXXX</code> System variables 
+	 * are read and set into the {@link HttpClient}.
+	 * 
+	 * @param httpMethod the HTTP method to use
+	 * @param url the url to execute
+	 * @param httpHeaders optional http request headers which has to be sent within request 
+	 * @param content the content to be send to the given <code>url</code> or 
+	 * <code>null</code> if no content should be send.
+	 * @param contentType the content type of the given <code>content</code>
+	 * @param timeout the socket timeout to wait for data (in milliseconds)
+	 * 
+	 * @return the future response body, which is <code>NULL</code> when the request went wrong
+	 */
+	public static Future<String> executeUrlAsync(final String httpMethod, final String url, final Properties httpHeaders, 
+			final InputStream content, final String contentType, final int timeout) {
+		return getAsyncExecutor().submit(new Callable<String>() {
+			public String call() throws Exception {
+				return executeUrl(httpMethod, url, httpHeaders, content, contentType, timeout);
+			}
+		});
+	}
+	
 	/**
 	 * Executes the given <code>url</code> with the given <code>httpMethod</code>
 	 * 
@@ -169,8 +350,15 @@ public class HttpUtil {
 	 * @return the response body or <code>NULL</code> when the request went wrong
 	 */
 	public static String executeUrl(String httpMethod, String url, Properties httpHeaders, InputStream content, String contentType, int timeout, String proxyHost, Integer proxyPort, String proxyUser, String proxyPassword, String nonProxyHosts) {
+		return execute(httpMethod, url, httpHeaders, content, contentType, timeout, proxyHost, proxyPort, proxyUser, proxyPassword, nonProxyHosts, STRING_RESPONSE_HANDLER);
+	}
+	
+	private static <T> T execute(String httpMethod, String url, Properties httpHeaders, InputStream content, String contentType, int timeout, String proxyHost, Integer proxyPort, String proxyUser, String proxyPassword, String nonProxyHosts, ResponseHandler<T> responseHandler) {
 		
-		HttpClient client = new HttpClient();
+		// the client itself is cheap, the connections are taken from the shared pool
+		HttpClient client = new HttpClient(getConnectionManager());
+		// don't wait forever, if all connections of the pool are in use
+		client.getParams().setConnectionManagerTimeout(POOL_TIMEOUT);
 		
 		// only configure a proxy if a host is provided
 		if (StringUtils.isNotBlank(proxyHost) && proxyPort != null && shouldUseProxy(url, nonProxyHosts)) {
@@ -183,8 +371,7 @@ public class HttpUtil {
 		  
 		HttpMethod method = HttpUtil.createHttpMethod(httpMethod, url);
         method.getParams().setSoTimeout(timeout);
-		method.getParams().setParameter(HttpMethodParams.RETRY_HANDLER,
-				new DefaultHttpMethodRetryHandler(3, false));
+		method.getParams().setParameter(HttpMethodParams.RETRY_HANDLER, retryHandler);
 		if(httpHeaders != null){
 			for(String httpHeaderKey: httpHeaders.stringPropertyNames()){
 				method.addRequestHeader(new Header(httpHeaderKey,httpHeaders.getProperty(httpHeaderKey)));
@@ -193,7 +380,13 @@ public class HttpUtil {
 		// add content if a valid method is given ...
 		if (method instanceof EntityEnclosingMethod && content != null ) {
 			EntityEnclosingMethod eeMethod = (EntityEnclosingMethod) method;
-			eeMethod.setRequestEntity(new InputStreamRequestEntity(content, contentType));
+			// the content is buffered, so that the request can be retried on another connection
+			try {
+				eeMethod.setRequestEntity(new ByteArrayRequestEntity(IOUtils.toByteArray(content), contentType));
+			} catch (IOException ioe) {
+				logger.error("Couldn't read the content to be sent to '{}': {}", url, ioe.toString());
+				return null;
+			}
 		}
 
 		Credentials credentials = extractCredentials(url);
@@ -217,12 +410,17 @@ public class HttpUtil {
 				logger.warn("Method failed: " + method.getStatusLine());
 			}
 
-			String responseBody = IOUtils.toString(method.getResponseBodyAsStream());
-			if (!responseBody.isEmpty()) {
-				logger.debug(responseBody);
+			T response = responseHandler.handleResponse(statusCode, method.getResponseBodyAsStream());
+			if (response instanceof String && !((String) response).isEmpty()) {
+				logger.debug((String) response);
 			}
 			
-			return responseBody;
+			return response;
+		}
+		catch (ResponseTooLargeException rtle) {
+			logger.warn("Response of '{}' is too large: {}", url, rtle.getMessage());
+			// don't read the rest of the response, but close the connection
+			method.abort();
 		}
 		catch (HttpException he) {
 			logger.error("Fatal protocol violation: {}", he.toString());
@@ -237,6 +435,30 @@ public class HttpUtil {
 		return null;
 	}
 
+	/**
+	 * Reads the given response body into a string, using the default character set.
+	 * 
+	 * @param body the response body, might be <code>null</code>
+	 * @param maxSize the maximum number of bytes to read
+	 * @return the response body as string
+	 * @throws IOException if the body cannot be read or is larger than <code>maxSize</code> 
+	 */
+	protected static String readBody(InputStream body, int maxSize) throws IOException {
+		if (body == null) {
+			return "";
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		int read;
+		while ((read = body.read(buffer)) != -1) {
+			if (out.size() + read > maxSize) {
+				throw new ResponseTooLargeException("the response body exceeds " + maxSize + " bytes");
+			}
+			out.write(buffer, 0, read);
+		}
+		return out.toString();
+	}
+
 	/**
 	 * Determines whether the list of <code>nonProxyHosts</code> contains the
 	 * host (which is part of the given <code>urlString</code> or not.
@@ -347,5 +569,31 @@ public class HttpUtil {
 			throw new IllegalArgumentException("given httpMethod '" + httpMethodString + "' is unknown");
 		}
 	}
+	
+	
+	/**
+	 * Handles the response of a request.
+	 * 
+	 * @param <T> the type of the result
+	 */
+	public interface ResponseHandler<T> {
+		
+		/**
+		 * Reads the response body. The stream must not be used after this method returned.
+		 * 
+		 * @param statusCode the HTTP status code of the response
+		 * @param body the response body or <code>null</code>, if the response has no body
+		 * @return the result of the request
+		 * @throws IOException if the body cannot be read
+		 */
+		T handleResponse(int statusCode, InputStream body) throws IOException;
+	}
+	
+	@SuppressWarnings("serial")
+	private static class ResponseTooLargeException extends IOException {
+		public ResponseTooLargeException(String message) {
+			super(message);
+		}
+	}
 
 }
@@ -0,0 +1,96 @@
+/**
+ * openHAB, the open Home Automation Bus.
+ * Copyright (C) 2010-2013, openHAB.org <admin@openhab.org>
+ *
+ * See the contributors.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ * Additional permission under GNU GPL version 3 section 7
+ *
+ * If you modify this Program, or any covered work, by linking or
+ * combining it with Eclipse (or a modified version of that library),
+ * containing parts covered by the terms of the Eclipse Public License
+ * (EPL), the licensors of this Program grant you additional permission
+ * to convey the resulting work.
+ */
+package org.openhab.io.rest.internal.filter;
+
+import junit.framework.Assert;
+
+import org.atmosphere.cpr.BroadcastFilter.BroadcastAction;
+import org.atmosphere.cpr.BroadcastFilter.BroadcastAction.ACTION;
+import org.junit.Test;
+import org.openhab.io.rest.internal.broadcaster.ItemStateEvent;
+
+
+/**
+ * @author agent
+ * @since 1.3.0
+ */
+public class EventFilterTest {
+	
+	private final EventFilter filter = new EventFilter();
+	
+	private final ItemNameMatcher matcher = new ItemNameMatcher("Light_*, Door");
+	
+	@Test
+	public void testMatchingEventContinuesWithPayload() {
+		ItemStateEvent event = new ItemStateEvent("Light_Kitchen", "{\"state\":\"ON\"}");
+		BroadcastAction action = filter.filter(matcher, event);
+		Assert.assertEquals(ACTION.CONTINUE, action.action());
+		Assert.assertEquals("{\"state\":\"ON\"}", action.message());
+		
+		action = filter.filter(matcher, new ItemStateEvent("Door", "OPEN"));
+		Assert.assertEquals(ACTION.CONTINUE, action.action());
+		Assert.assertEquals("OPEN", action.message());
+	}
+	
+	@Test
+	public void testOtherEventIsAborted() {
+		ItemStateEvent event = new ItemStateEvent("Window", "CLOSED");
+		BroadcastAction action = filter.filter(matcher, event);
+		Assert.assertEquals(ACTION.ABORT, action.action());
+		Assert.assertSame(event, action.message());
+	}
+	
+	@Test
+	public void testAllEventsContinueWithoutFilter() {
+		ItemNameMatcher matchAll = new ItemNameMatcher(null);
+		for (String itemName : new String[] { "Light_Kitchen", "Door", "Window" }) {
+			BroadcastAction action = filter.filter(matchAll, new ItemStateEvent(itemName, itemName + "=ON"));
+			Assert.assertEquals(ACTION.CONTINUE, action.action());
+			Assert.assertEquals(itemName + "=ON", action.message());
+		}
+	}
+	
+	@Test
+	public void testOtherMessagesContinueUnchanged() {
+		Object message = "some other message";
+		BroadcastAction action = filter.filter(matcher, message);
+		Assert.assertEquals(ACTION.CONTINUE, action.action());
+		Assert.assertSame(message, action.message());
+		
+		action = filter.filter(message, message);
+		Assert.assertEquals(ACTION.CONTINUE, action.action());
+		Assert.assertSame(message, action.message());
+		
+		ItemStateEvent event = new ItemStateEvent("Window", "CLOSED");
+		action = filter.filter(event, event);
+		Assert.assertEquals(ACTION.CONTINUE, action.action());
+		Assert.assertSame(event, action.message());
+	}
+
+}
@@ -0,0 +1,110 @@
+/**
+ * openHAB, the open Home Automation Bus.
+ * Copyright (C) 2010-2013, openHAB.org <admin@openhab.org>
+ *
+ * See the contributors.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ * Additional permission under GNU GPL version 3 section 7
+ *
+ * If you modify this Program, or any covered work, by linking or
+ * combining it with Eclipse (or a modified version of that library),
+ * containing parts covered by the terms of the Eclipse Public License
+ * (EPL), the licensors of this Program grant you additional permission
+ * to convey the resulting work.
+ */
+package org.openhab.io.rest.internal.filter;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+
+/**
+ * @author agent
+ * @since 1.3.0
+ */
+public class ItemNameMatcherTest {
+	
+	@Test
+	public void testEmptyFilterMatchesAll() {
+		for (String filter : new String[] { null, "", " ", ",", " , " }) {
+			ItemNameMatcher matcher = new ItemNameMatcher(filter);
+			Assert.assertTrue(filter, matcher.matches("Light"));
+			Assert.assertTrue(filter, matcher.matches(""));
+		}
+	}
+	
+	@Test
+	public void testNames() {
+		ItemNameMatcher matcher = new ItemNameMatcher("Light, Door ,,Window");
+		Assert.assertTrue(matcher.matches("Light"));
+		Assert.assertTrue(matcher.matches("Door"));
+		Assert.assertTrue(matcher.matches("Window"));
+		Assert.assertFalse(matcher.matches("light"));
+		Assert.assertFalse(matcher.matches("Light1"));
+		Assert.assertFalse(matcher.matches("Doo"));
+	}
+	
+	@Test
+	public void testAsterisk() {
+		ItemNameMatcher matcher = new ItemNameMatcher("Light_*");
+		Assert.assertTrue(matcher.matches("Light_"));
+		Assert.assertTrue(matcher.matches("Light_Kitchen"));
+		Assert.assertFalse(matcher.matches("Light"));
+		Assert.assertFalse(matcher.matches("MyLight_Kitchen"));
+		
+		matcher = new ItemNameMatcher("*_Temperature_*");
+		Assert.assertTrue(matcher.matches("Kitchen_Temperature_1"));
+		Assert.assertFalse(matcher.matches("Kitchen_Temperature"));
+		
+		Assert.assertTrue(new ItemNameMatcher("*").matches("Anything"));
+	}
+	
+	@Test
+	public void testQuestionMark() {
+		ItemNameMatcher matcher = new ItemNameMatcher("Temperature?");
+		Assert.assertTrue(matcher.matches("Temperature1"));
+		Assert.assertTrue(matcher.matches("TemperatureX"));
+		Assert.assertFalse(matcher.matches("Temperature"));
+		Assert.assertFalse(matcher.matches("Temperature12"));
+	}
+	
+	@Test
+	public void testRegexCharactersAreLiteral() {
+		ItemNameMatcher matcher = new ItemNameMatcher("Temp.(1)*");
+		Assert.assertTrue(matcher.matches("Temp.(1)"));
+		Assert.assertTrue(matcher.matches("Temp.(1)_Kitchen"));
+		Assert.assertFalse(matcher.matches("Temp1(1)"));
+		Assert.assertFalse(matcher.matches("Temp.1"));
+		
+		matcher = new ItemNameMatcher("Light\\E*");
+		Assert.assertTrue(matcher.matches("Light\\E_Kitchen"));
+		Assert.assertFalse(matcher.matches("LightE_Kitchen"));
+	}
+	
+	@Test
+	public void testNamesAndGlobs() {
+		ItemNameMatcher matcher = new ItemNameMatcher("Door, Light_*, Temperature?");
+		Assert.assertTrue(matcher.matches("Door"));
+		Assert.assertTrue(matcher.matches("Light_Kitchen"));
+		Assert.assertTrue(matcher.matches("Temperature1"));
+		Assert.assertFalse(matcher.matches("Window"));
+		Assert.assertFalse(matcher.matches("Door_Kitchen"));
+		Assert.assertFalse(matcher.matches("Temperature"));
+	}
+
+}
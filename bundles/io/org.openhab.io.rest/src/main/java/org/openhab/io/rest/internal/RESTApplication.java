@@ -40,6 +40,8 @@ import org.atmosphere.cpr.AtmosphereServlet;
 import org.openhab.core.events.EventPublisher;
 import org.openhab.core.items.ItemRegistry;
 import org.openhab.io.net.http.SecureHttpContext;
+import org.openhab.io.rest.internal.listeners.EventStreamListener;
+import org.openhab.io.rest.internal.resources.EventResource;
 import org.openhab.io.rest.internal.resources.ItemResource;
 import org.openhab.io.rest.internal.resources.RootResource;
 import org.openhab.io.rest.internal.resources.SitemapResource;
@@ -79,6 +81,8 @@ public class RESTApplication extends Application {
 
 	private DiscoveryService discoveryService;
 
+	private EventStreamListener eventStreamListener;
+
 	static private EventPublisher eventPublisher;
 	
 	static private ItemUIRegistry itemUIRegistry;
@@ -152,6 +156,9 @@ public class RESTApplication extends Application {
     		httpPort = Integer.parseInt(bundleContext.getProperty("jetty.port"));
     		httpSSLPort = Integer.parseInt(bundleContext.getProperty("jetty.port.ssl"));
 
+			eventStreamListener = new EventStreamListener();
+			eventStreamListener.start(itemUIRegistry);
+
 			httpService.registerServlet(REST_SERVLET_ALIAS,
 				new AtmosphereServlet(), getJerseyServletParams(), createHttpContext());
 
@@ -174,6 +181,11 @@ public class RESTApplication extends Application {
             logger.info("Stopped REST API");
         }
         
+        if (eventStreamListener != null) {
+        	eventStreamListener.stop();
+        	eventStreamListener = null;
+        }
+        
         if (discoveryService != null) {
  			discoveryService.unregisterService(getDefaultServiceDescription());
 			discoveryService.unregisterService(getSSLServiceDescription()); 			
@@ -196,6 +208,7 @@ public class RESTApplication extends Application {
         result.add(RootResource.class);
         result.add(ItemResource.class);
         result.add(SitemapResource.class);
+        result.add(EventResource.class);
         return result;
     }
 
@@ -0,0 +1,69 @@
+/**
+ * openHAB, the open Home Automation Bus.
+ * Copyright (C) 2010-2013, openHAB.org <admin@openhab.org>
+ *
+ * See the contributors.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ * Additional permission under GNU GPL version 3 section 7
+ *
+ * If you modify this Program, or any covered work, by linking or
+ * combining it with Eclipse (or a modified version of that library),
+ * containing parts covered by the terms of the Eclipse Public License
+ * (EPL), the licensors of this Program grant you additional permission
+ * to convey the resulting work.
+ */
+package org.openhab.io.rest.internal.broadcaster;
+
+/**
+ * The message which is broadcasted to the clients of the event stream whenever
+ * the state of an item has changed. It carries the already serialized payload,
+ * so that it is created only once, no matter how many clients receive it.
+ * 
+ * @author agent
+ * @since 1.3.0
+ */
+public class ItemStateEvent {
+
+	private final String itemName;
+	
+	private final String payload;
+	
+	public ItemStateEvent(String itemName, String payload) {
+		this.itemName = itemName;
+		this.payload = payload;
+	}
+	
+	/**
+	 * @return the name of the item whose state has changed
+	 */
+	public String getItemName() {
+		return itemName;
+	}
+	
+	/**
+	 * @return the serialized state change which is sent to the clients
+	 */
+	public String getPayload() {
+		return payload;
+	}
+	
+	@Override
+	public String toString() {
+		return payload;
+	}
+	
+}
@@ -0,0 +1,91 @@
+/**
+ * openHAB, the open Home Automation Bus.
+ * Copyright (C) 2010-2013, openHAB.org <admin@openhab.org>
+ *
+ * See the contributors.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ * Additional permission under GNU GPL version 3 section 7
+ *
+ * If you modify this Program, or any covered work, by linking or
+ * combining it with Eclipse (or a modified version of that library),
+ * containing parts covered by the terms of the Eclipse Public License
+ * (EPL), the licensors of this Program grant you additional permission
+ * to convey the resulting work.
+ */
+package org.openhab.io.rest.internal.filter;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.atmosphere.cpr.AtmosphereResource;
+import org.atmosphere.cpr.BroadcastFilter.BroadcastAction.ACTION;
+import org.atmosphere.cpr.PerRequestBroadcastFilter;
+import org.openhab.io.rest.internal.broadcaster.ItemStateEvent;
+import org.openhab.io.rest.internal.resources.EventResource;
+
+/**
+ * This Filter passes only those events to a client of the event stream, which
+ * match the item filter that the client has subscribed with. The events are
+ * replaced by their serialized payload.
+ *  
+ * @author agent
+ * @since 1.3.0
+ */
+public class EventFilter implements PerRequestBroadcastFilter {
+	
+	/** the request attribute which holds the {@link ItemNameMatcher} of a client */
+	public static final String MATCHER_ATTRIBUTE = EventFilter.class.getName() + ".matcher";
+
+	@Override
+	public BroadcastAction filter(Object originalMessage, Object message) {
+		return new BroadcastAction(ACTION.CONTINUE, message);
+	}
+
+	@Override
+	public BroadcastAction filter(AtmosphereResource resource, Object originalMessage, Object message) {
+		if(!(message instanceof ItemStateEvent)) {
+			return new BroadcastAction(ACTION.CONTINUE, message);
+		}
+		return filter(getMatcher(resource.getRequest()), message);
+	}
+	
+	/**
+	 * Passes an {@link ItemStateEvent} on as its payload, if its item matches the given matcher,
+	 * and aborts its broadcast otherwise. All other messages are passed on unchanged.
+	 */
+	BroadcastAction filter(ItemNameMatcher matcher, Object message) {
+		if(message instanceof ItemStateEvent) {
+			ItemStateEvent event = (ItemStateEvent) message;
+			if(matcher.matches(event.getItemName())) {
+				return new BroadcastAction(ACTION.CONTINUE, event.getPayload());
+			} else {
+				return new BroadcastAction(ACTION.ABORT, message);
+			}
+		}
+		return new BroadcastAction(ACTION.CONTINUE, message);
+	}
+	
+	private ItemNameMatcher getMatcher(HttpServletRequest request) {
+		ItemNameMatcher matcher = (ItemNameMatcher) request.getAttribute(MATCHER_ATTRIBUTE);
+		if(matcher==null) {
+			// the attribute has not been set by the resource, so we have to parse the filter on our own
+			matcher = new ItemNameMatcher(request.getParameter(EventResource.ITEMS_PARAM));
+			request.setAttribute(MATCHER_ATTRIBUTE, matcher);
+		}
+		return matcher;
+	}
+	
+}
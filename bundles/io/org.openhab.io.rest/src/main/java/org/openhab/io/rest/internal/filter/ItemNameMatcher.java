@@ -0,0 +1,108 @@
+/**
+ * openHAB, the open Home Automation Bus.
+ * Copyright (C) 2010-2013, openHAB.org <admin@openhab.org>
+ *
+ * See the contributors.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ * Additional permission under GNU GPL version 3 section 7
+ *
+ * If you modify this Program, or any covered work, by linking or
+ * combining it with Eclipse (or a modified version of that library),
+ * containing parts covered by the terms of the Eclipse Public License
+ * (EPL), the licensors of this Program grant you additional permission
+ * to convey the resulting work.
+ */
+package org.openhab.io.rest.internal.filter;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Matches item names against a comma separated list of names and globs,
+ * where <code>*</code> stands for any number of characters and <code>?</code> 
+ * for exactly one character, e.g. <code>Light_*,Temperature?,Door</code>.
+ * An empty list matches all items.
+ * 
+ * @author agent
+ * @since 1.3.0
+ */
+public class ItemNameMatcher {
+	
+	private final Set<String> names = new HashSet<String>();
+	
+	private final Pattern pattern;
+	
+	private final boolean matchAll;
+	
+	/**
+	 * @param filter the comma separated list of item names and globs
+	 * (may be <code>null</code>)
+	 */
+	public ItemNameMatcher(String filter) {
+		StringBuilder regex = new StringBuilder();
+		if(filter!=null) {
+			for(String part : filter.split(",")) {
+				String name = part.trim();
+				if(name.isEmpty()) {
+					continue;
+				}
+				if(StringUtils.containsNone(name, "*?")) {
+					names.add(name);
+				} else {
+					if(regex.length() > 0) {
+						regex.append('|');
+					}
+					appendGlob(regex, name);
+				}
+			}
+		}
+		this.pattern = regex.length() > 0 ? Pattern.compile(regex.toString()) : null;
+		this.matchAll = names.isEmpty() && pattern==null;
+	}
+	
+	/**
+	 * @param itemName the item name to check
+	 * @return <code>true</code>, if the item name matches any of the names or globs
+	 */
+	public boolean matches(String itemName) {
+		if(matchAll || names.contains(itemName)) {
+			return true;
+		}
+		return pattern!=null && pattern.matcher(itemName).matches();
+	}
+	
+	private static void appendGlob(StringBuilder regex, String glob) {
+		int start = 0;
+		for(int i = 0; i < glob.length(); i++) {
+			char c = glob.charAt(i);
+			if(c=='*' || c=='?') {
+				if(i > start) {
+					regex.append(Pattern.quote(glob.substring(start, i)));
+				}
+				regex.append(c=='*' ? ".*" : ".");
+				start = i + 1;
+			}
+		}
+		if(start < glob.length()) {
+			regex.append(Pattern.quote(glob.substring(start)));
+		}
+	}
+
+}
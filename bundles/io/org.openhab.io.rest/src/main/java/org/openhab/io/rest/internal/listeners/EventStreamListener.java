@@ -0,0 +1,171 @@
+/**
+ * openHAB, the open Home Automation Bus.
+ * Copyright (C) 2010-2013, openHAB.org <admin@openhab.org>
+ *
+ * See the contributors.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ * Additional permission under GNU GPL version 3 section 7
+ *
+ * If you modify this Program, or any covered work, by linking or
+ * combining it with Eclipse (or a modified version of that library),
+ * containing parts covered by the terms of the Eclipse Public License
+ * (EPL), the licensors of this Program grant you additional permission
+ * to convey the resulting work.
+ */
+package org.openhab.io.rest.internal.listeners;
+
+import java.io.IOException;
+import java.util.Collection;
+
+import org.atmosphere.cpr.Broadcaster;
+import org.atmosphere.cpr.BroadcasterFactory;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.openhab.core.items.GenericItem;
+import org.openhab.core.items.Item;
+import org.openhab.core.items.ItemRegistry;
+import org.openhab.core.items.ItemRegistryChangeListener;
+import org.openhab.core.items.StateChangeListener;
+import org.openhab.core.types.State;
+import org.openhab.io.rest.internal.broadcaster.EventBroadcaster;
+import org.openhab.io.rest.internal.broadcaster.ItemStateEvent;
+import org.openhab.io.rest.internal.resources.beans.ItemStateBean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This is the single listener which feeds the event stream. It is registered
+ * once on every item of the item registry and broadcasts each state change 
+ * to the {@link EventBroadcaster}, which fans it out to all connected clients.
+ * The state change is serialized only once, independent of the number of clients.
+ * 
+ * @author agent
+ * @since 1.3.0
+ */
+public class EventStreamListener implements StateChangeListener, ItemRegistryChangeListener {
+
+	private static final Logger logger = LoggerFactory.getLogger(EventStreamListener.class);
+	
+	private static final ObjectMapper mapper = new ObjectMapper();
+	
+	private ItemRegistry itemRegistry;
+	
+	/**
+	 * Registers this listener on all items of <code>itemRegistry</code>
+	 * and keeps track of items that are added later on.
+	 * 
+	 * @param itemRegistry the item registry to observe
+	 */
+	public void start(ItemRegistry itemRegistry) {
+		this.itemRegistry = itemRegistry;
+		itemRegistry.addItemRegistryChangeListener(this);
+		registerOnItems(itemRegistry.getItems());
+	}
+	
+	/**
+	 * Unregisters this listener from all items.
+	 */
+	public void stop() {
+		if(itemRegistry!=null) {
+			itemRegistry.removeItemRegistryChangeListener(this);
+			for(Item item : itemRegistry.getItems()) {
+				if(item instanceof GenericItem) {
+					((GenericItem) item).removeStateChangeListener(this);
+				}
+			}
+			itemRegistry = null;
+		}
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public void stateChanged(Item item, State oldState, State newState) {
+		Broadcaster broadcaster = getBroadcaster();
+		if(broadcaster!=null && !broadcaster.getAtmosphereResources().isEmpty()) {
+			String payload = toJson(new ItemStateBean(item.getName(), newState.toString()));
+			if(payload!=null) {
+				broadcaster.broadcast(new ItemStateEvent(item.getName(), payload));
+			}
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void stateUpdated(Item item, State state) {
+		// only state changes are sent to the clients
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void allItemsChanged(Collection<String> oldItemNames) {
+		// the old items are not available anymore, so we can only register on the new ones
+		if(itemRegistry!=null) {
+			registerOnItems(itemRegistry.getItems());
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void itemAdded(Item item) {
+		if(item instanceof GenericItem) {
+			((GenericItem) item).addStateChangeListener(this);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void itemRemoved(Item item) {
+		if(item instanceof GenericItem) {
+			((GenericItem) item).removeStateChangeListener(this);
+		}
+	}
+	
+	/**
+	 * Serializes <code>bean</code> into its JSON representation.
+	 * 
+	 * @param bean the bean to serialize
+	 * @return the JSON string or <code>null</code>, if the bean could not be serialized
+	 */
+	public static String toJson(Object bean) {
+		try {
+			return mapper.writeValueAsString(bean);
+		} catch (IOException e) {
+			logger.error("Could not serialize '{}': {}", bean, e.getMessage());
+			return null;
+		}
+	}
+	
+	private void registerOnItems(Collection<Item> items) {
+		for(Item item : items) {
+			itemAdded(item);
+		}
+	}
+	
+	private Broadcaster getBroadcaster() {
+		BroadcasterFactory factory = BroadcasterFactory.getDefault();
+		if(factory==null) {
+			// the servlet has not been initialized yet
+			return null;
+		}
+		return factory.lookup(EventBroadcaster.class, EventBroadcaster.ID, false);
+	}
+
+}
@@ -0,0 +1,128 @@
+/**
+ * openHAB, the open Home Automation Bus.
+ * Copyright (C) 2010-2013, openHAB.org <admin@openhab.org>
+ *
+ * See the contributors.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ * Additional permission under GNU GPL version 3 section 7
+ *
+ * If you modify this Program, or any covered work, by linking or
+ * combining it with Eclipse (or a modified version of that library),
+ * containing parts covered by the terms of the Eclipse Public License
+ * (EPL), the licensors of this Program grant you additional permission
+ * to convey the resulting work.
+ */
+package org.openhab.io.rest.internal.resources;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriInfo;
+
+import org.atmosphere.annotation.Suspend.SCOPE;
+import org.atmosphere.cpr.AtmosphereResource;
+import org.atmosphere.cpr.Broadcaster;
+import org.atmosphere.cpr.BroadcasterFactory;
+import org.atmosphere.cpr.HeaderConfig;
+import org.atmosphere.jersey.SuspendResponse;
+import org.openhab.core.items.Item;
+import org.openhab.io.rest.internal.RESTApplication;
+import org.openhab.io.rest.internal.broadcaster.EventBroadcaster;
+import org.openhab.io.rest.internal.filter.EventFilter;
+import org.openhab.io.rest.internal.filter.ItemNameMatcher;
+import org.openhab.io.rest.internal.listeners.EventStreamListener;
+import org.openhab.io.rest.internal.resources.beans.ItemStateBean;
+import org.openhab.ui.items.ItemUIRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>This class acts as a REST resource for a single, multiplexed stream of item state changes.
+ * Instead of suspending one request per item or page, a client subscribes once and receives 
+ * compact JSON deltas (<code>{"name":"Light","state":"ON"}</code>) of all items matching its
+ * filter, which is a comma separated list of item names and globs given by the <code>items</code>
+ * query parameter (e.g. <code>/rest/events?items=Light_*,Temperature</code>).</p>
+ * 
+ * <p>The stream is available through all Atmosphere transports, in particular Server-Sent Events
+ * (<code>X-Atmosphere-Transport: sse</code>) and websockets. A request without Atmosphere transport
+ * returns the current states of all matching items, so that clients can initialize themselves 
+ * before they subscribe.</p>
+ * 
+ * <p>This resource is registered with the Jersey servlet.</p>
+ *
+ * @author agent
+ * @since 1.3.0
+ */
+@Path(EventResource.PATH_EVENTS)
+public class EventResource {
+
+	private static final Logger logger = LoggerFactory.getLogger(EventResource.class); 
+	
+	/** The URI path to this resource */
+    public static final String PATH_EVENTS = "events";
+    
+    /** The query parameter which holds the item filter of a client */
+    public static final String ITEMS_PARAM = "items";
+    
+	@Context UriInfo uriInfo;
+
+	@GET
+	@Produces( { MediaType.WILDCARD })
+    public SuspendResponse<String> getEvents(
+    		@QueryParam(ITEMS_PARAM) String items,
+    		@HeaderParam(HeaderConfig.X_ATMOSPHERE_TRANSPORT) String atmosphereTransport,
+    		@Context AtmosphereResource resource) {
+		ItemNameMatcher matcher = new ItemNameMatcher(items);
+		if(atmosphereTransport==null || atmosphereTransport.isEmpty()) {
+			logger.debug("Received HTTP GET request at '{}'.", uriInfo.getPath());
+			String states = EventStreamListener.toJson(getItemStateBeans(matcher));
+			throw new WebApplicationException(Response.ok(states, MediaType.APPLICATION_JSON).build());
+		}
+		
+		logger.debug("Subscribing to the event stream with transport '{}' and filter '{}'.", atmosphereTransport, items);
+		resource.getRequest().setAttribute(EventFilter.MATCHER_ATTRIBUTE, matcher);
+		Broadcaster eventBroadcaster = BroadcasterFactory.getDefault().lookup(EventBroadcaster.class, EventBroadcaster.ID, true);
+		return new SuspendResponse.SuspendResponseBuilder<String>()
+				.scope(SCOPE.REQUEST)
+				.resumeOnBroadcast(!ResponseTypeHelper.isStreamingTransport(resource.getRequest()))
+				.broadcaster(eventBroadcaster)
+				.outputComments(!HeaderConfig.SSE_TRANSPORT.equalsIgnoreCase(atmosphereTransport)).build();
+    }
+	
+	private List<ItemStateBean> getItemStateBeans(ItemNameMatcher matcher) {
+		List<ItemStateBean> beans = new ArrayList<ItemStateBean>();
+		ItemUIRegistry registry = RESTApplication.getItemUIRegistry();
+		if(registry!=null) {
+			for(Item item : registry.getItems()) {
+				if(matcher.matches(item.getName())) {
+					beans.add(new ItemStateBean(item.getName(), item.getState().toString()));
+				}
+			}
+		}
+		return beans;
+	}
+
+}
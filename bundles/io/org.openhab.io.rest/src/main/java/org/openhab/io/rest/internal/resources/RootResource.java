@@ -80,6 +80,7 @@ public class RootResource {
 	    
 	    bean.links.put("items", uriInfo.getBaseUriBuilder().path(ItemResource.PATH_ITEMS).build().toASCIIString());
 	    bean.links.put("sitemaps", uriInfo.getBaseUriBuilder().path(SitemapResource.PATH_SITEMAPS).build().toASCIIString());
+	    bean.links.put("events", uriInfo.getBaseUriBuilder().path(EventResource.PATH_EVENTS).build().toASCIIString());
 	    
 	    return bean;
 	}
@@ -0,0 +1,231 @@
+/**
+ * openHAB, the open Home Automation Bus.
+ * Copyright (C) 2010-2013, openHAB.org <admin@openhab.org>
+ *
+ * See the contributors.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ * Additional permission under GNU GPL version 3 section 7
+ *
+ * If you modify this Program, or any covered work, by linking or
+ * combining it with Eclipse (or a modified version of that library),
+ * containing parts covered by the terms of the Eclipse Public License
+ * (EPL), the licensors of this Program grant you additional permission
+ * to convey the resulting work.
+ */
+package org.openhab.model.rule.internal.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openhab.model.rule.internal.engine.RuleExecutor.Policy;
+
+/**
+ * Tests the policies and the queue of the {@link RuleExecutor}.
+ * 
+ * @author agent
+ * @since 1.3.0
+ */
+public class RuleExecutorTest {
+	
+	private static final long TIMEOUT = 5000L;
+	
+	private RuleExecutor executor;
+	
+	/** the numbers of the executed tasks in the order of their execution */
+	private List<Integer> executed;
+	
+	/** the number of tasks which are currently running and the maximum of it */
+	private AtomicInteger running;
+	private AtomicInteger maxRunning;
+	
+	/** the first task of each test waits for this latch, so that the rule is busy */
+	private CountDownLatch release;
+	private CountDownLatch started;
+	
+	@Before
+	public void init() {
+		executor = new RuleExecutor(4, 10);
+		executed = Collections.synchronizedList(new ArrayList<Integer>());
+		running = new AtomicInteger();
+		maxRunning = new AtomicInteger();
+		release = new CountDownLatch(1);
+		started = new CountDownLatch(1);
+	}
+	
+	@After
+	public void dispose() {
+		release.countDown();
+		executor.shutdown(TIMEOUT);
+	}
+	
+	@Test
+	public void testParallel() throws InterruptedException {
+		started = new CountDownLatch(2);
+		assertTrue(executor.execute("test.rules", "Rule", Policy.PARALLEL, new BlockingTask(1)));
+		assertTrue(executor.execute("test.rules", "Rule", Policy.PARALLEL, new BlockingTask(2)));
+		
+		// both tasks are running, although the first one has not finished
+		assertTrue(started.await(TIMEOUT, TimeUnit.MILLISECONDS));
+		awaitCompletion();
+		assertEquals(2, maxRunning.get());
+		assertEquals(2, getMetrics("test.rules:Rule").getExecutions());
+	}
+	
+	@Test
+	public void testSerialize() throws InterruptedException {
+		assertTrue(executor.execute("test.rules", "Rule", Policy.SERIALIZE, new BlockingTask(1)));
+		assertTrue(started.await(TIMEOUT, TimeUnit.MILLISECONDS));
+		for (int i = 2; i <= 5; i++) {
+			assertTrue(executor.execute("test.rules", "Rule", Policy.SERIALIZE, new BlockingTask(i)));
+		}
+		
+		awaitCompletion();
+		assertEquals(Arrays.asList(1, 2, 3, 4, 5), executed);
+		assertEquals(1, maxRunning.get());
+		assertEquals(5, getMetrics("test.rules:Rule").getExecutions());
+	}
+	
+	@Test
+	public void testSerializeRejectsTooManyPendingTasks() throws InterruptedException {
+		executor.reconfigure(4, 2);
+		assertTrue(executor.execute("test.rules", "Rule", Policy.SERIALIZE, new BlockingTask(1)));
+		assertTrue(started.await(TIMEOUT, TimeUnit.MILLISECONDS));
+		assertTrue(executor.execute("test.rules", "Rule", Policy.SERIALIZE, new BlockingTask(2)));
+		assertTrue(executor.execute("test.rules", "Rule", Policy.SERIALIZE, new BlockingTask(3)));
+		assertFalse(executor.execute("test.rules", "Rule", Policy.SERIALIZE, new BlockingTask(4)));
+		
+		awaitCompletion();
+		assertEquals(Arrays.asList(1, 2, 3), executed);
+		assertEquals(1, getMetrics("test.rules:Rule").getRejections());
+	}
+	
+	@Test
+	public void testDropIfRunning() throws InterruptedException {
+		assertTrue(executor.execute("test.rules", "Rule", Policy.DROP_IF_RUNNING, new BlockingTask(1)));
+		assertTrue(started.await(TIMEOUT, TimeUnit.MILLISECONDS));
+		assertFalse(executor.execute("test.rules", "Rule", Policy.DROP_IF_RUNNING, new BlockingTask(2)));
+		
+		awaitCompletion();
+		assertEquals(Arrays.asList(1), executed);
+		assertEquals(1, getMetrics("test.rules:Rule").getDrops());
+		
+		// the rule is not busy anymore, so it is executed again
+		executor = new RuleExecutor(4, 10);
+		assertTrue(executor.execute("test.rules", "Rule", Policy.DROP_IF_RUNNING, new BlockingTask(3)));
+		awaitCompletion();
+		assertEquals(Arrays.asList(1, 3), executed);
+	}
+	
+	@Test
+	public void testCoalesceLatest() throws InterruptedException {
+		assertTrue(executor.execute("test.rules", "Rule", Policy.COALESCE_LATEST, new BlockingTask(1)));
+		assertTrue(started.await(TIMEOUT, TimeUnit.MILLISECONDS));
+		for (int i = 2; i <= 4; i++) {
+			assertTrue(executor.execute("test.rules", "Rule", Policy.COALESCE_LATEST, new BlockingTask(i)));
+		}
+		
+		awaitCompletion();
+		assertEquals(Arrays.asList(1, 4), executed);
+		assertEquals(2, getMetrics("test.rules:Rule").getDrops());
+	}
+	
+	@Test
+	public void testRulesOfDifferentModelsAreIndependent() throws InterruptedException {
+		started = new CountDownLatch(2);
+		assertTrue(executor.execute("a.rules", "Rule", Policy.DROP_IF_RUNNING, new BlockingTask(1)));
+		assertTrue(executor.execute("b.rules", "Rule", Policy.DROP_IF_RUNNING, new BlockingTask(2)));
+		assertTrue(started.await(TIMEOUT, TimeUnit.MILLISECONDS));
+		
+		awaitCompletion();
+		assertEquals(1, getMetrics("a.rules:Rule").getExecutions());
+		assertEquals(1, getMetrics("b.rules:Rule").getExecutions());
+		assertEquals(0, getMetrics("a.rules:Rule").getDrops());
+	}
+	
+	@Test
+	public void testQueueIsBounded() throws InterruptedException {
+		executor.reconfigure(1, 1);
+		assertTrue(executor.execute("test.rules", "Rule1", Policy.PARALLEL, new BlockingTask(1)));
+		assertTrue(started.await(TIMEOUT, TimeUnit.MILLISECONDS));
+		
+		// the only thread is busy, so one task is queued and the next one is rejected
+		assertTrue(executor.execute("test.rules", "Rule2", Policy.PARALLEL, new BlockingTask(2)));
+		assertFalse(executor.execute("test.rules", "Rule3", Policy.PARALLEL, new BlockingTask(3)));
+		
+		awaitCompletion();
+		assertEquals(Arrays.asList(1, 2), executed);
+		assertEquals(1, getMetrics("test.rules:Rule3").getRejections());
+		assertEquals(0, getMetrics("test.rules:Rule3").getExecutions());
+	}
+	
+	/**
+	 * Releases the blocked tasks and waits until all tasks have been executed, which 
+	 * includes the pending tasks of the rules
+	 */
+	private void awaitCompletion() {
+		release.countDown();
+		executor.shutdown(TIMEOUT);
+	}
+	
+	private RuleExecutionMetrics getMetrics(String name) {
+		Map<String, RuleExecutionMetrics> metrics = executor.getMetrics();
+		assertTrue("No metrics for " + name + " in " + metrics.keySet(), metrics.containsKey(name));
+		return metrics.get(name);
+	}
+	
+	/**
+	 * A task, which records its execution and waits until it is released
+	 */
+	private class BlockingTask implements Runnable {
+		
+		private final int number;
+		
+		BlockingTask(int number) {
+			this.number = number;
+		}
+
+		public void run() {
+			int count = running.incrementAndGet();
+			synchronized (maxRunning) {
+				maxRunning.set(Math.max(maxRunning.get(), count));
+			}
+			executed.add(number);
+			started.countDown();
+			try {
+				release.await(TIMEOUT, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				running.decrementAndGet();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,225 @@
+/**
+ * openHAB, the open Home Automation Bus.
+ * Copyright (C) 2010-2013, openHAB.org <admin@openhab.org>
+ *
+ * See the contributors.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ * Additional permission under GNU GPL version 3 section 7
+ *
+ * If you modify this Program, or any covered work, by linking or
+ * combining it with Eclipse (or a modified version of that library),
+ * containing parts covered by the terms of the Eclipse Public License
+ * (EPL), the licensors of this Program grant you additional permission
+ * to convey the resulting work.
+ */
+package org.openhab.model.rule.internal.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.openhab.model.rule.internal.engine.RuleTriggerManager.TriggerTypes.CHANGE;
+import static org.openhab.model.rule.internal.engine.RuleTriggerManager.TriggerTypes.COMMAND;
+import static org.openhab.model.rule.internal.engine.RuleTriggerManager.TriggerTypes.STARTUP;
+import static org.openhab.model.rule.internal.engine.RuleTriggerManager.TriggerTypes.UPDATE;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openhab.core.items.Item;
+import org.openhab.core.library.items.NumberItem;
+import org.openhab.core.library.items.StringItem;
+import org.openhab.core.library.items.SwitchItem;
+import org.openhab.core.library.types.DecimalType;
+import org.openhab.core.library.types.OnOffType;
+import org.openhab.core.library.types.StringType;
+import org.openhab.core.types.Command;
+import org.openhab.core.types.State;
+import org.openhab.model.rule.rules.ChangedEventTrigger;
+import org.openhab.model.rule.rules.CommandEventTrigger;
+import org.openhab.model.rule.rules.EventTrigger;
+import org.openhab.model.rule.rules.Rule;
+import org.openhab.model.rule.rules.RuleModel;
+import org.openhab.model.rule.rules.RulesFactory;
+import org.openhab.model.rule.rules.UpdateEventTrigger;
+
+/**
+ * Tests the per-item dispatch tables of the {@link RuleTriggerManager}.
+ * 
+ * @author agent
+ * @since 1.3.0
+ */
+public class RuleTriggerManagerTest {
+	
+	private static final RulesFactory factory = RulesFactory.eINSTANCE;
+	
+	private RuleTriggerManager triggerManager;
+	
+	private Item light = new SwitchItem("Light");
+	
+	@Before
+	public void init() {
+		triggerManager = new RuleTriggerManager();
+	}
+	
+	@After
+	public void dispose() {
+		triggerManager.clearAll();
+	}
+
+	@Test
+	public void testUpdateTriggers() {
+		Rule onRule = createRule("On", updateTrigger("Light", "ON"));
+		Rule anyRule = createRule("Any", updateTrigger("Light", null));
+		Rule otherRule = createRule("Other", updateTrigger("Other", null));
+		addRules(onRule, anyRule, otherRule);
+		
+		assertEquals(Arrays.asList(onRule, anyRule), updated(light, OnOffType.ON));
+		assertEquals(Arrays.asList(anyRule), updated(light, OnOffType.OFF));
+		assertEquals(Collections.emptyList(), updated(new SwitchItem("Unknown"), OnOffType.ON));
+		assertEquals(3, toList(triggerManager.getRules(UPDATE)).size());
+	}
+
+	@Test
+	public void testChangedTriggers() {
+		Rule onRule = createRule("On", changedTrigger("Light", "OFF", "ON"));
+		Rule toOffRule = createRule("ToOff", changedTrigger("Light", null, "OFF"));
+		Rule anyRule = createRule("Any", changedTrigger("Light", null, null));
+		addRules(onRule, toOffRule, anyRule);
+		
+		assertEquals(Arrays.asList(onRule, anyRule), changed(light, OnOffType.OFF, OnOffType.ON));
+		assertEquals(Arrays.asList(toOffRule, anyRule), changed(light, OnOffType.ON, OnOffType.OFF));
+	}
+
+	@Test
+	public void testCommandTriggers() {
+		NumberItem number = new NumberItem("Number");
+		Rule fiveRule = createRule("Five", commandTrigger("Number", "5"));
+		Rule anyRule = createRule("Any", commandTrigger("Number", null));
+		addRules(fiveRule, anyRule);
+		
+		// the trigger literal is compared by value
+		assertEquals(Arrays.asList(fiveRule, anyRule), commanded(number, new DecimalType("5.0")));
+		assertEquals(Arrays.asList(anyRule), commanded(number, new DecimalType(6)));
+		// updates do not trigger command rules
+		assertEquals(Collections.emptyList(), updated(number, new DecimalType(5)));
+	}
+
+	@Test
+	public void testRuleIsReturnedOncePerEvent() {
+		Rule rule = createRule("Rule", updateTrigger("Light", null), updateTrigger("Light", "ON"), updateTrigger("Other", null));
+		addRules(rule);
+		
+		// both triggers of the item match, but the rule is executed only once
+		assertEquals(Arrays.asList(rule), updated(light, OnOffType.ON));
+		assertEquals(Arrays.asList(rule), toList(triggerManager.getRules(UPDATE)));
+	}
+
+	@Test
+	public void testTriggersAreParsedForTheAcceptedTypes() {
+		Rule rule = createRule("Rule", updateTrigger("Light", "ON"));
+		addRules(rule);
+		assertEquals(Arrays.asList(rule), updated(light, OnOffType.ON));
+		
+		// an item with the same name but different accepted types replaces the switch
+		StringItem text = new StringItem("Light");
+		assertEquals(Arrays.asList(rule), updated(text, new StringType("ON")));
+		assertEquals(Collections.emptyList(), updated(text, new StringType("OFF")));
+		assertEquals(Arrays.asList(rule), updated(light, OnOffType.ON));
+	}
+
+	@Test
+	public void testRemoveRuleModel() {
+		RuleModel model = factory.createRuleModel();
+		Rule rule = createRule("Rule", updateTrigger("Light", null), factory.createSystemOnStartupTrigger());
+		model.getRules().add(rule);
+		RuleModel otherModel = factory.createRuleModel();
+		Rule otherRule = createRule("Rule", updateTrigger("Light", null));
+		otherModel.getRules().add(otherRule);
+		triggerManager.addRuleModel(model);
+		triggerManager.addRuleModel(otherModel);
+		assertEquals(Arrays.asList(rule, otherRule), updated(light, OnOffType.ON));
+		assertEquals(Arrays.asList(rule), toList(triggerManager.getRules(STARTUP)));
+		
+		triggerManager.removeRuleModel(model);
+		assertEquals(Arrays.asList(otherRule), updated(light, OnOffType.ON));
+		assertTrue(toList(triggerManager.getRules(STARTUP)).isEmpty());
+		
+		triggerManager.removeRule(UPDATE, otherRule);
+		assertTrue(updated(light, OnOffType.ON).isEmpty());
+		assertTrue(toList(triggerManager.getRules(UPDATE)).isEmpty());
+	}
+	
+	private void addRules(Rule... rules) {
+		for (Rule rule : rules) {
+			triggerManager.addRule(rule);
+		}
+	}
+	
+	private static Rule createRule(String name, EventTrigger... triggers) {
+		Rule rule = factory.createRule();
+		rule.setName(name);
+		rule.getEventtrigger().addAll(Arrays.asList(triggers));
+		return rule;
+	}
+	
+	private static UpdateEventTrigger updateTrigger(String itemName, String state) {
+		UpdateEventTrigger trigger = factory.createUpdateEventTrigger();
+		trigger.setItem(itemName);
+		trigger.setState(state);
+		return trigger;
+	}
+	
+	private static ChangedEventTrigger changedTrigger(String itemName, String oldState, String newState) {
+		ChangedEventTrigger trigger = factory.createChangedEventTrigger();
+		trigger.setItem(itemName);
+		trigger.setOldState(oldState);
+		trigger.setNewState(newState);
+		return trigger;
+	}
+	
+	private static CommandEventTrigger commandTrigger(String itemName, String command) {
+		CommandEventTrigger trigger = factory.createCommandEventTrigger();
+		trigger.setItem(itemName);
+		trigger.setCommand(command);
+		return trigger;
+	}
+	
+	private List<Rule> updated(Item item, State state) {
+		return toList(triggerManager.getRules(UPDATE, item, state));
+	}
+	
+	private List<Rule> changed(Item item, State oldState, State newState) {
+		return toList(triggerManager.getRules(CHANGE, item, oldState, newState));
+	}
+	
+	private List<Rule> commanded(Item item, Command command) {
+		return toList(triggerManager.getRules(COMMAND, item, command));
+	}
+	
+	private static List<Rule> toList(Iterable<Rule> rules) {
+		List<Rule> list = new ArrayList<Rule>();
+		for (Rule rule : rules) {
+			list.add(rule);
+		}
+		return list;
+	}
+	
+}
@@ -69,7 +69,7 @@ public class ExecuteRuleJob implements Job {
 				RuleModel ruleModel = (RuleModel) model;
 				Rule rule = getRule(ruleModel, ruleName);
 				if(rule!=null) {
-					Script script = scriptEngine.newScriptFromXExpression(rule.getScript());
+					Script script = RuleContextHelper.getScript(rule, scriptEngine);
 					logger.debug("Executing scheduled rule '{}'", rule.getName());
 					try {
 						script.execute(RuleContextHelper.getContext(rule));
@@ -28,12 +28,14 @@
  */
 package org.openhab.model.rule.internal.engine;
 
-import org.eclipse.emf.common.notify.Adapter;
-import org.eclipse.emf.ecore.util.EContentAdapter;
+import java.util.concurrent.ConcurrentMap;
+
+import org.eclipse.emf.ecore.resource.Resource;
 import org.eclipse.xtext.naming.QualifiedName;
 import org.eclipse.xtext.xbase.XExpression;
 import org.eclipse.xtext.xbase.XVariableDeclaration;
 import org.eclipse.xtext.xbase.interpreter.IEvaluationContext;
+import org.openhab.core.scriptengine.Script;
 import org.openhab.core.scriptengine.ScriptEngine;
 import org.openhab.core.scriptengine.ScriptExecutionException;
 import org.openhab.model.rule.RulesStandaloneSetup;
@@ -43,10 +45,15 @@ import org.openhab.model.rule.rules.RuleModel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.collect.Maps;
 import com.google.inject.Provider;
 
 /**
- * Helper class to deal with rule evaluation contexts.
+ * Helper class to deal with rule evaluation contexts and the scripts of rules.
+ * 
+ * <p>The evaluation context and the scripts of all rules of a model are created once and cached
+ * by the name of the model resource. The cache entry is replaced as soon as a rule of a reloaded 
+ * model is requested or when the model is invalidated by the rule engine.</p>
  * 
  * @author Kai Kreuzer
  * @since 0.9.0
@@ -66,23 +73,77 @@ public class RuleContextHelper {
 	private static Provider<IEvaluationContext> contextProvider = RulesStandaloneSetup.getInjector().getProvider(IEvaluationContext.class);
 	private static ScriptEngine scriptEngine = RuleModelActivator.scriptEngineTracker.getService();
 
+	/** the cached contexts and scripts of the rule models by the names of their resources */
+	private static ConcurrentMap<String, RuleModelContext> modelContexts = Maps.newConcurrentMap();
+	
 	/**
 	 * Retrieves the evaluation context (= set of variables) for a rule. The context is shared with all rules in the same model (= rule file).
 	 * 
 	 * @param rule the rule to get the context for
 	 * @return the evaluation context
 	 */
-	public static synchronized IEvaluationContext getContext(Rule rule) {
-	    RuleModel ruleModel = (RuleModel) rule.eContainer();
+	public static IEvaluationContext getContext(Rule rule) {
+		return getModelContext(rule).context;
+	}
 
-	    // check if a context already exists on the resource
-	    for(Adapter adapter : ruleModel.eAdapters()) {
-			if(adapter instanceof RuleContextAdapter) {
-				return ((RuleContextAdapter) adapter).getContext();
+	/**
+	 * Retrieves the executable script of a rule. The script is created only once per rule and model version,
+	 * so that it can be executed without any further overhead whenever the rule is triggered.
+	 * 
+	 * @param rule the rule to get the script for
+	 * @param scriptEngine the script engine to create the script with
+	 * @return the script of the rule
+	 */
+	public static Script getScript(Rule rule, ScriptEngine scriptEngine) {
+		RuleModelContext modelContext = getModelContext(rule);
+		ConcurrentMap<Rule, Script> scripts = modelContext.getScripts(scriptEngine);
+		Script script = scripts.get(rule);
+		if(script==null) {
+			script = scriptEngine.newScriptFromXExpression(rule.getScript());
+			Script existingScript = scripts.putIfAbsent(rule, script);
+			if(existingScript!=null) {
+				script = existingScript;
 			}
 		}
+		return script;
+	}
+
+	/**
+	 * Removes the cached context and scripts of a rule model, so that they are created again
+	 * when its rules are executed the next time.
+	 * 
+	 * @param modelName the name of the rule model
+	 */
+	public static void invalidate(String modelName) {
+		modelContexts.remove(modelName);
+	}
+
+	private static RuleModelContext getModelContext(Rule rule) {
+		RuleModel ruleModel = (RuleModel) rule.eContainer();
+		Resource resource = ruleModel.eResource();
+		if(resource==null) {
+			// the model does not belong to the repository (anymore), so there is nothing to cache it for
+			return new RuleModelContext(ruleModel, createContext(ruleModel));
+		}
+		String modelName = resource.getURI().path();
+
+		RuleModelContext modelContext = modelContexts.get(modelName);
+		if(modelContext!=null && modelContext.model==ruleModel) {
+			return modelContext;
+		}
 		
-		// no evaluation context found, so create a new one
+		// the variables must only be initialized once per model, even if several rules are triggered at once
+		synchronized(modelContexts) {
+			modelContext = modelContexts.get(modelName);
+			if(modelContext==null || modelContext.model!=ruleModel) {
+				modelContext = new RuleModelContext(ruleModel, createContext(ruleModel));
+				modelContexts.put(modelName, modelContext);
+			}
+			return modelContext;
+		}
+	}
+
+	private static IEvaluationContext createContext(RuleModel ruleModel) {
 	    IEvaluationContext evaluationContext = contextProvider.get();
 	    for(XExpression expr : ruleModel.getVariables()) {
 	    	if (expr instanceof XVariableDeclaration) {
@@ -96,23 +157,37 @@ public class RuleContextHelper {
 				}
 			}
 	    }
-	    ruleModel.eAdapters().add(new RuleContextAdapter(evaluationContext));
 		return evaluationContext;
 	}
 
 	/**
-	 * Inner class that wraps an evaluation context into an EMF adapters
+	 * Inner class that holds the evaluation context and the scripts of the rules of a model
 	 */
-	private static class RuleContextAdapter extends EContentAdapter {
+	private static class RuleModelContext {
 		
-		private IEvaluationContext context;
+		final RuleModel model;
+		final IEvaluationContext context;
 
-		public RuleContextAdapter(IEvaluationContext context) {
+		private volatile ScriptEngine scriptEngine;
+		private volatile ConcurrentMap<Rule, Script> scripts;
+
+		public RuleModelContext(RuleModel model, IEvaluationContext context) {
+			this.model = model;
 			this.context = context;
 		}
 
-		public IEvaluationContext getContext() {
-			return context;
+		/**
+		 * Returns the scripts of the rules, which have been created by the given script engine.
+		 */
+		public ConcurrentMap<Rule, Script> getScripts(ScriptEngine scriptEngine) {
+			ConcurrentMap<Rule, Script> scripts = this.scripts;
+			if(scripts==null || this.scriptEngine!=scriptEngine) {
+				// the script engine has been replaced, so the scripts must be created again
+				scripts = Maps.newConcurrentMap();
+				this.scripts = scripts;
+				this.scriptEngine = scriptEngine;
+			}
+			return scripts;
 		}
 
 	}
@@ -28,8 +28,6 @@
  */
 package org.openhab.model.rule.internal.engine;
 
-import static org.openhab.core.events.EventConstants.TOPIC_PREFIX;
-import static org.openhab.core.events.EventConstants.TOPIC_SEPERATOR;
 import static org.openhab.model.rule.internal.engine.RuleTriggerManager.TriggerTypes.CHANGE;
 import static org.openhab.model.rule.internal.engine.RuleTriggerManager.TriggerTypes.COMMAND;
 import static org.openhab.model.rule.internal.engine.RuleTriggerManager.TriggerTypes.SHUTDOWN;
@@ -38,10 +36,16 @@ import static org.openhab.model.rule.internal.engine.RuleTriggerManager.TriggerT
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
+import org.apache.commons.lang.StringUtils;
 import org.eclipse.emf.ecore.EObject;
 import org.eclipse.xtext.naming.QualifiedName;
+import org.openhab.core.events.EventTopics;
 import org.openhab.core.items.GenericItem;
 import org.openhab.core.items.Item;
 import org.openhab.core.items.ItemNotFoundException;
@@ -51,14 +55,16 @@ import org.openhab.core.items.StateChangeListener;
 import org.openhab.core.scriptengine.Script;
 import org.openhab.core.scriptengine.ScriptEngine;
 import org.openhab.core.scriptengine.ScriptExecutionException;
-import org.openhab.core.scriptengine.ScriptExecutionThread;
 import org.openhab.core.types.Command;
 import org.openhab.core.types.EventType;
 import org.openhab.core.types.State;
 import org.openhab.model.core.ModelRepository;
 import org.openhab.model.core.ModelRepositoryChangeListener;
+import org.openhab.model.rule.internal.engine.RuleExecutor.Policy;
 import org.openhab.model.rule.rules.Rule;
 import org.openhab.model.rule.rules.RuleModel;
+import org.osgi.service.cm.ConfigurationException;
+import org.osgi.service.cm.ManagedService;
 import org.osgi.service.event.Event;
 import org.osgi.service.event.EventHandler;
 import org.slf4j.Logger;
@@ -72,23 +78,47 @@ import com.google.common.collect.Lists;
  * It listens to changes to the rules folder, evaluates the trigger conditions of the rules and
  * schedules them for execution dependent on their triggering conditions.
  * 
+ * <p>The triggered rules are executed by a {@link RuleExecutor} with a bounded number of threads.
+ * The policy for rules, which are triggered again while they are still running, can be 
+ * configured per rule in openhab.cfg.</p>
+ * 
  * @author Kai Kreuzer
  * @since 0.9.0
  *
  */
 @SuppressWarnings("restriction")
-public class RuleEngine implements EventHandler, ItemRegistryChangeListener, StateChangeListener, ModelRepositoryChangeListener {
+public class RuleEngine implements EventHandler, ItemRegistryChangeListener, StateChangeListener, ModelRepositoryChangeListener, ManagedService {
 
 		static private final Logger logger = LoggerFactory.getLogger(RuleEngine.class);
 		
+		/** the default number of threads, which is high enough for rules which block their thread, e.g. by Thread::sleep */
+		private static final int DEFAULT_THREADS = 50;
+		
+		private static final int DEFAULT_QUEUE_SIZE = 1000;
+		
+		/** the time in milliseconds to wait for the shutdown rules on deactivation */
+		private static final long SHUTDOWN_TIMEOUT = 5000L;
+		
 		private ItemRegistry itemRegistry;
 		private ModelRepository modelRepository;
 		private ScriptEngine scriptEngine;
 
 		private RuleTriggerManager triggerManager;
+		
+		private volatile RuleExecutor executor;
+		
+		private int threads = DEFAULT_THREADS;
+		
+		private int queueSize = DEFAULT_QUEUE_SIZE;
+		
+		private Policy defaultPolicy = Policy.PARALLEL;
+		
+		/** the configured policies of single rules by the rule names */
+		private volatile Map<String, Policy> rulePolicies = Collections.emptyMap();
 						
 		public void activate() {
 			triggerManager = new RuleTriggerManager();
+			executor = new RuleExecutor(threads, queueSize);
 
 			if(!isEnabled()) {
 				logger.info("Rule engine is disabled.");
@@ -120,6 +150,15 @@ public class RuleEngine implements EventHandler, ItemRegistryChangeListener, Sta
 			executeRules(triggerManager.getRules(SHUTDOWN));
 			triggerManager.clearAll();
 			triggerManager = null;
+			
+			RuleExecutor executor = this.executor;
+			this.executor = null;
+			executor.shutdown(SHUTDOWN_TIMEOUT);
+			if (logger.isDebugEnabled()) {
+				for (Map.Entry<String, RuleExecutionMetrics> entry : executor.getMetrics().entrySet()) {
+					logger.debug("Rule '{}': {}", entry.getKey(), entry.getValue());
+				}
+			}
 		}
 		
 		public void setItemRegistry(ItemRegistry itemRegistry) {
@@ -186,9 +225,7 @@ public class RuleEngine implements EventHandler, ItemRegistryChangeListener, Sta
 		public void stateChanged(Item item, State oldState, State newState) {			
 			if(triggerManager!=null) {
 				Iterable<Rule> rules = triggerManager.getRules(CHANGE, item, oldState, newState);
-				RuleEvaluationContext context = new RuleEvaluationContext();
-				context.newValue(QualifiedName.create(RuleContextHelper.VAR_PREVIOUS_STATE), oldState);
-				executeRules(rules, context);
+				executeRules(rules, RuleContextHelper.VAR_PREVIOUS_STATE, oldState);
 			}
 		}
 
@@ -207,9 +244,7 @@ public class RuleEngine implements EventHandler, ItemRegistryChangeListener, Sta
 				try {
 					Item item = itemRegistry.getItem(itemName);
 					Iterable<Rule> rules = triggerManager.getRules(COMMAND, item, command);
-					RuleEvaluationContext context = new RuleEvaluationContext();
-					context.newValue(QualifiedName.create(RuleContextHelper.VAR_RECEIVED_COMMAND), command);
-					executeRules(rules, context);
+					executeRules(rules, RuleContextHelper.VAR_RECEIVED_COMMAND, command);
 				} catch (ItemNotFoundException e) {
 					// ignore commands for non-existent items
 				}
@@ -227,17 +262,8 @@ public class RuleEngine implements EventHandler, ItemRegistryChangeListener, Sta
 		 * {@inheritDoc}
 		 */
 		public void handleEvent(Event event) {  
-			String itemName = (String) event.getProperty("item");
-			
-			String topic = event.getTopic();
-			String[] topicParts = topic.split(TOPIC_SEPERATOR);
-			
-			if(!(topicParts.length > 2) || !topicParts[0].equals(TOPIC_PREFIX)) {
-				return; // we have received an event with an invalid topic
-			}
-			String operation = topicParts[1];
-			
-			if(operation.equals(EventType.COMMAND.toString())) {
+			if(EventTopics.getEventType(event.getTopic())==EventType.COMMAND) {
+				String itemName = (String) event.getProperty("item");
 				Command command = (Command) event.getProperty("command");
 				if(command!=null) receiveCommand(itemName, command);
 			}
@@ -248,10 +274,11 @@ public class RuleEngine implements EventHandler, ItemRegistryChangeListener, Sta
 				if(isEnabled() && modelName.endsWith("rules")) {
 					RuleModel model = (RuleModel) modelRepository.getModel(modelName);
 	
-					// remove the rules from the trigger sets
+					// remove the rules from the trigger sets and drop their cached scripts and variables
 					if(type == org.openhab.model.core.EventType.REMOVED ||
 							type == org.openhab.model.core.EventType.MODIFIED) {
 						triggerManager.removeRuleModel(model);
+						RuleContextHelper.invalidate(modelName);
 					}
 	
 					// add new and modified rules to the trigger sets
@@ -273,7 +300,7 @@ public class RuleEngine implements EventHandler, ItemRegistryChangeListener, Sta
 				
 				for(Rule rule : startupRules) {
 					try {
-						Script script = scriptEngine.newScriptFromXExpression(rule.getScript());						
+						Script script = RuleContextHelper.getScript(rule, scriptEngine);
 						logger.debug("Executing startup rule '{}'", rule.getName());
 						RuleEvaluationContext context = new RuleEvaluationContext();
 						context.setGlobalContext(RuleContextHelper.getContext(rule));
@@ -295,30 +322,67 @@ public class RuleEngine implements EventHandler, ItemRegistryChangeListener, Sta
 			}
 		}
 
-		protected synchronized void executeRule(Rule rule) {
+		protected void executeRule(Rule rule) {
 			executeRule(rule, new RuleEvaluationContext());
 		}
-			
-		protected synchronized void executeRule(Rule rule, RuleEvaluationContext context) {
-			Script script = scriptEngine.newScriptFromXExpression(rule.getScript());
-			
-			logger.debug("Executing rule '{}'", rule.getName());
-			
-			context.setGlobalContext(RuleContextHelper.getContext(rule));
-			
-			ScriptExecutionThread thread = new ScriptExecutionThread(rule.getName(), script, context);
-			thread.start();
+		
+		/**
+		 * Schedules the execution of a rule. The script of the rule is created and executed 
+		 * by a thread of the {@link RuleExecutor}.
+		 * 
+		 * @param rule the rule to execute
+		 * @param context the context with the variables of the trigger, which must not be shared with other rules
+		 */
+		protected void executeRule(final Rule rule, final RuleEvaluationContext context) {
+			RuleExecutor executor = this.executor;
+			if(executor==null) {
+				return;
+			}
+			String modelName = rule.eResource()!=null ? rule.eResource().getURI().lastSegment() : null;
+			executor.execute(modelName, rule.getName(), getPolicy(rule), new Runnable() {
+				public void run() {
+					logger.debug("Executing rule '{}'", rule.getName());
+					try {
+						Script script = RuleContextHelper.getScript(rule, scriptEngine);
+						context.setGlobalContext(RuleContextHelper.getContext(rule));
+						script.execute(context);
+					} catch (ScriptExecutionException e) {
+						String msg = e.getCause().getMessage();
+						if (msg==null) {
+							logger.error("Error during the execution of rule '{}'", rule.getName(), e.getCause());
+						} else {
+							logger.error("Error during the execution of rule '{}': {}", new String[] { rule.getName(), msg });
+						}
+					}
+				}
+			});
 		}
 
-		protected synchronized void executeRules(Iterable<Rule> rules) {
-			executeRules(rules, new RuleEvaluationContext());
+		protected void executeRules(Iterable<Rule> rules) {
+			executeRules(rules, null, null);
 		}
 		
-		protected synchronized void executeRules(Iterable<Rule> rules, RuleEvaluationContext context) {
+		/**
+		 * Schedules the execution of several rules, each with its own evaluation context.
+		 * 
+		 * @param rules the rules to execute
+		 * @param variableName the name of a variable, which is passed to the rules, or <code>null</code>
+		 * @param value the value of the variable
+		 */
+		protected void executeRules(Iterable<Rule> rules, String variableName, Object value) {
 			for(Rule rule : rules) {
+				RuleEvaluationContext context = new RuleEvaluationContext();
+				if(variableName!=null) {
+					context.newValue(QualifiedName.create(variableName), value);
+				}
 				executeRule(rule, context);
 			}
 		}
+		
+		private Policy getPolicy(Rule rule) {
+			Policy policy = rulePolicies.get(rule.getName());
+			return policy!=null ? policy : defaultPolicy;
+		}
 				
 		/**
 		 * we need to be able to deactivate the rule execution, otherwise the openHAB designer
@@ -329,5 +393,77 @@ public class RuleEngine implements EventHandler, ItemRegistryChangeListener, Sta
 		private boolean isEnabled() {
 			return !"true".equalsIgnoreCase(System.getProperty("noRules"));
 		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@SuppressWarnings("rawtypes")
+		public void updated(Dictionary config) throws ConfigurationException {
+			if (config != null) {
+				threads = getIntValue(config, "threads", DEFAULT_THREADS);
+				queueSize = getIntValue(config, "queuesize", DEFAULT_QUEUE_SIZE);
+				String policyString = (String) config.get("policy");
+				defaultPolicy = StringUtils.isNotBlank(policyString) ? getPolicy("policy", policyString) : Policy.PARALLEL;
+				
+				// the rules with a specific policy are listed per policy
+				Map<String, Policy> policies = new HashMap<String, Policy>();
+				addRulePolicies(policies, config, "parallel", Policy.PARALLEL);
+				addRulePolicies(policies, config, "serialize", Policy.SERIALIZE);
+				addRulePolicies(policies, config, "drop", Policy.DROP_IF_RUNNING);
+				addRulePolicies(policies, config, "coalesce", Policy.COALESCE_LATEST);
+				rulePolicies = policies;
+				
+				// the settings are applied to the running executor, so that queued and pending 
+				// tasks are kept and the rules are still executed according to their policies
+				RuleExecutor executor = this.executor;
+				if (executor != null) {
+					executor.reconfigure(threads, queueSize);
+				}
+			}
+		}
+		
+		@SuppressWarnings("rawtypes")
+		private static void addRulePolicies(Map<String, Policy> policies, Dictionary config, String key, Policy policy) {
+			String ruleNames = (String) config.get(key);
+			if (StringUtils.isNotBlank(ruleNames)) {
+				for (String ruleName : ruleNames.split(",")) {
+					if (StringUtils.isNotBlank(ruleName)) {
+						policies.put(ruleName.trim(), policy);
+					}
+				}
+			}
+		}
+		
+		private static Policy getPolicy(String key, String policyString) throws ConfigurationException {
+			String name = policyString.trim().toUpperCase();
+			if (name.equals("DROP")) {
+				return Policy.DROP_IF_RUNNING;
+			} else if (name.equals("COALESCE")) {
+				return Policy.COALESCE_LATEST;
+			}
+			try {
+				return Policy.valueOf(name);
+			} catch (IllegalArgumentException e) {
+				throw new ConfigurationException(key, "Unknown rule execution policy '" + policyString + "'");
+			}
+		}
+		
+		@SuppressWarnings("rawtypes")
+		private static int getIntValue(Dictionary config, String key, int defaultValue) throws ConfigurationException {
+			String valueString = (String) config.get(key);
+			if (StringUtils.isNotBlank(valueString)) {
+				try {
+					int value = Integer.parseInt(valueString.trim());
+					if (value > 0) {
+						return value;
+					}
+				} catch (NumberFormatException e) {
+					// handled below
+				}
+				throw new ConfigurationException(key, "'" + valueString + "' is not a valid positive number");
+			} else {
+				return defaultValue;
+			}
+		}
 		
 }
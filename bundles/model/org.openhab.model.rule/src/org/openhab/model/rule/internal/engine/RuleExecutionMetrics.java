@@ -0,0 +1,110 @@
+/**
+ * openHAB, the open Home Automation Bus.
+ * Copyright (C) 2010-2013, openHAB.org <admin@openhab.org>
+ *
+ * See the contributors.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ * Additional permission under GNU GPL version 3 section 7
+ *
+ * If you modify this Program, or any covered work, by linking or
+ * combining it with Eclipse (or a modified version of that library),
+ * containing parts covered by the terms of the Eclipse Public License
+ * (EPL), the licensors of this Program grant you additional permission
+ * to convey the resulting work.
+ */
+package org.openhab.model.rule.internal.engine;
+
+/**
+ * The execution metrics of a single rule. All times are given in milliseconds.
+ * 
+ * @author agent
+ * @since 1.3.0
+ */
+public class RuleExecutionMetrics {
+
+	private static final double NANOS_PER_MILLI = 1000000d;
+	
+	private long executions = 0;
+	private long rejections = 0;
+	private long drops = 0;
+	
+	private long totalExecutionTime = 0;
+	private long maxExecutionTime = 0;
+	private long totalQueueWait = 0;
+	private long maxQueueWait = 0;
+	
+	synchronized void executed(long queueWait, long executionTime) {
+		executions++;
+		totalQueueWait += queueWait;
+		maxQueueWait = Math.max(maxQueueWait, queueWait);
+		totalExecutionTime += executionTime;
+		maxExecutionTime = Math.max(maxExecutionTime, executionTime);
+	}
+	
+	synchronized void rejected() {
+		rejections++;
+	}
+	
+	synchronized void dropped() {
+		drops++;
+	}
+	
+	/**
+	 * @return the number of completed executions
+	 */
+	public synchronized long getExecutions() {
+		return executions;
+	}
+	
+	/**
+	 * @return the number of triggers, which have been rejected because the queue was full
+	 */
+	public synchronized long getRejections() {
+		return rejections;
+	}
+	
+	/**
+	 * @return the number of triggers, which have been dropped or replaced by a later 
+	 * trigger because of the policy of the rule
+	 */
+	public synchronized long getDrops() {
+		return drops;
+	}
+	
+	public synchronized double getAverageExecutionTime() {
+		return executions == 0 ? 0 : totalExecutionTime / NANOS_PER_MILLI / executions;
+	}
+	
+	public synchronized double getMaxExecutionTime() {
+		return maxExecutionTime / NANOS_PER_MILLI;
+	}
+	
+	public synchronized double getAverageQueueWait() {
+		return executions == 0 ? 0 : totalQueueWait / NANOS_PER_MILLI / executions;
+	}
+	
+	public synchronized double getMaxQueueWait() {
+		return maxQueueWait / NANOS_PER_MILLI;
+	}
+	
+	@Override
+	public synchronized String toString() {
+		return String.format("executions=%d, rejections=%d, drops=%d, execution time avg/max=%.1f/%.1fms, queue wait avg/max=%.1f/%.1fms",
+				executions, rejections, drops, getAverageExecutionTime(), getMaxExecutionTime(), getAverageQueueWait(), getMaxQueueWait());
+	}
+
+}
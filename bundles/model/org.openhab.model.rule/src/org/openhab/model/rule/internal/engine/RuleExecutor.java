@@ -0,0 +1,407 @@
+/**
+ * openHAB, the open Home Automation Bus.
+ * Copyright (C) 2010-2013, openHAB.org <admin@openhab.org>
+ *
+ * See the contributors.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ * Additional permission under GNU GPL version 3 section 7
+ *
+ * If you modify this Program, or any covered work, by linking or
+ * combining it with Eclipse (or a modified version of that library),
+ * containing parts covered by the terms of the Eclipse Public License
+ * (EPL), the licensors of this Program grant you additional permission
+ * to convey the resulting work.
+ */
+package org.openhab.model.rule.internal.engine;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class executes the triggered rules on a bounded pool of threads. The tasks of a 
+ * rule are executed according to the {@link Policy} of the rule, e.g. one after the other 
+ * or in parallel. If all threads are busy, the tasks are queued up to a maximum queue size, 
+ * further tasks are rejected.
+ * 
+ * <p>For each rule, the number of executions and rejections as well as the execution and 
+ * queue waiting times are recorded in {@link RuleExecutionMetrics}.</p>
+ * 
+ * @author agent
+ * @since 1.3.0
+ */
+public class RuleExecutor {
+
+	private static final Logger logger = LoggerFactory.getLogger(RuleExecutor.class);
+	
+	/** the time in seconds after which idle threads are terminated */
+	private static final long KEEP_ALIVE_TIME = 60L;
+	
+	/** Enumeration of the policies for triggers of a rule, which is already executed or queued */
+	public enum Policy {
+		/** the rule is executed in parallel */
+		PARALLEL, 
+		/** the rule is executed once the previous execution has finished */
+		SERIALIZE,
+		/** the trigger is dropped */
+		DROP_IF_RUNNING, 
+		/** only the latest trigger is executed once the previous execution has finished */
+		COALESCE_LATEST
+	}
+	
+	private final ThreadPoolExecutor executor;
+	
+	private final TaskQueue queue;
+	
+	private volatile int queueSize;
+	
+	/** the execution state of all rules, which have been executed, by their model and rule name */
+	private final ConcurrentMap<String, RuleState> ruleStates = new ConcurrentHashMap<String, RuleState>();
+	
+	/**
+	 * Creates a new executor.
+	 * 
+	 * @param threads the maximum number of rules which are executed at the same time
+	 * @param queueSize the maximum number of tasks which wait for a thread, which is 
+	 * also the maximum number of waiting tasks of a serialized rule
+	 */
+	public RuleExecutor(int threads, int queueSize) {
+		this.queueSize = queueSize;
+		this.queue = new TaskQueue(queueSize);
+		this.executor = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_TIME, TimeUnit.SECONDS, 
+				queue, new RuleThreadFactory());
+		this.executor.allowCoreThreadTimeOut(true);
+	}
+	
+	/**
+	 * Changes the number of threads and the queue size of this executor. Running, queued
+	 * and pending tasks are kept, so that the policies of the rules are still applied to
+	 * them. If the queue is already larger than the new size, further tasks are rejected 
+	 * until it has shrunk.
+	 * 
+	 * @param threads the maximum number of rules which are executed at the same time
+	 * @param queueSize the maximum number of tasks which wait for a thread
+	 */
+	public void reconfigure(int threads, int queueSize) {
+		this.queueSize = queueSize;
+		queue.capacity = queueSize;
+		// the core pool size must never exceed the maximum pool size
+		if (threads > executor.getMaximumPoolSize()) {
+			executor.setMaximumPoolSize(threads);
+			executor.setCorePoolSize(threads);
+		} else {
+			executor.setCorePoolSize(threads);
+			executor.setMaximumPoolSize(threads);
+		}
+	}
+	
+	/**
+	 * Executes a task of a rule asynchronously. Rules are identified by the name of their model 
+	 * and their own name, so that rules with the same name in different models do not share
+	 * their execution state.
+	 * 
+	 * @param modelName the name of the model, which contains the rule, or <code>null</code>
+	 * @param ruleName the name of the rule, which is used to apply the policy and to record the metrics
+	 * @param policy the policy for the case that the rule is already executed or queued
+	 * @param task the task to execute
+	 * @return true, if the task has been scheduled for execution, false if it has been dropped or rejected
+	 */
+	public boolean execute(String modelName, String ruleName, Policy policy, Runnable task) {
+		RuleState state = getRuleState(modelName, ruleName);
+		Task ruleTask = new Task(state, task);
+		switch (policy) {
+			case PARALLEL:
+				return dispatch(ruleTask);
+			case SERIALIZE:
+				synchronized (state) {
+					if (state.busy) {
+						if (state.pending.size() >= queueSize) {
+							reject(ruleTask);
+							return false;
+						}
+						state.pending.add(ruleTask);
+						return true;
+					}
+					state.busy = true;
+				}
+				return dispatchSequential(ruleTask);
+			case DROP_IF_RUNNING:
+				synchronized (state) {
+					if (state.busy) {
+						state.metrics.dropped();
+						logger.debug("Rule '{}' is already running, the trigger is dropped", ruleName);
+						return false;
+					}
+					state.busy = true;
+				}
+				return dispatchSequential(ruleTask);
+			case COALESCE_LATEST:
+				synchronized (state) {
+					if (state.busy) {
+						if (state.pending.isEmpty()) {
+							state.pending.add(ruleTask);
+						} else {
+							state.pending.set(0, ruleTask);
+							state.metrics.dropped();
+						}
+						return true;
+					}
+					state.busy = true;
+				}
+				return dispatchSequential(ruleTask);
+			default:
+				throw new IllegalArgumentException("Unknown policy " + policy);
+		}
+	}
+	
+	/**
+	 * Returns the metrics of all rules, which have been executed.
+	 * 
+	 * @return the metrics by the rule names, which are prefixed with the model names
+	 * as in <code>demo.rules:Rule name</code>
+	 */
+	public Map<String, RuleExecutionMetrics> getMetrics() {
+		Map<String, RuleExecutionMetrics> metrics = new HashMap<String, RuleExecutionMetrics>();
+		for (Map.Entry<String, RuleState> entry : ruleStates.entrySet()) {
+			metrics.put(entry.getKey(), entry.getValue().metrics);
+		}
+		return Collections.unmodifiableMap(metrics);
+	}
+	
+	/**
+	 * Stops the executor. The queued tasks are still executed, if they complete within the 
+	 * given time, but no new tasks are accepted. This includes the pending tasks of rules,
+	 * which are not executed in parallel and wait for a running task of the same rule.
+	 * 
+	 * @param timeout the maximum time in milliseconds to wait for the queued tasks
+	 */
+	public void shutdown(long timeout) {
+		executor.shutdown();
+		try {
+			if (!executor.awaitTermination(timeout, TimeUnit.MILLISECONDS)) {
+				logger.debug("Rules are still running after shutdown of the rule executor");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	private RuleState getRuleState(String modelName, String ruleName) {
+		String key = modelName != null ? modelName + ":" + ruleName : ruleName;
+		RuleState state = ruleStates.get(key);
+		if (state == null) {
+			RuleState newState = new RuleState(ruleName);
+			state = ruleStates.putIfAbsent(key, newState);
+			if (state == null) {
+				state = newState;
+			}
+		}
+		return state;
+	}
+	
+	private boolean dispatch(Task task) {
+		try {
+			executor.execute(task);
+			return true;
+		} catch (RejectedExecutionException e) {
+			reject(task);
+			return false;
+		}
+	}
+	
+	/**
+	 * Dispatches a task of a rule, which is not executed in parallel. If the task is rejected,
+	 * the next pending task of the rule is dispatched instead.
+	 */
+	private boolean dispatchSequential(Task task) {
+		task.sequential = true;
+		boolean dispatched = dispatch(task);
+		if (!dispatched) {
+			// the executor has been stopped, so the pending tasks of the rule are dropped
+			Task next = completed(task.state);
+			while (next != null) {
+				reject(next);
+				next = completed(next.state);
+			}
+		}
+		return dispatched;
+	}
+	
+	/**
+	 * Dispatches the next pending task of a rule, once a sequential task has completed.
+	 * If the executor has already been stopped, it does not accept the task anymore, so
+	 * the task is returned to be executed by the current thread instead.
+	 * 
+	 * @return the next task to execute by the current thread or <code>null</code>
+	 */
+	private Task completed(RuleState state) {
+		Task next;
+		synchronized (state) {
+			next = state.pending.poll();
+			if (next == null) {
+				state.busy = false;
+				return null;
+			}
+		}
+		if (executor.isShutdown()) {
+			next.sequential = true;
+			return next;
+		}
+		dispatchSequential(next);
+		return null;
+	}
+	
+	private void reject(Task task) {
+		task.state.metrics.rejected();
+		if (executor.isShutdown()) {
+			logger.debug("Rule '{}' is not executed, as the rule engine is stopped", task.state.name);
+		} else if (!task.state.rejecting) {
+			// only the first of several subsequent rejections is reported as a warning
+			task.state.rejecting = true;
+			logger.warn("Rule '{}' is not executed, as too many rules are waiting for execution", task.state.name);
+		} else {
+			logger.debug("Rule '{}' is not executed, as too many rules are waiting for execution", task.state.name);
+		}
+	}
+	
+	
+	/**
+	 * The execution state of a single rule
+	 */
+	private static class RuleState {
+		
+		final String name;
+		
+		final RuleExecutionMetrics metrics = new RuleExecutionMetrics();
+		
+		/** true, if the last trigger of the rule has been rejected */
+		volatile boolean rejecting = false;
+		
+		/** true, if a task of a rule, which is not executed in parallel, is queued or running */
+		boolean busy = false;
+		
+		/** the tasks, which wait for the running task of the rule */
+		final LinkedList<Task> pending = new LinkedList<Task>();
+		
+		RuleState(String name) {
+			this.name = name;
+		}
+	}
+	
+	/**
+	 * A task of a rule, which records its metrics and dispatches the next pending task.
+	 */
+	private class Task implements Runnable {
+		
+		final RuleState state;
+		
+		final Runnable runnable;
+		
+		final long creationTime = System.nanoTime();
+		
+		boolean sequential = false;
+		
+		Task(RuleState state, Runnable runnable) {
+			this.state = state;
+			this.runnable = runnable;
+		}
+
+		public void run() {
+			Task task = this;
+			while (task != null) {
+				task = task.execute();
+			}
+		}
+		
+		/**
+		 * Executes the task and returns the next pending task of the rule, if it has to be
+		 * executed by the current thread.
+		 */
+		private Task execute() {
+			Task next = null;
+			Thread thread = Thread.currentThread();
+			String threadName = thread.getName();
+			// the thread is named after the rule, so that log entries can be assigned to it
+			thread.setName(state.name);
+			long startTime = System.nanoTime();
+			state.rejecting = false;
+			try {
+				runnable.run();
+			} catch (RuntimeException e) {
+				logger.error("Error during the execution of rule '" + state.name + "'", e);
+			} finally {
+				long endTime = System.nanoTime();
+				state.metrics.executed(startTime - creationTime, endTime - startTime);
+				thread.setName(threadName);
+				if (sequential) {
+					next = completed(state);
+				}
+			}
+			return next;
+		}
+	}
+	
+	/**
+	 * The queue of the tasks, which wait for a thread. Its capacity can be changed at runtime.
+	 */
+	private static class TaskQueue extends LinkedBlockingQueue<Runnable> {
+		
+		private static final long serialVersionUID = 1L;
+		
+		volatile int capacity;
+		
+		TaskQueue(int capacity) {
+			this.capacity = capacity;
+		}
+		
+		@Override
+		public synchronized boolean offer(Runnable task) {
+			// the size can only shrink concurrently, as all tasks are added through this method
+			if (size() >= capacity) {
+				return false;
+			}
+			return super.offer(task);
+		}
+	}
+	
+	/**
+	 * Creates the daemon threads for the execution of the rules 
+	 */
+	private static class RuleThreadFactory implements ThreadFactory {
+		
+		private final AtomicInteger count = new AtomicInteger();
+
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "Rule Executor " + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+
+}
@@ -40,9 +40,11 @@ import static org.quartz.TriggerBuilder.newTrigger;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.eclipse.emf.ecore.util.EcoreUtil;
 import org.openhab.core.items.Item;
@@ -71,7 +73,6 @@ import org.quartz.impl.matchers.GroupMatcher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
@@ -98,13 +99,13 @@ public class RuleTriggerManager {
 		TIMER		// fires at a given time
 	}
 	
-	// lookup maps for different triggering conditions
-	private Map<String, Set<Rule>> updateEventTriggeredRules = Maps.newHashMap();
-	private Map<String, Set<Rule>> changedEventTriggeredRules = Maps.newHashMap();
-	private Map<String, Set<Rule>> commandEventTriggeredRules = Maps.newHashMap();
-	private List<Rule> systemStartupTriggeredRules = Lists.newArrayList();
-	private List<Rule> systemShutdownTriggeredRules = Lists.newArrayList();
-	private List<Rule> timerEventTriggeredRules = Lists.newArrayList();
+	// dispatch tables for item events, keyed by item name; the triggers are compiled once when a rule is added
+	private Map<String, List<ItemTrigger>> updateEventTriggers = Maps.newConcurrentMap();
+	private Map<String, List<ItemTrigger>> changedEventTriggers = Maps.newConcurrentMap();
+	private Map<String, List<ItemTrigger>> commandEventTriggers = Maps.newConcurrentMap();
+	private List<Rule> systemStartupTriggeredRules = new CopyOnWriteArrayList<Rule>();
+	private List<Rule> systemShutdownTriggeredRules = new CopyOnWriteArrayList<Rule>();
+	private List<Rule> timerEventTriggeredRules = new CopyOnWriteArrayList<Rule>();
 
 	// the scheduler used for timer events
 	private Scheduler scheduler;
@@ -129,9 +130,9 @@ public class RuleTriggerManager {
 			case STARTUP:  result = systemStartupTriggeredRules; break;
 			case SHUTDOWN: result = systemShutdownTriggeredRules; break;
 			case TIMER:    result = timerEventTriggeredRules; break;
-			case UPDATE:   result = Iterables.concat(updateEventTriggeredRules.values()); break;
-			case CHANGE:   result = Iterables.concat(changedEventTriggeredRules.values()); break;
-			case COMMAND:  result = Iterables.concat(commandEventTriggeredRules.values()); break;
+			case UPDATE:   result = getTriggeredRules(updateEventTriggers); break;
+			case CHANGE:   result = getTriggeredRules(changedEventTriggers); break;
+			case COMMAND:  result = getTriggeredRules(commandEventTriggers); break;
 			default:       result = Sets.newHashSet();
 		}
 		return result;
@@ -174,93 +175,41 @@ public class RuleTriggerManager {
 		return internalGetRules(triggerType, item, null, command);
 	}
 
-	private Iterable<Rule> getAllRules(TriggerTypes type, String itemName) {
+	private Map<String, List<ItemTrigger>> getItemTriggers(TriggerTypes type) {
 		switch(type) {
-			case STARTUP:  return systemStartupTriggeredRules;
-			case SHUTDOWN: return systemShutdownTriggeredRules;
-			case UPDATE:   return updateEventTriggeredRules.get(itemName);
-			case CHANGE:   return changedEventTriggeredRules.get(itemName);
-			case COMMAND:  return commandEventTriggeredRules.get(itemName);
-			default:       return Sets.newHashSet();
+			case UPDATE:   return updateEventTriggers;
+			case CHANGE:   return changedEventTriggers;
+			case COMMAND:  return commandEventTriggers;
+			default:       return null;
 		}
 	}
 
-	private Iterable<Rule> internalGetRules(TriggerTypes triggerType, Item item, Type oldType, Type newType) {
-		List<Rule> result = Lists.newArrayList();
-		Iterable<Rule> rules = getAllRules(triggerType, item.getName());
-		if(rules==null) {
-			rules = Lists.newArrayList();
+	private static Set<Rule> getTriggeredRules(Map<String, List<ItemTrigger>> itemTriggers) {
+		Set<Rule> result = Sets.newLinkedHashSet();
+		for(List<ItemTrigger> triggers : itemTriggers.values()) {
+			for(ItemTrigger trigger : triggers) {
+				result.add(trigger.rule);
+			}
 		}
+		return result;
+	}
+
+	private Iterable<Rule> internalGetRules(TriggerTypes triggerType, Item item, Type oldType, Type newType) {
 		switch(triggerType) {
-		case STARTUP:  return systemStartupTriggeredRules;
-		case SHUTDOWN: return systemShutdownTriggeredRules;
-		case TIMER :   return timerEventTriggeredRules;
-		case UPDATE:   
-			if(newType instanceof State) {
-				State state = (State) newType;
-				for(Rule rule : rules) {
-					for(EventTrigger t : rule.getEventtrigger()) {
-						if (t instanceof UpdateEventTrigger) {
-							UpdateEventTrigger ut = (UpdateEventTrigger) t;
-							if(ut.getItem().equals(item.getName())) {
-								if(ut.getState()!=null) {
-									State triggerState = TypeParser.parseState(item.getAcceptedDataTypes(), ut.getState());
-									if(!state.equals(triggerState)) {
-										continue;
-									}
-								}
-								result.add(rule);
-							}
-						}
-					}
-				}
-			}
-			break;
-		case CHANGE:
-			if(newType instanceof State && oldType instanceof State) {
-				State newState = (State) newType;
-				State oldState = (State) oldType;
-				for(Rule rule : rules) {
-					for(EventTrigger t : rule.getEventtrigger()) {
-						if (t instanceof ChangedEventTrigger) {
-							ChangedEventTrigger ct = (ChangedEventTrigger) t;						
-							if(ct.getItem().equals(item.getName())) {
-								if(ct.getOldState()!=null) {
-									State triggerOldState = TypeParser.parseState(item.getAcceptedDataTypes(), ct.getOldState());
-									if(!oldState.equals(triggerOldState)) {
-										continue;
-									}								
-								}
-								if(ct.getNewState()!=null) {
-									State triggerNewState = TypeParser.parseState(item.getAcceptedDataTypes(), ct.getNewState());
-									if(!newState.equals(triggerNewState)) {
-										continue;
-									}								
-								}
-								result.add(rule);
-							}
-						}
-					}
-				}
-			}
-			break;
-		case COMMAND:  
-			if(newType instanceof Command) {
-				Command command = (Command) newType;
-				for(Rule rule : rules) {
-					for(EventTrigger t : rule.getEventtrigger()) {
-						if (t instanceof CommandEventTrigger) {
-							CommandEventTrigger ct = (CommandEventTrigger) t;
-							Command triggerCommand = TypeParser.parseCommand(item.getAcceptedCommandTypes(), ct.getCommand());
-							if(ct.getItem().equals(item.getName()) &&
-									(triggerCommand==null || command.equals(triggerCommand))) {
-								result.add(rule);
-							}
-						}
-					}
-				}
+			case STARTUP:  return systemStartupTriggeredRules;
+			case SHUTDOWN: return systemShutdownTriggeredRules;
+			case TIMER :   return timerEventTriggeredRules;
+			default:       break;
+		}
+		List<ItemTrigger> triggers = getItemTriggers(triggerType).get(item.getName());
+		if(triggers==null) {
+			return Collections.emptyList();
+		}
+		List<Rule> result = Lists.newArrayListWithCapacity(triggers.size());
+		for(ItemTrigger trigger : triggers) {
+			if(trigger.matches(item, oldType, newType) && !result.contains(trigger.rule)) {
+				result.add(trigger.rule);
 			}
-			break;
 		}
 		return result;
 	}
@@ -274,9 +223,9 @@ public class RuleTriggerManager {
 		switch(type) {
 			case STARTUP:  	systemStartupTriggeredRules.clear(); break;
 			case SHUTDOWN: 	systemShutdownTriggeredRules.clear(); break;
-			case UPDATE:   	updateEventTriggeredRules.clear(); break;
-			case CHANGE:   	changedEventTriggeredRules.clear(); break;
-			case COMMAND:  	commandEventTriggeredRules.clear(); break;
+			case UPDATE:   	updateEventTriggers.clear(); break;
+			case CHANGE:   	changedEventTriggers.clear(); break;
+			case COMMAND:  	commandEventTriggers.clear(); break;
 			case TIMER:    	for(Rule rule : timerEventTriggeredRules) {
 								removeTimerRule(rule);
 							}
@@ -310,28 +259,16 @@ public class RuleTriggerManager {
 				systemShutdownTriggeredRules.add(rule);
 			} else if(t instanceof CommandEventTrigger) {
 				CommandEventTrigger ceTrigger = (CommandEventTrigger) t;
-				Set<Rule> rules = commandEventTriggeredRules.get(ceTrigger.getItem());
-				if(rules==null) {
-					rules = new HashSet<Rule>();
-					commandEventTriggeredRules.put(ceTrigger.getItem(), rules);
-				}
-				rules.add(rule);
+				addItemTrigger(commandEventTriggers, ceTrigger.getItem(), 
+					new ItemTrigger(rule, COMMAND, null, ceTrigger.getCommand()));
 			} else if(t instanceof UpdateEventTrigger) {
 				UpdateEventTrigger ueTrigger = (UpdateEventTrigger) t;
-				Set<Rule> rules = updateEventTriggeredRules.get(ueTrigger.getItem());
-				if(rules==null) {
-					rules = new HashSet<Rule>();
-					updateEventTriggeredRules.put(ueTrigger.getItem(), rules);
-				}
-				rules.add(rule);
+				addItemTrigger(updateEventTriggers, ueTrigger.getItem(), 
+					new ItemTrigger(rule, UPDATE, null, ueTrigger.getState()));
 			} else if(t instanceof ChangedEventTrigger) {
 				ChangedEventTrigger ceTrigger = (ChangedEventTrigger) t;
-				Set<Rule> rules = changedEventTriggeredRules.get(ceTrigger.getItem());
-				if(rules==null) {
-					rules = new HashSet<Rule>();
-					changedEventTriggeredRules.put(ceTrigger.getItem(), rules);
-				}
-				rules.add(rule);
+				addItemTrigger(changedEventTriggers, ceTrigger.getItem(), 
+					new ItemTrigger(rule, CHANGE, ceTrigger.getOldState(), ceTrigger.getNewState()));
 			} else if(t instanceof TimerTrigger) {
 				timerEventTriggeredRules.add(rule);
 				try {
@@ -342,6 +279,15 @@ public class RuleTriggerManager {
 			}
 		}
 	}
+
+	private static void addItemTrigger(Map<String, List<ItemTrigger>> itemTriggers, String itemName, ItemTrigger trigger) {
+		List<ItemTrigger> triggers = itemTriggers.get(itemName);
+		if(triggers==null) {
+			triggers = new CopyOnWriteArrayList<ItemTrigger>();
+			itemTriggers.put(itemName, triggers);
+		}
+		triggers.add(trigger);
+	}
 		
 	/**
 	 * Removes a given rule from the mapping tables of a certain trigger type
@@ -349,13 +295,13 @@ public class RuleTriggerManager {
 	 * @param type the trigger type for which the rule should be removed
 	 * @param rule the rule to add
 	 */
-	public void removeRule(TriggerTypes type, Rule rule) {
+	public synchronized void removeRule(TriggerTypes type, Rule rule) {
 		switch(type) {
 			case STARTUP:  	systemStartupTriggeredRules.remove(rule); break;
 			case SHUTDOWN: 	systemShutdownTriggeredRules.remove(rule); break;
-			case UPDATE:   	updateEventTriggeredRules.remove(rule); break;
-			case CHANGE:   	changedEventTriggeredRules.remove(rule); break;
-			case COMMAND:  	commandEventTriggeredRules.remove(rule); break;
+			case UPDATE:   	
+			case CHANGE:   	
+			case COMMAND:  	removeItemTriggers(getItemTriggers(type), Collections.singleton(rule)); break;
 			case TIMER:    	timerEventTriggeredRules.remove(rule); 
 							removeTimerRule(rule);
 							break;
@@ -378,15 +324,36 @@ public class RuleTriggerManager {
 	 * 
 	 * @param ruleModel the rule model
 	 */
-	public void removeRuleModel(RuleModel ruleModel) {
-		removeRules(UPDATE, updateEventTriggeredRules.values(), ruleModel);
-		removeRules(CHANGE, changedEventTriggeredRules.values(), ruleModel);
-		removeRules(COMMAND, commandEventTriggeredRules.values(), ruleModel);
+	public synchronized void removeRuleModel(RuleModel ruleModel) {
+		Collection<Rule> rules = ruleModel!=null ? ruleModel.getRules() : Collections.<Rule>emptyList();
+		removeItemTriggers(updateEventTriggers, rules);
+		removeItemTriggers(changedEventTriggers, rules);
+		removeItemTriggers(commandEventTriggers, rules);
 		removeRules(STARTUP, Collections.singletonList(systemStartupTriggeredRules), ruleModel);
 		removeRules(SHUTDOWN, Collections.singletonList(systemShutdownTriggeredRules), ruleModel);		
 		removeRules(TIMER, Collections.singletonList(timerEventTriggeredRules), ruleModel);		
 	}
 
+	/**
+	 * Removes all compiled triggers of the given rules as well as those of proxified 
+	 * rules from a dispatch table.
+	 */
+	private static void removeItemTriggers(Map<String, List<ItemTrigger>> itemTriggers, Collection<Rule> rules) {
+		for(Iterator<List<ItemTrigger>> it = itemTriggers.values().iterator(); it.hasNext();) {
+			List<ItemTrigger> triggers = it.next();
+			List<ItemTrigger> removedTriggers = Lists.newArrayList();
+			for(ItemTrigger trigger : triggers) {
+				if(rules.contains(trigger.rule) || trigger.rule.eIsProxy()) {
+					removedTriggers.add(trigger);
+				}
+			}
+			triggers.removeAll(removedTriggers);
+			if(triggers.isEmpty()) {
+				it.remove();
+			}
+		}
+	}
+
 	private void removeRules(TriggerTypes type, Collection<? extends Collection<Rule>> ruleSets, RuleModel model) {
 		for(Collection<Rule> ruleSet : ruleSets) {
 			// first remove all rules of the model, if not null (=non-existent)
@@ -494,4 +461,93 @@ public class RuleTriggerManager {
 		}
 		return jobIdentity;
 	}
+
+	/**
+	 * A compiled item event trigger of a rule. The trigger literals are parsed only once
+	 * for the accepted types of an item and then matched by equality; they are parsed again
+	 * only if the trigger is evaluated for an item with different accepted types.
+	 */
+	static class ItemTrigger {
+		
+		final Rule rule;
+		final TriggerTypes type;
+		final String oldValue;
+		final String newValue;
+		
+		private volatile ParsedValues parsedValues;
+		
+		ItemTrigger(Rule rule, TriggerTypes type, String oldValue, String newValue) {
+			this.rule = rule;
+			this.type = type;
+			this.oldValue = oldValue;
+			this.newValue = newValue;
+		}
+		
+		/**
+		 * Checks whether this trigger is satisfied by an event of the given item.
+		 * 
+		 * @param item the item the event has been sent for
+		 * @param oldType the previous state of the item (only used for changes)
+		 * @param newType the new state or the received command
+		 * @return <code>true</code>, if the rule must be executed
+		 */
+		boolean matches(Item item, Type oldType, Type newType) {
+			switch(type) {
+				case UPDATE:
+					if(!(newType instanceof State)) return false;
+					return newValue==null || newType.equals(getParsedValues(item).newType);
+				case CHANGE:
+					if(!(newType instanceof State && oldType instanceof State)) return false;
+					if(oldValue==null && newValue==null) return true;
+					ParsedValues values = getParsedValues(item);
+					return (oldValue==null || oldType.equals(values.oldType)) 
+						&& (newValue==null || newType.equals(values.newType));
+				case COMMAND:
+					if(!(newType instanceof Command)) return false;
+					// a command literal which cannot be parsed accepts any command
+					Type triggerCommand = getParsedValues(item).newType;
+					return triggerCommand==null || newType.equals(triggerCommand);
+				default:
+					return false;
+			}
+		}
+		
+		private ParsedValues getParsedValues(Item item) {
+			List<?> acceptedTypes = type==COMMAND ? item.getAcceptedCommandTypes() : item.getAcceptedDataTypes();
+			ParsedValues values = parsedValues;
+			// group items compute their accepted types on each call, so fall back to equality
+			if(values==null || !(values.acceptedTypes==acceptedTypes || (acceptedTypes!=null && acceptedTypes.equals(values.acceptedTypes)))) {
+				values = new ParsedValues(acceptedTypes, parse(acceptedTypes, oldValue), parse(acceptedTypes, newValue));
+				parsedValues = values;
+			}
+			return values;
+		}
+		
+		@SuppressWarnings("unchecked")
+		private Type parse(List<?> acceptedTypes, String value) {
+			if(value==null) {
+				return null;
+			} else if(type==COMMAND) {
+				return TypeParser.parseCommand((List<Class<? extends Command>>) acceptedTypes, value);
+			} else {
+				return TypeParser.parseState((List<Class<? extends State>>) acceptedTypes, value);
+			}
+		}
+	}
+
+	/**
+	 * The trigger literals of an {@link ItemTrigger} parsed for a certain list of accepted types.
+	 */
+	private static class ParsedValues {
+		
+		final List<?> acceptedTypes;
+		final Type oldType;
+		final Type newType;
+		
+		ParsedValues(List<?> acceptedTypes, Type oldType, Type newType) {
+			this.acceptedTypes = acceptedTypes;
+			this.oldType = oldType;
+			this.newType = newType;
+		}
+	}
 }
@@ -0,0 +1,196 @@
+/**
+ * openHAB, the open Home Automation Bus.
+ * Copyright (C) 2010-2013, openHAB.org <admin@openhab.org>
+ *
+ * See the contributors.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ * Additional permission under GNU GPL version 3 section 7
+ *
+ * If you modify this Program, or any covered work, by linking or
+ * combining it with Eclipse (or a modified version of that library),
+ * containing parts covered by the terms of the Eclipse Public License
+ * (EPL), the licensors of this Program grant you additional permission
+ * to convey the resulting work.
+ */
+package org.openhab.model.script.internal.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openhab.core.items.Item;
+import org.openhab.core.items.ItemNotFoundException;
+import org.openhab.core.items.ItemRegistry;
+import org.openhab.core.items.ItemRegistryChangeListener;
+import org.openhab.core.library.items.SwitchItem;
+
+
+/**
+ * @author agent
+ * @since 1.3.0
+ */
+public class ItemCacheTest {
+	
+	private ItemCache cache;
+	
+	private TestItemRegistry registry;
+	
+	@Before
+	public void setup() {
+		registry = new TestItemRegistry();
+		registry.items.put("Light", new SwitchItem("Light"));
+		cache = createCache(registry);
+	}
+	
+	@Test
+	public void testItemIsCached() {
+		Item item = cache.getItem("Light");
+		assertSame(registry.items.get("Light"), item);
+		assertSame(item, cache.getItem("Light"));
+		assertEquals(1, registry.lookups);
+		assertNull(cache.getItem("Unknown"));
+		assertTrue(registry.listeners.contains(cache));
+	}
+
+	@Test
+	public void testItemRemovedInvalidates() {
+		cache.getItem("Light");
+		registry.items.remove("Light");
+		cache.itemRemoved(new SwitchItem("Light"));
+		assertNull(cache.getItem("Light"));
+	}
+
+	@Test
+	public void testItemAddedInvalidates() {
+		Item oldItem = cache.getItem("Light");
+		Item newItem = new SwitchItem("Light");
+		registry.items.put("Light", newItem);
+		cache.itemAdded(newItem);
+		assertSame(newItem, cache.getItem("Light"));
+		assertTrue(oldItem!=newItem);
+	}
+
+	@Test
+	public void testAllItemsChangedInvalidates() {
+		cache.getItem("Light");
+		registry.items.clear();
+		cache.allItemsChanged(Collections.singleton("Light"));
+		assertNull(cache.getItem("Light"));
+	}
+
+	@Test
+	public void testRegistryChangeInvalidates() {
+		cache.getItem("Light");
+		TestItemRegistry newRegistry = new TestItemRegistry();
+		Item newItem = new SwitchItem("Light");
+		newRegistry.items.put("Light", newItem);
+		cache.itemRegistryProvider = new TestItemRegistryProvider(newRegistry);
+		assertSame(newItem, cache.getItem("Light"));
+		assertTrue(newRegistry.listeners.contains(cache));
+		assertTrue(registry.listeners.isEmpty());
+	}
+
+	@Test
+	public void testRemovalDuringLookupIsNotCached() {
+		final Item item = registry.items.get("Light");
+		TestItemRegistry removingRegistry = new TestItemRegistry() {
+			@Override
+			public Item getItem(String name) throws ItemNotFoundException {
+				Item result = super.getItem(name);
+				// simulate a concurrent removal between the lookup and caching the item
+				items.remove(name);
+				cache.itemRemoved(result);
+				return result;
+			}
+		};
+		removingRegistry.items.put("Light", item);
+		cache = createCache(removingRegistry);
+		
+		assertSame(item, cache.getItem("Light"));
+		assertNull(cache.getItem("Light"));
+		assertEquals(2, removingRegistry.lookups);
+	}
+
+	private static ItemCache createCache(ItemRegistry registry) {
+		ItemCache cache = new ItemCache();
+		cache.itemRegistryProvider = new TestItemRegistryProvider(registry);
+		return cache;
+	}
+	
+	private static class TestItemRegistryProvider extends ItemRegistryProvider {
+		private final ItemRegistry registry;
+		
+		public TestItemRegistryProvider(ItemRegistry registry) {
+			this.registry = registry;
+		}
+		
+		@Override
+		public ItemRegistry get() {
+			return registry;
+		}
+	}
+	
+	private static class TestItemRegistry implements ItemRegistry {
+		final Map<String, Item> items = new HashMap<String, Item>();
+		final List<ItemRegistryChangeListener> listeners = new ArrayList<ItemRegistryChangeListener>();
+		int lookups;
+
+		public Item getItem(String name) throws ItemNotFoundException {
+			lookups++;
+			Item item = items.get(name);
+			if(item==null) {
+				throw new ItemNotFoundException(name);
+			}
+			return item;
+		}
+
+		public Item getItemByPattern(String name) throws ItemNotFoundException {
+			return getItem(name);
+		}
+
+		public Collection<Item> getItems() {
+			return items.values();
+		}
+
+		public Collection<Item> getItems(String pattern) {
+			return items.values();
+		}
+
+		public boolean isValidItemName(String itemName) {
+			return true;
+		}
+
+		public void addItemRegistryChangeListener(ItemRegistryChangeListener listener) {
+			listeners.add(listener);
+		}
+
+		public void removeItemRegistryChangeListener(ItemRegistryChangeListener listener) {
+			listeners.remove(listener);
+		}
+	}
+
+}
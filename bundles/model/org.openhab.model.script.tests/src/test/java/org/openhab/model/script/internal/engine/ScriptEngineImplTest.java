@@ -0,0 +1,105 @@
+/**
+ * openHAB, the open Home Automation Bus.
+ * Copyright (C) 2010-2013, openHAB.org <admin@openhab.org>
+ *
+ * See the contributors.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ * Additional permission under GNU GPL version 3 section 7
+ *
+ * If you modify this Program, or any covered work, by linking or
+ * combining it with Eclipse (or a modified version of that library),
+ * containing parts covered by the terms of the Eclipse Public License
+ * (EPL), the licensors of this Program grant you additional permission
+ * to convey the resulting work.
+ */
+package org.openhab.model.script.internal.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.eclipse.xtext.xbase.XExpression;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openhab.core.scriptengine.ScriptParsingException;
+
+
+/**
+ * @author agent
+ * @since 1.3.0
+ */
+public class ScriptEngineImplTest {
+	
+	private ScriptEngineImpl engine;
+	
+	@Before
+	public void setup() {
+		engine = new ScriptEngineImpl();
+		engine.activate();
+	}
+	
+	@After
+	public void tearDown() {
+		engine.deactivate();
+	}
+	
+	@Test
+	public void testRepeatedScriptIsCached() throws ScriptParsingException {
+		XExpression expression = getXExpression("1 + 1");
+		assertNotNull(expression);
+		assertEquals(1, engine.resourceSet.getResources().size());
+		
+		for(int i=0; i<10; i++) {
+			assertSame(expression, getXExpression("1 + 1"));
+		}
+		assertEquals(1, engine.resourceSet.getResources().size());
+	}
+	
+	@Test
+	public void testResourcesAreBounded() throws ScriptParsingException {
+		XExpression first = getXExpression("0");
+		for(int i=1; i<=ScriptEngineImpl.MAX_CACHED_SCRIPTS; i++) {
+			getXExpression(Integer.toString(i));
+			assertTrue(engine.resourceSet.getResources().size() <= ScriptEngineImpl.MAX_CACHED_SCRIPTS);
+		}
+		assertEquals(ScriptEngineImpl.MAX_CACHED_SCRIPTS, engine.resourceSet.getResources().size());
+		
+		// the eldest script has been evicted, so it is parsed again
+		XExpression reparsed = getXExpression("0");
+		assertTrue(first!=reparsed);
+		assertEquals(ScriptEngineImpl.MAX_CACHED_SCRIPTS, engine.resourceSet.getResources().size());
+	}
+	
+	@Test
+	public void testInvalidScriptLeavesNoResource() {
+		try {
+			engine.newScriptFromString("1 +");
+			fail("the script must not be parsed");
+		} catch (ScriptParsingException e) {
+			// expected
+		}
+		assertEquals(0, engine.resourceSet.getResources().size());
+	}
+	
+	private XExpression getXExpression(String script) throws ScriptParsingException {
+		return ((ScriptImpl) engine.newScriptFromString(script)).getXExpression();
+	}
+
+}
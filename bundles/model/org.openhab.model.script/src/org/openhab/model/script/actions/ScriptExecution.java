@@ -31,6 +31,9 @@ package org.openhab.model.script.actions;
 import static org.quartz.JobBuilder.newJob;
 import static org.quartz.TriggerBuilder.newTrigger;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 import org.apache.commons.lang.StringUtils;
 import org.eclipse.xtext.xbase.XExpression;
 import org.eclipse.xtext.xbase.lib.Procedures.Procedure0;
@@ -63,6 +66,9 @@ public class ScriptExecution {
 
 	private static final Logger logger = LoggerFactory.getLogger(ScriptExecution.class);
 
+	/** the scripts of the called script files by the names of the files */
+	private static final ConcurrentMap<String, CachedScript> scripts = new ConcurrentHashMap<String, CachedScript>();
+
 	/**
 	 * Calls a script which must be located in the configurations/scripts folder.
 	 * 
@@ -83,8 +89,7 @@ public class ScriptExecution {
 			if(expr!=null) {
 				ScriptEngine scriptEngine = ScriptActivator.scriptEngineTracker.getService();
 				if(scriptEngine!=null) {
-					Script script = scriptEngine.newScriptFromXExpression(expr);
-					return script.execute();
+					return getScript(scriptNameWithExt, expr, scriptEngine).execute();
 				} else {
 					throw new ScriptExecutionException("Script engine is not available.");
 				}
@@ -96,6 +101,19 @@ public class ScriptExecution {
 		}
 	}
 	
+	/**
+	 * Returns the cached script for a script file. A new script is only created if the
+	 * file has been reloaded or if the script engine has changed since the last call.
+	 */
+	private static Script getScript(String scriptName, XExpression expr, ScriptEngine scriptEngine) {
+		CachedScript cachedScript = scripts.get(scriptName);
+		if(cachedScript==null || cachedScript.expression!=expr || cachedScript.scriptEngine!=scriptEngine) {
+			cachedScript = new CachedScript(expr, scriptEngine, scriptEngine.newScriptFromXExpression(expr));
+			scripts.put(scriptName, cachedScript);
+		}
+		return cachedScript.script;
+	}
+	
 	/**
 	 * Schedules a block of code for later execution.
 	 * 
@@ -125,4 +143,20 @@ public class ScriptExecution {
 			return null;
 		}
 	}
+	
+	/**
+	 * Inner class that keeps a script together with the expression and the engine it has been created from
+	 */
+	private static class CachedScript {
+		
+		final XExpression expression;
+		final ScriptEngine scriptEngine;
+		final Script script;
+
+		public CachedScript(XExpression expression, ScriptEngine scriptEngine, Script script) {
+			this.expression = expression;
+			this.scriptEngine = scriptEngine;
+			this.script = script;
+		}
+	}
 }
@@ -0,0 +1,142 @@
+/**
+ * openHAB, the open Home Automation Bus.
+ * Copyright (C) 2010-2013, openHAB.org <admin@openhab.org>
+ *
+ * See the contributors.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ * Additional permission under GNU GPL version 3 section 7
+ *
+ * If you modify this Program, or any covered work, by linking or
+ * combining it with Eclipse (or a modified version of that library),
+ * containing parts covered by the terms of the Eclipse Public License
+ * (EPL), the licensors of this Program grant you additional permission
+ * to convey the resulting work.
+ */
+package org.openhab.model.script.internal.engine;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openhab.core.items.Item;
+import org.openhab.core.items.ItemNotFoundException;
+import org.openhab.core.items.ItemRegistry;
+import org.openhab.core.items.ItemRegistryChangeListener;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/**
+ * This class caches the items which are referenced by name in scripts, so that the
+ * interpreter does not have to ask the item registry on every evaluation of an identifier.
+ * The cache registers itself as a listener at the item registry and is cleared whenever
+ * items are added or removed. A generation counter makes sure that an item which has
+ * been looked up while the cache was invalidated is not cached again.
+ * 
+ * @author agent
+ * @since 1.3.0
+ *
+ */
+@Singleton
+public class ItemCache implements ItemRegistryChangeListener {
+
+	@Inject
+	ItemRegistryProvider itemRegistryProvider;
+
+	private final ConcurrentMap<String, Item> items = new ConcurrentHashMap<String, Item>();
+	
+	/** the item registry the cache is registered at */
+	private volatile ItemRegistry itemRegistry;
+	
+	/** is incremented whenever the cache is invalidated */
+	private final AtomicInteger generation = new AtomicInteger();
+	
+	/**
+	 * Returns the item with the given name (or name pattern) from the item registry.
+	 * 
+	 * @param itemName the name of the item
+	 * @return the item or <code>null</code>, if no such item exists
+	 */
+	public Item getItem(String itemName) {
+		ItemRegistry currentRegistry = itemRegistryProvider.get();
+		if(currentRegistry!=itemRegistry) {
+			setItemRegistry(currentRegistry);
+		}
+		if(currentRegistry==null) {
+			return null;
+		}
+		
+		Item item = items.get(itemName);
+		if(item==null) {
+			int currentGeneration = generation.get();
+			try {
+				item = currentRegistry.getItem(itemName);
+			} catch (ItemNotFoundException e) {
+				return null;
+			}
+			items.put(itemName, item);
+			// the cache has been invalidated during the lookup, so the item might be stale
+			if(generation.get()!=currentGeneration) {
+				items.remove(itemName, item);
+			}
+		}
+		return item;
+	}
+
+	private synchronized void setItemRegistry(ItemRegistry itemRegistry) {
+		if(this.itemRegistry!=itemRegistry) {
+			if(this.itemRegistry!=null) {
+				this.itemRegistry.removeItemRegistryChangeListener(this);
+			}
+			if(itemRegistry!=null) {
+				itemRegistry.addItemRegistryChangeListener(this);
+			}
+			this.itemRegistry = itemRegistry;
+			invalidate();
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void allItemsChanged(Collection<String> oldItemNames) {
+		invalidate();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void itemAdded(Item item) {
+		// a new item might also match a cached name pattern, so we need to start over
+		invalidate();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void itemRemoved(Item item) {
+		invalidate();
+	}
+
+	private void invalidate() {
+		// the generation must be incremented before clearing, so that concurrent lookups notice it
+		generation.incrementAndGet();
+		items.clear();
+	}
+
+}
@@ -31,7 +31,9 @@ package org.openhab.model.script.internal.engine;
 import static com.google.common.collect.Iterables.filter;
 
 import java.io.IOException;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.eclipse.emf.common.util.EList;
 import org.eclipse.emf.common.util.URI;
@@ -60,6 +62,11 @@ import com.google.inject.Injector;
 /**
  * This is the implementation of a {@link ScriptEngine} which is made available as an OSGi service.
  * 
+ * <p>Scripts which are created from strings are parsed and validated only once. The resulting
+ * expressions are kept in a bounded cache by their script content, so that repeated executions
+ * of the same script (e.g. through the console or a REST call) do not need to parse and validate
+ * it again. The synthetic resources of scripts, which are not cached, are removed from the resource set.</p>
+ * 
  * @author Kai Kreuzer
  * @since 0.9.0
  *
@@ -67,9 +74,26 @@ import com.google.inject.Injector;
 @SuppressWarnings("restriction")
 public class ScriptEngineImpl implements ScriptEngine {
 
+	/** the maximum number of parsed and validated scripts to keep */
+	static final int MAX_CACHED_SCRIPTS = 100;
+	
 	protected Injector guiceInjector;
 	protected XtextResourceSet resourceSet;
 
+	/** the validated expressions by their script content, in the order of their last use */
+	private final Map<String, XExpression> validatedScripts = new LinkedHashMap<String, XExpression>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, XExpression> eldest) {
+			if(size() > MAX_CACHED_SCRIPTS) {
+				removeResource(eldest.getValue().eResource());
+				return true;
+			}
+			return false;
+		}
+	};
+
 	public ScriptEngineImpl() {}
 	
 	public void activate() {
@@ -79,6 +103,9 @@ public class ScriptEngineImpl implements ScriptEngine {
 	}
 	
 	public void deactivate() {
+		synchronized(validatedScripts) {
+			validatedScripts.clear();
+		}
 		this.guiceInjector = null;
 		this.resourceSet = null;
 	}
@@ -88,7 +115,7 @@ public class ScriptEngineImpl implements ScriptEngine {
 	 */
 	public Script newScriptFromString(String scriptAsString)
 			throws ScriptParsingException {
-		return newScriptFromXExpression(parseScriptIntoXTextEObject(scriptAsString));
+		return newScriptFromXExpression(getValidatedExpression(scriptAsString));
 	}
 
 	/**
@@ -108,30 +135,80 @@ public class ScriptEngineImpl implements ScriptEngine {
 		return newScriptFromString(scriptAsString).execute();
 	}
 
-	private XExpression parseScriptIntoXTextEObject(String scriptAsString) throws ScriptParsingException {
-		Resource resource = resourceSet.createResource(computeUnusedUri(resourceSet)); // IS-A XtextResource
-		try {
-			resource.load(new StringInputStream(scriptAsString), resourceSet.getLoadOptions());
-		} catch (IOException e) {
-			throw new ScriptParsingException("Unexpected IOException; from close() of a String-based ByteArrayInputStream, no real I/O; how is that possible???", scriptAsString, e);
+	/**
+	 * Returns the parsed and validated expression of a script, either from the cache or
+	 * by parsing and validating the script.
+	 */
+	private XExpression getValidatedExpression(String scriptAsString) throws ScriptParsingException {
+		synchronized(validatedScripts) {
+			XExpression expression = validatedScripts.get(scriptAsString);
+			if(expression!=null) {
+				return expression;
+			}
 		}
-		
-		List<Diagnostic> errors = resource.getErrors();
-		if (errors.size() != 0) {
-			throw new ScriptParsingException("Failed to parse expression (due to managed SyntaxError/s)", scriptAsString).addDiagnosticErrors(errors);
+		XExpression expression = parseScriptIntoXTextEObject(scriptAsString);
+		if(expression!=null) {
+			synchronized(validatedScripts) {
+				XExpression cachedExpression = validatedScripts.get(scriptAsString);
+				if(cachedExpression==null) {
+					validatedScripts.put(scriptAsString, expression);
+				} else {
+					// the same script has been parsed concurrently, so we use the cached one
+					removeResource(expression.eResource());
+					expression = cachedExpression;
+				}
+			}
 		}
+		return expression;
+	}
+
+	private XExpression parseScriptIntoXTextEObject(String scriptAsString) throws ScriptParsingException {
+		synchronized(resourceSet) {
+			Resource resource = resourceSet.createResource(computeUnusedUri(resourceSet)); // IS-A XtextResource
+			boolean valid = false;
+			try {
+				try {
+					resource.load(new StringInputStream(scriptAsString), resourceSet.getLoadOptions());
+				} catch (IOException e) {
+					throw new ScriptParsingException("Unexpected IOException; from close() of a String-based ByteArrayInputStream, no real I/O; how is that possible???", scriptAsString, e);
+				}
+				
+				List<Diagnostic> errors = resource.getErrors();
+				if (errors.size() != 0) {
+					throw new ScriptParsingException("Failed to parse expression (due to managed SyntaxError/s)", scriptAsString).addDiagnosticErrors(errors);
+				}
+				
+				EList<EObject> contents = resource.getContents();
 		
-		EList<EObject> contents = resource.getContents();
-
-		if (!contents.isEmpty()) {
-			Iterable<Issue> validationErrors = getValidationErrors(contents.get(0));
-			if(!validationErrors.iterator().hasNext()) {
-				return (XExpression) contents.get(0);
-			} else {
-				throw new ScriptParsingException("Failed to parse expression (due to managed ValidationError/s)", scriptAsString).addValidationIssues(validationErrors);
+				if (!contents.isEmpty()) {
+					Iterable<Issue> validationErrors = getValidationErrors(contents.get(0));
+					if(!validationErrors.iterator().hasNext()) {
+						valid = true;
+						return (XExpression) contents.get(0);
+					} else {
+						throw new ScriptParsingException("Failed to parse expression (due to managed ValidationError/s)", scriptAsString).addValidationIssues(validationErrors);
+					}
+				} else {
+					return null;
+				}
+			} finally {
+				if(!valid) {
+					// the resource is of no further use, so it must not stay in the resource set
+					resourceSet.getResources().remove(resource);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Removes the synthetic resource of a script, which is not used anymore, from the resource set.
+	 */
+	private void removeResource(Resource resource) {
+		XtextResourceSet resourceSet = this.resourceSet;
+		if(resource!=null && resourceSet!=null) {
+			synchronized(resourceSet) {
+				resourceSet.getResources().remove(resource);
 			}
-		} else {
-			return null;
 		}
 	}
 
@@ -39,10 +39,8 @@ import org.eclipse.xtext.xbase.XVariableDeclaration;
 import org.eclipse.xtext.xbase.interpreter.IEvaluationContext;
 import org.eclipse.xtext.xbase.interpreter.impl.XbaseInterpreter;
 import org.openhab.core.items.Item;
-import org.openhab.core.items.ItemNotFoundException;
-import org.openhab.core.items.ItemRegistry;
 import org.openhab.core.types.Type;
-import org.openhab.model.script.internal.engine.ItemRegistryProvider;
+import org.openhab.model.script.internal.engine.ItemCache;
 import org.openhab.model.script.lib.NumberExtensions;
 import org.openhab.model.script.scoping.StateAndCommandProvider;
 
@@ -60,7 +58,7 @@ import com.google.inject.Inject;
 public class ScriptInterpreter extends XbaseInterpreter {
 
 	@Inject
-	ItemRegistryProvider itemRegistryProvider;
+	ItemCache itemCache;
 	
 	@Inject
 	StateAndCommandProvider stateAndCommandProvider;
@@ -71,12 +69,12 @@ public class ScriptInterpreter extends XbaseInterpreter {
 			IEvaluationContext context, CancelIndicator indicator) {
 		Object value = super._featureCallJvmIdentifyableElement(identifiable, featureCall, receiver, context, indicator);
 		if(value==null && receiver==null) {
-			for(Type type : stateAndCommandProvider.getAllTypes()) {
-				if(type.toString().equals(featureCall.toString())) {
-					return type;
-				}
+			String name = featureCall.toString();
+			Type type = stateAndCommandProvider.getType(name);
+			if(type!=null) {
+				return type;
 			}
-			value = getItem(featureCall.toString());
+			value = getItem(name);
 		}
 		return value;
 	}
@@ -96,12 +94,7 @@ public class ScriptInterpreter extends XbaseInterpreter {
 	}
 
 	protected Item getItem(String itemName) {
-		ItemRegistry itemRegistry = itemRegistryProvider.get();
-		try {
-			return itemRegistry.getItem(itemName);
-		} catch (ItemNotFoundException e) {
-			return null;
-		}
+		return itemCache.getItem(itemName);
 	}
 	
 	@Override
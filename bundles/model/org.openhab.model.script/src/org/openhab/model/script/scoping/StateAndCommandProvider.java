@@ -28,7 +28,10 @@
  */
 package org.openhab.model.script.scoping;
 
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 import org.openhab.core.library.types.IncreaseDecreaseType;
@@ -58,6 +61,9 @@ public class StateAndCommandProvider {
 	final static protected Set<State> STATES = new HashSet<State>();
 	final static protected Set<Type> TYPES = new HashSet<Type>();
 	
+	/** the types by their names, as they are written in scripts */
+	final static private Map<String, Type> TYPES_BY_NAME;
+	
 	static {
 		COMMANDS.add(OnOffType.ON);
 		COMMANDS.add(OnOffType.OFF);
@@ -79,6 +85,12 @@ public class StateAndCommandProvider {
 		
 		TYPES.addAll(COMMANDS);
 		TYPES.addAll(STATES);
+		
+		Map<String, Type> typesByName = new HashMap<String, Type>();
+		for(Type type : TYPES) {
+			typesByName.put(type.toString(), type);
+		}
+		TYPES_BY_NAME = Collections.unmodifiableMap(typesByName);
 	}
 	
 	public Iterable<Type> getAllTypes() {
@@ -92,5 +104,15 @@ public class StateAndCommandProvider {
 	public Iterable<State> getAllStates() {
 		return STATES;
 	}
+
+	/**
+	 * Returns the state or command with the given name.
+	 * 
+	 * @param name the name of the type, e.g. "ON"
+	 * @return the type or <code>null</code>, if there is no type with this name
+	 */
+	public Type getType(String name) {
+		return TYPES_BY_NAME.get(name);
+	}
 	
 }
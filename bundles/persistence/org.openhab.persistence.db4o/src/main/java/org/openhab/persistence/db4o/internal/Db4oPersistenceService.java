@@ -48,9 +48,12 @@ import java.util.Set;
 import org.openhab.core.items.Item;
 import org.openhab.core.persistence.FilterCriteria;
 import org.openhab.core.persistence.FilterCriteria.Ordering;
+import org.openhab.core.persistence.HistoricCursor;
+import org.openhab.core.persistence.HistoricCursors;
 import org.openhab.core.persistence.HistoricItem;
 import org.openhab.core.persistence.PersistenceService;
-import org.openhab.core.persistence.QueryablePersistenceService;
+import org.openhab.core.persistence.StreamingPersistenceService;
+import org.openhab.core.types.State;
 import org.quartz.CronScheduleBuilder;
 import org.quartz.CronTrigger;
 import org.quartz.DisallowConcurrentExecution;
@@ -81,7 +84,7 @@ import com.db4o.query.Query;
  * @author Kai Kreuzer
  * @since 1.0.0
  */
-public class Db4oPersistenceService implements QueryablePersistenceService {
+public class Db4oPersistenceService implements StreamingPersistenceService {
 
 	private static final Logger logger = LoggerFactory.getLogger(Db4oPersistenceService.class);
 	
@@ -142,14 +145,52 @@ public class Db4oPersistenceService implements QueryablePersistenceService {
 	}
 
 	public Iterable<HistoricItem> query(FilterCriteria filter) {
+		if (filter==null) {
+			filter = new FilterCriteria();
+		}
+		ObjectSet<HistoricItem> results = execute(filter);
+		if (results != null) {
+			int startIndex = filter.getPageNumber() * filter.getPageSize();
+			if (startIndex < results.size()) {
+				int endIndex = startIndex + filter.getPageSize();
+				if(endIndex > results.size()) {
+					endIndex = results.size();
+				}
+				return results.subList(startIndex, endIndex);
+			}
+		}
+		
+		return Collections.emptyList();
+	}
+	
+	/**
+	 * @{inheritDoc}
+	 */
+	public HistoricCursor openCursor(FilterCriteria filter) {
+		if (filter==null) {
+			filter = new FilterCriteria();
+		}
+		ObjectSet<HistoricItem> results = execute(filter);
+		if (results == null) {
+			return HistoricCursors.forItems(Collections.<HistoricItem>emptyList());
+		}
+		long startIndex = (long) filter.getPageNumber() * filter.getPageSize();
+		long endIndex = Math.min(startIndex + filter.getPageSize(), results.size());
+		return new ObjectSetCursor(results, (int) Math.min(startIndex, endIndex), (int) endIndex);
+	}
+	
+	/**
+	 * Executes the query for the given filter. The returned object set only contains the 
+	 * ids of the matching items, the items themselves are activated when they are accessed.
+	 * 
+	 * @return the matching items or <code>null</code>, if the database is not available
+	 */
+	private ObjectSet<HistoricItem> execute(FilterCriteria filter) {
 		Query query = queryWithReconnect();
 		
 		if (query != null) {
 			query.constrain(Db4oItem.class);
 			
-			if (filter==null) {
-				filter = new FilterCriteria();
-			}
 			if (filter.getBeginDate()!=null) {
 				query.descend("timestamp").constrain(filter.getBeginDate()).greater().equal();
 			}
@@ -175,19 +216,10 @@ public class Db4oPersistenceService implements QueryablePersistenceService {
 			} else {
 				query.descend("timestamp").orderDescending();
 			}
-			ObjectSet<HistoricItem> results = query.execute();
-	
-			int startIndex = filter.getPageNumber() * filter.getPageSize();
-			if (startIndex < results.size()) {
-				int endIndex = startIndex + filter.getPageSize();
-				if(endIndex > results.size()) {
-					endIndex = results.size();
-				}
-				return results.subList(startIndex, endIndex);
-			}
+			return query.execute();
 		}
 		
-		return Collections.emptyList();
+		return null;
 	}
 	
 	/**
@@ -270,6 +302,51 @@ public class Db4oPersistenceService implements QueryablePersistenceService {
 	}
 	
 	
+	/**
+	 * A cursor over a range of an object set, which activates the items one after the other.
+	 */
+	private static class ObjectSetCursor implements HistoricCursor {
+		
+		private final ObjectSet<HistoricItem> results;
+		private final int endIndex;
+		private int index;
+		private HistoricItem current;
+		
+		ObjectSetCursor(ObjectSet<HistoricItem> results, int startIndex, int endIndex) {
+			this.results = results;
+			this.index = startIndex;
+			this.endIndex = endIndex;
+		}
+		
+		public boolean next() {
+			if (index < endIndex) {
+				current = results.get(index++);
+				return true;
+			} else {
+				current = null;
+				return false;
+			}
+		}
+		
+		public long getTime() {
+			return current.getTimestamp().getTime();
+		}
+		
+		public double getValue() {
+			return HistoricCursors.toValue(current.getState());
+		}
+		
+		public State getState() {
+			return current.getState();
+		}
+		
+		public void close() {
+			index = endIndex;
+			current = null;
+		}
+	}
+	
+	
 	/**
 	 * A quartz scheduler job to commit the db4o transaction frequently. There
 	 * can be only one instance of a specific job type running at the same time.
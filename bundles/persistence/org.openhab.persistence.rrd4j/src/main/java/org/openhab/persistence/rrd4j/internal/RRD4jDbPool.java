@@ -0,0 +1,206 @@
+/**
+ * openHAB, the open Home Automation Bus.
+ * Copyright (C) 2010-2013, openHAB.org <admin@openhab.org>
+ *
+ * See the contributors.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ * Additional permission under GNU GPL version 3 section 7
+ *
+ * If you modify this Program, or any covered work, by linking or
+ * combining it with Eclipse (or a modified version of that library),
+ * containing parts covered by the terms of the Eclipse Public License
+ * (EPL), the licensors of this Program grant you additional permission
+ * to convey the resulting work.
+ */
+package org.openhab.persistence.rrd4j.internal;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.rrd4j.core.RrdBackendFactory;
+import org.rrd4j.core.RrdDb;
+import org.rrd4j.core.RrdDef;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class keeps a bounded number of rrd4j databases open, so that they do not need to
+ * be reopened for every sample. If the capacity is exceeded, the least recently used
+ * database, which is currently not in use, is closed.
+ * 
+ * <p>Every database that is retrieved by {@link #acquire(String, RrdDef)} must be given back
+ * with {@link #release(RrdDb)}. As a database can be used by several threads, all operations 
+ * on it should be synchronized on the database instance.</p>
+ * 
+ * @author agent
+ * @since 1.3.0
+ */
+public class RRD4jDbPool {
+
+	private static final Logger logger = LoggerFactory.getLogger(RRD4jDbPool.class);
+
+	private final int capacity;
+	
+	private final RrdBackendFactory backendFactory;
+	
+	/** the open databases by their path in the order of their last access */
+	private final LinkedHashMap<String, RrdDb> databases = new LinkedHashMap<String, RrdDb>(16, 0.75f, true);
+	
+	/** the number of current users of each database */
+	private final Map<RrdDb, Integer> usages = new HashMap<RrdDb, Integer>();
+	
+	private boolean closed = false;
+
+	/**
+	 * Creates a new pool.
+	 * 
+	 * @param capacity the maximum number of databases which are kept open
+	 * @param backendFactory the rrd4j backend to use for opening the databases
+	 */
+	public RRD4jDbPool(int capacity, RrdBackendFactory backendFactory) {
+		this.capacity = Math.max(1, capacity);
+		this.backendFactory = backendFactory;
+	}
+	
+	/**
+	 * Returns the open database for the given path. If the database is not yet open, it is 
+	 * opened or it is created with the given definition, if the file does not exist.
+	 * 
+	 * @param path the path of the database file
+	 * @param def the definition to create a new database with
+	 * @return the open database
+	 * @throws IOException if the database cannot be opened or created
+	 */
+	public synchronized RrdDb acquire(String path, RrdDef def) throws IOException {
+		if(closed) {
+			throw new IOException("The rrd4j database pool has been closed");
+		}
+		RrdDb db = databases.get(path);
+		if(db==null) {
+			if(def!=null) {
+				db = new RrdDb(def, backendFactory);
+			} else {
+				db = new RrdDb(path, backendFactory);
+			}
+			databases.put(path, db);
+			evict();
+		}
+		Integer usage = usages.get(db);
+		usages.put(db, usage==null ? 1 : usage + 1);
+		return db;
+	}
+	
+	/**
+	 * Gives a database back to the pool.
+	 * 
+	 * @param db the database to release
+	 */
+	public synchronized void release(RrdDb db) {
+		Integer usage = usages.get(db);
+		if(usage==null) {
+			return;
+		}
+		if(usage > 1) {
+			usages.put(db, usage - 1);
+		} else {
+			usages.remove(db);
+			if(closed) {
+				close(db);
+				notifyAll();
+			} else {
+				evict();
+			}
+		}
+	}
+	
+	/**
+	 * Closes all databases which are not in use. Databases which are still in 
+	 * use are closed as soon as they are released.
+	 */
+	public synchronized void close() {
+		closed = true;
+		for(RrdDb db : databases.values()) {
+			if(!usages.containsKey(db)) {
+				close(db);
+			}
+		}
+		databases.clear();
+	}
+	
+	/**
+	 * Closes the pool and waits until all databases, which are still in use, have been
+	 * released and closed. This must be done before the same files are opened by another 
+	 * pool, as rrd4j does not allow a database file to be opened twice.
+	 * 
+	 * @param timeout the maximum time in milliseconds to wait
+	 * @return true, if all databases have been closed
+	 */
+	public synchronized boolean closeAndWait(long timeout) {
+		close();
+		long deadline = System.currentTimeMillis() + timeout;
+		while(!usages.isEmpty()) {
+			long remaining = deadline - System.currentTimeMillis();
+			if(remaining <= 0) {
+				return false;
+			}
+			try {
+				wait(remaining);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Returns the number of currently open databases.
+	 */
+	public synchronized int getOpenCount() {
+		return databases.size();
+	}
+
+	/**
+	 * Closes the least recently used databases, which are not in use, until the pool 
+	 * does not exceed its capacity anymore.
+	 */
+	private void evict() {
+		Iterator<Entry<String, RrdDb>> it = databases.entrySet().iterator();
+		while(databases.size() > capacity && it.hasNext()) {
+			RrdDb db = it.next().getValue();
+			if(!usages.containsKey(db)) {
+				it.remove();
+				close(db);
+			}
+		}
+	}
+
+	private void close(RrdDb db) {
+		try {
+			synchronized (db) {
+				db.close();
+			}
+		} catch (IOException e) {
+			logger.debug("Error closing rrd4j database: {}", e.getMessage());
+		}
+	}
+
+}
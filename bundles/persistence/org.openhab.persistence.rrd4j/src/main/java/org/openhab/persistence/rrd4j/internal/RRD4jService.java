@@ -31,14 +31,18 @@ package org.openhab.persistence.rrd4j.internal;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Date;
+import java.util.Dictionary;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.Executors;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang.StringUtils;
 
 import org.openhab.core.items.Item;
 import org.openhab.core.items.ItemNotFoundException;
@@ -52,17 +56,22 @@ import org.openhab.core.library.types.OnOffType;
 import org.openhab.core.library.types.OpenClosedType;
 import org.openhab.core.persistence.FilterCriteria;
 import org.openhab.core.persistence.FilterCriteria.Ordering;
+import org.openhab.core.persistence.FilterCriteria.Projection;
+import org.openhab.core.persistence.HistoricCursor;
 import org.openhab.core.persistence.HistoricItem;
 import org.openhab.core.persistence.PersistenceService;
-import org.openhab.core.persistence.QueryablePersistenceService;
+import org.openhab.core.persistence.StreamingPersistenceService;
 import org.openhab.core.types.State;
 import org.rrd4j.ConsolFun;
 import org.rrd4j.DsType;
 import org.rrd4j.core.FetchData;
 import org.rrd4j.core.FetchRequest;
+import org.rrd4j.core.RrdBackendFactory;
 import org.rrd4j.core.RrdDb;
 import org.rrd4j.core.RrdDef;
 import org.rrd4j.core.Sample;
+import org.osgi.service.cm.ConfigurationException;
+import org.osgi.service.cm.ManagedService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -74,18 +83,51 @@ import org.slf4j.LoggerFactory;
  * @author Kai Kreuzer
  * @since 1.0.0
  */
-public class RRD4jService implements QueryablePersistenceService {
+public class RRD4jService implements StreamingPersistenceService, ManagedService {
 
 	private static final String DATASOURCE_STATE = "state";
 
 	protected final static String DB_FOLDER = "etc/rrd4j";
 	
+	private static final int DEFAULT_POOL_SIZE = 100;
+	
+	/** the maximum time in milliseconds to wait for the databases of a replaced pool to be released */
+	private static final long POOL_CLOSE_TIMEOUT = 10000;
+	
 	private static final Logger logger = LoggerFactory.getLogger(RRD4jService.class);
 
-	private Map<String,Timer> timers = new HashMap<String,Timer>();
+	/** the open databases */
+	private volatile RRD4jDbPool pool = new RRD4jDbPool(DEFAULT_POOL_SIZE, RrdBackendFactory.getDefaultFactory());
+	
+	/** the scheduler, which stores the values that arrived within the same second as a previous one */
+	private ScheduledExecutorService scheduler;
+	
+	/** the items, for which a delayed store is scheduled, by their database name */
+	private Map<String, Item> pendingItems = new HashMap<String, Item>();
 	
 	protected ItemRegistry itemRegistry;
 	
+	public void activate() {
+		scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "RRD4j Scheduler");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+	
+	public void deactivate() {
+		if(scheduler!=null) {
+			scheduler.shutdownNow();
+			scheduler = null;
+		}
+		synchronized (pendingItems) {
+			pendingItems.clear();
+		}
+		pool.close();
+	}
+	
 	public void setItemRegistry(ItemRegistry itemRegistry) {
 		this.itemRegistry = itemRegistry;
 	}
@@ -107,67 +149,104 @@ public class RRD4jService implements QueryablePersistenceService {
 	public void store(final Item item, final String alias) {
 		final String name = alias==null ? item.getName() : alias;
 		ConsolFun function = getConsolidationFunction(item);
-		RrdDb db = getDB(name, function);
+		RRD4jDbPool pool = this.pool;
+		RrdDb db = getDB(pool, name, function);
 		if(db!=null) {
-			long now = System.currentTimeMillis()/1000;
-			if(function!=ConsolFun.AVERAGE) {
-				try {
-					// we store the last value again, so that the value change in the database is not interpolated, but
-					// happens right at this spot
-					if(now - 1 > db.getLastUpdateTime()) {
-						// only do it if there is not already a value
-						double lastValue = db.getLastDatasourceValue(DATASOURCE_STATE);
-						if(!Double.isNaN(lastValue)) {
-							Sample sample = db.createSample();
-				            sample.setTime(now - 1);
-				            sample.setValue(DATASOURCE_STATE, lastValue);
-				            sample.update();
-		                    logger.debug("Stored '{}' with state '{}' in rrd4j database", name, mapToState(lastValue, item.getName()));
-						}
-					}
-				} catch (IOException e) {
-					logger.debug("Error re-storing last value: {}", e.getMessage());
+			try {
+				synchronized (db) {
+					store(db, item, name, function);
 				}
+			} finally {
+				pool.release(db);
+			}
+		}
+	}
+	
+	private void store(RrdDb db, Item item, String name, ConsolFun function) {
+		long now = System.currentTimeMillis()/1000;
+		try {
+			if(now <= db.getLastUpdateTime()) {
+				// rrd4j requires at least one second between two samples
+				scheduleStore(item, name);
+				return;
 			}
+		} catch (IOException e) {
+			logger.debug("Error reading last update time: {}", e.getMessage());
+		}
+		if(function!=ConsolFun.AVERAGE) {
 			try {
-				Sample sample = db.createSample();
-	            sample.setTime(now);
-	            
-	            DecimalType state = (DecimalType) item.getStateAs(DecimalType.class);
-	            if (state!=null) {
-                    double value = state.toBigDecimal().doubleValue();
-                    sample.setValue(DATASOURCE_STATE, value);
-                    sample.update();
-                    logger.debug("Stored '{}' with state '{}' in rrd4j database", name, item.getState());
-	            }
-			} catch (IllegalArgumentException e) {
-				if(e.getMessage().contains("at least one second step is required")) {
-
-					// we try to store the value one second later
-					TimerTask task = new TimerTask() {
-						public void run() {
-							store(item, name);
-						}
-					};
-					Timer timer = timers.get(name);
-					if(timer!=null) {
-						timer.cancel();
-						timers.remove(name);
+				// we store the last value again, so that the value change in the database is not interpolated, but
+				// happens right at this spot
+				if(now - 1 > db.getLastUpdateTime()) {
+					// only do it if there is not already a value
+					double lastValue = db.getLastDatasourceValue(DATASOURCE_STATE);
+					if(!Double.isNaN(lastValue)) {
+						Sample sample = db.createSample();
+			            sample.setTime(now - 1);
+			            sample.setValue(DATASOURCE_STATE, lastValue);
+			            sample.update();
+	                    logger.debug("Stored '{}' with state '{}' in rrd4j database", name, mapToState(lastValue, item.getName()));
 					}
-					timer = new Timer();
-					timers.put(name, timer);
-					timer.schedule(task, 1000);
-				} else {
-					logger.warn("Could not persist '{}' to rrd4j database: {}", new String[] { name, e.getMessage() });
 				}
-			} catch (Exception e) {
+			} catch (IOException e) {
+				logger.debug("Error re-storing last value: {}", e.getMessage());
+			}
+		}
+		try {
+			Sample sample = db.createSample();
+            sample.setTime(now);
+            
+            DecimalType state = (DecimalType) item.getStateAs(DecimalType.class);
+            if (state!=null) {
+                double value = state.toBigDecimal().doubleValue();
+                sample.setValue(DATASOURCE_STATE, value);
+                sample.update();
+                logger.debug("Stored '{}' with state '{}' in rrd4j database", name, item.getState());
+            }
+		} catch (IllegalArgumentException e) {
+			if(e.getMessage().contains("at least one second step is required")) {
+				// we try to store the value one second later
+				scheduleStore(item, name);
+			} else {
 				logger.warn("Could not persist '{}' to rrd4j database: {}", new String[] { name, e.getMessage() });
 			}
-            try {
-				db.close();
-			} catch (IOException e) {
-				logger.debug("Error closing rrd4j database: {}", e.getMessage());
+		} catch (Exception e) {
+			logger.warn("Could not persist '{}' to rrd4j database: {}", new String[] { name, e.getMessage() });
+		}
+	}
+	
+	/**
+	 * Stores the state of an item one second later. If further updates arrive in the meantime,
+	 * they are merged, i.e. only the state of the item at the time of the delayed store is persisted.
+	 * 
+	 * @param item the item to store
+	 * @param name the name of the database
+	 */
+	private void scheduleStore(Item item, final String name) {
+		synchronized (pendingItems) {
+			if(pendingItems.put(name, item)!=null) {
+				// a store is already scheduled for this database
+				return;
+			}
+		}
+		try {
+			scheduler.schedule(new Runnable() {
+				public void run() {
+					Item pendingItem;
+					synchronized (pendingItems) {
+						pendingItem = pendingItems.remove(name);
+					}
+					if(pendingItem!=null) {
+						store(pendingItem, name);
+					}
+				}
+			}, 1, TimeUnit.SECONDS);
+		} catch (RuntimeException e) {
+			// the service has been deactivated
+			synchronized (pendingItems) {
+				pendingItems.remove(name);
 			}
+			logger.debug("Could not schedule storing '{}': {}", name, e.getMessage());
 		}
 	}
 
@@ -178,75 +257,111 @@ public class RRD4jService implements QueryablePersistenceService {
 		store(item, null);
 	}
 	
+	/**
+	 * @{inheritDoc}
+	 * 
+	 * <p>The rows of the consolidated archive are returned with the ordering and paging of the 
+	 * filter applied. Up to openHAB 1.2, all rows were returned in ascending order regardless of 
+	 * the ordering, page number and page size of the filter.</p>
+	 */
 	@Override
 	public Iterable<HistoricItem> query(FilterCriteria filter) {
+		String itemName = filter.getItemName();
+		List<HistoricItem> items = new ArrayList<HistoricItem>();
+		HistoricCursor cursor = openCursor(filter, true);
+		try {
+			while(cursor.next()) {
+				items.add(new RRD4jItem(itemName, cursor.getState(), new Date(cursor.getTime())));
+			}
+		} finally {
+			cursor.close();
+		}
+		return items;
+	}
+	
+	/**
+	 * @{inheritDoc}
+	 */
+	public HistoricCursor openCursor(FilterCriteria filter) {
+		return openCursor(filter, filter.getProjection()!=Projection.VALUE);
+	}
+	
+	private HistoricCursor openCursor(FilterCriteria filter, boolean withStates) {
 		String itemName = filter.getItemName();
 		ConsolFun consolidationFunction = getConsolidationFunction(itemName);
-		RrdDb db = getDB(itemName, consolidationFunction);
+		RRD4jDbPool pool = this.pool;
+		RrdDb db = getDB(pool, itemName, consolidationFunction);
 		if(db!=null) {
-			long start = 0L;
-			long end = filter.getEndDate()==null ? System.currentTimeMillis()/1000 - 1 : filter.getEndDate().getTime()/1000;
-
 			try {
-				if(filter.getBeginDate()==null) {
-					// as rrd goes back for years and gets more and more inaccurate, we only support descending order and a single return value
-					// if there is no begin date is given - this case is required specifically for the historicState() query, which we
-					// want to support
-					if(filter.getOrdering()==Ordering.DESCENDING && filter.getPageSize()==1 && filter.getPageNumber()==0) {
-						if(filter.getEndDate()==null) {
-							// we are asked only for the most recent value!
-							double lastValue = db.getLastDatasourceValue(DATASOURCE_STATE);
-							if(!Double.isNaN(lastValue)) {
-								HistoricItem rrd4jItem = new RRD4jItem(itemName, mapToState(lastValue, itemName), new Date(db.getLastArchiveUpdateTime() * 1000));
-								return Collections.singletonList(rrd4jItem);
-							} else {
-								return Collections.emptyList();
-							}
-						} else {
-							start = end;
-						}
+				synchronized (db) {
+					return openCursor(db, filter, itemName, consolidationFunction, withStates);
+				}
+			} finally {
+				pool.release(db);
+			}
+		}
+		return new FetchDataCursor(itemName, new long[0], new double[0], filter, withStates);
+	}
+	
+	private HistoricCursor openCursor(RrdDb db, FilterCriteria filter, String itemName, ConsolFun consolidationFunction, boolean withStates) {
+		long start = 0L;
+		long end = filter.getEndDate()==null ? System.currentTimeMillis()/1000 - 1 : filter.getEndDate().getTime()/1000;
+
+		try {
+			if(filter.getBeginDate()==null) {
+				// as rrd goes back for years and gets more and more inaccurate, we only support descending order and a single return value
+				// if there is no begin date is given - this case is required specifically for the historicState() query, which we
+				// want to support
+				if(filter.getOrdering()==Ordering.DESCENDING && filter.getPageSize()==1 && filter.getPageNumber()==0) {
+					if(filter.getEndDate()==null) {
+						// we are asked only for the most recent value!
+						double lastValue = db.getLastDatasourceValue(DATASOURCE_STATE);
+						return new FetchDataCursor(itemName, new long[] { db.getLastArchiveUpdateTime() }, 
+								new double[] { lastValue }, filter, withStates);
 					} else {
-						throw new UnsupportedOperationException("rrd4j does not allow querys without a begin date, " + 
-								"unless order is decending and a single value is requested");
+						start = end;
 					}
 				} else {
-					start = filter.getBeginDate().getTime()/1000;
+					throw new UnsupportedOperationException("rrd4j does not allow querys without a begin date, " + 
+							"unless order is decending and a single value is requested");
 				}
-				FetchRequest request = db.createFetchRequest(consolidationFunction, start, end, 1);
+			} else {
+				start = filter.getBeginDate().getTime()/1000;
+			}
+			FetchRequest request = db.createFetchRequest(consolidationFunction, start, end, 1);
 
-				List<HistoricItem> items = new ArrayList<HistoricItem>();
-				FetchData result = request.fetchData();
-				long ts = result.getFirstTimestamp();
-				long step = result.getRowCount() > 1 ? result.getStep() : 0;
-				for(double value : result.getValues(DATASOURCE_STATE)) {
-					if(!Double.isNaN(value)) {
-						RRD4jItem rrd4jItem = new RRD4jItem(itemName, mapToState(value, itemName), new Date(ts * 1000));
-						items.add(rrd4jItem);
-					}
-					ts += step;
-				}
-				return items;
-			} catch (IOException e) {
-				logger.warn("Could not query rrd4j database for item '{}': {}", new String[] { itemName, e.getMessage() });
-			}	
-		}
-		return Collections.emptyList();
+			// the fetched data only consists of two arrays of primitives, so it is not copied to historic items
+			FetchData result = request.fetchData();
+			return new FetchDataCursor(itemName, result.getTimestamps(), result.getValues(DATASOURCE_STATE), filter, withStates);
+		} catch (IOException e) {
+			logger.warn("Could not query rrd4j database for item '{}': {}", new String[] { itemName, e.getMessage() });
+		}	
+		return new FetchDataCursor(itemName, new long[0], new double[0], filter, withStates);
 	}
 
-	protected synchronized RrdDb getDB(String alias, ConsolFun function) {
+	/**
+	 * Returns the database with the given name from the pool, which has to be released again, 
+	 * once it is not needed anymore. If the database does not exist, it is created.
+	 * 
+	 * @param pool the pool to take the database from
+	 * @param alias the name of the database
+	 * @param function the consolidation function to use, if the database is created
+	 * @return the database or <code>null</code>, if it cannot be opened
+	 */
+	protected RrdDb getDB(RRD4jDbPool pool, String alias, ConsolFun function) {
 		RrdDb db = null;
         File file = new File(DB_FOLDER + File.separator + alias + ".rrd");
     	try {
             if (file.exists()) {
             	// recreate the RrdDb instance from the file
-            	db = new RrdDb(file.getAbsolutePath());
+            	db = pool.acquire(file.getAbsolutePath(), null);
             } else {
             	File folder = new File(DB_FOLDER);
             	if(!folder.exists()) {
             		folder.mkdir();
             	}
             	// create a new database file
-                db = new RrdDb(getRrdDef(function, file));
+                db = pool.acquire(file.getAbsolutePath(), getRrdDef(function, file));
             }
 		} catch (IOException e) {
 			logger.error("Could not create rrd4j database file '{}': {}", new String[] { file.getAbsolutePath(), e.getMessage() });
@@ -324,4 +439,114 @@ public class RRD4jService implements QueryablePersistenceService {
 		return new DecimalType(value);
 	}
 	
+	/**
+	 * @{inheritDoc}
+	 */
+	@SuppressWarnings("rawtypes")
+	public void updated(Dictionary config) throws ConfigurationException {
+		if (config != null) {
+			int poolSize = DEFAULT_POOL_SIZE;
+			String poolSizeString = (String) config.get("poolsize");
+			if (StringUtils.isNotBlank(poolSizeString)) {
+				try {
+					poolSize = Integer.parseInt(poolSizeString.trim());
+				} catch (NumberFormatException e) {
+					throw new ConfigurationException("rrd4j:poolsize", "'" + poolSizeString + "' is not a valid number");
+				}
+			}
+			
+			RrdBackendFactory backendFactory = RrdBackendFactory.getDefaultFactory();
+			String backendString = (String) config.get("backend");
+			if (StringUtils.isNotBlank(backendString)) {
+				try {
+					backendFactory = RrdBackendFactory.getFactory(backendString.trim().toUpperCase());
+				} catch (IllegalArgumentException e) {
+					throw new ConfigurationException("rrd4j:backend", "Unknown rrd4j backend '" + backendString + "'");
+				}
+			}
+			
+			// the databases of the old pool must be closed, before they can be opened by the new one
+			if (!pool.closeAndWait(POOL_CLOSE_TIMEOUT)) {
+				logger.warn("Some rrd4j databases are still in use after {}ms and will be closed later", POOL_CLOSE_TIMEOUT);
+			}
+			pool = new RRD4jDbPool(poolSize, backendFactory);
+			logger.debug("Using rrd4j backend '{}' for up to {} open databases", backendFactory.getName(), poolSize);
+		}
+	}
+	
+	
+	/**
+	 * A cursor over the rows of fetched data, which skips the rows without a value
+	 * and applies the ordering and paging of the filter.
+	 */
+	private class FetchDataCursor implements HistoricCursor {
+		
+		private final String itemName;
+		private final long[] timestamps;
+		private final double[] values;
+		private final boolean withStates;
+		
+		/** true, if the states of the item are numeric and not mapped to other types */
+		private final boolean numeric;
+		
+		private final boolean descending;
+		private int skip;
+		private int remaining;
+		
+		/** the current row, counted in the direction of the ordering */
+		private int row = -1;
+		private State state;
+		
+		FetchDataCursor(String itemName, long[] timestamps, double[] values, FilterCriteria filter, boolean withStates) {
+			this.itemName = itemName;
+			this.timestamps = timestamps;
+			this.values = values;
+			this.withStates = withStates;
+			this.numeric = mapToState(0.0d, itemName) instanceof DecimalType;
+			this.descending = filter.getOrdering()==Ordering.DESCENDING;
+			long skip = (long) filter.getPageNumber() * filter.getPageSize();
+			this.skip = skip > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) skip;
+			this.remaining = filter.getPageSize();
+		}
+
+		public boolean next() {
+			state = null;
+			while(remaining > 0 && ++row < values.length) {
+				if(!Double.isNaN(values[index()])) {
+					if(skip > 0) {
+						skip--;
+					} else {
+						remaining--;
+						return true;
+					}
+				}
+			}
+			row = values.length;
+			return false;
+		}
+		
+		private int index() {
+			return descending ? values.length - 1 - row : row;
+		}
+
+		public long getTime() {
+			return timestamps[index()] * 1000;
+		}
+
+		public double getValue() {
+			return numeric ? values[index()] : Double.NaN;
+		}
+
+		public State getState() {
+			if(state==null && withStates) {
+				state = mapToState(values[index()], itemName);
+			}
+			return state;
+		}
+
+		public void close() {
+			remaining = 0;
+		}
+	}
+
 }
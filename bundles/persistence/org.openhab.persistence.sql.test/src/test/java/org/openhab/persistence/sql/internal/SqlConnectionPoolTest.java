@@ -0,0 +1,78 @@
+/**
+ * openHAB, the open Home Automation Bus.
+ * Copyright (C) 2010-2013, openHAB.org <admin@openhab.org>
+ *
+ * See the contributors.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ * Additional permission under GNU GPL version 3 section 7
+ *
+ * If you modify this Program, or any covered work, by linking or
+ * combining it with Eclipse (or a modified version of that library),
+ * containing parts covered by the terms of the Eclipse Public License
+ * (EPL), the licensors of this Program grant you additional permission
+ * to convey the resulting work.
+ */
+package org.openhab.persistence.sql.internal;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the {@link SqlConnectionPool} against an embedded H2 database.
+ * 
+ * @author agent
+ * @since 1.3.0
+ */
+public class SqlConnectionPoolTest {
+	
+	private SqlConnectionPool pool;
+	
+	@Before
+	public void init() throws ClassNotFoundException {
+		pool = new SqlConnectionPool("org.h2.Driver", "jdbc:h2:mem:pooltest", "sa", "sa", 1, 100);
+	}
+	
+	@After
+	public void dispose() {
+		pool.close();
+	}
+
+	@Test
+	public void testWaitForConnectionIsBounded() throws SQLException {
+		Connection connection = pool.getConnection();
+		long start = System.currentTimeMillis();
+		try {
+			pool.getConnection();
+			fail("The pool must not hand out more connections than its maximum size");
+		} catch (SQLException e) {
+			assertTrue(System.currentTimeMillis() - start >= 100);
+		}
+		
+		// the slot is available again as soon as the connection is released
+		pool.release(connection);
+		assertNotNull(pool.getConnection());
+	}
+
+}
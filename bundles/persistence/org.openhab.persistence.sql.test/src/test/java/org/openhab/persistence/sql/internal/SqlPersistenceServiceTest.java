@@ -0,0 +1,373 @@
+/**
+ * openHAB, the open Home Automation Bus.
+ * Copyright (C) 2010-2013, openHAB.org <admin@openhab.org>
+ *
+ * See the contributors.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ * Additional permission under GNU GPL version 3 section 7
+ *
+ * If you modify this Program, or any covered work, by linking or
+ * combining it with Eclipse (or a modified version of that library),
+ * containing parts covered by the terms of the Eclipse Public License
+ * (EPL), the licensors of this Program grant you additional permission
+ * to convey the resulting work.
+ */
+package org.openhab.persistence.sql.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.lang.StringUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openhab.core.items.GenericItem;
+import org.openhab.core.items.Item;
+import org.openhab.core.library.types.DecimalType;
+import org.openhab.core.library.types.StringType;
+import org.openhab.core.persistence.FilterCriteria;
+import org.openhab.core.persistence.FilterCriteria.Ordering;
+import org.openhab.core.persistence.HistoricCursor;
+import org.openhab.core.persistence.HistoricItem;
+import org.openhab.core.persistence.PersistenceSample;
+import org.openhab.core.types.Command;
+import org.openhab.core.types.State;
+import org.osgi.service.cm.ConfigurationException;
+
+/**
+ * Tests the SQL persistence service against an embedded H2 database. The database is
+ * accessed through the {@link FailingDriver}, which is able to simulate broken connections.
+ * 
+ * @author agent
+ * @since 1.3.0
+ */
+public class SqlPersistenceServiceTest {
+	
+	private static int databaseCount = 0;
+	
+	private String databaseUrl;
+	
+	private SqlPersistenceService service;
+	
+	private Item item = new TestItem("Temperature");
+	
+	@Before
+	public void init() {
+		FailingDriver.reset();
+		databaseUrl = "jdbc:h2:mem:openhab" + (++databaseCount) + ";DB_CLOSE_DELAY=-1";
+		service = new SqlPersistenceService();
+	}
+	
+	@After
+	public void dispose() {
+		service.deactivate();
+	}
+
+	@Test
+	public void testStoreAndQueryPages() throws ConfigurationException {
+		configure("table");
+		List<PersistenceSample> samples = new ArrayList<PersistenceSample>();
+		for (int i = 0; i < 25; i++) {
+			samples.add(new PersistenceSample(item, null, new DecimalType(i), new Date(1000000L + i * 1000L)));
+		}
+		service.store(samples);
+		
+		FilterCriteria filter = new FilterCriteria().setItemName(item.getName()).setPageSize(10).setPageNumber(1);
+		filter.setOrdering(Ordering.ASCENDING);
+		List<HistoricItem> page = toList(service.query(filter));
+		assertEquals(10, page.size());
+		for (int i = 0; i < 10; i++) {
+			assertEquals(new DecimalType(10 + i), page.get(i).getState());
+			assertEquals(1000000L + (10 + i) * 1000L, page.get(i).getTimestamp().getTime());
+		}
+		assertEquals(5, toList(service.query(filter.setPageNumber(2))).size());
+		
+		HistoricCursor cursor = service.openCursor(filter.setPageNumber(1));
+		int count = 0;
+		while (cursor.next()) {
+			assertEquals(10 + count, cursor.getValue(), 0.0);
+			count++;
+		}
+		cursor.close();
+		assertEquals(10, count);
+	}
+
+	@Test
+	public void testConnectionFailureIsRetried() throws ConfigurationException {
+		configure("table");
+		service.store(item, null);
+		assertEquals(1, FailingDriver.connects.get());
+		
+		FailingDriver.fail("prepareStatement", 1);
+		service.store(item, null);
+		
+		// the broken connection has been replaced and the sample has been stored once
+		assertEquals(2, FailingDriver.connects.get());
+		assertEquals(2, toList(service.query(new FilterCriteria().setItemName(item.getName()))).size());
+	}
+
+	@Test
+	public void testStatementErrorIsNotRetried() throws ConfigurationException {
+		configure("alias");
+		service.store(item, "INSERT INTO MISSING_TABLE VALUES ('%1$s')");
+		service.store(item, "INSERT INTO MISSING_TABLE VALUES ('%1$s')");
+		
+		// the connection is still valid, so it is neither replaced nor used for a second attempt
+		assertEquals(1, FailingDriver.connects.get());
+		assertEquals(2, FailingDriver.executions.get());
+	}
+
+	@Test
+	public void testAliasBatchIsNotRetried() throws ConfigurationException, SQLException {
+		configure("alias");
+		executeUpdate("CREATE TABLE ALIAS_TEST (VALUE VARCHAR(20))");
+		List<PersistenceSample> samples = new ArrayList<PersistenceSample>();
+		for (int i = 0; i < 3; i++) {
+			samples.add(new PersistenceSample(item, "INSERT INTO ALIAS_TEST VALUES ('%1$s')", new DecimalType(i), new Date()));
+		}
+		
+		// the connection breaks after the statements have been executed
+		FailingDriver.fail("executeBatch", 1);
+		service.store(samples);
+		
+		assertEquals(1, FailingDriver.executions.get());
+		assertEquals(3, countRows("ALIAS_TEST"));
+		assertFalse(FailingDriver.failures.get() > 0);
+	}
+	
+	@Test
+	public void testInvalidAliasIsSkipped() throws ConfigurationException, SQLException {
+		configure("alias");
+		executeUpdate("CREATE TABLE ALIAS_TEST (VALUE VARCHAR(20))");
+		List<PersistenceSample> samples = new ArrayList<PersistenceSample>();
+		samples.add(new PersistenceSample(item, "INSERT INTO ALIAS_TEST VALUES ('%1$s')", new DecimalType(1), new Date()));
+		samples.add(new PersistenceSample(item, "INSERT INTO ALIAS_TEST VALUES (%1$d)", new DecimalType(2), new Date()));
+		samples.add(new PersistenceSample(item, "INSERT INTO ALIAS_TEST VALUES ('%1$s')", new DecimalType(3), new Date()));
+		service.store(samples);
+		
+		assertEquals(2, countRows("ALIAS_TEST"));
+	}
+
+	@Test
+	public void testFailedAliasStatementDoesNotDropBatch() throws ConfigurationException, SQLException {
+		configure("alias");
+		executeUpdate("CREATE TABLE ALIAS_TEST (VALUE VARCHAR(20))");
+		List<PersistenceSample> samples = new ArrayList<PersistenceSample>();
+		samples.add(new PersistenceSample(item, "INSERT INTO ALIAS_TEST VALUES ('%1$s')", new DecimalType(1), new Date()));
+		samples.add(new PersistenceSample(item, "INSERT INTO MISSING_TABLE VALUES ('%1$s')", new DecimalType(2), new Date()));
+		samples.add(new PersistenceSample(item, "INSERT INTO ALIAS_TEST VALUES ('%1$s')", new DecimalType(3), new Date()));
+		service.store(samples);
+		
+		// the successful statements are neither lost nor executed twice
+		assertEquals(2, countRows("ALIAS_TEST"));
+	}
+
+	@Test
+	public void testFailedInsertDoesNotDropBatch() throws ConfigurationException {
+		configure("table");
+		List<PersistenceSample> samples = new ArrayList<PersistenceSample>();
+		samples.add(new PersistenceSample(item, null, new DecimalType(1), new Date(1000000L)));
+		samples.add(new PersistenceSample(item, null, new StringType(StringUtils.repeat("x", 300)), new Date(1001000L)));
+		samples.add(new PersistenceSample(item, null, new DecimalType(3), new Date(1002000L)));
+		service.store(samples);
+		
+		FilterCriteria filter = new FilterCriteria().setItemName(item.getName());
+		filter.setOrdering(Ordering.ASCENDING);
+		List<HistoricItem> items = toList(service.query(filter));
+		assertEquals(2, items.size());
+		assertEquals(new DecimalType(1), items.get(0).getState());
+		assertEquals(new DecimalType(3), items.get(1).getState());
+	}
+	
+	private void configure(String mode) throws ConfigurationException {
+		Hashtable<String, String> config = new Hashtable<String, String>();
+		config.put("driverClass", FailingDriver.class.getName());
+		config.put("url", FailingDriver.PREFIX + databaseUrl.substring("jdbc:".length()));
+		config.put("user", "sa");
+		config.put("password", "sa");
+		config.put("mode", mode);
+		service.updated(config);
+		assertTrue(FailingDriver.connects.get() > 0);
+	}
+	
+	private void executeUpdate(String sql) throws SQLException {
+		Connection connection = DriverManager.getConnection(databaseUrl, "sa", "sa");
+		try {
+			connection.createStatement().executeUpdate(sql);
+		} finally {
+			connection.close();
+		}
+	}
+	
+	private int countRows(String table) throws SQLException {
+		Connection connection = DriverManager.getConnection(databaseUrl, "sa", "sa");
+		try {
+			ResultSet resultSet = connection.createStatement().executeQuery("SELECT COUNT(*) FROM " + table);
+			resultSet.next();
+			return resultSet.getInt(1);
+		} finally {
+			connection.close();
+		}
+	}
+	
+	private static List<HistoricItem> toList(Iterable<HistoricItem> items) {
+		List<HistoricItem> list = new ArrayList<HistoricItem>();
+		for (HistoricItem item : items) {
+			list.add(item);
+		}
+		return list;
+	}
+	
+	
+	class TestItem extends GenericItem {
+
+		public TestItem(String name) {
+			super(name);
+			setState(new DecimalType(42));
+		}
+
+		public List<Class<? extends State>> getAcceptedDataTypes() {
+			return null;
+		}
+
+		public List<Class<? extends Command>> getAcceptedCommandTypes() {
+			return null;
+		}
+	}
+	
+	/**
+	 * A JDBC driver, which delegates to the H2 driver and lets a given method of the connections 
+	 * or statements fail with a connection exception after the call has been passed to H2.
+	 */
+	public static class FailingDriver implements Driver {
+		
+		static final String PREFIX = "jdbc:failing:";
+		
+		/** the number of connections which have been opened */
+		static final AtomicInteger connects = new AtomicInteger();
+		
+		/** the number of executed update statements and batches */
+		static final AtomicInteger executions = new AtomicInteger();
+		
+		/** the number of remaining failures of the failing method */
+		static final AtomicInteger failures = new AtomicInteger();
+		
+		static volatile String failingMethod;
+		
+		static {
+			try {
+				Class.forName("org.h2.Driver");
+				DriverManager.registerDriver(new FailingDriver());
+			} catch (Exception e) {
+				throw new ExceptionInInitializerError(e);
+			}
+		}
+		
+		static void reset() {
+			connects.set(0);
+			executions.set(0);
+			failures.set(0);
+			failingMethod = null;
+		}
+		
+		static void fail(String methodName, int count) {
+			failingMethod = methodName;
+			failures.set(count);
+		}
+
+		public Connection connect(String url, Properties info) throws SQLException {
+			if (!acceptsURL(url)) {
+				return null;
+			}
+			Connection connection = DriverManager.getConnection("jdbc:" + url.substring(PREFIX.length()), info);
+			connects.incrementAndGet();
+			return wrap(connection, Connection.class);
+		}
+
+		public boolean acceptsURL(String url) {
+			return url.startsWith(PREFIX);
+		}
+
+		public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+			return new DriverPropertyInfo[0];
+		}
+
+		public int getMajorVersion() {
+			return 1;
+		}
+
+		public int getMinorVersion() {
+			return 0;
+		}
+
+		public boolean jdbcCompliant() {
+			return false;
+		}
+
+		public java.util.logging.Logger getParentLogger() throws SQLFeatureNotSupportedException {
+			throw new SQLFeatureNotSupportedException();
+		}
+		
+		private static <T> T wrap(final Object target, Class<T> type) {
+			return type.cast(Proxy.newProxyInstance(FailingDriver.class.getClassLoader(), new Class<?>[] { type }, new InvocationHandler() {
+				public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+					Object result;
+					try {
+						result = method.invoke(target, args);
+					} catch (InvocationTargetException e) {
+						throw e.getCause();
+					} finally {
+						if (method.getName().equals("executeUpdate") || method.getName().equals("executeBatch")) {
+							executions.incrementAndGet();
+						}
+					}
+					if (method.getName().equals(failingMethod) && failures.getAndDecrement() > 0) {
+						throw new SQLException("Connection reset", "08S01");
+					}
+					if (result instanceof PreparedStatement) {
+						return wrap(result, PreparedStatement.class);
+					} else if (result instanceof Statement) {
+						return wrap(result, Statement.class);
+					}
+					return result;
+				}
+			}));
+		}
+	}
+
+}
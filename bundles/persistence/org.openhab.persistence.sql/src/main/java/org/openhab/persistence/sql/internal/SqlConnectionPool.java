@@ -0,0 +1,235 @@
+/**
+ * openHAB, the open Home Automation Bus.
+ * Copyright (C) 2010-2013, openHAB.org <admin@openhab.org>
+ *
+ * See the contributors.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ * Additional permission under GNU GPL version 3 section 7
+ *
+ * If you modify this Program, or any covered work, by linking or
+ * combining it with Eclipse (or a modified version of that library),
+ * containing parts covered by the terms of the Eclipse Public License
+ * (EPL), the licensors of this Program grant you additional permission
+ * to convey the resulting work.
+ */
+package org.openhab.persistence.sql.internal;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.LinkedList;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A small pool of JDBC connections. Connections are created lazily up to the maximum 
+ * pool size and are validated before they are handed out again, so that broken 
+ * connections (e.g. after a restart of the database server) are transparently replaced.
+ * 
+ * @author agent
+ * @since 1.3.0
+ */
+public class SqlConnectionPool {
+
+	private static final Logger logger = LoggerFactory.getLogger(SqlConnectionPool.class);
+
+	/** the time in seconds to wait for the validation of a pooled connection */
+	private static final int VALIDATION_TIMEOUT = 5;
+	
+	/** the default time in milliseconds to wait for a connection, if all connections are in use */
+	private static final long DEFAULT_WAIT_TIMEOUT = 30000;
+
+	private final String url;
+	private final String user;
+	private final String password;
+	private final int maxSize;
+	private final long waitTimeout;
+
+	/** the connections which are currently not in use */
+	private final LinkedList<Connection> idleConnections = new LinkedList<Connection>();
+
+	/** the number of connections which have been handed out and not yet been released */
+	private int activeCount = 0;
+	
+	private boolean closed = false;
+
+	/**
+	 * Creates a new connection pool. The JDBC driver class is loaded immediately.
+	 * 
+	 * @param driverClass the class name of the JDBC driver
+	 * @param url the JDBC url of the database
+	 * @param user the database user
+	 * @param password the password of the database user
+	 * @param maxSize the maximum number of connections which are opened at the same time
+	 * @throws ClassNotFoundException if the JDBC driver cannot be loaded
+	 */
+	public SqlConnectionPool(String driverClass, String url, String user, String password, int maxSize) throws ClassNotFoundException {
+		this(driverClass, url, user, password, maxSize, DEFAULT_WAIT_TIMEOUT);
+	}
+
+	/**
+	 * Creates a new connection pool. The JDBC driver class is loaded immediately.
+	 * 
+	 * @param driverClass the class name of the JDBC driver
+	 * @param url the JDBC url of the database
+	 * @param user the database user
+	 * @param password the password of the database user
+	 * @param maxSize the maximum number of connections which are opened at the same time
+	 * @param waitTimeout the time in milliseconds to wait for a connection, if all connections are in use
+	 * @throws ClassNotFoundException if the JDBC driver cannot be loaded
+	 */
+	public SqlConnectionPool(String driverClass, String url, String user, String password, int maxSize, long waitTimeout) throws ClassNotFoundException {
+		Class.forName(driverClass);
+		this.url = url;
+		this.user = user;
+		this.password = password;
+		this.maxSize = Math.max(1, maxSize);
+		this.waitTimeout = waitTimeout;
+	}
+
+	/**
+	 * Returns a valid connection to the database. If all connections of the pool are in use, the
+	 * calling thread waits until a connection is released, but not longer than the wait timeout
+	 * of the pool, so that a connection which is never released (e.g. by a cursor which is not
+	 * closed) cannot block the caller forever. Every connection that is returned by
+	 * this method must be given back by either {@link #release(Connection)} or {@link #invalidate(Connection)}.
+	 * 
+	 * @return a connection to the database
+	 * @throws SQLException if no connection can be established or none has been released in time
+	 */
+	public Connection getConnection() throws SQLException {
+		long deadline = System.currentTimeMillis() + waitTimeout;
+		while(true) {
+			Connection connection = null;
+			synchronized (this) {
+				while(!closed && idleConnections.isEmpty() && activeCount >= maxSize) {
+					long remaining = deadline - System.currentTimeMillis();
+					if(remaining <= 0) {
+						throw new SQLException("Timed out after " + waitTimeout + "ms waiting for a connection to database " + url);
+					}
+					try {
+						wait(remaining);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new SQLException("Interrupted while waiting for a database connection");
+					}
+				}
+				if(closed) {
+					throw new SQLException("The connection pool has been closed");
+				}
+				connection = idleConnections.poll();
+				activeCount++;
+			}
+			
+			if(connection==null) {
+				try {
+					connection = DriverManager.getConnection(url, user, password);
+					logger.debug("Connected to database {}", url);
+					return connection;
+				} catch (SQLException e) {
+					releaseSlot();
+					throw e;
+				}
+			} else if(isValid(connection)) {
+				return connection;
+			} else {
+				logger.debug("Discarding broken connection to database {}", url);
+				closeQuietly(connection);
+				releaseSlot();
+			}
+		}
+	}
+
+	/**
+	 * Gives a connection back to the pool, so that it can be reused.
+	 * 
+	 * @param connection the connection to release
+	 */
+	public void release(Connection connection) {
+		synchronized (this) {
+			activeCount--;
+			if(!closed) {
+				idleConnections.add(connection);
+				notifyAll();
+				return;
+			}
+			notifyAll();
+		}
+		closeQuietly(connection);
+	}
+
+	/**
+	 * Closes a connection which has failed and removes it from the pool. A new connection
+	 * will be established the next time one is requested.
+	 * 
+	 * @param connection the connection to discard
+	 */
+	public void invalidate(Connection connection) {
+		closeQuietly(connection);
+		releaseSlot();
+	}
+
+	/**
+	 * Closes all idle connections of the pool. Connections which are currently in use are
+	 * closed as soon as they are released.
+	 */
+	public void close() {
+		LinkedList<Connection> connections;
+		synchronized (this) {
+			closed = true;
+			connections = new LinkedList<Connection>(idleConnections);
+			idleConnections.clear();
+			notifyAll();
+		}
+		for(Connection connection : connections) {
+			closeQuietly(connection);
+		}
+		logger.debug("Disconnected from database {}", url);
+	}
+
+	private synchronized void releaseSlot() {
+		activeCount--;
+		notifyAll();
+	}
+
+	/**
+	 * Checks whether a connection is still usable.
+	 * 
+	 * @param connection the connection to check
+	 * @return false, if the connection is closed or broken
+	 */
+	boolean isValid(Connection connection) {
+		try {
+			return !connection.isClosed() && connection.isValid(VALIDATION_TIMEOUT);
+		} catch (SQLException e) {
+			return false;
+		} catch (AbstractMethodError e) {
+			// the driver does not implement JDBC 4, so we have to trust the connection 
+			return true;
+		}
+	}
+
+	private static void closeQuietly(Connection connection) {
+		try {
+			connection.close();
+		} catch (SQLException e) {
+			logger.debug("Failed to close database connection: {}", e.getMessage());
+		}
+	}
+
+}
@@ -28,16 +28,46 @@
  */
 package org.openhab.persistence.sql.internal;
 
+import java.sql.BatchUpdateException;
 import java.sql.Connection;
-import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Statement;
-import java.util.Calendar;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
 import java.util.Dictionary;
 import java.util.Formatter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.lang.StringUtils;
 import org.openhab.core.items.Item;
+import org.openhab.core.library.types.DateTimeType;
+import org.openhab.core.library.types.DecimalType;
+import org.openhab.core.library.types.HSBType;
+import org.openhab.core.library.types.OnOffType;
+import org.openhab.core.library.types.OpenClosedType;
+import org.openhab.core.library.types.PercentType;
+import org.openhab.core.library.types.StringType;
+import org.openhab.core.library.types.UpDownType;
+import org.openhab.core.persistence.BatchPersistenceService;
+import org.openhab.core.persistence.FilterCriteria;
+import org.openhab.core.persistence.FilterCriteria.Ordering;
+import org.openhab.core.persistence.FilterCriteria.Projection;
+import org.openhab.core.persistence.HistoricCursor;
+import org.openhab.core.persistence.HistoricCursors;
+import org.openhab.core.persistence.HistoricItem;
+import org.openhab.core.persistence.PersistenceSample;
 import org.openhab.core.persistence.PersistenceService;
+import org.openhab.core.persistence.StreamingPersistenceService;
+import org.openhab.core.types.State;
+import org.openhab.core.types.TypeParser;
+import org.openhab.core.types.UnDefType;
 import org.osgi.service.cm.ConfigurationException;
 import org.osgi.service.cm.ManagedService;
 import org.slf4j.Logger;
@@ -47,22 +77,62 @@ import org.slf4j.LoggerFactory;
 /**
  * This is the implementation of the SQL {@link PersistenceService}.
  * 
+ * <p>The service supports two modes: In the "alias" mode (the default), the alias of
+ * a persistence configuration is a SQL statement, which is formatted with the state
+ * of the item. In the "table" mode, all states are stored in a single history table
+ * with prepared statements, which can also be queried.</p>
+ * 
  * @author Henrik Sjöstrand
  * @author Thomas.Eichstaedt-Engelen
  * @since 1.1.0
  */
-public class SqlPersistenceService implements PersistenceService, ManagedService {
+public class SqlPersistenceService implements StreamingPersistenceService, BatchPersistenceService, ManagedService {
 
 	private static final Logger logger = LoggerFactory.getLogger(SqlPersistenceService.class);
 
+	private static final String MODE_ALIAS = "alias";
+	
+	private static final String MODE_TABLE = "table";
+	
+	private static final String DEFAULT_TABLE = "openhab";
+	
+	private static final int DEFAULT_POOL_SIZE = 3;
+	
+	/** the number of times a statement is tried, before the database is regarded as not available */
+	private static final int MAX_ATTEMPTS = 2;
+	
+	/** the SQLState class of connection exceptions */
+	private static final String CONNECTION_EXCEPTION_CLASS = "08";
+	
+	/** the number of rows which are fetched at once by a cursor */
+	private static final int FETCH_SIZE = 100;
+	
+	/** the state types which can be restored from the history table */
+	private static final Map<String, Class<? extends State>> stateTypes = new HashMap<String, Class<? extends State>>();
+	
+	static {
+		stateTypes.put(DecimalType.class.getSimpleName(), DecimalType.class);
+		stateTypes.put(PercentType.class.getSimpleName(), PercentType.class);
+		stateTypes.put(HSBType.class.getSimpleName(), HSBType.class);
+		stateTypes.put(OnOffType.class.getSimpleName(), OnOffType.class);
+		stateTypes.put(OpenClosedType.class.getSimpleName(), OpenClosedType.class);
+		stateTypes.put(UpDownType.class.getSimpleName(), UpDownType.class);
+		stateTypes.put(DateTimeType.class.getSimpleName(), DateTimeType.class);
+		stateTypes.put(StringType.class.getSimpleName(), StringType.class);
+	}
+
 	private String driverClass;
 	private String url;
 	private String user;
 	private String password;
+	
+	private String mode = MODE_ALIAS;
+	private String table = DEFAULT_TABLE;
 
-	private boolean initialized = false;
-
-	private Connection connection = null;
+	private SqlConnectionPool pool = null;
+	
+	/** true, if the history table is known to exist */
+	private volatile boolean tableCreated = false;
 	
 	
 	public void activate() {
@@ -85,64 +155,472 @@ public class SqlPersistenceService implements PersistenceService, ManagedService
 	 * @{inheritDoc
 	 */
 	public void store(Item item, String alias) {
-		if (initialized) {
-			if (!isConnected()) {
-				connectToDatabase();
+		store(Collections.singletonList(new PersistenceSample(item, alias, item.getState(), new Date())));
+	}
+
+	/**
+	 * @{inheritDoc}
+	 */
+	public void store(Item item) {
+		if (MODE_TABLE.equals(mode)) {
+			store(item, null);
+		} else {
+			throw new UnsupportedOperationException(
+				"The SQL service requires aliases for persistence configurations that should match the SQL statement. Please configure sql.persist properly.");
+		}
+	}
+
+	/**
+	 * @{inheritDoc}
+	 */
+	public void store(final List<PersistenceSample> samples) {
+		if (pool == null) {
+			return;
+		}
+		
+		try {
+			if (MODE_TABLE.equals(mode)) {
+				createTable();
+				execute(new SqlCommand<Void>() {
+					public Void execute(Connection connection) throws SQLException {
+						insertSamples(connection, samples);
+						return null;
+					}
+				}, true);
+			} else {
+				// the alias statements are not executed in a transaction, so they must not be
+				// repeated, as some of them might already have been executed
+				execute(new SqlCommand<Void>() {
+					public Void execute(Connection connection) throws SQLException {
+						executeAliasStatements(connection, samples);
+						return null;
+					}
+				}, false);
 			}
+			logger.debug("Stored {} item state(s) in SQL database.", samples.size());
+		} catch (SQLException e) {
+			logger.error("Could not store {} item state(s) in database: {}", samples.size(), e.getMessage());
+		}
+	}
 
-			if (isConnected()) {
-				String sqlCmd = null;
-				Statement statement = null;
+	/**
+	 * Inserts the given samples into the history table in a single transaction 
+	 * by using a batch of prepared statements. If the batch fails, the transaction is
+	 * rolled back and the samples are inserted one by one, so that a single invalid
+	 * sample does not prevent the others from being stored.
+	 */
+	private void insertSamples(Connection connection, List<PersistenceSample> samples) throws SQLException {
+		PreparedStatement statement = connection.prepareStatement("INSERT INTO " + table + 
+				" (ITEMNAME, STATETIME, STATETYPE, STATEVALUE, NUMERICVALUE) VALUES (?, ?, ?, ?, ?)");
+		boolean autoCommit = connection.getAutoCommit();
+		try {
+			connection.setAutoCommit(false);
+			int count = 0;
+			for (PersistenceSample sample : samples) {
+				if (setParameters(statement, sample)) {
+					statement.addBatch();
+					count++;
+				}
+			}
+			if (count > 0) {
+				statement.executeBatch();
+			}
+			connection.commit();
+		} catch (BatchUpdateException e) {
+			rollbackQuietly(connection);
+			logger.debug("Inserting a batch of item states failed, inserting them one by one: {}", e.getMessage());
+			statement.clearBatch();
+			connection.setAutoCommit(true);
+			for (PersistenceSample sample : samples) {
 				try {
-					statement = connection.createStatement();
-					sqlCmd = formatAlias(alias, 
-						item.getState().toString(), Calendar.getInstance().getTime(), item.getName(), item.getGroupNames().toString());
-					statement.executeUpdate(sqlCmd);
+					if (setParameters(statement, sample)) {
+						statement.executeUpdate();
+					}
+				} catch (SQLException se) {
+					if (isConnectionException(se)) {
+						throw se;
+					}
+					logger.warn("Could not store the state of item '{}' in SQL database: {}", sample.getName(), se.getMessage());
+				}
+			}
+		} catch (SQLException e) {
+			rollbackQuietly(connection);
+			throw e;
+		} finally {
+			closeQuietly(statement);
+			connection.setAutoCommit(autoCommit);
+		}
+	}
+	
+	/**
+	 * Sets the parameters of the insert statement for the given sample.
+	 * 
+	 * @return false, if the sample has no state which can be stored
+	 */
+	private static boolean setParameters(PreparedStatement statement, PersistenceSample sample) throws SQLException {
+		State state = sample.getState();
+		if (state instanceof UnDefType) {
+			return false;
+		}
+		String name = sample.getAlias() != null ? sample.getAlias() : sample.getItem().getName();
+		statement.setString(1, name);
+		statement.setTimestamp(2, new Timestamp(sample.getTimestamp().getTime()));
+		statement.setString(3, state.getClass().getSimpleName());
+		statement.setString(4, state.toString());
+		if (state instanceof DecimalType) {
+			statement.setDouble(5, ((DecimalType) state).toBigDecimal().doubleValue());
+		} else {
+			statement.setNull(5, Types.DOUBLE);
+		}
+		return true;
+	}
 
-					logger.debug("Stored item '{}' as '{}' in SQL database at {}.",
-							new String[] { item.getName(), item.getState().toString(), (new java.util.Date()).toString() });
+	/**
+	 * Executes the SQL statements, which are given as aliases of the samples. A sample
+	 * whose statement cannot be formatted or executed is logged and skipped. If the batch
+	 * fails, the statements which have not been executed successfully are executed again
+	 * one by one.
+	 */
+	private void executeAliasStatements(Connection connection, List<PersistenceSample> samples) throws SQLException {
+		List<String> sqlCmds = new ArrayList<String>(samples.size());
+		List<String> itemNames = new ArrayList<String>(samples.size());
+		for (PersistenceSample sample : samples) {
+			if (sample.getAlias() == null) {
+				logger.warn("The SQL service requires aliases for persistence configurations that should match the SQL statement. Not persisting item '{}'.", sample.getName());
+				continue;
+			}
+			Item item = sample.getItem();
+			try {
+				sqlCmds.add(formatAlias(sample.getAlias(), 
+					sample.getState().toString(), sample.getTimestamp(), item.getName(), item.getGroupNames().toString()));
+				itemNames.add(item.getName());
+			} catch (RuntimeException e) {
+				logger.warn("Could not format the SQL statement '{}' for item '{}': {}", 
+					new Object[] { sample.getAlias(), item.getName(), e.getMessage() });
+			}
+		}
+		if (sqlCmds.isEmpty()) {
+			return;
+		}
+		
+		Statement statement = connection.createStatement();
+		try {
+			if (sqlCmds.size() == 1) {
+				executeAliasStatement(statement, sqlCmds.get(0), itemNames.get(0));
+				return;
+			}
+			for (int i = 0; i < sqlCmds.size(); i++) {
+				logger.trace("Executing statement '{}' for item '{}'", sqlCmds.get(i), itemNames.get(i));
+				statement.addBatch(sqlCmds.get(i));
+			}
+			try {
+				statement.executeBatch();
+			} catch (BatchUpdateException e) {
+				// depending on the driver, the update counts end at the failed statement or
+				// mark every failed statement, so only those statements are executed again
+				int[] updateCounts = e.getUpdateCounts() != null ? e.getUpdateCounts() : new int[0];
+				logger.debug("Executing a batch of SQL statements failed, executing the failed statements one by one: {}", e.getMessage());
+				statement.clearBatch();
+				for (int i = 0; i < sqlCmds.size(); i++) {
+					if (i >= updateCounts.length || updateCounts[i] == Statement.EXECUTE_FAILED) {
+						executeAliasStatement(statement, sqlCmds.get(i), itemNames.get(i));
+					}
+				}
+			}
+		} finally {
+			closeQuietly(statement);
+		}
+	}
+	
+	/**
+	 * Executes a single alias statement. Errors of the statement itself are logged, while
+	 * connection failures are passed on, so that the connection is discarded.
+	 */
+	private static void executeAliasStatement(Statement statement, String sqlCmd, String itemName) throws SQLException {
+		logger.trace("Executing statement '{}' for item '{}'", sqlCmd, itemName);
+		try {
+			statement.executeUpdate(sqlCmd);
+		} catch (SQLException e) {
+			if (isConnectionException(e)) {
+				throw e;
+			}
+			logger.warn("Could not execute the SQL statement '{}' for item '{}': {}", 
+				new Object[] { sqlCmd, itemName, e.getMessage() });
+		}
+	}
 
-				} catch (Exception e) {
-					logger.error("Could not store item '{}' in database with statement '{}': {}", new String[] { item.getName(), sqlCmd, e.getMessage() });
-				} finally {
-					if (statement != null) {
-						try {
-							statement.close();
-						} catch (Exception hidden) {
-						}
+	/**
+	 * @{inheritDoc}
+	 */
+	public Iterable<HistoricItem> query(final FilterCriteria filter) {
+		if (pool == null || !MODE_TABLE.equals(mode)) {
+			logger.debug("Queries are only supported in the '{}' mode of the SQL persistence service.", MODE_TABLE);
+			return Collections.emptyList();
+		}
+		
+		try {
+			createTable();
+			return execute(new SqlCommand<List<HistoricItem>>() {
+				public List<HistoricItem> execute(Connection connection) throws SQLException {
+					return query(connection, filter != null ? filter : new FilterCriteria());
+				}
+			}, true);
+		} catch (SQLException e) {
+			logger.error("Could not query SQL database: {}", e.getMessage());
+			return Collections.emptyList();
+		}
+	}
+
+	/**
+	 * @{inheritDoc}
+	 */
+	public HistoricCursor openCursor(FilterCriteria filter) {
+		if (pool == null || !MODE_TABLE.equals(mode)) {
+			logger.debug("Queries are only supported in the '{}' mode of the SQL persistence service.", MODE_TABLE);
+			return HistoricCursors.forItems(Collections.<HistoricItem>emptyList());
+		}
+		if (filter == null) {
+			filter = new FilterCriteria();
+		}
+		
+		try {
+			createTable();
+			SQLException lastException = null;
+			for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+				SqlConnectionPool pool = this.pool;
+				if (pool == null) {
+					break;
+				}
+				// the connection is kept by the cursor until it is closed
+				Connection connection = pool.getConnection();
+				try {
+					return new ResultSetCursor(pool, connection, filter);
+				} catch (SQLException e) {
+					if (!isConnectionFailure(pool, connection, e)) {
+						pool.release(connection);
+						throw e;
 					}
+					logger.debug("Executing SQL query failed, discarding connection: {}", e.getMessage());
+					pool.invalidate(connection);
+					lastException = e;
+				}
+			}
+			if (lastException != null) {
+				throw lastException;
+			}
+		} catch (SQLException e) {
+			logger.error("Could not query SQL database: {}", e.getMessage());
+		}
+		return HistoricCursors.forItems(Collections.<HistoricItem>emptyList());
+	}
+
+	private List<HistoricItem> query(Connection connection, FilterCriteria filter) throws SQLException {
+		List<HistoricItem> items = new ArrayList<HistoricItem>();
+		PreparedStatement statement = prepareQuery(connection, filter, true);
+		try {
+			ResultSet resultSet = statement.executeQuery();
+			try {
+				while (resultSet.next()) {
+					Date timestamp = new Date(resultSet.getTimestamp(1).getTime());
+					State state = parseState(resultSet.getString(3), resultSet.getString(4));
+					items.add(new SqlItem(resultSet.getString(5), state, timestamp));
 				}
+			} finally {
+				resultSet.close();
+			}
+		} finally {
+			closeQuietly(statement);
+		}
+		return items;
+	}
+	
+	/**
+	 * Prepares the statement for a query. The selected columns are STATETIME and NUMERICVALUE,
+	 * followed by STATETYPE, STATEVALUE and ITEMNAME, if the states are needed. The requested
+	 * page is selected with LIMIT and OFFSET, so that the skipped rows are not transferred.
+	 */
+	private PreparedStatement prepareQuery(Connection connection, FilterCriteria filter, boolean withStates) throws SQLException {
+		StringBuilder sql = new StringBuilder("SELECT STATETIME, NUMERICVALUE");
+		if (withStates) {
+			sql.append(", STATETYPE, STATEVALUE, ITEMNAME");
+		}
+		sql.append(" FROM ").append(table);
+		List<Object> parameters = new ArrayList<Object>();
+		String conjunction = " WHERE ";
+		if (filter.getItemName() != null) {
+			sql.append(conjunction).append("ITEMNAME = ?");
+			parameters.add(filter.getItemName());
+			conjunction = " AND ";
+		}
+		if (filter.getBeginDate() != null) {
+			sql.append(conjunction).append("STATETIME >= ?");
+			parameters.add(new Timestamp(filter.getBeginDate().getTime()));
+			conjunction = " AND ";
+		}
+		if (filter.getEndDate() != null) {
+			sql.append(conjunction).append("STATETIME <= ?");
+			parameters.add(new Timestamp(filter.getEndDate().getTime()));
+			conjunction = " AND ";
+		}
+		if (filter.getState() != null && filter.getOperator() != null) {
+			State state = filter.getState();
+			if (state instanceof DecimalType) {
+				sql.append(conjunction).append("NUMERICVALUE ").append(getOperatorSymbol(filter.getOperator())).append(" ?");
+				parameters.add(((DecimalType) state).toBigDecimal().doubleValue());
 			} else {
-				logger.warn("No connection to database. Can not persist item '{}'! Will retry connecting to database next time.", item);
+				sql.append(conjunction).append("STATEVALUE ").append(getOperatorSymbol(filter.getOperator())).append(" ?");
+				parameters.add(state.toString());
+			}
+		}
+		sql.append(" ORDER BY STATETIME ").append(filter.getOrdering() == Ordering.ASCENDING ? "ASC" : "DESC");
+		boolean paged = filter.getPageSize() != Integer.MAX_VALUE || filter.getPageNumber() > 0;
+		if (paged) {
+			long offset = (long) filter.getPageNumber() * filter.getPageSize();
+			sql.append(" LIMIT ").append(filter.getPageSize()).append(" OFFSET ").append(offset);
+		}
+		
+		PreparedStatement statement = connection.prepareStatement(sql.toString());
+		try {
+			for (int i = 0; i < parameters.size(); i++) {
+				statement.setObject(i + 1, parameters.get(i));
 			}
+			// the fetch size must not exceed the size of the page
+			statement.setFetchSize(Math.min(FETCH_SIZE, Math.max(1, filter.getPageSize())));
+		} catch (SQLException e) {
+			closeQuietly(statement);
+			throw e;
 		}
+		return statement;
 	}
 
 	/**
-	 * @{inheritDoc}
+	 * Restores a state from its stored type and value. Unknown types are returned as {@link StringType}.
 	 */
-	public void store(Item item) {
-		throw new UnsupportedOperationException(
-				"The SQL service requires aliases for persistence configurations that should match the SQL statement. Please configure sql.persist properly.");
+	private State parseState(String type, String value) {
+		Class<? extends State> stateClass = stateTypes.get(type);
+		if (stateClass != null) {
+			List<Class<? extends State>> types = new ArrayList<Class<? extends State>>(1);
+			types.add(stateClass);
+			State state = TypeParser.parseState(types, value);
+			if (state != null) {
+				return state;
+			}
+		}
+		return new StringType(value);
+	}
+
+	private static String getOperatorSymbol(FilterCriteria.Operator operator) {
+		switch (operator) {
+			case EQ  : return "=";
+			case NEQ : return "<>";
+			case GT  : return ">";
+			case LT  : return "<";
+			case GTE : return ">=";
+			case LTE : return "<=";
+			default  : throw new IllegalArgumentException("Unknown operator " + operator);
+		}
+	}
+
+	/**
+	 * Creates the history table, if it does not yet exist.
+	 */
+	private void createTable() throws SQLException {
+		if (tableCreated) {
+			return;
+		}
+		execute(new SqlCommand<Void>() {
+			public Void execute(Connection connection) throws SQLException {
+				Statement statement = connection.createStatement();
+				try {
+					statement.executeQuery("SELECT COUNT(*) FROM " + table + " WHERE 1 = 0").close();
+				} catch (SQLException e) {
+					logger.info("Creating table '{}' for the SQL persistence service.", table);
+					if (!connection.getAutoCommit()) {
+						connection.rollback();
+					}
+					statement.executeUpdate("CREATE TABLE " + table + " (ITEMNAME VARCHAR(200) NOT NULL, " +
+							"STATETIME TIMESTAMP NOT NULL, STATETYPE VARCHAR(32) NOT NULL, " + 
+							"STATEVALUE VARCHAR(255), NUMERICVALUE DOUBLE PRECISION)");
+					statement.executeUpdate("CREATE INDEX " + table + "_IDX ON " + table + " (ITEMNAME, STATETIME)");
+				} finally {
+					closeQuietly(statement);
+				}
+				return null;
+			}
+		}, true);
+		tableCreated = true;
 	}
 
 	/**
-	 * Checks if we have a database connection
+	 * Executes a command with a pooled connection. If the command fails because the 
+	 * connection is broken, the connection is discarded and the command is optionally
+	 * retried with a new connection, so that the service automatically reconnects after
+	 * the database has been restarted. Other errors are not retried.
 	 * 
-	 * @return true if connection has been established, false otherwise
+	 * @param command the command to execute
+	 * @param retry true, if the command can safely be repeated after a connection failure
+	 * @return the result of the command
+	 * @throws SQLException if the command failed on every attempt
+	 */
+	private <T> T execute(SqlCommand<T> command, boolean retry) throws SQLException {
+		SQLException lastException = null;
+		int attempts = retry ? MAX_ATTEMPTS : 1;
+		for (int attempt = 0; attempt < attempts; attempt++) {
+			SqlConnectionPool pool = this.pool;
+			if (pool == null) {
+				throw new SQLException("The SQL persistence service is not configured");
+			}
+			Connection connection = pool.getConnection();
+			try {
+				T result = command.execute(connection);
+				pool.release(connection);
+				return result;
+			} catch (SQLException e) {
+				if (!isConnectionFailure(pool, connection, e)) {
+					pool.release(connection);
+					throw e;
+				}
+				logger.debug("Executing SQL command failed, discarding connection: {}", e.getMessage());
+				pool.invalidate(connection);
+				lastException = e;
+			} catch (RuntimeException e) {
+				pool.release(connection);
+				throw e;
+			}
+		}
+		throw lastException;
+	}
+	
+	/**
+	 * Checks whether a statement failed because the connection to the database is broken,
+	 * as opposed to errors of the statement itself like syntax errors or constraint violations.
 	 */
-	private boolean isConnected() {
-		return connection != null;
+	private static boolean isConnectionFailure(SqlConnectionPool pool, Connection connection, SQLException e) {
+		if (isConnectionException(e)) {
+			return true;
+		}
+		return !pool.isValid(connection);
+	}
+	
+	/**
+	 * Checks whether the SQLState of the given exception denotes a connection exception.
+	 */
+	private static boolean isConnectionException(SQLException e) {
+		String sqlState = e.getSQLState();
+		return sqlState != null && sqlState.startsWith(CONNECTION_EXCEPTION_CLASS);
 	}
 
 	/**
 	 * Connects to the database
 	 */
-	private void connectToDatabase() {
+	private void connectToDatabase(int poolSize) {
 		try {
 			logger.debug("Attempting to connect to database " + url);
-			Class.forName(driverClass).newInstance();
-			connection = DriverManager.getConnection(url, user, password);
+			pool = new SqlConnectionPool(driverClass, url, user, password, poolSize);
+			tableCreated = false;
+			
+			// check the connection, so that configuration problems are detected immediately
+			pool.release(pool.getConnection());
 			logger.debug("Connected to database " + url);
 		} catch (Exception e) {
 			logger.error("Failed connecting to the SQL database using: driverClass="
@@ -155,14 +633,25 @@ public class SqlPersistenceService implements PersistenceService, ManagedService
 	 * Disconnects from the database
 	 */
 	private void disconnectFromDatabase() {
-		if (isConnected()) {
-			try {
-				connection.close();
-				logger.debug("Disconnected from database " + url);
-				connection = null;
-			} catch (Exception e) {
-				logger.warn("Failed disconnecting from the SQL database", e);
-			}
+		if (pool != null) {
+			pool.close();
+			pool = null;
+			logger.debug("Disconnected from database " + url);
+		}
+	}
+	
+	private static void rollbackQuietly(Connection connection) {
+		try {
+			connection.rollback();
+		} catch (SQLException e) {
+			logger.debug("Failed to roll back transaction: {}", e.getMessage());
+		}
+	}
+	
+	private static void closeQuietly(Statement statement) {
+		try {
+			statement.close();
+		} catch (SQLException e) {
 		}
 	}
 	
@@ -206,14 +695,133 @@ public class SqlPersistenceService implements PersistenceService, ManagedService
 			if (StringUtils.isBlank(password)) {
 				throw new ConfigurationException("sql:password", "The SQL password is missing. Attempting to connect without password. To specify a password configure the sql:password parameter in openhab.cfg.");
 			}
+			
+			String modeString = (String) config.get("mode");
+			if (StringUtils.isNotBlank(modeString)) {
+				if (!MODE_ALIAS.equals(modeString.trim()) && !MODE_TABLE.equals(modeString.trim())) {
+					throw new ConfigurationException("sql:mode", "Unknown mode '" + modeString + "' - valid modes are '" + MODE_ALIAS + "' and '" + MODE_TABLE + "'");
+				}
+				mode = modeString.trim();
+			} else {
+				mode = MODE_ALIAS;
+			}
+			
+			String tableString = (String) config.get("table");
+			if (StringUtils.isNotBlank(tableString)) {
+				if (!tableString.trim().matches("[A-Za-z_][A-Za-z0-9_]*")) {
+					throw new ConfigurationException("sql:table", "The table name '" + tableString + "' is not valid");
+				}
+				table = tableString.trim();
+			} else {
+				table = DEFAULT_TABLE;
+			}
+			
+			int poolSize = DEFAULT_POOL_SIZE;
+			String poolSizeString = (String) config.get("poolsize");
+			if (StringUtils.isNotBlank(poolSizeString)) {
+				try {
+					poolSize = Integer.parseInt(poolSizeString.trim());
+				} catch (NumberFormatException e) {
+					throw new ConfigurationException("sql:poolsize", "'" + poolSizeString + "' is not a valid number");
+				}
+			}
 
 			disconnectFromDatabase();
-			connectToDatabase();
-			
-			// connection has been established ... initialization completed!
-			initialized = true;
+			connectToDatabase(poolSize);
 		}
 	}
 	
+	
+	/**
+	 * A command, which is executed with a pooled database connection.
+	 */
+	private interface SqlCommand<T> {
+		T execute(Connection connection) throws SQLException;
+	}
+
+	
+	/**
+	 * A cursor over the rows of a result set, which keeps its connection until it is closed.
+	 * The rows are fetched in chunks by the JDBC driver.
+	 */
+	private class ResultSetCursor implements HistoricCursor {
+		
+		private final SqlConnectionPool pool;
+		private Connection connection;
+		private final PreparedStatement statement;
+		private final ResultSet resultSet;
+		private final boolean withStates;
+		
+		ResultSetCursor(SqlConnectionPool pool, Connection connection, FilterCriteria filter) throws SQLException {
+			this.pool = pool;
+			this.connection = connection;
+			this.withStates = filter.getProjection() != Projection.VALUE;
+			this.statement = prepareQuery(connection, filter, withStates);
+			try {
+				this.resultSet = statement.executeQuery();
+			} catch (SQLException e) {
+				closeQuietly(statement);
+				throw e;
+			}
+		}
+		
+		public boolean next() {
+			if (connection == null) {
+				return false;
+			}
+			try {
+				if (resultSet.next()) {
+					return true;
+				}
+				close();
+			} catch (SQLException e) {
+				logger.warn("Could not read from SQL database: {}", e.getMessage());
+				closeQuietly(statement);
+				pool.invalidate(connection);
+				connection = null;
+			}
+			return false;
+		}
+		
+		public long getTime() {
+			try {
+				return resultSet.getTimestamp(1).getTime();
+			} catch (SQLException e) {
+				throw new IllegalStateException("Could not read the time of the current row", e);
+			}
+		}
+		
+		public double getValue() {
+			try {
+				double value = resultSet.getDouble(2);
+				return resultSet.wasNull() ? Double.NaN : value;
+			} catch (SQLException e) {
+				throw new IllegalStateException("Could not read the value of the current row", e);
+			}
+		}
+		
+		public State getState() {
+			if (!withStates) {
+				return null;
+			}
+			try {
+				return parseState(resultSet.getString(3), resultSet.getString(4));
+			} catch (SQLException e) {
+				throw new IllegalStateException("Could not read the state of the current row", e);
+			}
+		}
+		
+		public void close() {
+			if (connection != null) {
+				try {
+					resultSet.close();
+				} catch (SQLException e) {
+				}
+				closeQuietly(statement);
+				pool.release(connection);
+				connection = null;
+			}
+		}
+	}
 
 }